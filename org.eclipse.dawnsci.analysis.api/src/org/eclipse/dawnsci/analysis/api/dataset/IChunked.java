@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.dataset;
+
+/**
+ * Data that is stored in chunks, e.g. a chunked (and maybe compressed) HDF5 dataset, so reading
+ * part of a chunk costs as much as reading all of it. Lazy loaders of such data should implement
+ * this so that slicing can read whole chunks at a time.
+ */
+public interface IChunked {
+
+	/**
+	 * @return shape of chunks, i.e. of the regions that are read as a whole (null if not known)
+	 */
+	public int[] getChunking();
+
+	/**
+	 * @return position of the start of a chunk, so chunks start at this plus multiples of the
+	 * chunking (null if chunking is not known)
+	 */
+	public int[] getChunkOffset();
+}
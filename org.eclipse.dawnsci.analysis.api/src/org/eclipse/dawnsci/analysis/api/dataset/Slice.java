@@ -9,11 +9,14 @@
 
 package org.eclipse.dawnsci.analysis.api.dataset;
 
+import java.io.Serializable;
+
 /**
  * Class to represent a slice through a single dimension of a multi-dimensional dataset. A slice
  * comprises a starting position, a stopping position (not included) and a stepping size.
  */
-public class Slice implements Cloneable {
+public class Slice implements Cloneable, Serializable {
+	private static final long serialVersionUID = -6294727446180823409L;
 
 	private Integer start;
 	private Integer stop;
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.io;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+
+/**
+ * Lazy loader that can read regions of a dataset without blocking the caller.
+ * <p>
+ * Several regions can be requested at once so that the loader can read them together,
+ * e.g. as one larger region or in one pass through a file. Failed reads are reported by
+ * the futures throwing {@link java.util.concurrent.ExecutionException}.
+ */
+public interface IAsyncLazyLoader extends ILazyLoader {
+
+	/**
+	 * @param mon
+	 * @param shape
+	 * @param start
+	 * @param stop
+	 * @param step
+	 * @return future of a slice of a dataset
+	 */
+	public Future<IDataset> getDatasetAsync(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step);
+
+	/**
+	 * @param mon
+	 * @param shape
+	 * @param start of each region
+	 * @param stop of each region
+	 * @param step of each region
+	 * @return futures of slices of a dataset in the same order as the regions
+	 */
+	public List<Future<IDataset>> getDatasetsAsync(IMonitor mon, int[] shape, int[][] start, int[][] stop, int[][] step);
+}
@@ -10,11 +10,14 @@
 package org.eclipse.dawnsci.analysis.api.processing;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
 import org.eclipse.dawnsci.analysis.api.metadata.AxesMetadata;
 import org.eclipse.dawnsci.analysis.api.metadata.IDiffractionMetadata;
 import org.eclipse.dawnsci.analysis.api.metadata.IMetadata;
@@ -26,6 +29,11 @@ import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
 
 public abstract class AbstractOperation<T extends IOperationModel, D extends OperationData> implements IOperation<T, D> {
 
+	/**
+	 * Maximum number of slices in a batch for subclasses that implement {@link IBatchOperation}
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 16;
+
 	protected T model;
 
 	private String            name;
@@ -72,10 +80,177 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 		
 	}
 	
+	/**
+	 * Execute on stack of slices for subclasses that implement {@link IBatchOperation}. The stack
+	 * is squeezed and processed once by {@link #processBatch(IDataset, IMonitor)}. The origin and
+	 * axes metadata of each slice are found once for the whole stack and results are updated to full
+	 * rank with them. Stacks whose slices are not contiguous, i.e. whose stacking dimension comes
+	 * after a data dimension, are executed slice by slice
+	 * @param stack
+	 * @param monitor
+	 * @return result for each slice
+	 * @throws OperationException
+	 */
+	public List<D> executeBatch(IDataset stack, IMonitor monitor) throws OperationException {
+		final OriginMetadata origin = getOriginMetadata(stack);
+		if (origin == null) {
+			throw new OperationException(this, "Stack has no origin metadata");
+		}
+		final int[] shape = stack.getShape();
+		final int[] dataDims = origin.getDataDimensions();
+		int batchDim = -1;
+		for (int i = 0; i < shape.length; i++) {
+			if (shape[i] != 1 && !contains(dataDims, i)) {
+				if (batchDim >= 0) {
+					throw new OperationException(this, "Stack must have only one dimension that is not a data dimension");
+				}
+				batchDim = i;
+			}
+		}
+		if (batchDim < 0) {
+			return Collections.singletonList(execute(stack, monitor));
+		}
+
+		final int n = shape[batchDim];
+		final OriginMetadata[] origins = getSliceOrigins(origin, shape.length, batchDim, n);
+		final int[] dims = dataDims.clone();
+		Arrays.sort(dims);
+		for (int d : dims) {
+			if (d < batchDim && shape[d] != 1) {
+				return executeEach(stack, batchDim, origins, monitor);
+			}
+		}
+
+		int[] squeezed = new int[dims.length + 1];
+		int r = 0;
+		squeezed[r++] = n;
+		for (int d : dims) {
+			if (shape[d] != 1) {
+				squeezed[r++] = shape[d];
+			}
+		}
+		IDataset view = stack.getSliceView();
+		view.setShape(Arrays.copyOf(squeezed, r));
+
+		List<D> outputs = processBatch(view, monitor);
+		if (outputs == null || outputs.size() != n) {
+			throw new OperationException(this, "Batch must give one result for each slice");
+		}
+
+		final AxesMetadata axes = getAxesMetadata(stack);
+		List<D> results = new ArrayList<D>(n);
+		for (int i = 0; i < n; i++) {
+			D output = outputs.get(i);
+			output.getData().setMetadata(origins[i]);
+			results.add(updateOutputToFullRank(output, shape.length, dataDims, axes == null ? null : sliceAxes(axes, shape, batchDim, i)));
+		}
+		return results;
+	}
+
+	/**
+	 * Execute each slice of stack in turn
+	 */
+	private List<D> executeEach(IDataset stack, int batchDim, OriginMetadata[] origins, IMonitor monitor) throws OperationException {
+		final int[] shape = stack.getShape();
+		final int[] start = new int[shape.length];
+		final int[] stop = shape.clone();
+		final int[] step = new int[shape.length];
+		Arrays.fill(step, 1);
+		List<D> results = new ArrayList<D>(origins.length);
+		for (int i = 0; i < origins.length; i++) {
+			start[batchDim] = i;
+			stop[batchDim] = i + 1;
+			IDataset slice = stack.getSliceView(start, stop, step);
+			slice.setMetadata(origins[i]);
+			results.add(execute(slice, monitor));
+		}
+		return results;
+	}
+
+	/**
+	 * @return origin of each slice in stack
+	 */
+	private static OriginMetadata[] getSliceOrigins(OriginMetadata origin, int rank, int batchDim, int n) {
+		final Slice[] current = origin.getCurrentSlice();
+		int begin = 0;
+		if (current != null && current[batchDim] != null && current[batchDim].getStart() != null) {
+			begin = current[batchDim].getStart();
+		}
+		OriginMetadata[] origins = new OriginMetadata[n];
+		for (int i = 0; i < n; i++) {
+			Slice[] slices = new Slice[rank];
+			for (int j = 0; j < rank; j++) {
+				slices[j] = current == null || current[j] == null ? null : current[j].clone();
+			}
+			slices[batchDim] = new Slice(begin + i, begin + i + 1, 1);
+			origins[i] = new SliceOrigin(origin.getParent(), origin.getInitialSlice(), slices, origin.getDataDimensions(), origin.getFilePath());
+		}
+		return origins;
+	}
+
+	/**
+	 * @return views of axes of stack for one slice
+	 */
+	private static AxesMetadata sliceAxes(AxesMetadata axes, int[] shape, int batchDim, int index) {
+		final int rank = shape.length;
+		AxesMetadata sliced = axes.createAxesMetadata(rank);
+		for (int j = 0; j < rank; j++) {
+			ILazyDataset[] a = axes.getAxis(j);
+			if (a == null) {
+				continue;
+			}
+			ILazyDataset[] s = new ILazyDataset[a.length];
+			for (int k = 0; k < a.length; k++) {
+				if (a[k] == null) {
+					continue;
+				}
+				int[] start = new int[a[k].getRank()];
+				int[] stop = a[k].getShape();
+				if (stop.length == rank && stop[batchDim] == shape[batchDim]) {
+					start[batchDim] = index;
+					stop[batchDim] = index + 1;
+				}
+				s[k] = a[k].getSliceView(start, stop, null);
+			}
+			sliced.setAxis(j, s);
+		}
+		return sliced;
+	}
+
+	private static boolean contains(int[] dims, int d) {
+		for (int i : dims) {
+			if (i == d) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private AxesMetadata getAxesMetadata(IDataset data) throws OperationException {
+		List<AxesMetadata> metadata = null;
+		try {
+			metadata = data.getMetadata(AxesMetadata.class);
+		} catch (Exception e) {
+			throw new OperationException(this, e);
+		}
+		return metadata == null || metadata.isEmpty() ? null : metadata.get(0);
+	}
+
 	private D updateOutputToFullRank(D output, IDataset original) throws OperationException {
+		return updateOutputToFullRank(output, original.getRank(), getOriginalDataDimensions(original), getAxesMetadata(original));
+	}
+
+	/**
+	 * @param output
+	 * @param inr rank of original slice
+	 * @param dataDimensions of original slice
+	 * @param inMeta axes of original slice (may be null)
+	 * @return output with full rank
+	 * @throws OperationException
+	 */
+	private D updateOutputToFullRank(D output, int inr, int[] dataDimensions, AxesMetadata inMeta) throws OperationException {
 		
 		int outr = output.getData().getRank();
-		int inr = original.getRank();
 		
 		//Check ranks acceptable for this step
 		if (getOutputRank().equals(OperationRank.ZERO) || getOutputRank().equals(OperationRank.NONE) || getOutputRank().getRank() > 2) throw new OperationException(null, "Invalid Operation Rank!");
@@ -89,21 +264,14 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 		
 		if (inr == outr) return output;
 		
-		List<AxesMetadata> metadata = null;
 		List<AxesMetadata> metaout = null;
 		
-		try {
-			metadata = original.getMetadata(AxesMetadata.class);
-		} catch (Exception e) {
-			throw new OperationException(this, e);
-		}
-		
-		int[] datadims = getOriginalDataDimensions(original).clone();
+		int[] datadims = dataDimensions.clone();
 		Arrays.sort(datadims);
 		
 		AxesMetadata corMeta  = null;
 		
-		if (metadata != null && !metadata.isEmpty() && metadata.get(0) != null) {
+		if (inMeta != null) {
 			
 			//update it all for new data;
 			try {
@@ -112,8 +280,6 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 				throw new OperationException(this, e);
 			}
 			
-			AxesMetadata inMeta = metadata.get(0);
-			
 			AxesMetadata axOut = null;
 			if (metaout != null && !metaout.isEmpty()) axOut = metaout.get(0);
 			
@@ -226,7 +392,7 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 		updateOutputDataShape(output.getData(), inr-rankDif, datadims);
 		if (corMeta != null) output.getData().setMetadata(corMeta);
 		
-		updateAuxData(output.getAuxData(), original);
+		updateAuxData(output.getAuxData(), inr, dataDimensions, inMeta);
 		
 		return output;
 	}
@@ -246,11 +412,11 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 		
 	}
 	
-	private void updateAuxData(Serializable[] auxData, IDataset original){
+	private void updateAuxData(Serializable[] auxData, int inr, int[] dataDimensions, AxesMetadata inMeta){
 		
 		if (auxData == null || auxData[0] == null) return;
 		
-		int[] datadims = getOriginalDataDimensions(original).clone();
+		int[] datadims = dataDimensions.clone();
 		
 		if (datadims.length > getOutputRank().getRank()) {
 			datadims = new int[]{datadims[0]};
@@ -259,18 +425,9 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 		Arrays.sort(datadims);
 
 		
-		int[] shape = new int[original.getRank()-datadims.length];
+		int[] shape = new int[inr-datadims.length];
 		Arrays.fill(shape, 1);
 		
-		List<AxesMetadata> metadata = null;
-		
-		try {
-			metadata = original.getMetadata(AxesMetadata.class);
-		} catch (Exception e) {
-			throw new OperationException(this, e);
-		}
-		
-		
 		for (int i = 0; i < auxData.length; i++) {
 			if (!(auxData[i] instanceof IDataset) || ((IDataset)auxData[i]).getRank() != 0 ) {
 				continue;
@@ -279,11 +436,10 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 			IDataset ds = (IDataset)auxData[i];
 			ds.setShape(shape);
 			
-			if (metadata != null && !metadata.isEmpty() && metadata.get(0) != null) {
-				AxesMetadata outMeta = metadata.get(0).createAxesMetadata(shape.length);
-				AxesMetadata inMeta = metadata.get(0);
+			if (inMeta != null) {
+				AxesMetadata outMeta = inMeta.createAxesMetadata(shape.length);
 				int counter = 0;
-				for (int j = 0; j < original.getRank();j++) {
+				for (int j = 0; j < inr;j++) {
 					if (Arrays.binarySearch(datadims, j)<0) {
 						ILazyDataset[] axes = inMeta.getAxis(j);
 						if (axes != null && axes[0] != null) {
@@ -304,6 +460,38 @@ public abstract class AbstractOperation<T extends IOperationModel, D extends Ope
 	protected D process(IDataset input, IMonitor monitor) throws OperationException {
 		return null;
 	}
+
+	/**
+	 * Process stack of slices. By default, each slice is processed in turn by {@link #process(IDataset, IMonitor)}
+	 * so subclasses that implement {@link IBatchOperation} should override this to process the stack in one go
+	 * @param input squeezed slices stacked along first dimension
+	 * @param monitor
+	 * @return result for each slice
+	 * @throws OperationException
+	 */
+	protected List<D> processBatch(IDataset input, IMonitor monitor) throws OperationException {
+		final int[] shape = input.getShape();
+		final int[] start = new int[shape.length];
+		final int[] stop = shape.clone();
+		final int[] step = new int[shape.length];
+		Arrays.fill(step, 1);
+		List<D> outputs = new ArrayList<D>(shape[0]);
+		for (int i = 0; i < shape[0]; i++) {
+			start[0] = i;
+			stop[0] = i + 1;
+			IDataset slice = input.getSliceView(start, stop, step);
+			slice.setShape(Arrays.copyOfRange(shape, 1, shape.length));
+			outputs.add(process(slice, monitor));
+		}
+		return outputs;
+	}
+
+	/**
+	 * @return maximum number of slices in a batch for subclasses that implement {@link IBatchOperation}
+	 */
+	public int getMaxBatchSize() {
+		return DEFAULT_MAX_BATCH_SIZE;
+	}
 	
 	
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+
+/**
+ * Operation that can process several slices in one call. Services that find an operation
+ * implements this may read adjacent slices together and execute them as one batch, which
+ * avoids the per-slice overhead of cheap operations such as thresholding or normalisation.
+ * <p>
+ * Operations extending {@link AbstractOperation} only need to declare this interface and
+ * override {@link AbstractOperation#processBatch(IDataset, IMonitor)}.
+ */
+public interface IBatchOperation<M extends IOperationModel, D extends OperationData> extends IOperation<M, D> {
+
+	/**
+	 * @return maximum number of slices in a batch
+	 */
+	public int getMaxBatchSize();
+
+	/**
+	 * Execute on adjacent slices stacked along one dimension which is not a data dimension.
+	 * The stack has the origin metadata of the whole stack, i.e. its current slice covers
+	 * all the slices.
+	 *
+	 * @param stack
+	 * @param monitor
+	 * @return result for each slice in order, as would be returned by {@link #execute(IDataset, IMonitor)}
+	 * @throws OperationException
+	 */
+	public List<D> executeBatch(IDataset stack, IMonitor monitor) throws OperationException;
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+/**
+ * Execution visitor that confirms when results are durable, e.g. an output writer that
+ * buffers slices and flushes its file from time to time.
+ * <p>
+ * When a series is run with a {@link SeriesJournal}, slices are normally recorded as completed
+ * once {@link #executed(OperationData, org.eclipse.dawnsci.analysis.api.monitor.IMonitor, org.eclipse.dawnsci.analysis.api.dataset.Slice[], int[], int[])}
+ * returns. For visitors of this type, they are only recorded when the visitor calls
+ * {@link SeriesJournal#complete(org.eclipse.dawnsci.analysis.api.dataset.Slice[])}, which it should do once
+ * the results of those slices have been written (at the latest in {@link #close()}).
+ */
+public interface IDurableExecutionVisitor extends IExecutionVisitor {
+
+	/**
+	 * Set journal to record slices in. Called before init
+	 * @param journal
+	 */
+	public void setJournal(SeriesJournal journal);
+}
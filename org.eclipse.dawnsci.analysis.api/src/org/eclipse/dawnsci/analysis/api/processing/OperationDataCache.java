@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.metadata.OriginMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Least-recently-used cache of intermediate results of operation series, used to skip
+ * operations whose inputs and models have not changed when a series is run again.
+ * <p>
+ * Results are held in memory up to a budget of bytes. Those least recently used are then
+ * spilled to files in a directory, up to a second budget, after which they are discarded.
+ * Results that cannot be serialized are discarded rather than spilled. Results are copied
+ * on the way in and out so callers can modify what they get. This is thread-safe and files
+ * are written and read without holding the lock of the cache.
+ * <p>
+ * Call {@link #close()} when the cache is no longer needed to delete its files.
+ */
+public class OperationDataCache implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(OperationDataCache.class);
+
+	/**
+	 * Default number of bytes held in memory
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 256 * 1024 * 1024;
+
+	/**
+	 * Default number of bytes held in files
+	 */
+	public static final long DEFAULT_DISK_BUDGET = 4L * 1024 * 1024 * 1024;
+
+	private static final int OTHER_BYTES = 64; // estimate for auxiliary data that are not datasets
+
+	private static class Spilt {
+		private final File file;
+		private final long bytes;
+		private final ILazyDataset parent; // of origin, which is not serialized
+
+		Spilt(File file, long bytes, ILazyDataset parent) {
+			this.file = file;
+			this.bytes = bytes;
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * Result evicted from memory that is to be written to a file
+	 */
+	private static class Spill {
+		private final String key;
+		private final OperationData data;
+		private final long bytes;
+		private final File file;
+
+		Spill(String key, OperationData data, long bytes, File file) {
+			this.key = key;
+			this.data = data;
+			this.bytes = bytes;
+			this.file = file;
+		}
+	}
+
+	private final LinkedHashMap<String, OperationData> memory = new LinkedHashMap<String, OperationData>(16, 0.75f, true);
+	private final LinkedHashMap<String, Spilt> disk = new LinkedHashMap<String, Spilt>(16, 0.75f, true);
+	private final long memoryBudget;
+	private final File directory;
+	private final boolean temporary; // directory is deleted on close
+	private final long diskBudget;
+	private long memoryBytes;
+	private long diskBytes;
+	private long files;
+	private long hits;
+	private long misses;
+	private long spills;
+	private boolean closed;
+
+	/**
+	 * Create cache that spills to a new temporary directory, which is deleted when the
+	 * cache is closed
+	 * @return cache with default budgets
+	 * @throws IOException
+	 */
+	public static OperationDataCache createTemporary() throws IOException {
+		File directory = Files.createTempDirectory("operation-cache").toFile();
+		directory.deleteOnExit(); // in case cache is not closed, its files are deleted first
+		return new OperationDataCache(DEFAULT_MEMORY_BUDGET, directory, DEFAULT_DISK_BUDGET, true);
+	}
+
+	/**
+	 * @param memoryBudget maximum number of bytes held in memory
+	 * @param directory where results are spilled (if null, results are not spilled)
+	 * @param diskBudget maximum number of bytes held in files
+	 */
+	public OperationDataCache(long memoryBudget, File directory, long diskBudget) {
+		this(memoryBudget, directory, diskBudget, false);
+	}
+
+	private OperationDataCache(long memoryBudget, File directory, long diskBudget, boolean temporary) {
+		if (memoryBudget < 0 || diskBudget < 0) {
+			throw new IllegalArgumentException("Budgets must be zero or greater");
+		}
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Could not create directory " + directory);
+		}
+		this.memoryBudget = memoryBudget;
+		this.directory = directory;
+		this.temporary = temporary;
+		this.diskBudget = diskBudget;
+	}
+
+	/**
+	 * @param key
+	 * @return copy of result or null if it is not held
+	 */
+	public OperationData get(String key) {
+		final Spilt s;
+		synchronized (this) {
+			OperationData d = memory.get(key);
+			if (d != null) {
+				hits++;
+				return copy(d); // results held are not changed so can be copied outside lock
+			}
+			s = disk.remove(key);
+			if (s == null) {
+				misses++;
+				return null;
+			}
+			diskBytes -= s.bytes;
+		}
+
+		OperationData d = read(s.file);
+		s.file.delete();
+		List<Spill> evicted = null;
+		synchronized (this) {
+			if (d == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			setParent(d, s.parent);
+			if (!closed && !memory.containsKey(key) && !disk.containsKey(key)) { // not put while reading
+				evicted = hold(key, d, s.bytes);
+			}
+		}
+		spill(evicted);
+		return copy(d);
+	}
+
+	/**
+	 * Hold copy of result
+	 * @param key
+	 * @param data
+	 */
+	public void put(String key, OperationData data) {
+		if (data == null) {
+			return;
+		}
+		final long n = getBytes(data);
+		if (n > memoryBudget) {
+			return;
+		}
+		final OperationData c = copy(data);
+		final List<Spill> evicted;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			Spilt s = disk.remove(key);
+			if (s != null) {
+				diskBytes -= s.bytes;
+				s.file.delete();
+			}
+			evicted = hold(key, c, n);
+		}
+		spill(evicted);
+	}
+
+	/**
+	 * Hold result in memory, called when synchronized
+	 * @return results evicted from memory that are to be spilt
+	 */
+	private List<Spill> hold(String key, OperationData data, long n) {
+		OperationData old = memory.put(key, data);
+		if (old != null) {
+			memoryBytes -= getBytes(old);
+		}
+		memoryBytes += n;
+
+		List<Spill> evicted = null;
+		Iterator<Map.Entry<String, OperationData>> it = memory.entrySet().iterator();
+		while (memoryBytes > memoryBudget && it.hasNext()) {
+			Map.Entry<String, OperationData> e = it.next();
+			long b = getBytes(e.getValue());
+			memoryBytes -= b;
+			it.remove();
+			if (directory != null && b <= diskBudget) {
+				if (evicted == null) {
+					evicted = new ArrayList<Spill>();
+				}
+				evicted.add(new Spill(e.getKey(), e.getValue(), b, new File(directory, "result" + (files++) + ".ser")));
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Write results to files then record them, called when not synchronized
+	 * @param evicted may be null
+	 */
+	private void spill(List<Spill> evicted) {
+		if (evicted == null) {
+			return;
+		}
+		for (Spill e : evicted) {
+			if (!write(e.file, e.data)) {
+				e.file.delete();
+				continue;
+			}
+			synchronized (this) {
+				if (closed || memory.containsKey(e.key) || disk.containsKey(e.key)) { // put again while writing
+					e.file.delete();
+					continue;
+				}
+				spills++;
+				disk.put(e.key, new Spilt(e.file, e.bytes, getParent(e.data)));
+				diskBytes += e.bytes;
+
+				Iterator<Spilt> it = disk.values().iterator();
+				while (diskBytes > diskBudget && it.hasNext()) {
+					Spilt s = it.next();
+					diskBytes -= s.bytes;
+					s.file.delete();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private static ILazyDataset getParent(OperationData data) {
+		OriginMetadata o = getOrigin(data);
+		return o == null ? null : o.getParent();
+	}
+
+	private static void setParent(OperationData data, ILazyDataset parent) {
+		OriginMetadata o = getOrigin(data);
+		if (parent != null && o instanceof SliceOrigin && o.getParent() == null) {
+			data.getData().setMetadata(new SliceOrigin(parent, o.getInitialSlice(), o.getCurrentSlice(), o.getDataDimensions(), o.getFilePath()));
+		}
+	}
+
+	private static OriginMetadata getOrigin(OperationData data) {
+		if (data.getData() == null) {
+			return null;
+		}
+		try {
+			List<OriginMetadata> origins = data.getData().getMetadata(OriginMetadata.class);
+			return origins == null || origins.isEmpty() ? null : origins.get(0);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static boolean write(File f, OperationData data) {
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+			try {
+				out.writeObject(data.getData());
+				out.writeObject(data.getAuxData());
+			} finally {
+				out.close();
+			}
+			return true;
+		} catch (IOException e) {
+			logger.debug("Could not spill result to {}", f, e);
+			return false;
+		}
+	}
+
+	private static OperationData read(File f) {
+		try {
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)));
+			try {
+				IDataset data = (IDataset) in.readObject();
+				Serializable[] aux = (Serializable[]) in.readObject();
+				return new OperationData(data, aux);
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			logger.warn("Could not read spilt result from {}", f, e);
+			return null;
+		}
+	}
+
+	private static OperationData copy(OperationData data) {
+		IDataset d = data.getData() == null ? null : data.getData().clone();
+		Serializable[] aux = data.getAuxData();
+		if (aux != null) {
+			aux = aux.clone();
+			for (int i = 0; i < aux.length; i++) {
+				if (aux[i] instanceof IDataset) {
+					aux[i] = ((IDataset) aux[i]).clone();
+				}
+			}
+		}
+		return new OperationData(d, aux);
+	}
+
+	private static long getBytes(OperationData data) {
+		long n = getBytes(data.getData());
+		Serializable[] aux = data.getAuxData();
+		if (aux != null) {
+			for (Serializable a : aux) {
+				n += a instanceof IDataset ? getBytes((IDataset) a) : OTHER_BYTES;
+			}
+		}
+		return n;
+	}
+
+	private static long getBytes(IDataset d) {
+		return d == null ? 0 : ((long) d.getSize()) * d.getItemsize();
+	}
+
+	/**
+	 * Remove all results and stop holding new ones. A temporary directory is deleted
+	 */
+	@Override
+	public synchronized void close() {
+		clear();
+		closed = true;
+		if (temporary) {
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Remove all results
+	 */
+	public synchronized void clear() {
+		memory.clear();
+		memoryBytes = 0;
+		for (Spilt s : disk.values()) {
+			s.file.delete();
+		}
+		disk.clear();
+		diskBytes = 0;
+	}
+
+	/**
+	 * @return number of bytes held in memory
+	 */
+	public synchronized long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	/**
+	 * @return number of bytes held in files
+	 */
+	public synchronized long getDiskBytes() {
+		return diskBytes;
+	}
+
+	/**
+	 * @return number of results held
+	 */
+	public synchronized int getCount() {
+		return memory.size() + disk.size();
+	}
+
+	/**
+	 * @return number of requests that found result in cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of requests that did not find result in cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of results written to files
+	 */
+	public synchronized long getSpills() {
+		return spills;
+	}
+}
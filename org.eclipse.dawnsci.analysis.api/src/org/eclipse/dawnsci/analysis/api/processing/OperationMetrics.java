@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics of the execution of operation series.
+ * <p>
+ * Services that run {@link IOperationService#executeSeries(ISliceConfiguration, IMonitor, IExecutionVisitor, IOperation...)}
+ * or its parallel version read each slice with {@link #getSlice(ILazyDataset, IMonitor, Slice...)}, execute each
+ * operation with {@link #execute(IOperation, IDataset, IMonitor)} and call {@link #frameCompleted()} when a slice
+ * has passed through the whole series. Services may keep their own metrics or use the shared
+ * {@link #getDefault()}. This records, per operation id, the number of calls and failures,
+ * histograms of wall and CPU times, and bytes allocated (when the JVM measures CPU time and allocation per
+ * thread), and also slice read times and the number of slices completed per second.
+ * <p>
+ * Statistics can be pulled with {@link #getStatistics()} or viewed with JMX clients after {@link #register(String)}.
+ * When tracing is on, each read and execution is written to the {@value #TRACE_LOGGER} log at info level.
+ * This is thread-safe.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+	/**
+	 * Name of log that executions are written to when tracing
+	 */
+	public static final String TRACE_LOGGER = "org.eclipse.dawnsci.analysis.api.processing.trace";
+
+	private static final Logger trace = LoggerFactory.getLogger(TRACE_LOGGER);
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static final Method allocatedBytes = getAllocatedBytesMethod();
+
+	private static volatile OperationMetrics defaultMetrics;
+
+	private final ConcurrentMap<String, OperationStatistics> statistics = new ConcurrentHashMap<String, OperationStatistics>();
+	private TimeHistogram readTime = new TimeHistogram();
+	private long frames;
+	private long firstStart;
+	private long lastEnd;
+	private volatile boolean tracing = false;
+	private ObjectName name;
+
+	/**
+	 * @return metrics shared by services that do not keep their own
+	 */
+	public static OperationMetrics getDefault() {
+		OperationMetrics m = defaultMetrics;
+		if (m == null) {
+			synchronized (OperationMetrics.class) {
+				m = defaultMetrics;
+				if (m == null) {
+					defaultMetrics = m = new OperationMetrics();
+				}
+			}
+		}
+		return m;
+	}
+
+	private static Method getAllocatedBytesMethod() {
+		try {
+			Class<?> c = Class.forName("com.sun.management.ThreadMXBean");
+			if (c.isInstance(threads)) {
+				Method m = c.getMethod("getThreadAllocatedBytes", long.class);
+				m.invoke(threads, Thread.currentThread().getId());
+				return m;
+			}
+		} catch (Throwable ignored) {
+			// not a HotSpot-like JVM so allocation is not measured
+		}
+		return null;
+	}
+
+	private static long getCpuTime() {
+		try {
+			return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+		} catch (UnsupportedOperationException e) {
+			return -1;
+		}
+	}
+
+	private static long getAllocatedBytes() {
+		if (allocatedBytes == null) {
+			return -1;
+		}
+		try {
+			return (Long) allocatedBytes.invoke(threads, Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Execute operation on slice and record its statistics
+	 * @param op
+	 * @param slice
+	 * @param monitor
+	 * @return output of operation
+	 * @throws OperationException
+	 */
+	public <D extends OperationData> D execute(IOperation<?, D> op, IDataset slice, IMonitor monitor) throws OperationException {
+		final long bytes = getAllocatedBytes();
+		final long cpu = getCpuTime();
+		final long start = System.nanoTime();
+		started(start);
+		boolean failed = true;
+		try {
+			D output = op.execute(slice, monitor);
+			failed = false;
+			return output;
+		} finally {
+			final long wall = System.nanoTime() - start;
+			final long dcpu = cpu < 0 ? -1 : getCpuTime() - cpu;
+			final long dbytes = bytes < 0 ? -1 : getAllocatedBytes() - bytes;
+			addExecution(op.getId(), wall, dcpu, dbytes, failed);
+			if (tracing) {
+				trace.info("{} on {}: wall {}us, cpu {}us, allocated {}B{}", op.getId(), slice.getName(),
+						wall / 1000, dcpu < 0 ? "?" : dcpu / 1000, dbytes < 0 ? "?" : dbytes, failed ? ", failed" : "");
+			}
+		}
+	}
+
+	/**
+	 * Execute operation on stack of slices and record its statistics as an equal share for each slice
+	 * @param op
+	 * @param stack
+	 * @param monitor
+	 * @return outputs of operation
+	 * @throws OperationException
+	 */
+	public <D extends OperationData> List<D> executeBatch(IBatchOperation<?, D> op, IDataset stack, IMonitor monitor) throws OperationException {
+		final long bytes = getAllocatedBytes();
+		final long cpu = getCpuTime();
+		final long start = System.nanoTime();
+		started(start);
+		List<D> outputs = null;
+		try {
+			outputs = op.executeBatch(stack, monitor);
+			return outputs;
+		} finally {
+			final long wall = System.nanoTime() - start;
+			final long dcpu = cpu < 0 ? -1 : getCpuTime() - cpu;
+			final long dbytes = bytes < 0 ? -1 : getAllocatedBytes() - bytes;
+			final int n = outputs == null ? 1 : Math.max(1, outputs.size());
+			for (int i = 0; i < n; i++) {
+				addExecution(op.getId(), wall / n, dcpu < 0 ? -1 : dcpu / n, dbytes < 0 ? -1 : dbytes / n, outputs == null);
+			}
+			if (tracing) {
+				trace.info("{} on {} as batch of {}: wall {}us, cpu {}us, allocated {}B{}", op.getId(), stack.getName(), n,
+						wall / 1000, dcpu < 0 ? "?" : dcpu / 1000, dbytes < 0 ? "?" : dbytes, outputs == null ? ", failed" : "");
+			}
+		}
+	}
+
+	/**
+	 * Read slice and record read time
+	 * @param data
+	 * @param monitor
+	 * @param slice
+	 * @return slice
+	 * @throws Exception
+	 */
+	public IDataset getSlice(ILazyDataset data, IMonitor monitor, Slice... slice) throws Exception {
+		final long start = System.nanoTime();
+		started(start);
+		IDataset d = data.getSlice(monitor, slice);
+		final long time = System.nanoTime() - start;
+		addRead(time);
+		if (tracing) {
+			trace.info("Read {} of {}: {}us", Slice.createString(slice), data.getName(), time / 1000);
+		}
+		return d;
+	}
+
+	/**
+	 * Record execution of operation for services that do not use {@link #execute(IOperation, IDataset, IMonitor)}
+	 * @param id of operation
+	 * @param wallNanos elapsed time
+	 * @param cpuNanos CPU time (negative if unknown)
+	 * @param bytes allocated (negative if unknown)
+	 * @param failed
+	 */
+	public void addExecution(String id, long wallNanos, long cpuNanos, long bytes, boolean failed) {
+		OperationStatistics s = statistics.get(id);
+		if (s == null) {
+			OperationStatistics n = new OperationStatistics(id);
+			s = statistics.putIfAbsent(id, n);
+			if (s == null) {
+				s = n;
+			}
+		}
+		synchronized (s) {
+			s.add(wallNanos, cpuNanos, bytes, failed);
+		}
+	}
+
+	/**
+	 * Record slice read for services that do not use {@link #getSlice(ILazyDataset, IMonitor, Slice...)}
+	 * @param nanos
+	 */
+	public synchronized void addRead(long nanos) {
+		readTime.add(nanos);
+	}
+
+	private synchronized void started(long time) {
+		if (firstStart == 0) {
+			firstStart = time;
+		}
+	}
+
+	/**
+	 * Record that a slice has passed through the whole series
+	 */
+	public synchronized void frameCompleted() {
+		lastEnd = System.nanoTime();
+		if (firstStart == 0) {
+			firstStart = lastEnd;
+		}
+		frames++;
+	}
+
+	/**
+	 * @param id of operation
+	 * @return copy of statistics or null if operation has not been executed
+	 */
+	public OperationStatistics getStatistics(String id) {
+		OperationStatistics s = statistics.get(id);
+		if (s == null) {
+			return null;
+		}
+		synchronized (s) {
+			return new OperationStatistics(s);
+		}
+	}
+
+	/**
+	 * @return copies of statistics sorted by operation id
+	 */
+	@Override
+	public Map<String, OperationStatistics> getStatistics() {
+		Map<String, OperationStatistics> copy = new TreeMap<String, OperationStatistics>();
+		for (OperationStatistics s : statistics.values()) {
+			synchronized (s) {
+				copy.put(s.getId(), new OperationStatistics(s));
+			}
+		}
+		return copy;
+	}
+
+	@Override
+	public synchronized TimeHistogram getReadTime() {
+		return new TimeHistogram(readTime);
+	}
+
+	@Override
+	public synchronized long getFrames() {
+		return frames;
+	}
+
+	@Override
+	public synchronized double getFramesPerSecond() {
+		if (frames == 0 || lastEnd <= firstStart) {
+			return 0;
+		}
+		return frames * 1e9 / (lastEnd - firstStart);
+	}
+
+	@Override
+	public boolean isTracing() {
+		return tracing;
+	}
+
+	@Override
+	public void setTracing(boolean tracing) {
+		this.tracing = tracing;
+	}
+
+	@Override
+	public void reset() {
+		statistics.clear();
+		synchronized (this) {
+			readTime = new TimeHistogram();
+			frames = 0;
+			firstStart = 0;
+			lastEnd = 0;
+		}
+	}
+
+	/**
+	 * Register with platform MBean server, replacing any metrics registered with the same name
+	 * @param name used in object name of MBean, e.g. name of pipeline
+	 * @throws JMException
+	 */
+	public synchronized void register(String name) throws JMException {
+		unregister();
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		ObjectName on = new ObjectName(getClass().getPackage().getName() + ":type=OperationMetrics,name=" + ObjectName.quote(name));
+		if (mbs.isRegistered(on)) {
+			mbs.unregisterMBean(on);
+		}
+		mbs.registerMBean(this, on);
+		this.name = on;
+	}
+
+	/**
+	 * Unregister from platform MBean server
+	 * @throws JMException
+	 */
+	public synchronized void unregister() throws JMException {
+		if (name == null) {
+			return;
+		}
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		if (mbs.isRegistered(name)) {
+			mbs.unregisterMBean(name);
+		}
+		name = null;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link OperationMetrics} so it can be viewed and reset with JMX clients
+ */
+public interface OperationMetricsMXBean {
+
+	/**
+	 * @return statistics keyed by operation id
+	 */
+	public Map<String, OperationStatistics> getStatistics();
+
+	/**
+	 * @return histogram of slice read times
+	 */
+	public TimeHistogram getReadTime();
+
+	/**
+	 * @return number of slices that have passed through whole series
+	 */
+	public long getFrames();
+
+	/**
+	 * @return slices per second from first slice read to last slice completed
+	 */
+	public double getFramesPerSecond();
+
+	/**
+	 * @return true if each execution is written to trace log
+	 */
+	public boolean isTracing();
+
+	/**
+	 * @param tracing
+	 */
+	public void setTracing(boolean tracing);
+
+	/**
+	 * Clear all statistics
+	 */
+	public void reset();
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+/**
+ * Statistics of the executions of one operation, as gathered by {@link OperationMetrics}.
+ * <p>
+ * Instances returned by {@link OperationMetrics} are snapshots so do not change.
+ */
+public class OperationStatistics {
+
+	private final String id;
+	private long failures;
+	private long allocated;
+	private final TimeHistogram wall;
+	private final TimeHistogram cpu;
+
+	OperationStatistics(String id) {
+		this.id = id;
+		wall = new TimeHistogram();
+		cpu = new TimeHistogram();
+	}
+
+	OperationStatistics(OperationStatistics other) {
+		id = other.id;
+		failures = other.failures;
+		allocated = other.allocated;
+		wall = new TimeHistogram(other.wall);
+		cpu = new TimeHistogram(other.cpu);
+	}
+
+	/**
+	 * Add execution
+	 * @param wallNanos
+	 * @param cpuNanos negative if unknown
+	 * @param bytes allocated, negative if unknown
+	 * @param failed
+	 */
+	void add(long wallNanos, long cpuNanos, long bytes, boolean failed) {
+		wall.add(wallNanos);
+		if (cpuNanos >= 0) {
+			cpu.add(cpuNanos);
+		}
+		if (bytes > 0) {
+			allocated += bytes;
+		}
+		if (failed) {
+			failures++;
+		}
+	}
+
+	/**
+	 * @return operation id
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return number of executions
+	 */
+	public long getCount() {
+		return wall.getCount();
+	}
+
+	/**
+	 * @return number of executions that threw an exception
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return total bytes allocated by executing thread or zero if JVM does not measure it
+	 */
+	public long getAllocatedBytes() {
+		return allocated;
+	}
+
+	/**
+	 * @return histogram of elapsed times
+	 */
+	public TimeHistogram getWallTime() {
+		return wall;
+	}
+
+	/**
+	 * @return histogram of CPU times of executing thread (empty if JVM does not measure it)
+	 */
+	public TimeHistogram getCpuTime() {
+		return cpu;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count=%d, failures=%d, wall mean=%.1fus p50=%dus p99=%dus, cpu mean=%.1fus, allocated=%dB",
+				id, getCount(), failures, wall.getMean() / 1000, wall.getPercentile(50) / 1000,
+				wall.getPercentile(99) / 1000, cpu.getMean() / 1000, allocated);
+	}
+}
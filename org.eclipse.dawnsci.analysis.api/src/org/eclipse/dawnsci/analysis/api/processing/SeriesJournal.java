@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+
+/**
+ * Journal of the slices whose results have been written by a long-running series, so a run
+ * that dies can be resumed without redoing them.
+ * <p>
+ * The journal is a text file, usually beside the output file (see {@link #getJournalFile(String)}),
+ * that starts with the identity of the series (operation ids and hashes of their models) and then
+ * has one line per completed slice. Lines are flushed as they are added and the file is synced to
+ * disk at most once per sync interval, so after a crash at most the slices of the last interval are
+ * done again. When resuming, the journal must be for the same series.
+ * <p>
+ * This is thread-safe.
+ */
+public class SeriesJournal implements Closeable {
+
+	/**
+	 * Extension added to output file name to give journal file name
+	 */
+	public static final String EXTENSION = ".journal";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String HEADER = "# Operation series journal";
+	private static final String SERIES = "series ";
+
+	private final File file;
+	private final boolean resume;
+	private final Set<String> completed = new HashSet<String>();
+	private long syncInterval = 1000;
+	private FileOutputStream stream;
+	private Writer writer;
+	private long lastSync;
+
+	/**
+	 * @param outputPath
+	 * @return journal file beside output file
+	 */
+	public static File getJournalFile(String outputPath) {
+		return new File(outputPath + EXTENSION);
+	}
+
+	/**
+	 * @param file
+	 * @param resume if true, keep slices completed by an earlier run of the same series
+	 */
+	public SeriesJournal(File file, boolean resume) {
+		this.file = file;
+		this.resume = resume;
+	}
+
+	/**
+	 * @return file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Set maximum time between syncing journal to disk
+	 * @param syncInterval in ms (zero to sync each slice)
+	 */
+	public synchronized void setSyncInterval(long syncInterval) {
+		this.syncInterval = syncInterval;
+	}
+
+	/**
+	 * Open journal for writing. When resuming, slices completed by an earlier run are read
+	 * @param series
+	 * @throws OperationException if resuming with journal for a different series
+	 * @throws IOException
+	 */
+	public synchronized void open(IOperation<? extends IOperationModel, ? extends OperationData>[] series) throws OperationException, IOException {
+		if (writer != null) {
+			throw new IllegalStateException("Journal is already open");
+		}
+		final String identity = getIdentity(series);
+		completed.clear();
+		boolean append = resume && file.exists() && file.length() > 0;
+		if (append) {
+			truncatePartialLine();
+			read(identity);
+		}
+
+		stream = new FileOutputStream(file, append);
+		writer = new BufferedWriter(new OutputStreamWriter(stream, UTF8));
+		if (!append) {
+			writer.write(HEADER);
+			writer.write('\n');
+			writer.write(SERIES);
+			writer.write(identity);
+			writer.write('\n');
+		}
+		sync();
+	}
+
+	private void read(String identity) throws OperationException, IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+		try {
+			String line;
+			boolean found = false;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				if (line.startsWith(SERIES)) {
+					if (!identity.equals(line.substring(SERIES.length()))) {
+						throw new OperationException(null, "Journal " + file + " is for a different series of operations");
+					}
+					found = true;
+				} else if (found) {
+					completed.add(line);
+				}
+			}
+			if (!found) {
+				throw new OperationException(null, "Journal " + file + " does not identify its series of operations");
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Remove any part of a line left by a crash during a write
+	 */
+	private void truncatePartialLine() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long end = raf.length();
+			while (end > 0) {
+				raf.seek(end - 1);
+				if (raf.read() == '\n') {
+					break;
+				}
+				end--;
+			}
+			if (end < raf.length()) {
+				raf.setLength(end);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param slices
+	 * @return true if slice has been completed
+	 */
+	public synchronized boolean isCompleted(Slice[] slices) {
+		return completed.contains(Slice.createString(slices));
+	}
+
+	/**
+	 * @return number of completed slices
+	 */
+	public synchronized int getCompletedCount() {
+		return completed.size();
+	}
+
+	/**
+	 * Record slice as completed, i.e. its result has been written
+	 * @param slices
+	 * @throws IOException
+	 */
+	public synchronized void complete(Slice[] slices) throws IOException {
+		if (writer == null) {
+			throw new IllegalStateException("Journal is not open");
+		}
+		final String key = Slice.createString(slices);
+		if (!completed.add(key)) {
+			return;
+		}
+		writer.write(key);
+		writer.write('\n');
+		writer.flush();
+		if (System.currentTimeMillis() - lastSync >= syncInterval) {
+			sync();
+		}
+	}
+
+	private void sync() throws IOException {
+		writer.flush();
+		stream.getChannel().force(false);
+		lastSync = System.currentTimeMillis();
+	}
+
+	/**
+	 * Sync and close journal
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer == null) {
+			return;
+		}
+		try {
+			sync();
+		} finally {
+			writer.close();
+			writer = null;
+			stream = null;
+		}
+	}
+
+	/**
+	 * Identity of series made from ids of operations and hashes of the values of their models' fields
+	 * (not the hash codes of models which may not be the same in another run)
+	 * @param series
+	 * @return identity
+	 */
+	public static String getIdentity(IOperation<? extends IOperationModel, ? extends OperationData>[] series) {
+		StringBuilder b = new StringBuilder();
+		for (IOperation<? extends IOperationModel, ? extends OperationData> op : series) {
+			if (b.length() > 0) {
+				b.append(';');
+			}
+			b.append(op.getId());
+			b.append(':');
+			b.append(Integer.toHexString(getModelHash(op.getModel())));
+		}
+		return b.toString();
+	}
+
+	private static int getModelHash(IOperationModel model) {
+		if (model == null) {
+			return 0;
+		}
+		int hash = model.getClass().getName().hashCode();
+		for (Field f : getFields(model)) {
+			String value;
+			try {
+				value = toString(f.get(model));
+			} catch (Exception e) {
+				value = "?";
+			}
+			hash = hash * 31 + (f.getName() + "=" + value).hashCode();
+		}
+		return hash;
+	}
+
+	/**
+	 * @param model
+	 * @return true if model has a field holding a lazy dataset which is not loaded, so its
+	 * values are not part of the identity of the series
+	 */
+	static boolean hasLazyData(IOperationModel model) {
+		if (model == null) {
+			return false;
+		}
+		for (Field f : getFields(model)) {
+			try {
+				if (hasLazyData(f.get(model))) {
+					return true;
+				}
+			} catch (Exception e) {
+				return true; // cannot tell
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasLazyData(Object v) {
+		if (v instanceof ILazyDataset) {
+			return !(v instanceof IDataset);
+		}
+		if (v instanceof Object[]) {
+			for (Object o : (Object[]) v) {
+				if (hasLazyData(o)) {
+					return true;
+				}
+			}
+		} else if (v instanceof Collection) {
+			for (Object o : (Collection<?>) v) {
+				if (hasLazyData(o)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return accessible instance fields of model in order of class then name
+	 */
+	private static List<Field> getFields(IOperationModel model) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> c = model.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+			Field[] declared = c.getDeclaredFields();
+			Arrays.sort(declared, new Comparator<Field>() {
+				@Override
+				public int compare(Field a, Field b) {
+					return a.getName().compareTo(b.getName());
+				}
+			});
+			for (Field f : declared) {
+				int m = f.getModifiers();
+				if (Modifier.isStatic(m) || Modifier.isTransient(m) || f.isSynthetic()) {
+					continue;
+				}
+				try {
+					f.setAccessible(true);
+				} catch (Exception e) {
+					// value is read as "?"
+				}
+				fields.add(f);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * @return string of value that does not depend on its identity
+	 */
+	private static String toString(Object v) throws NoSuchMethodException {
+		if (v == null) {
+			return "null";
+		}
+		Class<?> c = v.getClass();
+		if (v instanceof IDataset) { // as toString abbreviates values
+			return toString((IDataset) v);
+		}
+		if (v instanceof ILazyDataset) {
+			ILazyDataset l = (ILazyDataset) v;
+			return c.getName() + ":" + l.getName() + Arrays.toString(l.getShape());
+		}
+		if (v instanceof Object[] || v instanceof Collection) {
+			StringBuilder b = new StringBuilder("[");
+			for (Object o : v instanceof Object[] ? Arrays.asList((Object[]) v) : (Collection<?>) v) {
+				if (b.length() > 1) {
+					b.append(", ");
+				}
+				b.append(toString(o));
+			}
+			return b.append(']').toString();
+		}
+		if (c.isArray()) {
+			return Arrays.deepToString(new Object[] {v});
+		}
+		if (c.getMethod("toString").getDeclaringClass() == Object.class) {
+			return c.getName(); // e.g. listener support
+		}
+		return v.toString();
+	}
+
+	/**
+	 * @return string of shape and hash of all values of dataset
+	 */
+	private static String toString(IDataset d) {
+		final int[] shape = d.getShape();
+		int hash = d.getItemsize();
+		if (d.getSize() > 0) {
+			final int[] pos = new int[shape.length];
+			do {
+				hash = hash * 31 + Arrays.deepHashCode(new Object[] {d.getObject(pos)});
+			} while (next(pos, shape));
+		}
+		return d.getClass().getName() + Arrays.toString(shape) + ":" + Integer.toHexString(hash);
+	}
+
+	/**
+	 * Move to next position in row-major order
+	 * @return false if there are no more positions
+	 */
+	private static boolean next(int[] pos, int[] shape) {
+		for (int i = pos.length - 1; i >= 0; i--) {
+			if (++pos[i] < shape[i]) {
+				return true;
+			}
+			pos[i] = 0;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.metadata.OriginMetadata;
+
+/**
+ * Origin of slices read by {@link StagedSeriesExecutor}
+ */
+class SliceOrigin implements OriginMetadata {
+	private static final long serialVersionUID = -2587232738418436346L;
+
+	private final transient ILazyDataset parent;
+	private final Slice[] initialSlice;
+	private final Slice[] currentSlice;
+	private final int[] dataDims;
+	private final String datasetName;
+	private final String filePath;
+
+	SliceOrigin(ILazyDataset parent, Slice[] initialSlice, Slice[] currentSlice, int[] dataDims, String filePath) {
+		this.parent = parent;
+		this.initialSlice = initialSlice;
+		this.currentSlice = currentSlice;
+		this.dataDims = dataDims;
+		this.datasetName = parent == null ? null : parent.getName();
+		this.filePath = filePath;
+	}
+
+	@Override
+	public int[] getDataDimensions() {
+		return dataDims;
+	}
+
+	@Override
+	public ILazyDataset getParent() {
+		return parent;
+	}
+
+	@Override
+	public Slice[] getInitialSlice() {
+		return initialSlice;
+	}
+
+	@Override
+	public String getDatasetName() {
+		return datasetName;
+	}
+
+	@Override
+	public String getFilePath() {
+		return filePath;
+	}
+
+	@Override
+	public Slice[] getCurrentSlice() {
+		return currentSlice;
+	}
+
+	@Override
+	public SliceOrigin clone() {
+		return new SliceOrigin(parent, clone(initialSlice), clone(currentSlice), dataDims == null ? null : dataDims.clone(), filePath);
+	}
+
+	private static Slice[] clone(Slice[] slices) {
+		if (slices == null) {
+			return null;
+		}
+		Slice[] c = new Slice[slices.length];
+		for (int i = 0; i < c.length; i++) {
+			c[i] = slices[i] == null ? null : slices[i].clone();
+		}
+		return c;
+	}
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+import org.eclipse.dawnsci.analysis.api.slice.Slicer;
+
+/**
+ * Executes a series of operations as a pipeline of stages.
+ * <p>
+ * Slices are read by a loading stage, passed through one or more stages that each run a group of
+ * consecutive operations, and handed to the execution visitor by an output stage. Each stage has its
+ * own pool of threads and a queue of slices waiting for it, so, for example, writing results overlaps
+ * with processing later slices and an expensive operation can be given more threads than cheap ones.
+ * <p>
+ * Within a stage, slices may be processed out of order but the output stage calls
+ * {@link IExecutionVisitor#executed(OperationData, IMonitor, Slice[], int[], int[])} in slice order from
+ * a single thread. {@link IExecutionVisitor#notify(IOperation, OperationData, Slice[], int[], int[])} is
+ * called from the thread that ran the operation. The number of slices in the pipeline is bounded by the
+ * capacity, so queues (including the slices waiting to be output in order) cannot fill the heap.
+ * <p>
+ * When the first operation is an {@link IBatchOperation}, adjacent slices are read together and
+ * executed by it as one batch before being passed on separately.
+ * <p>
+ * With a {@link SeriesJournal}, output slices are recorded so a run that is resumed skips them.
+ * <p>
+ * Operations must be thread-safe if their stage has more than one thread.
+ */
+public class StagedSeriesExecutor {
+
+	private static class Stage {
+		private final int threads;
+		private final List<IOperation<? extends IOperationModel, ? extends OperationData>> operations;
+
+		Stage(int threads, List<IOperation<? extends IOperationModel, ? extends OperationData>> operations) {
+			this.threads = threads;
+			this.operations = operations;
+		}
+	}
+
+	private static class Frame {
+		private final long index;
+		private final Slice[] slices;
+		private OperationData data;
+		private boolean skipped;
+		private int next; // index in series of next operation to run
+
+		Frame(long index, Slice[] slices) {
+			this.index = index;
+			this.slices = slices;
+		}
+	}
+
+	private final List<Stage> stages = new ArrayList<Stage>();
+	private int loaders = 1;
+	private int capacity = 2 * Runtime.getRuntime().availableProcessors();
+	private String filePath;
+	private OperationMetrics metrics;
+	private SeriesJournal journal;
+	private OperationDataCache cache;
+
+	/**
+	 * Add stage that runs a group of operations. Stages are run in the order they are added
+	 * @param threads number of slices processed at the same time
+	 * @param operations run in order on each slice
+	 * @return this
+	 */
+	@SafeVarargs
+	public final StagedSeriesExecutor addStage(int threads, IOperation<? extends IOperationModel, ? extends OperationData>... operations) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least one");
+		}
+		if (operations == null || operations.length == 0) {
+			throw new IllegalArgumentException("Stage must have at least one operation");
+		}
+		List<IOperation<? extends IOperationModel, ? extends OperationData>> ops = new ArrayList<IOperation<? extends IOperationModel, ? extends OperationData>>(operations.length);
+		for (IOperation<? extends IOperationModel, ? extends OperationData> op : operations) {
+			ops.add(op);
+		}
+		stages.add(new Stage(threads, ops));
+		return this;
+	}
+
+	/**
+	 * Set number of threads that read slices concurrently. As many lazy datasets
+	 * do not support concurrent reads, the default is one
+	 * @param loaders
+	 * @return this
+	 */
+	public StagedSeriesExecutor setLoaders(int loaders) {
+		if (loaders < 1) {
+			throw new IllegalArgumentException("Number of loaders must be at least one");
+		}
+		this.loaders = loaders;
+		return this;
+	}
+
+	/**
+	 * Set maximum number of slices in the pipeline (default is twice the number of processors)
+	 * @param capacity
+	 * @return this
+	 */
+	public StagedSeriesExecutor setCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least one");
+		}
+		this.capacity = capacity;
+		return this;
+	}
+
+	/**
+	 * Set file path given in origin metadata of slices
+	 * @param filePath
+	 * @return this
+	 */
+	public StagedSeriesExecutor setFilePath(String filePath) {
+		this.filePath = filePath;
+		return this;
+	}
+
+	/**
+	 * Set metrics that record slice reads and operation executions
+	 * @param metrics may be null
+	 * @return this
+	 */
+	public StagedSeriesExecutor setMetrics(OperationMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Set journal that records slices whose results have been output. If it is resuming, slices
+	 * completed by an earlier run are not executed again
+	 * @param journal may be null
+	 * @return this
+	 */
+	public StagedSeriesExecutor setJournal(SeriesJournal journal) {
+		this.journal = journal;
+		return this;
+	}
+
+	/**
+	 * Set cache of intermediate results. For each slice, the result of the longest part of
+	 * the series that has been cached (with the same operations and models) is used so only
+	 * the later operations are run, and the visitor is only notified of those. Results are not
+	 * cached from the first operation whose model holds a lazy dataset. As results are keyed
+	 * by file path and dataset name, nothing is cached unless the file path has been set.
+	 * Adjacent slices are not executed in batches when results are cached
+	 * @param cache may be null
+	 * @return this
+	 */
+	public StagedSeriesExecutor setCache(OperationDataCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * @return operations of all stages in order
+	 */
+	public IOperation<? extends IOperationModel, ? extends OperationData>[] getSeries() {
+		List<IOperation<? extends IOperationModel, ? extends OperationData>> series = new ArrayList<IOperation<? extends IOperationModel, ? extends OperationData>>();
+		for (Stage s : stages) {
+			series.addAll(s.operations);
+		}
+		return series.toArray(new IOperation<?, ?>[series.size()]);
+	}
+
+	/**
+	 * Execute all stages on every slice of dataset. Blocks until all slices have been output,
+	 * processing is cancelled with the monitor or a stage fails
+	 * @param dataset
+	 * @param monitor
+	 * @param visitor
+	 * @throws OperationException
+	 */
+	public void execute(ISliceConfiguration dataset, final IMonitor monitor, IExecutionVisitor visitor) throws OperationException {
+		if (stages.isEmpty()) {
+			throw new OperationException(null, "No stages have been added");
+		}
+		final IMonitor mon = monitor == null ? new IMonitor.Stub() : monitor;
+		final IExecutionVisitor vis = visitor == null ? new IExecutionVisitor.Stub() : visitor;
+
+		final ILazyDataset lz = dataset.getData();
+		Map<Integer, String> slicing = dataset.getSlicing();
+		if (slicing == null) slicing = new HashMap<Integer, String>();
+
+		final Slice[] initial = Slicer.getSliceArrayFromSliceDimensions(slicing, lz.getShape());
+		final int[] dataDims = Slicer.getDataDimensions(lz.getShape(), slicing);
+		final ILazyDataset view = lz.getSliceView(initial);
+		final int[] shape = view.getShape();
+
+		try {
+			if (journal != null) {
+				journal.open(getSeries());
+				if (vis instanceof IDurableExecutionVisitor) {
+					((IDurableExecutionVisitor) vis).setJournal(journal);
+				}
+			}
+			vis.init(getSeries(), new SliceOrigin(lz, initial, null, dataDims, filePath));
+		} catch (OperationException e) {
+			closeJournal();
+			throw e;
+		} catch (Exception e) {
+			closeJournal();
+			throw new OperationException(null, e);
+		}
+
+		final Run run = new Run(lz, view, initial, dataDims, mon, vis);
+		if (cache != null && filePath != null) { // otherwise data has no identity outside this run
+			IOperation<? extends IOperationModel, ? extends OperationData>[] series = getSeries();
+			int n = 0; // results are only cached up to first model that holds a lazy dataset, whose values are not known
+			while (n < series.length && !SeriesJournal.hasLazyData(series[n].getModel())) {
+				n++;
+			}
+			run.cacheKeys = new String[n];
+			String base = filePath + "|" + lz.getName() + Arrays.toString(lz.getShape()) + "|" + Slice.createString(initial) + "|";
+			for (int i = 0; i < n; i++) {
+				run.cacheKeys[i] = base + SeriesJournal.getIdentity(Arrays.copyOf(series, i + 1)) + "|";
+			}
+		}
+		try {
+			final long total = getNumberOfSlices(shape, dataDims);
+			final int batchDim = getBatchDimension(shape, dataDims);
+			final int batch = batchDim < 0 ? 1 : getBatchSize();
+			long position = 0;
+			long index = 0; // of slices to be output
+			while (position < total) {
+				if (run.failure.get() != null || mon.isCancelled()) {
+					break;
+				}
+				Slice[] slices = getSlice(position, dataDims, shape);
+				if (journal != null && journal.isCompleted(slices)) {
+					position++;
+					continue;
+				}
+				int n = 1;
+				if (batch > 1) { // stack adjacent slices along last dimension that is not a data dimension
+					Slice s = slices[batchDim];
+					n = Math.min(batch, shape[batchDim] - s.getStart());
+					if (journal != null) {
+						for (int i = 1; i < n; i++) {
+							if (journal.isCompleted(getSlice(position + i, dataDims, shape))) {
+								n = i;
+								break;
+							}
+						}
+					}
+					slices[batchDim] = new Slice(s.getStart(), s.getStart() + n, 1);
+				}
+				Frame[] frames = new Frame[n];
+				for (int i = 0; i < n; i++) {
+					frames[i] = new Frame(index++, getSlice(position++, dataDims, shape));
+				}
+				run.inFlight.acquire(n);
+				run.load(slices, frames);
+			}
+			run.inFlight.acquire(capacity); // wait for pipeline to empty
+		} catch (InterruptedException e) {
+			run.failure.compareAndSet(null, e);
+		} finally {
+			run.shutdown();
+			try {
+				vis.close();
+			} catch (Exception e) {
+				run.failure.compareAndSet(null, e);
+			}
+			try {
+				closeJournal();
+			} catch (Exception e) {
+				run.failure.compareAndSet(null, e);
+			}
+		}
+
+		Throwable t = run.failure.get();
+		if (t instanceof OperationException) {
+			throw (OperationException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		} else if (t != null) {
+			throw new OperationException(null, t);
+		}
+	}
+
+	private void closeJournal() throws OperationException {
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				throw new OperationException(null, e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of slices read and executed together, which is one unless the first
+	 * operation is a batch operation
+	 */
+	private int getBatchSize() {
+		IOperation<? extends IOperationModel, ? extends OperationData> first = stages.get(0).operations.get(0);
+		if ((cache != null && filePath != null) || !(first instanceof IBatchOperation) || first.isPassUnmodifiedData()) {
+			return 1;
+		}
+		return Math.max(1, Math.min(((IBatchOperation<?, ?>) first).getMaxBatchSize(), capacity));
+	}
+
+	/**
+	 * State of one execution
+	 */
+	private class Run {
+		private final ILazyDataset parent;
+		private final ILazyDataset view;
+		private final Slice[] initial;
+		private final int[] dataDims;
+		private final int[] shape;
+		private final IMonitor monitor;
+		private final IExecutionVisitor visitor;
+
+		private final Semaphore inFlight = new Semaphore(capacity); // held from start of read until output
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		private final ExecutorService loader;
+		private final ExecutorService[] processors;
+		private final ExecutorService output;
+		private String[] cacheKeys; // prefix for each part of series
+		private final int[] offsets; // index in series of first operation of each stage
+		private final TreeMap<Long, Frame> pending = new TreeMap<Long, Frame>(); // only used by output thread
+		private long next = 0;
+
+		Run(ILazyDataset parent, ILazyDataset view, Slice[] initial, int[] dataDims, IMonitor monitor, IExecutionVisitor visitor) {
+			this.parent = parent;
+			this.view = view;
+			this.initial = initial;
+			this.dataDims = dataDims;
+			this.shape = view.getShape();
+			this.monitor = monitor;
+			this.visitor = visitor;
+			loader = createExecutor(loaders, "Series loader");
+			processors = new ExecutorService[stages.size()];
+			offsets = new int[processors.length];
+			for (int i = 0; i < processors.length; i++) {
+				processors[i] = createExecutor(stages.get(i).threads, "Series stage " + i);
+				if (i > 0) {
+					offsets[i] = offsets[i - 1] + stages.get(i - 1).operations.size();
+				}
+			}
+			output = createExecutor(1, "Series output");
+		}
+
+		private ExecutorService createExecutor(int threads, final String name) {
+			// queues never hold more than capacity slices as each slice holds a permit
+			return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(capacity), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, name);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		void shutdown() {
+			loader.shutdownNow();
+			for (ExecutorService p : processors) {
+				p.shutdownNow();
+			}
+			output.shutdownNow();
+		}
+
+		private boolean isStopped() {
+			return failure.get() != null || monitor.isCancelled();
+		}
+
+		/**
+		 * Record failure and drop slices waiting to be output
+		 * @param t
+		 * @param permits held by failed slices
+		 */
+		private void fail(Throwable t, int permits) {
+			failure.compareAndSet(null, t);
+			inFlight.release(permits);
+			submit(output, 0, new Runnable() {
+				@Override
+				public void run() {
+					inFlight.release(pending.size());
+					pending.clear();
+				}
+			});
+		}
+
+		private void submit(ExecutorService service, int permits, Runnable task) {
+			try {
+				service.execute(task);
+			} catch (Throwable t) { // after shutdown, when a task without a permit finds the queue full or a thread cannot start
+				failure.compareAndSet(null, t);
+				inFlight.release(permits);
+			}
+		}
+
+		/**
+		 * Read adjacent slices in one go
+		 * @param slices covering all frames
+		 * @param frames
+		 */
+		void load(final Slice[] slices, final Frame[] frames) {
+			submit(loader, frames.length, new Runnable() {
+				@Override
+				public void run() {
+					if (isStopped()) {
+						skip(frames);
+						return;
+					}
+					try {
+						if (frames.length == 1 && getCached(frames[0])) {
+							process(0, frames[0]);
+							return;
+						}
+						IDataset data = metrics == null ? view.getSlice(slices) : metrics.getSlice(view, monitor, slices);
+						if (data == null) {
+							throw new IllegalStateException("Could not read slice " + Slice.createString(slices));
+						}
+						data.setName(view.getName() + " (" + Slice.createString(slices) + ")");
+						data.setMetadata(new SliceOrigin(parent, initial, slices, dataDims, filePath));
+						if (frames.length == 1) {
+							frames[0].data = new OperationData(data);
+							process(0, frames[0]);
+						} else {
+							processBatch(data, frames);
+						}
+					} catch (Throwable t) {
+						fail(t, frames.length);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Use result of longest cached part of series
+		 * @return true if found
+		 */
+		private boolean getCached(Frame frame) {
+			if (cacheKeys == null) {
+				return false;
+			}
+			final String slice = Slice.createString(frame.slices);
+			for (int i = cacheKeys.length - 1; i >= 0; i--) {
+				OperationData d = cache.get(cacheKeys[i] + slice);
+				if (d != null) {
+					frame.data = d;
+					frame.next = i + 1;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Run first operation of first stage on stack of slices then pass each slice on
+		 */
+		private void processBatch(final IDataset stack, final Frame[] frames) {
+			submit(processors[0], frames.length, new Runnable() {
+				@Override
+				public void run() {
+					if (isStopped()) {
+						skip(frames);
+						return;
+					}
+					int done = 0;
+					try {
+						IOperation<? extends IOperationModel, ? extends OperationData> op = stages.get(0).operations.get(0);
+						IBatchOperation<?, ? extends OperationData> bop = (IBatchOperation<?, ? extends OperationData>) op;
+						List<? extends OperationData> outputs = metrics == null ? bop.executeBatch(stack, monitor) : metrics.executeBatch(bop, stack, monitor);
+						for (Frame f : frames) {
+							OperationData out = outputs.get(done);
+							visitor.notify(op, out, f.slices, shape, dataDims);
+							f.data = out;
+							if (f.data == null) {
+								write(f);
+							} else if (runOperations(0, 1, f)) {
+								process(1, f);
+							}
+							done++;
+						}
+					} catch (Throwable t) {
+						fail(t, frames.length - done);
+					}
+				}
+			});
+		}
+
+		private void process(final int stage, final Frame frame) {
+			if (stage == processors.length) {
+				write(frame);
+				return;
+			}
+			submit(processors[stage], 1, new Runnable() {
+				@Override
+				public void run() {
+					if (isStopped()) {
+						skip(frame);
+						return;
+					}
+					try {
+						if (runOperations(stage, 0, frame)) {
+							process(stage + 1, frame);
+						}
+					} catch (Throwable t) {
+						fail(t, 1);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Run operations of stage starting from given one
+		 * @return true if frame should be passed to next stage, false if it has been output
+		 */
+		private boolean runOperations(int stage, int from, Frame frame) throws Exception {
+			List<IOperation<? extends IOperationModel, ? extends OperationData>> ops = stages.get(stage).operations;
+			for (int i = Math.max(from, frame.next - offsets[stage]); i < ops.size(); i++) {
+				IOperation<? extends IOperationModel, ? extends OperationData> op = ops.get(i);
+				OperationData out = metrics == null ? op.execute(frame.data.getData(), monitor) : metrics.execute(op, frame.data.getData(), monitor);
+				visitor.notify(op, out, frame.slices, shape, dataDims);
+				if (!op.isPassUnmodifiedData()) {
+					frame.data = out;
+				}
+				frame.next = offsets[stage] + i + 1;
+				if (frame.data == null) { // nothing to pass on
+					write(frame);
+					return false;
+				}
+				if (cacheKeys != null && frame.next <= cacheKeys.length) {
+					cache.put(cacheKeys[frame.next - 1] + Slice.createString(frame.slices), frame.data);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Output slice after any earlier ones
+		 */
+		private void write(final Frame frame) {
+			submit(output, 1, new Runnable() {
+				@Override
+				public void run() {
+					if (failure.get() != null) {
+						inFlight.release();
+						return;
+					}
+					pending.put(frame.index, frame);
+					Frame f;
+					while ((f = pending.remove(next)) != null) {
+						next++;
+						try {
+							if (!f.skipped && !isStopped()) {
+								if (f.data != null) {
+									visitor.executed(f.data, monitor, f.slices, shape, dataDims);
+									if (metrics != null) {
+										metrics.frameCompleted();
+									}
+								}
+								if (journal != null && !(visitor instanceof IDurableExecutionVisitor)) {
+									journal.complete(f.slices);
+								}
+							}
+							inFlight.release();
+						} catch (Throwable t) {
+							fail(t, 1);
+						}
+					}
+				}
+			});
+		}
+
+		/**
+		 * Pass on slice without processing it so later slices can still be output
+		 */
+		private void skip(Frame... frames) {
+			for (Frame f : frames) {
+				f.data = null;
+				f.skipped = true;
+				write(f);
+			}
+		}
+	}
+
+	private static long getNumberOfSlices(int[] shape, int[] dataDims) {
+		long n = 1;
+		for (int i = 0; i < shape.length; i++) {
+			if (!contains(dataDims, i)) {
+				n *= shape[i];
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @param index of slice in row-major order of dimensions that are not data dimensions
+	 * @param dataDims
+	 * @param shape
+	 * @return slice
+	 */
+	private static Slice[] getSlice(long index, int[] dataDims, int[] shape) {
+		final int rank = shape.length;
+		int[] start = new int[rank];
+		int[] stop = new int[rank];
+		int[] step = new int[rank];
+		for (int i = rank - 1; i >= 0; i--) {
+			step[i] = 1;
+			if (contains(dataDims, i)) {
+				stop[i] = shape[i];
+			} else {
+				start[i] = (int) (index % shape[i]);
+				stop[i] = start[i] + 1;
+				index /= shape[i];
+			}
+		}
+		return Slice.convertToSlice(start, stop, step);
+	}
+
+	/**
+	 * @return last dimension that is not a data dimension or -1 if there is none
+	 */
+	private static int getBatchDimension(int[] shape, int[] dataDims) {
+		for (int i = shape.length - 1; i >= 0; i--) {
+			if (!contains(dataDims, i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean contains(int[] dims, int d) {
+		for (int i : dims) {
+			if (i == d) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
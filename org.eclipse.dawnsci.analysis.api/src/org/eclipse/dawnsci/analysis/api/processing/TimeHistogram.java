@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.processing;
+
+/**
+ * Histogram of durations with bins whose widths double.
+ * <p>
+ * Bin 0 counts durations under 1 microsecond and bin i counts those from 2<sup>i-1</sup>
+ * up to 2<sup>i</sup> microseconds. The last bin also counts all longer durations.
+ * This is not thread-safe.
+ */
+public class TimeHistogram {
+	/**
+	 * Number of bins (the last holds durations of over half an hour)
+	 */
+	public static final int BINS = 33;
+
+	private final long[] counts = new long[BINS];
+	private long total;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	public TimeHistogram() {
+	}
+
+	/**
+	 * Copy constructor
+	 * @param other
+	 */
+	public TimeHistogram(TimeHistogram other) {
+		System.arraycopy(other.counts, 0, counts, 0, BINS);
+		total = other.total;
+		sum = other.sum;
+		min = other.min;
+		max = other.max;
+	}
+
+	/**
+	 * Add duration
+	 * @param nanos
+	 */
+	public void add(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[getBin(nanos)]++;
+		total++;
+		sum += nanos;
+		if (nanos < min) {
+			min = nanos;
+		}
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	private static int getBin(long nanos) {
+		long micros = nanos / 1000;
+		int b = 64 - Long.numberOfLeadingZeros(micros);
+		return b < BINS ? b : BINS - 1;
+	}
+
+	/**
+	 * @param bin
+	 * @return upper bound of bin in nanoseconds
+	 */
+	public static long getUpperBound(int bin) {
+		return bin == BINS - 1 ? Long.MAX_VALUE : (1L << bin) * 1000;
+	}
+
+	/**
+	 * @return counts in each bin
+	 */
+	public long[] getCounts() {
+		return counts.clone();
+	}
+
+	/**
+	 * @return number of durations
+	 */
+	public long getCount() {
+		return total;
+	}
+
+	/**
+	 * @return sum of durations in nanoseconds
+	 */
+	public long getTotal() {
+		return sum;
+	}
+
+	/**
+	 * @return mean duration in nanoseconds or zero if empty
+	 */
+	public double getMean() {
+		return total == 0 ? 0 : ((double) sum) / total;
+	}
+
+	/**
+	 * @return shortest duration in nanoseconds or zero if empty
+	 */
+	public long getMin() {
+		return total == 0 ? 0 : min;
+	}
+
+	/**
+	 * @return longest duration in nanoseconds or zero if empty
+	 */
+	public long getMax() {
+		return total == 0 ? 0 : max;
+	}
+
+	/**
+	 * Estimate percentile from upper bound of the bin that contains it (clipped
+	 * to the longest duration)
+	 * @param percent between 0 and 100
+	 * @return duration in nanoseconds or zero if empty
+	 */
+	public long getPercentile(double percent) {
+		if (percent < 0 || percent > 100) {
+			throw new IllegalArgumentException("Percentage must be between 0 and 100");
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(percent * total / 100.));
+		long c = 0;
+		for (int i = 0; i < BINS; i++) {
+			c += counts[i];
+			if (c >= rank) {
+				return Math.min(getUpperBound(i), max);
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.slice;
+
+/**
+ * Merges regions of a dataset that are requested together so they can be read as one block.
+ * <p>
+ * Consecutive regions are merged when they have unit steps and the region that bounds them holds
+ * no more items than they do, e.g. adjacent frames, and no more than a maximum number of items.
+ * Each region is then taken from the block by offsetting it by the start of the block.
+ */
+public class RegionMerger {
+
+	/**
+	 * Find consecutive regions that can be read as one block
+	 * @param start of each region
+	 * @param stop of each region
+	 * @param step of each region (can be null, as can each step, for unit steps)
+	 * @param from index of first region of block
+	 * @param maxSize maximum number of items in block
+	 * @param bstart start of block (set by this method)
+	 * @param bstop stop of block (set by this method)
+	 * @return index after last region of block (one after from if region is not merged with others)
+	 */
+	public static int merge(int[][] start, int[][] stop, int[][] step, int from, long maxSize, int[] bstart, int[] bstop) {
+		final int rank = start[from].length;
+		System.arraycopy(start[from], 0, bstart, 0, rank);
+		System.arraycopy(stop[from], 0, bstop, 0, rank);
+		if (!isUnitStep(step == null ? null : step[from])) {
+			return from + 1;
+		}
+
+		final int[] nstart = new int[rank];
+		final int[] nstop = new int[rank];
+		long items = getSize(bstart, bstop);
+		int j = from + 1;
+		for (; j < start.length; j++) {
+			if (start[j].length != rank || !isUnitStep(step == null ? null : step[j])) {
+				break;
+			}
+			for (int k = 0; k < rank; k++) {
+				nstart[k] = Math.min(bstart[k], start[j][k]);
+				nstop[k] = Math.max(bstop[k], stop[j][k]);
+			}
+			final long total = items + getSize(start[j], stop[j]);
+			final long size = getSize(nstart, nstop);
+			if (size > total || size > maxSize) {
+				break;
+			}
+			System.arraycopy(nstart, 0, bstart, 0, rank);
+			System.arraycopy(nstop, 0, bstop, 0, rank);
+			items = total;
+		}
+		return j;
+	}
+
+	/**
+	 * @param start
+	 * @param stop
+	 * @param bstart start of block
+	 * @return start and stop of region relative to block that contains it
+	 */
+	public static int[][] getOffsetRegion(int[] start, int[] stop, int[] bstart) {
+		final int rank = bstart.length;
+		final int[] rstart = new int[rank];
+		final int[] rstop = new int[rank];
+		for (int k = 0; k < rank; k++) {
+			rstart[k] = start[k] - bstart[k];
+			rstop[k] = stop[k] - bstart[k];
+		}
+		return new int[][] {rstart, rstop};
+	}
+
+	/**
+	 * @param step (can be null)
+	 * @return true if all steps are one
+	 */
+	public static boolean isUnitStep(int[] step) {
+		if (step != null) {
+			for (int s : step) {
+				if (s != 1) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param start
+	 * @param stop
+	 * @return number of items in region with unit steps
+	 */
+	public static long getSize(int[] start, int[] stop) {
+		long size = 1;
+		for (int k = 0; k < start.length; k++) {
+			size *= Math.max(0, stop[k] - start[k]);
+		}
+		return size;
+	}
+}
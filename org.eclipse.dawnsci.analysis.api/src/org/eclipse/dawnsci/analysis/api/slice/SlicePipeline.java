@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.slice;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+
+/**
+ * Pipelined visiting of the slices of a lazy dataset.
+ * <p>
+ * Slices are read by a configurable number of reader threads while earlier slices are being visited.
+ * The threads are taken from an executor that is shared unless one is set.
+ * The number of slices that have been read (or are being read) but not yet visited is bounded by
+ * the read-ahead so a fast reader cannot fill the heap: once the bound is reached, reading waits
+ * for visits to finish.
+ * <p>
+ * With unordered delivery (the default), slices are visited in parallel by an executor, which is
+ * shared unless one is set. With ordered delivery, slices are visited one at a time in slice order
+ * by the calling thread while later slices are read ahead.
+ * <p>
+ * Waiting for the read-ahead lets a fork/join executor run other tasks, so a visit may itself
+ * visit slices with a pipeline that uses the same executor.
+ * <p>
+ * Visiting stops when {@link SliceVisitor#isCancelled()} returns true or a read or visit fails.
+ * The first failure is thrown back to the caller once in-flight slices have finished.
+ */
+public class SlicePipeline {
+
+	private static volatile ExecutorService shared;
+	private static volatile ExecutorService sharedReaders;
+
+	private ExecutorService executor;
+	private Executor readExecutor;
+	private int readers = 1;
+	private int readAhead = 2 * Runtime.getRuntime().availableProcessors();
+	private boolean ordered = false;
+	private long timeout = 5000;
+
+	/**
+	 * @return executor shared by pipelines that have not been given one
+	 */
+	public static ExecutorService getSharedExecutor() {
+		ExecutorService s = shared;
+		if (s == null) {
+			synchronized (SlicePipeline.class) {
+				s = shared;
+				if (s == null) {
+					shared = s = new ForkJoinPool();
+				}
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * @return executor shared by pipelines that have not been given one for reads. Its threads are
+	 * daemons and are created as needed, so a visit may itself visit slices with another pipeline
+	 */
+	public static ExecutorService getSharedReadExecutor() {
+		ExecutorService s = sharedReaders;
+		if (s == null) {
+			synchronized (SlicePipeline.class) {
+				s = sharedReaders;
+				if (s == null) {
+					final AtomicInteger count = new AtomicInteger();
+					sharedReaders = s = Executors.newCachedThreadPool(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Slice reader " + count.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+				}
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Set executor that runs reads (if null, use shared read executor). No more than the number
+	 * of readers are run at once. As reads wait for visits when the read-ahead is reached, nested
+	 * pipelines need an executor that does not run out of threads
+	 * @param readExecutor
+	 * @return this
+	 */
+	public SlicePipeline setReadExecutor(Executor readExecutor) {
+		this.readExecutor = readExecutor;
+		return this;
+	}
+
+	/**
+	 * Set executor that runs visits (if null, use shared executor)
+	 * @param executor
+	 * @return this
+	 */
+	public SlicePipeline setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Set number of threads that read slices concurrently. As many lazy datasets
+	 * do not support concurrent reads, the default is one
+	 * @param readers
+	 * @return this
+	 */
+	public SlicePipeline setReaders(int readers) {
+		if (readers < 1) {
+			throw new IllegalArgumentException("Number of readers must be at least one");
+		}
+		this.readers = readers;
+		return this;
+	}
+
+	/**
+	 * Set maximum number of slices held in memory that have been read but not yet visited
+	 * (default is twice the number of processors)
+	 * @param readAhead
+	 * @return this
+	 */
+	public SlicePipeline setReadAhead(int readAhead) {
+		if (readAhead < 1) {
+			throw new IllegalArgumentException("Read-ahead must be at least one");
+		}
+		this.readAhead = readAhead;
+		return this;
+	}
+
+	/**
+	 * Set whether slices are visited one at a time in slice order
+	 * @param ordered
+	 * @return this
+	 */
+	public SlicePipeline setOrdered(boolean ordered) {
+		this.ordered = ordered;
+		return this;
+	}
+
+	/**
+	 * Set time to wait for unordered visits to finish after the last slice has been read
+	 * @param timeout in ms
+	 * @return this
+	 */
+	public SlicePipeline setTimeout(long timeout) {
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Visit all slices. Blocks until complete
+	 * @param lz
+	 * @param sliceDimensions
+	 * @param nameFragment may be null
+	 * @param visitor
+	 * @throws Exception thrown by first failed read or visit
+	 * @throws TimeoutException if unordered visits did not finish in time
+	 */
+	public void visitAll(ILazyDataset lz, Map<Integer, String> sliceDimensions, final String nameFragment, final SliceVisitor visitor) throws Exception {
+		if (sliceDimensions == null) sliceDimensions = new HashMap<Integer, String>();
+
+		final Slice[] slices = Slicer.getSliceArrayFromSliceDimensions(sliceDimensions, lz.getShape());
+		final int[] axes = Slicer.getDataDimensions(lz.getShape(), sliceDimensions);
+		final ILazyDataset lzView = lz.getSliceView(slices);
+		final int[] viewDims = lzView.getShape();
+
+		final Executor reader = new BoundedExecutor(readExecutor == null ? getSharedReadExecutor() : readExecutor, readers);
+		PositionIterator pi = new PositionIterator(viewDims, axes);
+		if (ordered) {
+			visitOrdered(pi, axes, lzView, nameFragment, visitor, reader);
+		} else {
+			visitUnordered(pi, axes, lzView, nameFragment, visitor, reader);
+		}
+	}
+
+	/**
+	 * Executor that runs at most a given number of tasks at once on another executor and
+	 * queues the rest
+	 */
+	private static class BoundedExecutor implements Executor {
+		private final Executor executor;
+		private final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+		private int free;
+
+		BoundedExecutor(Executor executor, int limit) {
+			this.executor = executor;
+			free = limit;
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			synchronized (queue) {
+				if (free == 0) {
+					queue.add(task);
+					return;
+				}
+				free--;
+			}
+			start(task);
+		}
+
+		private void start(final Runnable task) {
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							task.run();
+						} finally {
+							next();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				synchronized (queue) {
+					free++;
+				}
+				throw e;
+			}
+		}
+
+		private void next() {
+			final Runnable task;
+			synchronized (queue) {
+				task = queue.poll();
+				if (task == null) {
+					free++;
+					return;
+				}
+			}
+			start(task);
+		}
+	}
+
+	private void visitOrdered(PositionIterator pi, int[] axes, final ILazyDataset lzView, final String nameFragment,
+			final SliceVisitor visitor, Executor reader) throws Exception {
+		final int[] viewDims = lzView.getShape();
+		final ArrayDeque<Slice[]> slices = new ArrayDeque<Slice[]>();
+		final ArrayDeque<Future<IDataset>> reads = new ArrayDeque<Future<IDataset>>();
+		try {
+			boolean more = true;
+			while (more || !reads.isEmpty()) {
+				more = more && pi.hasNext();
+				if (more) {
+					final Slice[] slice = getSlice(pi.getPos(), axes, viewDims);
+					slices.add(slice);
+					final FutureTask<IDataset> read = new FutureTask<IDataset>(new Callable<IDataset>() {
+						@Override
+						public IDataset call() throws Exception {
+							return read(lzView, slice, nameFragment);
+						}
+					});
+					reader.execute(read);
+					reads.add(read);
+					if (reads.size() < readAhead) {
+						continue;
+					}
+				}
+
+				if (reads.isEmpty()) {
+					break;
+				}
+				final IDataset data = get(reads.poll());
+				if (visitor.isCancelled()) {
+					break;
+				}
+				visitor.visit(data, slices.poll(), viewDims);
+				if (visitor.isCancelled()) {
+					break;
+				}
+			}
+		} finally {
+			for (Future<IDataset> f : reads) {
+				f.cancel(true);
+			}
+		}
+	}
+
+	private void visitUnordered(PositionIterator pi, int[] axes, final ILazyDataset lzView, final String nameFragment,
+			final SliceVisitor visitor, Executor reader) throws Exception {
+		final int[] viewDims = lzView.getShape();
+		final ExecutorService visits = executor == null ? getSharedExecutor() : executor;
+		final Semaphore inFlight = new Semaphore(readAhead); // held from start of read until end of visit
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		while (pi.hasNext()) {
+			if (failure.get() != null || visitor.isCancelled()) {
+				break;
+			}
+			final Slice[] slice = getSlice(pi.getPos(), axes, viewDims);
+			acquire(inFlight, 1, -1);
+
+			final Runnable visit = new Runnable() {
+				private IDataset data;
+
+				@Override
+				public void run() {
+					try {
+						if (data == null) { // read then hand over to visiting executor
+							if (failure.get() != null || visitor.isCancelled()) {
+								inFlight.release();
+								return;
+							}
+							data = read(lzView, slice, nameFragment);
+							visits.execute(this);
+							return;
+						}
+						if (failure.get() == null && !visitor.isCancelled()) {
+							visitor.visit(data, slice, viewDims);
+						}
+						inFlight.release();
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+						inFlight.release();
+					}
+				}
+			};
+			try {
+				reader.execute(visit);
+			} catch (RejectedExecutionException e) {
+				inFlight.release();
+				throw e;
+			}
+		}
+
+		if (!acquire(inFlight, readAhead, timeout)) {
+			failure.compareAndSet(null, new TimeoutException("The timeout of "+timeout+" was exceeded for parallel run, please increase it!"));
+		}
+
+		Throwable t = failure.get();
+		if (t instanceof Exception) {
+			throw (Exception) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		}
+	}
+
+	/**
+	 * Acquire permits. When called by a worker of a fork/join pool (e.g. by a visit that
+	 * visits another dataset) the pool may start another worker while this one waits, so
+	 * that the visits being waited for can run
+	 * @param semaphore
+	 * @param permits
+	 * @param timeout in ms (or negative to wait indefinitely)
+	 * @return true if permits were acquired
+	 * @throws InterruptedException
+	 */
+	private static boolean acquire(final Semaphore semaphore, final int permits, final long timeout) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout));
+		final boolean[] acquired = new boolean[1];
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+			@Override
+			public boolean isReleasable() {
+				return acquired[0] || (acquired[0] = semaphore.tryAcquire(permits));
+			}
+
+			@Override
+			public boolean block() throws InterruptedException {
+				if (timeout < 0) {
+					semaphore.acquire(permits);
+					acquired[0] = true;
+				} else {
+					acquired[0] = semaphore.tryAcquire(permits, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				}
+				return true;
+			}
+		});
+		return acquired[0];
+	}
+
+	private static Slice[] getSlice(int[] pos, int[] axes, int[] viewDims) {
+		int[] end = pos.clone();
+		for (int i = 0; i < pos.length; i++) {
+			end[i]++;
+		}
+		for (int i = 0; i < axes.length; i++) {
+			end[axes[i]] = viewDims[axes[i]];
+		}
+		int[] st = new int[pos.length];
+		for (int i = 0; i < st.length; i++) st[i] = 1;
+
+		return Slice.convertToSlice(pos, end, st);
+	}
+
+	private static IDataset read(ILazyDataset lzView, Slice[] slice, String nameFragment) throws Exception {
+		IDataset data = lzView.getSlice(slice);
+		if (data == null) {
+			throw new IllegalStateException("Could not read slice " + Slice.createString(slice));
+		}
+		data.setName((nameFragment != null ? nameFragment : "") + " (" + Slice.createString(slice) + ")");
+		return data;
+	}
+
+	private static IDataset get(Future<IDataset> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable t = e.getCause();
+			if (t instanceof Exception) {
+				throw (Exception) t;
+			} else if (t instanceof Error) {
+				throw (Error) t;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.api.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IChunked;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+
+/**
+ * Plan of the reads needed to visit all slices of a dataset that is stored in chunks (see {@link IChunked}).
+ * <p>
+ * Slices are grouped into blocks that are aligned with the chunks, so each block is read once and its
+ * slices are taken from it rather than decompressing the same chunks for every slice. In logical order,
+ * blocks only extend along the last slice dimension so slices are visited in the same order as when
+ * they are read one by one. Otherwise blocks extend along every slice dimension as far as the chunks
+ * do and slices are visited block by block. Blocks start on chunk boundaries, so where the dataset
+ * does not start at a chunk boundary (e.g. a view), the first block in a dimension can be shorter.
+ * Blocks are made smaller if they would hold more than a maximum number of items. When chunking is
+ * not known, each block holds one slice.
+ */
+public class SlicePlan {
+
+	/**
+	 * Default maximum number of items in a block
+	 */
+	public static final int DEFAULT_MAX_READ_SIZE = 1 << 22;
+
+	private final int[] shape;
+	private final boolean[] omit; // data dimensions
+	private final int[] block;
+	private final int[] shift; // start of first block which may be before the dataset
+	private final int[] blocks; // number of blocks in each dimension
+	private final int count;
+
+	/**
+	 * @param shape of dataset
+	 * @param dataDims dimensions that are wholly in each slice
+	 * @param chunking shape of chunks (can be null)
+	 * @param logical if true, keep logical order of slices
+	 * @param maxReadSize maximum number of items in a block
+	 */
+	public SlicePlan(int[] shape, int[] dataDims, int[] chunking, boolean logical, int maxReadSize) {
+		this(shape, dataDims, chunking, null, logical, maxReadSize);
+	}
+
+	/**
+	 * @param shape of dataset
+	 * @param dataDims dimensions that are wholly in each slice
+	 * @param chunking shape of chunks (can be null)
+	 * @param offset position of start of a chunk (if null, chunks start at zero)
+	 * @param logical if true, keep logical order of slices
+	 * @param maxReadSize maximum number of items in a block
+	 */
+	public SlicePlan(int[] shape, int[] dataDims, int[] chunking, int[] offset, boolean logical, int maxReadSize) {
+		final int rank = shape.length;
+		this.shape = shape.clone();
+		omit = new boolean[rank];
+		for (int a : dataDims) {
+			if (a >= 0 && a < rank) {
+				omit[a] = true;
+			}
+		}
+
+		block = new int[rank];
+		shift = new int[rank];
+		long size = 1;
+		int last = -1; // last slice dimension that varies
+		for (int i = 0; i < rank; i++) {
+			if (omit[i]) {
+				block[i] = shape[i];
+				size *= shape[i];
+			} else {
+				block[i] = 1;
+				if (shape[i] > 1) {
+					last = i;
+				}
+			}
+		}
+
+		if (chunking != null && chunking.length == rank) {
+			for (int i = rank - 1; i >= 0; i--) {
+				if (omit[i] || (logical && i != last)) {
+					continue;
+				}
+				final int c = Math.max(1, Math.min(chunking[i], shape[i]));
+				int b = (int) Math.max(1, Math.min(c, maxReadSize / Math.max(1, size)));
+				while (c % b != 0) { // keep blocks aligned with chunks
+					b--;
+				}
+				block[i] = b;
+				size *= b;
+				if (offset != null && offset.length == rank) {
+					final int p = (offset[i] % b + b) % b;
+					shift[i] = p == 0 ? 0 : p - b;
+				}
+			}
+		}
+
+		blocks = new int[rank];
+		int n = 1;
+		for (int i = 0; i < rank; i++) {
+			blocks[i] = omit[i] ? 1 : shape[i] == 0 ? 0 : (shape[i] - shift[i] + block[i] - 1) / block[i];
+			n *= blocks[i];
+		}
+		count = n;
+	}
+
+	/**
+	 * Create plan for given dataset using chunking of dataset if it is known
+	 * @param lz
+	 * @param dataDims dimensions that are wholly in each slice
+	 * @param logical if true, keep logical order of slices
+	 * @return plan
+	 */
+	public static SlicePlan create(ILazyDataset lz, int[] dataDims, boolean logical) {
+		if (lz instanceof IChunked) {
+			final IChunked c = (IChunked) lz;
+			return new SlicePlan(lz.getShape(), dataDims, c.getChunking(), c.getChunkOffset(), logical, DEFAULT_MAX_READ_SIZE);
+		}
+		return new SlicePlan(lz.getShape(), dataDims, null, logical, DEFAULT_MAX_READ_SIZE);
+	}
+
+	/**
+	 * @return number of blocks
+	 */
+	public int getNumberOfBlocks() {
+		return count;
+	}
+
+	/**
+	 * @return largest shape of blocks
+	 */
+	public int[] getBlockShape() {
+		return block.clone();
+	}
+
+	/**
+	 * @param b index of block
+	 * @return start of block
+	 */
+	public int[] getStart(int b) {
+		final int[] start = new int[shape.length];
+		for (int i = shape.length - 1; i >= 0; i--) {
+			start[i] = Math.max(0, shift[i] + (b % blocks[i]) * block[i]);
+			b /= blocks[i];
+		}
+		return start;
+	}
+
+	/**
+	 * @param b index of block
+	 * @return stop of block
+	 */
+	public int[] getStop(int b) {
+		final int[] stop = new int[shape.length];
+		for (int i = shape.length - 1; i >= 0; i--) {
+			stop[i] = Math.min(shift[i] + (b % blocks[i] + 1) * block[i], shape[i]);
+			b /= blocks[i];
+		}
+		return stop;
+	}
+
+	/**
+	 * @param b index of block
+	 * @return starts of slices in block in logical order
+	 */
+	public List<int[]> getPositions(int b) {
+		final int rank = shape.length;
+		final int[] start = getStart(b);
+		final int[] stop = getStop(b);
+		final List<int[]> positions = new ArrayList<int[]>();
+		final int[] pos = start.clone();
+		while (true) {
+			positions.add(pos.clone());
+			int i = rank - 1;
+			for (; i >= 0; i--) {
+				if (omit[i]) {
+					continue;
+				}
+				if (++pos[i] < stop[i]) {
+					break;
+				}
+				pos[i] = start[i];
+			}
+			if (i < 0) {
+				return positions;
+			}
+		}
+	}
+}
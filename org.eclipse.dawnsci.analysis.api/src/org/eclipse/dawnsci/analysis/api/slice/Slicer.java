@@ -9,14 +9,13 @@
 
 package org.eclipse.dawnsci.analysis.api.slice;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
@@ -59,7 +58,74 @@ public class Slicer {
 	 * @throws Exception 
 	 */
 	public static void visitAll(ILazyDataset lz, Map<Integer, String> sliceDimensions, String nameFragment, SliceVisitor visitor) throws Exception {
-		visit(lz, sliceDimensions, nameFragment, visitor);
+		visitAll(lz, sliceDimensions, nameFragment, visitor, true);
+	}
+
+	/**
+	 * This method provides a way to slice over a lazy dataset providing the values
+	 * in each dimension for the slice using a visit pattern.
+	 * 
+	 * When the lazy dataset says how its data is stored in chunks, slices are read
+	 * in chunk-aligned blocks (see {@link SlicePlan}). If logical order is not needed,
+	 * slices are visited block by block so each chunk is read once.
+	 * 
+	 * Block until complete.
+	 * 
+	 * @param lz
+	 * @param sliceDimensions
+	 * @param nameFragment may be null
+	 * @param visitor
+	 * @param logicalOrder if true, visit slices in logical order
+	 * @throws Exception 
+	 */
+	public static void visitAll(ILazyDataset lz, Map<Integer, String> sliceDimensions, String nameFragment, SliceVisitor visitor, boolean logicalOrder) throws Exception {
+		if (visitor == null) return;
+
+		if (sliceDimensions == null) sliceDimensions = new HashMap<Integer, String>();
+
+		Slice[] slices = getSliceArrayFromSliceDimensions(sliceDimensions, lz.getShape());
+		int[] axes = getDataDimensions(lz.getShape(), sliceDimensions);
+		ILazyDataset lzView = lz.getSliceView(slices);
+		final int[] viewDims = lzView.getShape();
+
+		SlicePlan plan = SlicePlan.create(lzView, axes, logicalOrder);
+		final int[] st = new int[viewDims.length];
+		Arrays.fill(st, 1);
+
+		for (int b = 0, bmax = plan.getNumberOfBlocks(); b < bmax; b++) {
+			List<int[]> positions = plan.getPositions(b);
+			int[] bstart = plan.getStart(b);
+			IDataset block = positions.size() == 1 ? null : lzView.getSlice(bstart, plan.getStop(b), null);
+
+			for (int[] pos : positions) {
+				int[] end = pos.clone();
+				for (int i = 0; i < pos.length; i++) {
+					end[i]++;
+				}
+				for (int i = 0; i < axes.length; i++) {
+					end[axes[i]] = viewDims[axes[i]];
+				}
+				Slice[] slice = Slice.convertToSlice(pos, end, st);
+
+				IDataset data;
+				if (block == null) {
+					data = lzView.getSlice(slice);
+				} else {
+					int[] rstart = pos.clone();
+					int[] rend = end.clone();
+					for (int i = 0; i < pos.length; i++) {
+						rstart[i] -= bstart[i];
+						rend[i] -= bstart[i];
+					}
+					data = block.getSlice(rstart, rend, null);
+				}
+
+				data.setName((nameFragment!=null ? nameFragment : "") + " ("+ Slice.createString(slice)+")");
+				visitor.visit(data, slice, viewDims);
+
+				if (visitor.isCancelled()) return;
+			}
+		}
 	}
 	
 	/**
@@ -130,16 +196,16 @@ public class Slicer {
 	 * This method provides a way to slice over a lazy dataset providing the values
 	 * in each dimension for the slice using a visit pattern. The call on to the 
 	 * SliceVisitor is done in a parallel way by delegating the calling of the visit method
-	 * to a thread pool.
+	 * to a thread pool while the following slices are read.
 	 * 
-	 * Blocks until complete or timeout of 5s is reached.
-     *
+	 * Blocks until complete or timeout of 5s is reached after the last slice is read.
+	 * See {@link SlicePipeline} for more control over reading and visiting.
+	 *
 	 * @param lz
 	 * @param sliceDimensions
 	 * @param nameFragment may be null
-	 * @param visitor - if used with visitAllParallel, visit should not normally throw
-	 * an exception or if it does it will stop the execution but not throw back to the
-	 * calling code. Instead an internal RuntimeException is thrown back to the fork/join API.
+	 * @param visitor - if used with visitAllParallel, visit may be called concurrently. If it throws
+	 * an exception, no more slices are visited and the exception is thrown back to the calling code.
 	 * @throws Exception 
 	 */
 	public static void visitAllParallel(ILazyDataset lz, Map<Integer, String> sliceDimensions, String nameFragment, final SliceVisitor visitor) throws Exception {
@@ -150,56 +216,21 @@ public class Slicer {
 	 * This method provides a way to slice over a lazy dataset providing the values
 	 * in each dimension for the slice using a visit pattern. The call on to the 
 	 * SliceVisitor is done in a parallel way by delegating the calling of the visit method
-	 * to a thread pool.
+	 * to a thread pool while the following slices are read.
 	 * 
-	 * Blocks until complete or timeout is reached.
+	 * Blocks until complete or timeout is reached after the last slice is read.
+	 * See {@link SlicePipeline} for more control over reading and visiting.
 	 * 
 	 * @param lz
 	 * @param sliceDimensions
 	 * @param nameFragment may be null
-	 * @param visitor - if used with visitAllParallel, visit should not normally throw
-	 * an exception or if it does it will stop the execution but not throw back to the
-	 * calling code. Instead an internal RuntimeException is thrown back to the fork/join API.
+	 * @param visitor - if used with visitAllParallel, visit may be called concurrently. If it throws
+	 * an exception, no more slices are visited and the exception is thrown back to the calling code.
 	 * @param timeout in ms.
 	 * @throws Exception 
 	 */
 	public static void visitAllParallel(ILazyDataset lz, Map<Integer, String> sliceDimensions, String nameFragment, final SliceVisitor visitor, long timeout) throws Exception {
-
-		// Just farm out each slice to a different runnable.
-		final ForkJoinPool pool = new ForkJoinPool();
-		
-		final SliceVisitor parallel = new SliceVisitor() {
-
-			@Override
-			public void visit(final IDataset slice, final Slice[] slices, final int[] shape) throws Exception {
-				
-				pool.execute(new Runnable() {
-					
-					@Override
-					public void run() {
-						try {
-						    visitor.visit(slice, slices, shape);
-						} catch (Throwable ne) {
-							ne.printStackTrace();
-							// TODO Fix me - should runtime exception really be thrown back to Fork/Join?
-							//throw new RuntimeException(ne.getMessage(), ne);
-						}
-					}
-				});
-			}
-
-			@Override
-			public boolean isCancelled() {
-				return visitor.isCancelled();
-			}
-		};
-		
-		Slicer.visitAll(lz, sliceDimensions, nameFragment, parallel);
-		
-		pool.shutdown();
-		
-		boolean allDone = pool.awaitTermination(timeout, TimeUnit.MILLISECONDS);
-		if (!allDone) throw new TimeoutException("The timeout of "+timeout+" was exceeded for parallel run, please increase it!");
+		new SlicePipeline().setTimeout(timeout).visitAll(lz, sliceDimensions, nameFragment, visitor);
 	}
 	
 	public static int[] getDataDimensions(int[] shape, Map<Integer, String> sliceDimensions) {
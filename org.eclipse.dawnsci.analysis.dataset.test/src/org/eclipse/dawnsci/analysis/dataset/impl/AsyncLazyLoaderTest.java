@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.io.IAsyncLazyLoader;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncLazyLoaderTest {
+
+	private static final int[] SHAPE = new int[] {10, 4, 5};
+
+	/**
+	 * Loader of a range dataset that records the regions it reads
+	 */
+	private static class RecordingLoader implements ILazyLoader {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data = DatasetFactory.createRange(10 * 4 * 5, Dataset.FLOAT64).reshape(SHAPE);
+		private final List<String> reads = Collections.synchronizedList(new ArrayList<String>());
+		private final CountDownLatch started = new CountDownLatch(1);
+		private CountDownLatch gate;
+		private boolean readable = true;
+		private boolean fail;
+		private volatile boolean interrupted;
+
+		@Override
+		public boolean isFileReadable() {
+			return readable;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			reads.add(Slice.createString(shape, start, stop, step));
+			started.countDown();
+			if (gate != null) {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					interrupted = true;
+					throw e;
+				}
+			}
+			if (fail) {
+				throw new IllegalStateException("Cannot read");
+			}
+			return data.getSlice(start, stop, step);
+		}
+	}
+
+	private ExecutorService executor;
+	private RecordingLoader loader;
+	private AsyncLazyLoader async;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor();
+		loader = new RecordingLoader();
+		async = new AsyncLazyLoader(loader, executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testMergedRegions() throws Exception {
+		// adjacent frames
+		List<Future<IDataset>> futures = getDatasets(frames(2, 3, 4));
+		check(frames(2, 3, 4), futures);
+		assertEquals(Arrays.asList("2:5,:,:"), loader.reads);
+
+		// adjacent blocks of frames and parts of a frame
+		loader.reads.clear();
+		final int[][][] regions = new int[][][] {
+			{{0, 0, 0}, {2, 4, 5}}, {{2, 0, 0}, {3, 4, 5}},
+			{{5, 0, 0}, {6, 2, 5}}, {{5, 2, 0}, {6, 4, 5}},
+		};
+		futures = getDatasets(regions);
+		check(regions, futures);
+		assertEquals(Arrays.asList(":3,:,:", "5,:,:"), loader.reads);
+
+		// regions with gaps are read on their own but overlapping regions are merged
+		// while the bounding region holds no more items than they do
+		loader.reads.clear();
+		final int[][][] apart = new int[][][] {
+			{{0, 0, 0}, {1, 4, 5}}, {{2, 0, 0}, {3, 4, 5}},
+			{{2, 0, 0}, {3, 2, 5}}, {{3, 1, 0}, {4, 4, 5}},
+			{{6, 0, 0}, {7, 1, 5}}, {{6, 3, 0}, {7, 4, 5}},
+		};
+		futures = getDatasets(apart);
+		check(apart, futures);
+		assertEquals(Arrays.asList("0,:,:", "2:4,:,:", "6,0,:", "6,3,:"), loader.reads);
+
+		loader.reads.clear();
+		final int[][][] same = new int[][][] {{{4, 0, 0}, {5, 4, 5}}, {{4, 0, 0}, {5, 4, 5}}};
+		futures = getDatasets(same);
+		check(same, futures);
+		assertEquals(Arrays.asList("4,:,:"), loader.reads);
+	}
+
+	@Test
+	public void testStepsNotMerged() throws Exception {
+		final int[][][] regions = new int[][][] {
+			{{0, 0, 0}, {1, 4, 5}}, {{1, 0, 0}, {2, 4, 5}, {1, 2, 1}},
+			{{2, 0, 0}, {3, 4, 5}}, {{3, 0, 0}, {4, 4, 5}}, {{4, 0, 0}, {5, 4, 5}, {1, 1, 2}},
+		};
+		final List<Future<IDataset>> futures = getDatasets(regions);
+		check(regions, futures);
+		assertEquals(Arrays.asList("0,:,:", "1,::2,:", "2:4,:,:", "4,:,::2"), loader.reads);
+
+		// single region is read as given
+		loader.reads.clear();
+		final IDataset d = async.getDatasetAsync(null, SHAPE, new int[] {1, 0, 0}, new int[] {7, 4, 5}, new int[] {3, 1, 1}).get();
+		assertEquals(Arrays.asList("1:7:3,:,:"), loader.reads);
+		assertEquals(loader.data.getSlice(new int[] {1, 0, 0}, new int[] {7, 4, 5}, new int[] {3, 1, 1}), d);
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		loader.fail = true;
+		final List<Future<IDataset>> futures = getDatasets(frames(0, 1, 5));
+		for (Future<IDataset> f : futures) {
+			try {
+				f.get();
+				fail("Read should fail");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		assertEquals(2, loader.reads.size());
+	}
+
+	@Test
+	public void testCancelShared() throws Exception {
+		loader.gate = new CountDownLatch(1);
+		final List<Future<IDataset>> futures = getDatasets(frames(0, 1, 2));
+		assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+
+		// cancelling one slice leaves block read for others
+		assertTrue(futures.get(1).cancel(true));
+		assertTrue(futures.get(1).isCancelled());
+		assertTrue(futures.get(1).isDone());
+		assertFalse(futures.get(1).cancel(true));
+		assertFalse(futures.get(0).isCancelled());
+		assertFalse(futures.get(0).isDone());
+
+		loader.gate.countDown();
+		assertEquals(loader.data.getSlice(new Slice(0, 1)), futures.get(0).get(5, TimeUnit.SECONDS));
+		assertEquals(loader.data.getSlice(new Slice(2, 3)), futures.get(2).get(5, TimeUnit.SECONDS));
+		assertFalse(loader.interrupted);
+		assertEquals(1, loader.reads.size());
+		try {
+			futures.get(1).get();
+			fail("Cancelled slice should not be got");
+		} catch (CancellationException e) {
+			// expected
+		}
+
+		// slice that has been got cannot be cancelled
+		assertFalse(futures.get(0).cancel(true));
+		assertFalse(futures.get(0).isCancelled());
+	}
+
+	@Test
+	public void testCancelUnshared() throws Exception {
+		loader.gate = new CountDownLatch(1);
+		final Future<IDataset> first = async.getDatasetAsync(null, SHAPE, new int[] {0, 0, 0}, new int[] {1, 4, 5}, null);
+		assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+		final Future<IDataset> queued = async.getDatasetAsync(null, SHAPE, new int[] {1, 0, 0}, new int[] {2, 4, 5}, null);
+		assertTrue(queued.cancel(false));
+		assertTrue(first.cancel(true));
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(loader.interrupted);
+		assertEquals(1, loader.reads.size());
+	}
+
+	@Test
+	public void testLazyDataset() throws Exception {
+		final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, SHAPE, async);
+		final List<Slice[]> slices = new ArrayList<Slice[]>();
+		for (int i = 3; i < 6; i++) {
+			slices.add(new Slice[] {new Slice(i, i + 1), null, new Slice(1, 4)});
+		}
+		slices.add(new Slice[] {new Slice(7, 9), new Slice(null, null, 2)});
+		List<Future<IDataset>> futures = lazy.getSlicesAsync(null, slices);
+		final List<IDataset> actual = new ArrayList<IDataset>();
+		for (Future<IDataset> f : futures) {
+			actual.add(f.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(Arrays.asList("3:6,:,1:4", "7:9,::2,:"), loader.reads);
+		for (int i = 0; i < slices.size(); i++) {
+			final IDataset expected = lazy.getSlice(slices.get(i));
+			assertEquals(expected, actual.get(i));
+			assertEquals(expected.getName(), actual.get(i).getName());
+		}
+
+		// view of lazy dataset
+		loader.reads.clear();
+		final LazyDataset view = lazy.getSliceView(new int[] {2, 0, 1}, new int[] {8, 4, 5}, null);
+		futures = view.getSlicesAsync(null, Arrays.asList(new Slice[] {new Slice(0, 1)}, new Slice[] {new Slice(1, 2)}));
+		final IDataset first = futures.get(0).get(5, TimeUnit.SECONDS);
+		final IDataset second = futures.get(1).get(5, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList("2:4,:,1:"), loader.reads);
+		assertEquals(view.getSlice(new Slice(0, 1)), first);
+		assertEquals(view.getSlice(new Slice(1, 2)), second);
+		assertEquals(view.getSlice(new Slice(5, 6)), view.getSliceAsync(null, new Slice(5, 6)).get());
+
+		// cancelling one slice
+		loader.reads.clear();
+		loader.gate = new CountDownLatch(1);
+		futures = lazy.getSlicesAsync(null, slices.subList(0, 2));
+		assertTrue(futures.get(0).cancel(true));
+		loader.gate.countDown();
+		assertEquals(lazy.getSlice(slices.get(1)), futures.get(1).get(5, TimeUnit.SECONDS));
+		assertTrue(futures.get(0).isCancelled());
+		assertFalse(loader.interrupted);
+
+		// unreadable file
+		loader.readable = false;
+		final Future<IDataset> f = lazy.getSliceAsync(null, new Slice(0, 1));
+		assertTrue(f.isDone());
+		assertNull(f.get());
+	}
+
+	@Test
+	public void testAsyncLoader() {
+		assertSame(async, AsyncLazyLoader.getAsyncLoader(async));
+		final IAsyncLazyLoader wrapped = AsyncLazyLoader.getAsyncLoader(loader);
+		assertSame(loader, ((AsyncLazyLoader) wrapped).getLoader());
+		assertSame(AsyncLazyLoader.getSharedExecutor(), AsyncLazyLoader.getSharedExecutor());
+		try {
+			new AsyncLazyLoader(null);
+			fail("Null loader should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private List<Future<IDataset>> getDatasets(int[][][] regions) {
+		final int n = regions.length;
+		final int[][] start = new int[n][];
+		final int[][] stop = new int[n][];
+		final int[][] step = new int[n][];
+		for (int i = 0; i < n; i++) {
+			start[i] = regions[i][0];
+			stop[i] = regions[i][1];
+			step[i] = regions[i].length > 2 ? regions[i][2] : null;
+		}
+		return async.getDatasetsAsync(null, SHAPE, start, stop, step);
+	}
+
+	private void check(int[][][] regions, List<Future<IDataset>> futures) throws Exception {
+		assertEquals(regions.length, futures.size());
+		for (int i = 0; i < regions.length; i++) {
+			final Dataset expected = loader.data.getSlice(regions[i][0], regions[i][1], regions[i].length > 2 ? regions[i][2] : null);
+			final IDataset actual = futures.get(i).get(5, TimeUnit.SECONDS);
+			assertArrayEquals("Region " + i, expected.getShapeRef(), actual.getShape());
+			assertEquals("Region " + i, expected, actual);
+		}
+	}
+
+	private static int[][][] frames(int... frames) {
+		final int[][][] regions = new int[frames.length][][];
+		for (int i = 0; i < frames.length; i++) {
+			regions[i] = new int[][] {{frames[i], 0, 0}, {frames[i] + 1, 4, 5}};
+		}
+		return regions;
+	}
+}
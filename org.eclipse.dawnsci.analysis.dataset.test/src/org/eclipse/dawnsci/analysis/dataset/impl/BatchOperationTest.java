@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.metadata.AxesMetadata;
+import org.eclipse.dawnsci.analysis.api.metadata.OriginMetadata;
+import org.eclipse.dawnsci.analysis.api.metadata.Sliceable;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.AbstractOperation;
+import org.eclipse.dawnsci.analysis.api.processing.IBatchOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.OperationException;
+import org.eclipse.dawnsci.analysis.api.processing.OperationRank;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+import org.junit.Test;
+
+public class BatchOperationTest {
+
+	private static final int[] SHAPE = new int[] {3, 4, 5};
+
+	private static class Origin implements OriginMetadata {
+		private static final long serialVersionUID = 1L;
+
+		private final Slice[] current;
+		private final int[] dataDims;
+
+		Origin(Slice[] current, int[] dataDims) {
+			this.current = current;
+			this.dataDims = dataDims;
+		}
+
+		@Override
+		public int[] getDataDimensions() {
+			return dataDims;
+		}
+
+		@Override
+		public ILazyDataset getParent() {
+			return null;
+		}
+
+		@Override
+		public Slice[] getInitialSlice() {
+			return null;
+		}
+
+		@Override
+		public String getDatasetName() {
+			return null;
+		}
+
+		@Override
+		public String getFilePath() {
+			return null;
+		}
+
+		@Override
+		public Slice[] getCurrentSlice() {
+			return current;
+		}
+
+		@Override
+		public Origin clone() {
+			return new Origin(current, dataDims);
+		}
+	}
+
+	private static class Axes implements AxesMetadata {
+		private static final long serialVersionUID = 1L;
+
+		@Sliceable
+		private ILazyDataset[][] axes;
+
+		Axes(int rank) {
+			axes = new ILazyDataset[rank][];
+		}
+
+		@Override
+		public ILazyDataset[] getAxes() {
+			ILazyDataset[] first = new ILazyDataset[axes.length];
+			for (int i = 0; i < axes.length; i++) {
+				first[i] = axes[i] == null ? null : axes[i][0];
+			}
+			return first;
+		}
+
+		@Override
+		public ILazyDataset[] getAxis(int axisDim) {
+			return axes[axisDim];
+		}
+
+		@Override
+		public void setAxis(int axisDim, ILazyDataset[] axisData) {
+			axes[axisDim] = axisData;
+		}
+
+		@Override
+		public AxesMetadata createAxesMetadata(int rank) {
+			return new Axes(rank);
+		}
+
+		@Override
+		public Axes clone() {
+			Axes c = new Axes(axes.length);
+			for (int i = 0; i < axes.length; i++) {
+				if (axes[i] != null) {
+					c.axes[i] = new ILazyDataset[axes[i].length];
+					for (int j = 0; j < axes[i].length; j++) {
+						c.axes[i][j] = axes[i][j] == null ? null : axes[i][j].getSliceView();
+					}
+				}
+			}
+			return c;
+		}
+	}
+
+	/**
+	 * Scales slice or sums it along its last dimension, in one go for a stack
+	 */
+	private static class BatchOperation extends AbstractOperation<IOperationModel, OperationData> implements IBatchOperation<IOperationModel, OperationData> {
+		private final boolean sum;
+		private int batches;
+
+		BatchOperation(boolean sum) {
+			this.sum = sum;
+		}
+
+		@Override
+		public String getId() {
+			return sum ? "sum" : "scale";
+		}
+
+		@Override
+		public OperationRank getInputRank() {
+			return OperationRank.TWO;
+		}
+
+		@Override
+		public OperationRank getOutputRank() {
+			return sum ? OperationRank.ONE : OperationRank.TWO;
+		}
+
+		@Override
+		protected OperationData process(IDataset input, IMonitor monitor) throws OperationException {
+			return new OperationData(apply(DatasetUtils.convertToDataset(input)));
+		}
+
+		@Override
+		protected List<OperationData> processBatch(IDataset input, IMonitor monitor) throws OperationException {
+			batches++;
+			final Dataset out = apply(DatasetUtils.convertToDataset(input));
+			final int n = out.getShapeRef()[0];
+			final List<OperationData> outputs = new ArrayList<OperationData>(n);
+			for (int i = 0; i < n; i++) {
+				outputs.add(new OperationData(out.getSlice(new Slice(i, i + 1)).squeeze()));
+			}
+			return outputs;
+		}
+
+		private Dataset apply(Dataset d) {
+			return sum ? d.sum(d.getRank() - 1) : Maths.multiply(d, 2);
+		}
+	}
+
+	@Test
+	public void testMatchesExecute() {
+		for (int batchDim = 0; batchDim < SHAPE.length; batchDim++) {
+			for (boolean sum : new boolean[] {false, true}) {
+				for (boolean withAxes : new boolean[] {false, true}) {
+					final String msg = "Stacked along " + batchDim + (sum ? ", sum" : ", scale") + (withAxes ? ", axes" : "");
+					final Dataset stack = createStack(batchDim, 0, withAxes);
+					final BatchOperation batch = new BatchOperation(sum);
+					final List<OperationData> outputs = batch.executeBatch(stack, null);
+					assertEquals(msg, SHAPE[batchDim], outputs.size());
+					// stack is only processed in one go when slices are contiguous
+					assertEquals(msg, batchDim == 0 ? 1 : 0, batch.batches);
+
+					final BatchOperation single = new BatchOperation(sum);
+					for (int i = 0; i < outputs.size(); i++) {
+						final OperationData expected = single.execute(getSlice(createStack(batchDim, 0, withAxes), batchDim, i), null);
+						check(msg + ", slice " + i, expected.getData(), outputs.get(i).getData());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSlicesOffset() {
+		final Dataset stack = createStack(0, 7, false);
+		final List<OperationData> outputs = new BatchOperation(false).executeBatch(stack, null);
+		for (int i = 0; i < outputs.size(); i++) {
+			final Slice[] current = AbstractOperation.getOriginMetadata(outputs.get(i).getData()).getCurrentSlice();
+			assertEquals(7 + i, current[0].getStart().intValue());
+			assertEquals(8 + i, current[0].getStop().intValue());
+			for (int j = 1; j < SHAPE.length; j++) {
+				assertEquals(0, current[j].getStart().intValue());
+				assertEquals(SHAPE[j], current[j].getStop().intValue());
+			}
+		}
+	}
+
+	@Test
+	public void testRejectedStacks() {
+		final BatchOperation op = new BatchOperation(false);
+		final Dataset plain = DatasetFactory.createRange(60, Dataset.FLOAT64).reshape(SHAPE);
+		try {
+			op.executeBatch(plain, null);
+			fail("Stack without origin should be rejected");
+		} catch (OperationException e) {
+			// expected
+		}
+
+		plain.setMetadata(new Origin(toSlices(new int[3], SHAPE), new int[] {2}));
+		try {
+			op.executeBatch(plain, null);
+			fail("Stack along two dimensions should be rejected");
+		} catch (OperationException e) {
+			// expected
+		}
+
+		// a single slice is executed
+		final Dataset one = createStack(0, 0, false).getSliceView(new Slice(1));
+		one.setMetadata(new Origin(toSlices(new int[] {0, 0, 0}, new int[] {1, 4, 5}), new int[] {1, 2}));
+		final List<OperationData> outputs = op.executeBatch(one, null);
+		assertEquals(1, outputs.size());
+		assertEquals(0, op.batches);
+	}
+
+	@Test
+	public void testMaxBatchSize() {
+		assertEquals(AbstractOperation.DEFAULT_MAX_BATCH_SIZE, new BatchOperation(false).getMaxBatchSize());
+		final IBatchOperation<IOperationModel, OperationData> small = new BatchOperation(false) {
+			@Override
+			public int getMaxBatchSize() {
+				return 2;
+			}
+		};
+		assertEquals(2, small.getMaxBatchSize());
+	}
+
+	/**
+	 * @return stack of slices of range dataset with origin and, optionally, axes of each dimension
+	 */
+	private static Dataset createStack(int batchDim, int begin, boolean withAxes) {
+		final Dataset stack = DatasetFactory.createRange(60, Dataset.FLOAT64).reshape(SHAPE);
+		final Slice[] current = toSlices(new int[3], SHAPE);
+		current[batchDim] = new Slice(begin, begin + SHAPE[batchDim], 1);
+		final int[] dataDims = new int[2];
+		for (int i = 0, j = 0; i < SHAPE.length; i++) {
+			if (i != batchDim) {
+				dataDims[j++] = i;
+			}
+		}
+		stack.setMetadata(new Origin(current, dataDims));
+		if (withAxes) {
+			final Axes axes = new Axes(SHAPE.length);
+			for (int i = 0; i < SHAPE.length; i++) {
+				final int[] shape = new int[] {1, 1, 1};
+				shape[i] = SHAPE[i];
+				axes.setAxis(i, new ILazyDataset[] {DatasetFactory.createRange(10 * i, 10 * i + SHAPE[i], 1, Dataset.FLOAT64).reshape(shape)});
+			}
+			stack.setMetadata(axes);
+		}
+		return stack;
+	}
+
+	/**
+	 * @return view of one slice of stack with its own origin
+	 */
+	private static IDataset getSlice(Dataset stack, int batchDim, int index) {
+		final int[] start = new int[SHAPE.length];
+		final int[] stop = SHAPE.clone();
+		start[batchDim] = index;
+		stop[batchDim] = index + 1;
+		final IDataset slice = stack.getSliceView(start, stop, null);
+		final OriginMetadata origin = AbstractOperation.getOriginMetadata(stack);
+		final Slice[] current = toSlices(start, stop);
+		current[batchDim] = new Slice(origin.getCurrentSlice()[batchDim].getStart() + index, origin.getCurrentSlice()[batchDim].getStart() + index + 1, 1);
+		slice.setMetadata(new Origin(current, origin.getDataDimensions()));
+		return slice;
+	}
+
+	private static Slice[] toSlices(int[] start, int[] stop) {
+		final int[] step = new int[start.length];
+		Arrays.fill(step, 1);
+		return Slice.convertToSlice(start, stop, step);
+	}
+
+	private static void check(String msg, IDataset expected, IDataset actual) {
+		assertArrayEquals(msg, expected.getShape(), actual.getShape());
+		assertArrayEquals(msg, new DoubleDataset(DatasetUtils.convertToDataset(expected)).getData(),
+				new DoubleDataset(DatasetUtils.convertToDataset(actual)).getData(), 0);
+
+		final OriginMetadata eo = AbstractOperation.getOriginMetadata(expected);
+		final OriginMetadata ao = AbstractOperation.getOriginMetadata(actual);
+		assertEquals(msg, Slice.createString(eo.getCurrentSlice()), Slice.createString(ao.getCurrentSlice()));
+		assertArrayEquals(msg, eo.getDataDimensions(), ao.getDataDimensions());
+
+		final ILazyDataset[] ea = AbstractOperation.getFirstAxes(expected);
+		final ILazyDataset[] aa = AbstractOperation.getFirstAxes(actual);
+		if (ea == null) {
+			assertNull(msg, aa);
+			return;
+		}
+		assertNotNull(msg, aa);
+		assertEquals(msg, ea.length, aa.length);
+		for (int i = 0; i < ea.length; i++) {
+			if (ea[i] == null) {
+				assertNull(msg + ", axis " + i, aa[i]);
+			} else {
+				assertEquals(msg + ", axis " + i, ea[i].getSlice(), aa[i].getSlice());
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BinaryKernelsTest {
+
+	private static final int[] DTYPES = new int[] {Dataset.FLOAT64, Dataset.FLOAT32, Dataset.INT32};
+	private static final int[] OPS = new int[] {BinaryKernels.ADD, BinaryKernels.SUBTRACT, BinaryKernels.MULTIPLY, BinaryKernels.DIVIDE, BinaryKernels.POWER};
+	private static final int[] SHAPE = new int[] {6, 7};
+
+	@Test
+	public void testKernelsMatchIterator() {
+		for (int dtype : DTYPES) {
+			final Dataset a = values(dtype, 1);
+			final Dataset b = values(dtype, 2);
+			final Dataset va = stridedView(a);
+			final Dataset vb = stridedView(b);
+			assertNotNull(va.getStrides());
+
+			for (int op : OPS) {
+				final String msg = "Operation " + op + " on type " + dtype;
+				final Dataset kernel = operate(op, a, b);
+				assertEquals(msg, BinaryKernels.isSupported(op, dtype), hasKernel(op, a, b));
+				assertFalse(msg, hasKernel(op, va, vb));
+				check(msg, operate(op, va, vb), kernel);
+
+				// single items on either side
+				final Dataset s = b.getSlice(new int[] {1, 2}, new int[] {2, 3}, null).squeeze();
+				assertEquals(0, s.getRank());
+				check(msg, operate(op, va, s), operate(op, a, s));
+				check(msg, operate(op, s, vb), operate(op, s, b));
+			}
+		}
+	}
+
+	@Test
+	public void testIntegerDivisionByZero() {
+		final Dataset a = values(Dataset.INT32, 1);
+		final Dataset b = values(Dataset.INT32, 2);
+		b.set(0, 0, 0);
+		b.set(0, 3, 4);
+		assertTrue(hasKernel(BinaryKernels.DIVIDE, a, b));
+		final Dataset kernel = Maths.divide(a, b);
+		assertEquals(0, kernel.getInt(0, 0));
+		check("Divide", Maths.divide(stridedView(a), stridedView(b)), kernel);
+		check("Divide", Maths.divide(stridedView(a), 0), Maths.divide(a, 0));
+	}
+
+	@Test
+	public void testEmpty() {
+		for (int dtype : DTYPES) {
+			final Dataset a = AbstractDataset.zeros(new int[] {0}, dtype);
+			final Dataset b = AbstractDataset.zeros(new int[] {0}, dtype);
+			final Dataset c = AbstractDataset.zeros(new int[] {0}, Dataset.INT8); // needs iterator
+			for (int op : OPS) {
+				assertEquals(BinaryKernels.isSupported(op, dtype), BinaryKernels.operate(op, a, b, a.clone(), false));
+				check("Empty", operate(op, a, c), operate(op, a, b));
+			}
+		}
+	}
+
+	@Test
+	public void testRankZero() {
+		for (int dtype : DTYPES) {
+			final Dataset a = DatasetFactory.createFromObject(7, dtype).reshape();
+			final Dataset b = DatasetFactory.createFromObject(2, dtype).reshape();
+			assertEquals(0, a.getRank());
+			final Dataset r = Maths.multiply(a, b);
+			assertEquals(0, r.getRank());
+			assertEquals(14, r.getDouble(), 0);
+
+			final Dataset c = values(dtype, 1);
+			check("Rank zero", Maths.subtract(c, a), Maths.subtract(stridedView(c), a));
+		}
+	}
+
+	private static Dataset operate(int op, Object a, Object b) {
+		switch (op) {
+		case BinaryKernels.ADD:
+			return Maths.add(a, b, null, false);
+		case BinaryKernels.SUBTRACT:
+			return Maths.subtract(a, b, null, false);
+		case BinaryKernels.MULTIPLY:
+			return Maths.multiply(a, b, null, false);
+		case BinaryKernels.DIVIDE:
+			return Maths.divide(a, b, null, false);
+		default:
+			return Maths.power(a, b, null, false);
+		}
+	}
+
+	/**
+	 * @return true if operation on given inputs is done by a kernel
+	 */
+	private static boolean hasKernel(int op, Dataset a, Dataset b) {
+		final Dataset o = AbstractDataset.zeros(SHAPE, a.getDtype());
+		return BinaryKernels.operate(op, a, b, o, false);
+	}
+
+	private static Dataset values(int dtype, int seed) {
+		final Dataset d = AbstractDataset.zeros(SHAPE, dtype);
+		final Random random = new Random(seed);
+		final IndexIterator it = d.getIterator(true);
+		while (it.hasNext()) {
+			final int[] pos = it.getPos();
+			d.set(dtype == Dataset.INT32 ? random.nextInt(41) - 20 : random.nextDouble() * 4 - 2, pos);
+		}
+		return d;
+	}
+
+	/**
+	 * @return view over every other row of a larger dataset that holds the same values
+	 */
+	private static Dataset stridedView(Dataset d) {
+		final int[] shape = d.getShape();
+		final int[] stop = shape.clone();
+		stop[0] *= 2;
+		final Dataset big = AbstractDataset.zeros(stop, d.getDtype());
+		final int[] step = new int[] {2, 1};
+		big.setSlice(d, null, stop, step);
+		return big.getSliceView(null, stop, step);
+	}
+
+	private static void check(String msg, Dataset expected, Dataset actual) {
+		assertEquals(msg, expected.getDtype(), actual.getDtype());
+		assertArrayEquals(msg, expected.getShapeRef(), actual.getShapeRef());
+		final double[] e = new DoubleDataset(expected).getData();
+		final double[] f = new DoubleDataset(actual).getData();
+		assertArrayEquals(msg, e, f, 0);
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Image.BoundaryMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConvolutionTest {
+
+	private ForkJoinPool pool;
+	private boolean parallel;
+
+	@Before
+	public void setUp() {
+		parallel = ParallelOperations.isParallel();
+		pool = new ForkJoinPool(4);
+		ParallelOperations.setPool(pool);
+	}
+
+	@After
+	public void tearDown() {
+		ParallelOperations.setParallel(parallel);
+		ParallelOperations.setPool(null);
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testPathsMatchNaive() {
+		final Random random = new Random(7);
+		final int[][] shapes = new int[][] {{17}, {9, 11}, {4, 5, 6}};
+		final int[][][] kshapes = new int[][][] {{{1}, {4}, {5}, {40}},
+			{{3, 3}, {2, 4}, {1, 5}, {12, 3}, {30, 25}},
+			{{3, 2, 5}, {1, 1, 4}, {6, 7, 2}}};
+		for (int s = 0; s < shapes.length; s++) {
+			final int[] shape = shapes[s];
+			final double[] values = values(random, AbstractDataset.calcSize(shape));
+			for (int[] kshape : kshapes[s]) {
+				// outer product of vectors so that all paths can be taken
+				final Dataset kernel = separableKernel(random, kshape);
+				for (BoundaryMode mode : BoundaryMode.values()) {
+					final String msg = mode + " with kernel " + Arrays.toString(kshape);
+					final double[] expected = naive(values, shape, kernel, mode);
+					for (Convolution.Path path : Convolution.Path.values()) {
+						assertArrayEquals(msg + " by " + path, expected, Convolution.filter(values, shape, kernel, mode, path), 1e-10);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNonSeparable() {
+		final Random random = new Random(8);
+		final int[] shape = new int[] {13, 10};
+		final double[] values = values(random, AbstractDataset.calcSize(shape));
+		final Dataset kernel = new DoubleDataset(new double[] {1, 2, 0, 0, 1, 3, 2, 0, 1, -1, 0, 2}, 3, 4);
+		assertNull(Convolution.factorize((double[]) kernel.getBuffer(), kernel.getShape()));
+		for (BoundaryMode mode : BoundaryMode.values()) {
+			final double[] expected = naive(values, shape, kernel, mode);
+			assertArrayEquals(expected, Convolution.filter(values, shape, kernel, mode), 1e-10);
+			assertArrayEquals(expected, Convolution.filter(values, shape, kernel, mode, Convolution.Path.DIRECT), 1e-10);
+			assertArrayEquals(expected, Convolution.filter(values, shape, kernel, mode, Convolution.Path.FOURIER), 1e-10);
+			try {
+				Convolution.filter(values, shape, kernel, mode, Convolution.Path.SEPARABLE);
+				fail("Non-separable kernel should be rejected");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testFactorize() {
+		final double[] u = new double[] {1, -2, 3};
+		final double[] v = new double[] {0.5, 4, 0, 2};
+		final double[] k = new double[u.length * v.length];
+		for (int i = 0; i < u.length; i++) {
+			for (int j = 0; j < v.length; j++) {
+				k[i * v.length + j] = u[i] * v[j];
+			}
+		}
+		final int[] kshape = new int[] {u.length, v.length};
+		final double[][] factors = Convolution.factorize(k, kshape);
+		assertNotNull(factors);
+		for (int i = 0; i < u.length; i++) {
+			for (int j = 0; j < v.length; j++) {
+				assertEquals(k[i * v.length + j], factors[0][i] * factors[1][j], 1e-15);
+			}
+		}
+
+		// within tolerance of pivot (largest item is 12)
+		final double[] near = k.clone();
+		near[1] += 12 * 1e-13;
+		assertNotNull(Convolution.factorize(near, kshape));
+		near[1] += 12 * 1e-10;
+		assertNull(Convolution.factorize(near, kshape));
+
+		// rank one, zero and non-finite kernels
+		assertNull(Convolution.factorize(u, new int[] {u.length}));
+		assertNull(Convolution.factorize(new double[4], new int[] {2, 2}));
+		assertNull(Convolution.factorize(new double[] {1, Double.NaN, 1, 1}, new int[] {2, 2}));
+	}
+
+	@Test
+	public void testDirectParallelMatchesSerial() {
+		final int[] shape = new int[] {512, 512};
+		final double[] values = new double[shape[0] * shape[1]];
+		final Random random = new Random(12345);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble();
+		}
+		// small kernel which is not separable so it is done directly
+		final Dataset kernel = new DoubleDataset(new double[] {1, 2, 0, 0, 1, 3, 2, 0, 1}, 3, 3);
+		assertNull(Convolution.factorize((double[]) kernel.getBuffer(), kernel.getShape()));
+		assertTrue(ParallelOperations.numberOfChunks(shape[0], shape[1]) > 1);
+
+		ParallelOperations.setParallel(false);
+		final double[] serial = Convolution.filter(values, shape, kernel, BoundaryMode.ZERO);
+
+		ParallelOperations.setParallel(true);
+		assertArrayEquals(serial, Convolution.filter(values, shape, kernel, BoundaryMode.ZERO), 0);
+	}
+
+	private static double[] values(Random random, int size) {
+		final double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = random.nextDouble() * 2 - 1;
+		}
+		return values;
+	}
+
+	private static Dataset separableKernel(Random random, int[] kshape) {
+		final DoubleDataset kernel = (DoubleDataset) AbstractDataset.ones(kshape, Dataset.FLOAT64);
+		final double[] k = kernel.getData();
+		final int[] pos = new int[kshape.length];
+		final double[][] factors = new double[kshape.length][];
+		for (int a = 0; a < kshape.length; a++) {
+			factors[a] = values(random, kshape[a]);
+		}
+		for (int i = 0; i < k.length; i++) {
+			for (int a = 0; a < kshape.length; a++) {
+				k[i] *= factors[a][pos[a]];
+			}
+			for (int a = kshape.length - 1; a >= 0 && ++pos[a] == kshape[a]; a--) {
+				pos[a] = 0;
+			}
+		}
+		return kernel;
+	}
+
+	/**
+	 * Sum of products of kernel and window for each position
+	 */
+	private static double[] naive(double[] values, int[] shape, Dataset kernel, BoundaryMode mode) {
+		final int rank = shape.length;
+		final int[] kshape = kernel.getShapeRef();
+		final double[] out = new double[values.length];
+		final int[] pos = new int[rank];
+		for (int o = 0; o < out.length; o++) {
+			double sum = 0;
+			final IndexIterator it = kernel.getIterator(true);
+			final int[] kpos = it.getPos();
+			while (it.hasNext()) {
+				int index = 0;
+				for (int a = 0; a < rank; a++) {
+					int i = pos[a] - kshape[a] / 2 + kpos[a];
+					final int n = shape[a];
+					if (i < 0 || i >= n) {
+						if (mode == BoundaryMode.ZERO) {
+							index = -1;
+							break;
+						} else if (mode == BoundaryMode.NEAREST) {
+							i = i < 0 ? 0 : n - 1;
+						} else {
+							while (i < 0 || i >= n) {
+								i = i < 0 ? -1 - i : 2 * n - 1 - i;
+							}
+						}
+					}
+					index = index * n + i;
+				}
+				if (index >= 0) {
+					sum += kernel.getDouble(kpos) * values[index];
+				}
+			}
+			out[o] = sum;
+			for (int a = rank - 1; a >= 0 && ++pos[a] == shape[a]; a--) {
+				pos[a] = 0;
+			}
+		}
+		return out;
+	}
+}
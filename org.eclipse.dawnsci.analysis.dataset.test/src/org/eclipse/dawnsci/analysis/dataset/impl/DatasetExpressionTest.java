@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetExpressionTest {
+
+	private static final int ROWS = 64;
+	private static final int COLS = 300;
+
+	private ForkJoinPool pool;
+	private int threshold;
+
+	@Before
+	public void setUp() {
+		threshold = ParallelOperations.getThreshold();
+		pool = new ForkJoinPool(4);
+		ParallelOperations.setPool(pool);
+		ParallelOperations.setThreshold(0);
+	}
+
+	@After
+	public void tearDown() {
+		ParallelOperations.setThreshold(threshold);
+		ParallelOperations.setPool(null);
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testMatchesMaths() {
+		final Dataset img = Random.rand(ROWS, COLS).imultiply(100);
+		final Dataset dark = Random.rand(ROWS, COLS);
+		final Dataset flat = Maths.add(Random.rand(ROWS, COLS), 2);
+
+		final Dataset expected = Maths.divide(Maths.subtract(img, dark), Maths.subtract(flat, dark));
+		final DatasetExpression e = DatasetExpression.of(img).subtract(dark).divide(DatasetExpression.of(flat).subtract(dark));
+		check(expected, e.evaluate(null, false), 0);
+		check(expected, e.evaluate(null, true), 0);
+
+		// every operation
+		check(Maths.add(img, dark), DatasetExpression.of(img).add(dark).evaluate(), 0);
+		check(Maths.multiply(img, dark), DatasetExpression.of(img).multiply(dark).evaluate(), 0);
+		check(Maths.power(dark, flat), DatasetExpression.of(dark).power(flat).evaluate(), 0);
+		check(Maths.maximum(img, flat), DatasetExpression.of(img).maximum(flat).evaluate(), 0);
+		check(Maths.minimum(img, flat), DatasetExpression.of(img).minimum(flat).evaluate(), 0);
+		final Dataset centred = Maths.subtract(dark, 0.5);
+		check(Maths.negative(centred), DatasetExpression.of(centred).negative().evaluate(), 0);
+		check(Maths.abs(centred), DatasetExpression.of(centred).abs().evaluate(), 0);
+		check(Maths.sqrt(img), DatasetExpression.of(img).sqrt().evaluate(), 0);
+		check(Maths.square(img), DatasetExpression.of(img).square().evaluate(), 0);
+		check(Maths.exp(dark), DatasetExpression.of(dark).exp().evaluate(), 0);
+		check(Maths.log(flat), DatasetExpression.of(flat).log().evaluate(), 0);
+		check(Maths.log10(flat), DatasetExpression.of(flat).log10().evaluate(), 0);
+	}
+
+	@Test
+	public void testBroadcastAndViews() {
+		final Dataset img = Random.rand(ROWS, COLS);
+		final Dataset row = Random.rand(COLS);
+		final Dataset column = Random.rand(ROWS, 1);
+		final Dataset big = Random.rand(2 * ROWS, COLS);
+		final Dataset view = big.getSliceView(null, null, new int[] {2, 1});
+		final Dataset scalar = DatasetFactory.createFromObject(3.);
+
+		final Dataset expected = Maths.multiply(Maths.subtract(Maths.add(img, row), column), Maths.add(view, scalar));
+		final DatasetExpression e = DatasetExpression.of(img).add(row).subtract(column).multiply(DatasetExpression.of(view).add(scalar));
+		check(expected, e.evaluate(null, false), 0);
+		check(expected, e.evaluate(null, true), 0);
+
+		// transposed view has non-increasing strides
+		final Dataset transposed = Random.rand(COLS, ROWS).getTransposedView();
+		check(Maths.subtract(transposed, 2), DatasetExpression.of(transposed).subtract(2).evaluate(null, true), 0);
+	}
+
+	@Test
+	public void testIntegerInputs() {
+		final Dataset a = Random.randint(0, 100, new int[] {ROWS, COLS});
+		final Dataset b = Random.randint(1, 10, new int[] {ROWS, COLS});
+		final Dataset expected = Maths.divide(a.cast(Dataset.FLOAT64), b.cast(Dataset.FLOAT64));
+		check(expected, DatasetExpression.of(a).divide(b).evaluate(), 0);
+
+		final Dataset f = Random.rand(ROWS, COLS).cast(Dataset.FLOAT32);
+		final Dataset s = a.cast(Dataset.INT16);
+		final Dataset r = DatasetExpression.of(f).multiply(s).evaluate();
+		assertEquals(Dataset.FLOAT32, r.getDtype());
+		check(Maths.multiply(f, s), r, 0);
+	}
+
+	@Test
+	public void testOutput() {
+		final Dataset a = Random.rand(ROWS, COLS);
+		final Dataset b = Random.rand(ROWS, COLS);
+		final Dataset expected = Maths.add(a, b);
+
+		final Dataset o = AbstractDataset.zeros(new int[] {ROWS, COLS}, Dataset.FLOAT64);
+		assertSame(o, DatasetExpression.of(a).add(b).evaluate(o, true));
+		check(expected, o, 0);
+
+		final Dataset big = AbstractDataset.zeros(new int[] {2 * ROWS, COLS}, Dataset.FLOAT64);
+		final Dataset view = big.getSliceView(null, null, new int[] {2, 1});
+		assertSame(view, DatasetExpression.of(a).add(b).evaluate(view, true));
+		check(expected, view, 0);
+		assertEquals(0, big.getSlice(new int[] {1, 0}, null, new int[] {2, 1}).max().doubleValue(), 0);
+
+		final Dataset io = AbstractDataset.zeros(new int[] {ROWS, COLS}, Dataset.INT32);
+		DatasetExpression.of(a).add(b).multiply(10).evaluate(io, false);
+		check(Maths.multiply(expected, 10).cast(Dataset.INT32), io, 0);
+	}
+
+	@Test
+	public void testSharedNodes() {
+		final Dataset a = Random.rand(ROWS, COLS);
+		final Dataset b = Random.rand(ROWS, COLS);
+		final DatasetExpression d = DatasetExpression.of(a).subtract(b);
+		final Dataset expected = Maths.multiply(Maths.subtract(a, b), Maths.subtract(a, b));
+		check(expected, d.multiply(d).evaluate(null, false), 0);
+		check(expected, d.multiply(d).evaluate(null, true), 0);
+	}
+
+	@Test
+	public void testEmptyAndRankZero() {
+		final Dataset empty = AbstractDataset.zeros(new int[] {0}, Dataset.FLOAT64);
+		final Dataset r = DatasetExpression.of(empty).add(1).evaluate();
+		assertArrayEquals(new int[] {0}, r.getShapeRef());
+
+		final Dataset single = DatasetFactory.createFromObject(4.);
+		final Dataset s = DatasetExpression.of(single).sqrt().add(single).evaluate();
+		assertEquals(0, s.getRank());
+		assertEquals(6, s.getDouble(), 0);
+
+		final Dataset c = DatasetExpression.of(2).add(3).evaluate();
+		assertEquals(0, c.getRank());
+		assertEquals(5, c.getDouble(), 0);
+	}
+
+	private static void check(Dataset expected, Dataset actual, double delta) {
+		assertArrayEquals(expected.getShapeRef(), actual.getShapeRef());
+		final double[] e = new DoubleDataset(expected).getData();
+		final double[] f = new DoubleDataset(actual).getData();
+		assertArrayEquals(e, f, delta);
+	}
+}
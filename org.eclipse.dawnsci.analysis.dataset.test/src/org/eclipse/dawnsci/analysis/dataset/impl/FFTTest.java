@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+public class FFTTest {
+
+	@After
+	public void tearDown() {
+		TransformPlans.clear();
+	}
+
+	@Test
+	public void testRealMatchesComplex() {
+		for (int[] shape : new int[][] {{16}, {15}, {6, 10}, {7, 9}, {5, 4, 9}}) {
+			final Dataset a = Random.randn(shape);
+			final int rank = shape.length;
+			final int n = shape[rank - 1];
+			final String msg = Arrays.toString(shape);
+
+			check(msg, halfSpectrum(FFT.fft(a)), FFT.rfft(a), 1e-12);
+			check(msg, halfSpectrum(FFT.fft(a, n + 3, -1)), FFT.rfft(a, n + 3, -1), 1e-12);
+			check(msg, halfSpectrum(FFT.fft(a, n - 2, -1)), FFT.rfft(a, n - 2, -1), 1e-12);
+			check(msg, halfSpectrum(FFT.fftn(a, null, null)), FFT.rfftn(a, null, null), 1e-10);
+			if (rank > 1) {
+				final int[] s = shape.clone();
+				s[0] += 2;
+				s[rank - 1] += 1;
+				check(msg, halfSpectrum(FFT.fftn(a, s, null)), FFT.rfftn(a, s, null), 1e-10);
+			}
+		}
+	}
+
+	@Test
+	public void testInverse() {
+		for (int[] shape : new int[][] {{16}, {15}, {6, 10}, {7, 9}, {5, 4, 9}}) {
+			final Dataset a = Random.randn(shape);
+			final int rank = shape.length;
+			final int n = shape[rank - 1];
+			final String msg = Arrays.toString(shape);
+
+			check(msg, a, FFT.irfft(FFT.rfft(a), n, -1), 1e-12);
+			check(msg, a, FFT.irfftn(FFT.rfftn(a, null, null), shape, null), 1e-12);
+			check(msg, ((ComplexDoubleDataset) FFT.ifftn(FFT.fftn(a, null, null), null, null)).real(), FFT.irfftn(FFT.rfftn(a, null, null), shape, null), 1e-12);
+		}
+	}
+
+	@Test
+	public void testTypes() {
+		final Dataset a = Random.randn(6, 10);
+		final Dataset f = a.cast(Dataset.FLOAT32);
+		final Dataset r = FFT.rfft(f);
+		assertEquals(Dataset.COMPLEX64, r.getDtype());
+		check("Float", halfSpectrum(FFT.fft(f)), r, 1e-4);
+		assertEquals(Dataset.FLOAT32, FFT.irfft(r, 10, -1).getDtype());
+
+		final Dataset i = Random.randint(-50, 50, new int[] {6, 10});
+		assertEquals(Dataset.COMPLEX128, FFT.rfft(i).getDtype());
+		check("Integer", halfSpectrum(FFT.fft(i.cast(Dataset.FLOAT64))), FFT.rfft(i), 1e-10);
+	}
+
+	@Test
+	public void testViews() {
+		final Dataset big = Random.randn(12, 20);
+		final Dataset view = big.getSliceView(new int[] {1, 0}, null, new int[] {2, 2});
+		final Dataset copy = view.clone();
+		check("View", FFT.fft(copy), FFT.fft(view), 0);
+		check("View", FFT.rfft(copy), FFT.rfft(view), 0);
+		check("View", FFT.rfftn(copy, null, null), FFT.rfftn(view, null, null), 0);
+		check("View", FFT.rfft(copy, 10, 0), FFT.rfft(view, 10, 0), 0);
+		check("View", DCT.dct(copy), DCT.dct(view), 0);
+
+		final Dataset transposed = Random.randn(10, 6).getTransposedView();
+		check("Transposed", halfSpectrum(FFT.fft(transposed)), FFT.rfft(transposed), 1e-12);
+	}
+
+	@Test
+	public void testPlansMatchFreshTransforms() {
+		final int n = 24;
+		final double[] values = ((DoubleDataset) Random.randn(n)).getData();
+		final double[] expected = new double[2 * n];
+		System.arraycopy(values, 0, expected, 0, n);
+		new DoubleFFT_1D(n).realForwardFull(expected);
+
+		final Dataset a = new DoubleDataset(values, n);
+		for (int i = 0; i < 3; i++) { // later calls reuse plans
+			check("Repeat " + i, new ComplexDoubleDataset(expected, n), FFT.fft(a), 1e-12);
+		}
+	}
+
+	@Test
+	public void testPlanPool() {
+		final DoubleFFT_1D p = TransformPlans.acquire(DoubleFFT_1D.class, 8);
+		final DoubleFFT_1D q = TransformPlans.acquire(DoubleFFT_1D.class, 8);
+		assertNotSame(p, q); // each caller gets its own
+		TransformPlans.release(p, 8);
+		assertSame(p, TransformPlans.acquire(DoubleFFT_1D.class, 8));
+		assertNotSame(p, TransformPlans.acquire(DoubleFFT_1D.class, 16));
+
+		// least recently used are discarded first
+		TransformPlans.release(p, 8);
+		for (int i = 0; i < TransformPlans.MAX_PLANS; i++) {
+			TransformPlans.release(new DoubleFFT_1D(100 + i), 100 + i);
+		}
+		assertNotSame(p, TransformPlans.acquire(DoubleFFT_1D.class, 8));
+		final DoubleFFT_1D last = TransformPlans.acquire(DoubleFFT_1D.class, 100 + TransformPlans.MAX_PLANS - 1);
+		TransformPlans.release(last, 100 + TransformPlans.MAX_PLANS - 1);
+		assertSame(last, TransformPlans.acquire(DoubleFFT_1D.class, 100 + TransformPlans.MAX_PLANS - 1));
+
+		TransformPlans.release(last, 7);
+		TransformPlans.clear();
+		assertNotSame(last, TransformPlans.acquire(DoubleFFT_1D.class, 7));
+	}
+
+	@Test
+	public void testEmptyRankZeroAndUnitLength() {
+		final Dataset empty = AbstractDataset.zeros(new int[] {0}, Dataset.FLOAT64);
+		assertEquals(rejection(empty, false), rejection(empty, true));
+		assertEquals(IllegalArgumentException.class, rejection(empty, true));
+
+		// no axis to transform
+		final Dataset single = DatasetFactory.createFromObject(2.5);
+		assertEquals(0, single.getRank());
+		assertNotNull(rejection(single, true));
+		assertEquals(rejection(single, false), rejection(single, true));
+
+		final Dataset unit = new DoubleDataset(new double[] {3}, 1);
+		check("Unit", new ComplexDoubleDataset(new double[] {3, 0}, 1), FFT.rfft(unit), 0);
+		check("Unit", unit, FFT.irfft(FFT.rfft(unit), 1, -1), 0);
+		check("Unit", FFT.fft(unit, 4, 0).getSlice(null, new int[] {3}, null), FFT.rfft(unit, 4, 0), 0);
+		final Dataset column = Random.randn(5, 1);
+		check("Column", halfSpectrum(FFT.fft(column)), FFT.rfft(column), 0);
+		check("Column", column, DCT.idct(DCT.dct(column)), 1e-12);
+	}
+
+	/**
+	 * @return class of exception thrown by transform or null
+	 */
+	private static Class<?> rejection(Dataset a, boolean real) {
+		try {
+			if (real) {
+				FFT.rfft(a);
+			} else {
+				FFT.fft(a);
+			}
+		} catch (RuntimeException e) {
+			return e.getClass();
+		}
+		return null;
+	}
+
+	/**
+	 * @return non-negative frequency terms of last axis
+	 */
+	private static Dataset halfSpectrum(Dataset f) {
+		final int[] stop = f.getShape();
+		final int last = stop.length - 1;
+		stop[last] = stop[last] / 2 + 1;
+		return f.getSlice(null, stop, null);
+	}
+
+	private static void check(String msg, Dataset expected, Dataset actual, double delta) {
+		assertArrayEquals(msg, expected.getShapeRef(), actual.getShapeRef());
+		if (expected.isComplex() || actual.isComplex()) {
+			assertArrayEquals(msg, new ComplexDoubleDataset(expected).getData(), new ComplexDoubleDataset(actual).getData(), delta);
+		} else {
+			assertArrayEquals(msg, new DoubleDataset(expected).getData(), new DoubleDataset(actual).getData(), delta);
+		}
+	}
+}
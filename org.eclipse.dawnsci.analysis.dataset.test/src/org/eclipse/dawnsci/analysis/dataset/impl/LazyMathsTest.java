@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyMathsTest {
+
+	/**
+	 * Loader of a dataset that counts reads and can fail
+	 */
+	private static class CountingLoader implements ILazyLoader {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data;
+		private final AtomicInteger reads = new AtomicInteger();
+		private final int failAt;
+
+		CountingLoader(Dataset data, int failAt) {
+			this.data = data;
+			this.failAt = failAt;
+		}
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			if (reads.incrementAndGet() == failAt) {
+				throw new Exception("Read failed");
+			}
+			return data.getSlice(start, stop, step);
+		}
+	}
+
+	private int chunkSize;
+
+	@Before
+	public void setUp() {
+		chunkSize = LazyMaths.getChunkSize();
+	}
+
+	@After
+	public void tearDown() {
+		LazyMaths.setChunkSize(chunkSize);
+	}
+
+	@Test
+	public void testSumAndProductMatchMaths() {
+		final Dataset data = Maths.add(Random.rand(7, 5, 6), 0.5);
+		// chunk sizes and numbers of chunks read
+		final int[][] chunking = new int[][] {{LazyMaths.DEFAULT_CHUNK_SIZE, 1}, {6 * 8, 7 * 5}, {20, 7 * 5 * 3}, {1, 7 * 5 * 6}};
+		for (int[] c : chunking) {
+			LazyMaths.setChunkSize(c[0]);
+			final CountingLoader loader = new CountingLoader(data, -1);
+			final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, data.getShape(), loader);
+			for (int axis = 0; axis < data.getRank(); axis++) {
+				check("Sum along " + axis, data.sum(axis), LazyMaths.sum(lazy, axis), 1e-12);
+				check("Product along " + axis, data.product(axis), LazyMaths.product(lazy, axis), 1e-12);
+			}
+			check("Sum along last", data.sum(2), LazyMaths.sum(lazy, -1), 1e-12);
+			assertEquals(7 * c[1], loader.reads.get());
+		}
+	}
+
+	@Test
+	public void testSummarizeMatchesMaths() {
+		final Dataset data = Random.randn(6, 4, 9);
+		final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, data.getShape(), new CountingLoader(data, -1));
+		for (int bytes : new int[] {LazyMaths.DEFAULT_CHUNK_SIZE, 9 * 8, 24}) {
+			LazyMaths.setChunkSize(bytes);
+			for (int axis = 0; axis < data.getRank(); axis++) {
+				final String msg = "Axis " + axis + " in chunks of " + bytes;
+				final LazyMaths.Summary summary = LazyMaths.summarize(lazy, false, axis);
+				check(msg, data.sum(axis), summary.getSum(), 1e-12);
+				check(msg, data.mean(axis), summary.getMean(), 1e-12);
+				check(msg, data.variance(axis), summary.getVariance(), 1e-12);
+				check(msg, data.min(axis), summary.getMin(), 0);
+				check(msg, data.max(axis), summary.getMax(), 0);
+				assertEquals(data.getShapeRef()[axis], summary.getCount().getLong(0));
+			}
+
+			// over all axes
+			final LazyMaths.Summary all = LazyMaths.summarize(lazy, false);
+			assertEquals(0, all.getMean().getRank());
+			assertEquals(((Number) data.mean()).doubleValue(), all.getMean().getDouble(), 1e-12);
+			assertEquals(data.variance().doubleValue(), all.getVariance().getDouble(), 1e-12);
+			assertEquals(data.variance(true).doubleValue(), all.getVariance(true).getDouble(), 1e-12);
+			assertEquals(data.min().doubleValue(), all.getMin().getDouble(), 0);
+			assertEquals(data.max().doubleValue(), all.getMax().getDouble(), 0);
+
+			// over two axes
+			final Dataset mean = LazyMaths.mean(lazy, 1);
+			check("Chunks of " + bytes, data.mean(2).mean(0), mean, 1e-12);
+		}
+	}
+
+	@Test
+	public void testIgnoreNaNs() {
+		final Dataset data = Random.randn(5, 8);
+		data.set(Double.NaN, 1, 3);
+		data.set(Double.NaN, 1, 5);
+		LazyMaths.setChunkSize(16);
+		final LazyMaths.Summary summary = LazyMaths.summarize(data, true, 1);
+		assertEquals(6, summary.getCount().getLong(1));
+		check("Ignoring NaNs", data.mean(true, 1), summary.getMean(), 1e-12);
+		assertTrue(Double.isNaN(LazyMaths.summarize(data, false, 1).getMean().getDouble(1)));
+	}
+
+	@Test
+	public void testReadFailure() {
+		final Dataset data = Random.randn(10, 8);
+		LazyMaths.setChunkSize(8 * 8);
+		for (int failAt : new int[] {1, 2, 5, 10}) {
+			try {
+				LazyMaths.sum(new LazyDataset("data", Dataset.FLOAT64, data.getShape(), new CountingLoader(data, failAt)), 0);
+				fail("Failed read should be reported");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyAndRankZero() {
+		final Dataset empty = AbstractDataset.zeros(new int[] {0, 3}, Dataset.FLOAT64);
+		final Dataset sum = LazyMaths.sum(empty, 0);
+		assertArrayEquals(new int[] {3}, sum.getShapeRef());
+		assertEquals(0, sum.max().doubleValue(), 0);
+		assertArrayEquals(new int[] {0}, LazyMaths.sum(empty, 1).getShapeRef());
+		assertTrue(Double.isNaN(LazyMaths.summarize(empty, false, 0).getMean().getDouble(1)));
+
+		final Dataset single = DatasetFactory.createFromObject(2.5);
+		assertEquals(0, single.getRank());
+		final LazyMaths.Summary summary = LazyMaths.summarize(single, false);
+		assertEquals(2.5, summary.getSum().getDouble(), 0);
+		assertEquals(0, summary.getVariance().getDouble(), 0);
+		assertEquals(1, summary.getCount().getLong());
+	}
+
+	@Test
+	public void testMeanIgnoringAllAxes() {
+		final Dataset data = DatasetFactory.createRange(7 * 5 * 6 * 4, Dataset.INT32).reshape(7, 5, 6, 4);
+
+		final Dataset mean = LazyMaths.mean(data, 0, 1, 2, 3);
+		assertArrayEquals(new int[] {7, 5, 6, 4}, mean.getShape());
+		assertEquals(Dataset.FLOAT64, mean.getDtype());
+		assertEquals(DatasetUtils.cast(data, Dataset.FLOAT64), mean);
+
+		assertArrayEquals(new int[] {7, 5, 6, 4}, LazyMaths.mean(data, -1, 2, 1, 0).getShape());
+	}
+
+	@Test
+	public void testMeanIgnoringSomeAxes() {
+		final Dataset data = DatasetFactory.createRange(7 * 5 * 6 * 4, Dataset.INT32).reshape(7, 5, 6, 4);
+
+		final Dataset mean = LazyMaths.mean(data, 0, 3);
+		assertArrayEquals(new int[] {7, 4}, mean.getShape());
+		for (int i = 0; i < 7; i++) {
+			for (int j = 0; j < 4; j++) {
+				// mean over axes 1 and 2 of i*120 + k*4 + j
+				assertEquals(i * 120 + 58 + j, mean.getDouble(i, j), 1e-10);
+			}
+		}
+	}
+
+	private static void check(String msg, Dataset expected, Dataset actual, double delta) {
+		assertArrayEquals(msg, expected.getShapeRef(), actual.getShapeRef());
+		assertArrayEquals(msg, new DoubleDataset(expected).getData(), new DoubleDataset(actual).getData(), delta);
+	}
+}
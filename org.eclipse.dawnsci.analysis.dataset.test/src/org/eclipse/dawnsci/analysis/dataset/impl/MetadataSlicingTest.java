@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.metadata.AxesMetadata;
+import org.eclipse.dawnsci.analysis.api.metadata.ErrorMetadata;
+import org.eclipse.dawnsci.analysis.api.metadata.Reshapeable;
+import org.eclipse.dawnsci.analysis.api.metadata.Sliceable;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.dataset.impl.LazyDatasetBase.MetadataPlan;
+import org.eclipse.dawnsci.analysis.dataset.metadata.ErrorMetadataImpl;
+import org.junit.Test;
+
+public class MetadataSlicingTest {
+
+	private static final int[] SHAPE = new int[] {6, 4, 5};
+
+	private static class Axes implements AxesMetadata {
+		private static final long serialVersionUID = 1L;
+
+		@Sliceable
+		@Reshapeable(matchRank = true)
+		private ILazyDataset[][] axes;
+
+		Axes(int rank) {
+			axes = new ILazyDataset[rank][];
+		}
+
+		@Override
+		public ILazyDataset[] getAxes() {
+			ILazyDataset[] first = new ILazyDataset[axes.length];
+			for (int i = 0; i < axes.length; i++) {
+				first[i] = axes[i] == null ? null : axes[i][0];
+			}
+			return first;
+		}
+
+		@Override
+		public ILazyDataset[] getAxis(int axisDim) {
+			return axes[axisDim];
+		}
+
+		@Override
+		public void setAxis(int axisDim, ILazyDataset[] axisData) {
+			axes[axisDim] = axisData;
+		}
+
+		@Override
+		public AxesMetadata createAxesMetadata(int rank) {
+			return new Axes(rank);
+		}
+
+		@Override
+		public Axes clone() {
+			Axes c = new Axes(axes.length);
+			for (int i = 0; i < axes.length; i++) {
+				if (axes[i] != null) {
+					c.axes[i] = new ILazyDataset[axes[i].length];
+					for (int j = 0; j < axes[i].length; j++) {
+						c.axes[i][j] = axes[i][j] == null ? null : axes[i][j].getSliceView();
+					}
+				}
+			}
+			return c;
+		}
+	}
+
+	private static class LabelledAxes extends Axes {
+		private static final long serialVersionUID = 1L;
+
+		@Sliceable
+		private ILazyDataset labels;
+
+		@SuppressWarnings("unused")
+		private ILazyDataset ignored;
+
+		LabelledAxes(int rank) {
+			super(rank);
+		}
+	}
+
+	@Test
+	public void testPlan() throws Exception {
+		final MetadataPlan plan = LazyDatasetBase.getMetadataPlan(LabelledAxes.class);
+		assertSame(plan, LazyDatasetBase.getMetadataPlan(LabelledAxes.class));
+		assertEquals(names("labels", "axes"), names(plan.getFields(Sliceable.class)));
+		assertEquals(names("axes"), names(plan.getFields(Reshapeable.class)));
+		final Field[] fields = plan.getFields(Reshapeable.class);
+		assertEquals(true, plan.getAnnotations(Reshapeable.class)[0] instanceof Reshapeable);
+		assertEquals(true, ((Reshapeable) plan.getAnnotations(Reshapeable.class)[0]).matchRank());
+		assertEquals(Axes.class, fields[0].getDeclaringClass());
+
+		final MetadataPlan error = LazyDatasetBase.getMetadataPlan(ErrorMetadataImpl.class);
+		assertEquals(names("error", "sqError"), names(error.getFields(Sliceable.class)));
+		assertEquals(names("error", "sqError"), names(error.getFields(Reshapeable.class)));
+		assertEquals(false, ((Reshapeable) error.getAnnotations(Reshapeable.class)[0]).matchRank());
+	}
+
+	@Test
+	public void testSliceAndSqueeze() throws Exception {
+		final Slice[] slices = new Slice[] {new Slice(1, 5, 2), new Slice(1, 3), new Slice(0, 5, 2)};
+		for (boolean asView : new boolean[] {true, false}) {
+			final String msg = asView ? "View" : "Copy";
+			final Dataset data = createData();
+			final Dataset sliced = slice(data, asView, slices);
+			check(msg, sliced, slices, 0, 1, 2);
+
+			// slice of slice
+			final Slice[] again = new Slice[] {new Slice(1, 2), null, new Slice(1, 3)};
+			final Dataset twice = slice(sliced, asView, again);
+			final Slice[] combined = new Slice[] {new Slice(3, 4), new Slice(1, 3), new Slice(2, 5, 2)};
+			check(msg + " twice", twice, combined, 0, 1, 2);
+
+			twice.squeeze();
+			check(msg + " squeezed", twice, combined, 1, 2);
+
+			twice.setShape(2, 2, 1);
+			check(msg + " reshaped", twice, combined, 1, 2, -1);
+		}
+	}
+
+	@Test
+	public void testLazySlice() throws Exception {
+		final Slice[] slices = new Slice[] {new Slice(2, 6, 3), null, new Slice(1, 2)};
+		final LazyDataset lazy = createLazy();
+		check("Slice", DatasetUtils.convertToDataset(lazy.getSlice(slices)), slices, 0, 1, 2);
+		check("View", DatasetUtils.convertToDataset(lazy.getSliceView(slices).getSlice()), slices, 0, 1, 2);
+	}
+
+	@Test
+	public void testDeferred() throws Exception {
+		final Slice[] slices = new Slice[] {new Slice(1, 5, 2), new Slice(1, 3), new Slice(0, 5, 2)};
+		final Slice[] again = new Slice[] {new Slice(1, 2), null, new Slice(1, 3)};
+		final Slice[] combined = new Slice[] {new Slice(3, 4), new Slice(1, 3), new Slice(2, 5, 2)};
+		for (boolean asView : new boolean[] {true, false}) {
+			final String msg = asView ? "View" : "Copy";
+			// metadata only read after all operations
+			final Dataset data = createData();
+			final Dataset sliced = slice(data, asView, slices);
+			final Dataset twice = slice(sliced, asView, again);
+			twice.squeeze();
+			twice.setShape(2, 2, 1);
+			check(msg, twice, combined, 1, 2, -1);
+
+			// metadata of copies are left alone
+			check(msg + " parent", sliced, slices, 0, 1, 2);
+			check(msg + " original", data, new Slice[] {null, null, null}, 0, 1, 2);
+
+			// derived dataset gets operations not yet applied to its parent
+			final Dataset other = slice(createData(), asView, slices);
+			final Dataset derived = slice(other, asView, again);
+			check(msg + " derived", derived, combined, 0, 1, 2);
+			check(msg + " parent after derived", other, slices, 0, 1, 2);
+		}
+	}
+
+	@Test
+	public void testDeferredPerType() throws Exception {
+		final Slice[] slices = new Slice[] {new Slice(1, 5, 2), new Slice(1, 3), new Slice(0, 5, 2)};
+		final Dataset sliced = createData().getSliceView(slices);
+		sliced.getMetadata(AxesMetadata.class);
+		final Dataset squeezed = sliced.getSliceView(new Slice(1, 2), null, null).squeeze();
+		squeezed.getMetadata(ErrorMetadata.class);
+		check("Squeezed", squeezed, new Slice[] {new Slice(3, 4), new Slice(1, 3), new Slice(0, 5, 2)}, 1, 2);
+
+		// adding metadata applies outstanding operations to its type only
+		final Dataset view = createData().getSliceView(slices);
+		final ErrorMetadataImpl errors = new ErrorMetadataImpl();
+		errors.setError(Maths.multiply(DatasetFactory.ones(view.getShape(), Dataset.FLOAT64), 0.5));
+		view.addMetadata(errors);
+		assertEquals(2, view.getMetadata(ErrorMetadata.class).size());
+		assertEquals(createError().getSlice(slices), view.getMetadata(ErrorMetadata.class).get(0).getError().getSlice());
+		assertEquals(errors.getError(), view.getMetadata(ErrorMetadata.class).get(1).getError().getSlice());
+		view.clearMetadata(ErrorMetadata.class);
+		assertEquals(0, view.getMetadata(ErrorMetadata.class).size());
+		final Dataset cleared = view.getSliceView(null, null, new Slice(1, 2));
+		assertEquals(0, cleared.getMetadata(ErrorMetadata.class).size());
+		assertEquals(createAxis(2).getSlice(new Slice(2, 3)).reshape(1, 1, 1), cleared.getMetadata(AxesMetadata.class).get(0).getAxes()[2].getSlice());
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		final Slice[] slices = new Slice[] {new Slice(1, 5, 2), new Slice(1, 3), new Slice(0, 5, 2)};
+		final Dataset sliced = createData().getSliceView(slices);
+		final Dataset twice = sliced.getSlice(new Slice(1, 2), null, new Slice(1, 3)).squeeze();
+		final Slice[] combined = new Slice[] {new Slice(3, 4), new Slice(1, 3), new Slice(2, 5, 2)};
+		final Dataset copy = (Dataset) deserialize(serialize(twice));
+		check("Deserialized", copy, combined, 1, 2);
+		check("Original", twice, combined, 1, 2);
+
+		// deserialized dataset can be sliced further
+		final Dataset view = copy.getSliceView(null, new Slice(1, 2));
+		check("Sliced after deserialized", view, new Slice[] {new Slice(3, 4), new Slice(1, 3), new Slice(4, 5)}, 1, 2);
+
+		// partly applied operations
+		final Dataset partly = createData().getSliceView(slices);
+		partly.getMetadata(AxesMetadata.class);
+		partly.setShape(2, 2, 3, 1);
+		check("Partly applied", (Dataset) deserialize(serialize(partly)), slices, 0, 1, 2, -1);
+	}
+
+	@Test
+	public void testLazyAxesNotRead() throws Exception {
+		final Slice[] slices = new Slice[] {new Slice(2, 6, 3), null, new Slice(1, 3)};
+		final LazyDataset lazy = createLazy();
+		final Axes axes = new Axes(SHAPE.length);
+		final DatasetLoader[] loaders = new DatasetLoader[SHAPE.length];
+		for (int i = 0; i < SHAPE.length; i++) {
+			final int[] shape = new int[] {1, 1, 1};
+			shape[i] = SHAPE[i];
+			loaders[i] = new DatasetLoader(createAxis(i).reshape(shape));
+			axes.setAxis(i, new ILazyDataset[] {new LazyDataset("axis" + i, Dataset.FLOAT64, shape, loaders[i])});
+		}
+		lazy.setMetadata(axes);
+
+		final Dataset sliced = DatasetUtils.convertToDataset(lazy.getSlice(slices));
+		final Dataset view = sliced.getSliceView(new Slice(1, 2)).squeeze();
+		for (int i = 0; i < SHAPE.length; i++) {
+			assertEquals("Axis " + i, 0, loaders[i].reads);
+		}
+
+		assertEquals(1, view.getMetadata(AxesMetadata.class).size());
+		for (int i = 0; i < SHAPE.length; i++) {
+			assertEquals("Axis " + i, 1, loaders[i].reads);
+		}
+		check("Sliced", view, new Slice[] {new Slice(5, 6), null, new Slice(1, 3)}, 1, 2);
+	}
+
+	/**
+	 * @return range dataset with axis of range for each dimension and errors of a tenth of values
+	 */
+	private static Dataset createData() {
+		final Dataset data = DatasetFactory.createRange(120, Dataset.FLOAT64).reshape(SHAPE);
+		data.addMetadata(createAxes());
+		data.addMetadata(createErrors());
+		return data;
+	}
+
+	private static LazyDataset createLazy() {
+		final Dataset data = DatasetFactory.createRange(120, Dataset.FLOAT64).reshape(SHAPE);
+		final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, SHAPE, new DatasetLoader(data));
+		lazy.addMetadata(createAxes());
+		lazy.addMetadata(createErrors());
+		return lazy;
+	}
+
+	private static Axes createAxes() {
+		final Axes axes = new Axes(SHAPE.length);
+		for (int i = 0; i < SHAPE.length; i++) {
+			final int[] shape = new int[] {1, 1, 1};
+			shape[i] = SHAPE[i];
+			axes.setAxis(i, new ILazyDataset[] {createAxis(i).reshape(shape)});
+		}
+		return axes;
+	}
+
+	private static ErrorMetadataImpl createErrors() {
+		final ErrorMetadataImpl errors = new ErrorMetadataImpl();
+		errors.setError(createError());
+		return errors;
+	}
+
+	private static Dataset createAxis(int dim) {
+		return DatasetFactory.createRange(10 * dim, 10 * dim + SHAPE[dim], 1, Dataset.FLOAT64);
+	}
+
+	private static Dataset createError() {
+		return Maths.multiply(DatasetFactory.createRange(120, Dataset.FLOAT64).reshape(SHAPE), 0.1);
+	}
+
+	private static Dataset slice(Dataset data, boolean asView, Slice... slices) {
+		return asView ? data.getSliceView(slices) : data.getSlice(slices);
+	}
+
+	/**
+	 * Check values and metadata of dataset against those sliced from original
+	 * @param msg
+	 * @param actual
+	 * @param slices of original dataset
+	 * @param dims original dimension of each dimension of actual dataset, or -1 for an added unit dimension
+	 */
+	static void check(String msg, Dataset actual, Slice[] slices, int... dims) throws Exception {
+		final int[] shape = actual.getShape();
+		assertEquals(msg, dims.length, shape.length);
+		final Dataset expected = DatasetFactory.createRange(120, Dataset.FLOAT64).reshape(SHAPE).getSlice(slices);
+		assertEquals(msg, expected.reshape(shape), actual.getSlice());
+
+		final ErrorMetadata error = actual.getMetadata(ErrorMetadata.class).get(0);
+		assertEquals(msg + ", errors", createError().getSlice(slices).reshape(shape), error.getError().getSlice());
+
+		final AxesMetadata axes = actual.getMetadata(AxesMetadata.class).get(0);
+		final ILazyDataset[] first = axes.getAxes();
+		assertEquals(msg, shape.length, first.length);
+		for (int i = 0; i < dims.length; i++) {
+			if (dims[i] < 0) {
+				assertNull(msg + ", axis " + i, first[i]);
+				continue;
+			}
+			final int[] ashape = new int[shape.length];
+			Arrays.fill(ashape, 1);
+			ashape[i] = shape[i];
+			assertEquals(msg + ", axis " + i, createAxis(dims[i]).getSlice(slices[dims[i]]).reshape(ashape), first[i].getSlice());
+		}
+	}
+
+	private static byte[] serialize(Object o) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		try {
+			out.writeObject(o);
+		} finally {
+			out.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static Set<String> names(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	private static Set<String> names(Field[] fields) {
+		final Set<String> names = new HashSet<String>();
+		for (Field f : fields) {
+			names.add(f.getName());
+		}
+		assertEquals(fields.length, names.size());
+		return names;
+	}
+
+	/**
+	 * Loader of slices of a dataset that counts reads
+	 */
+	static class DatasetLoader implements ILazyLoader {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data;
+		int reads;
+
+		DatasetLoader(Dataset data) {
+			this.data = data;
+		}
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			reads++;
+			return data.getSlice(start, stop, step);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.OperationDataCache;
+import org.eclipse.dawnsci.analysis.api.processing.SeriesJournal;
+import org.eclipse.dawnsci.analysis.api.processing.model.AbstractOperationModel;
+import org.junit.Test;
+
+public class OperationDataCacheTest {
+
+	public static class MaskModel extends AbstractOperationModel {
+		private IDataset mask;
+
+		public MaskModel(IDataset mask) {
+			this.mask = mask;
+		}
+	}
+
+	@Test
+	public void testSpill() throws Exception {
+		final File dir = Files.createTempDirectory("operation-cache-test").toFile();
+		final OperationDataCache cache = new OperationDataCache(3 * 900, dir, 1 << 20); // three results fit in memory
+		try {
+			for (int i = 0; i < 10; i++) {
+				cache.put("r" + i, new OperationData(DatasetFactory.createRange(i, i + 100, 1, Dataset.FLOAT64)));
+			}
+			assertEquals(10, cache.getCount());
+			assertEquals(7, cache.getSpills());
+
+			final OperationData d = cache.get("r0"); // read back from file
+			assertNotNull(d);
+			assertEquals(DatasetFactory.createRange(0, 100, 1, Dataset.FLOAT64), d.getData());
+			assertEquals(1, cache.getHits());
+			assertNull(cache.get("missing"));
+			assertEquals(1, cache.getMisses());
+		} finally {
+			cache.close();
+		}
+		assertEquals(0, cache.getCount());
+		assertEquals(0, dir.list().length);
+		assertNull(cache.get("r9"));
+		dir.delete();
+	}
+
+	@Test
+	public void testTemporaryDirectoryDeleted() throws Exception {
+		final OperationDataCache cache = OperationDataCache.createTemporary();
+		cache.put("r", new OperationData(DatasetFactory.zeros(new int[] {10}, Dataset.FLOAT64)));
+		cache.close();
+		assertEquals(0, cache.getCount());
+		cache.put("r", new OperationData(DatasetFactory.zeros(new int[] {10}, Dataset.FLOAT64)));
+		assertEquals(0, cache.getCount());
+	}
+
+	@Test
+	public void testIdentityOfDatasetField() {
+		// values that would be abbreviated by toString
+		final Dataset a = DatasetFactory.zeros(new int[] {100, 100}, Dataset.INT8);
+		final Dataset b = a.clone();
+		b.set(1, 50, 50);
+
+		assertEquals(getIdentity(new MaskModel(a)), getIdentity(new MaskModel(a.clone())));
+		assertNotEquals(getIdentity(new MaskModel(a)), getIdentity(new MaskModel(b)));
+		assertFalse(getIdentity(new MaskModel(a)).equals(getIdentity(new MaskModel(null))));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String getIdentity(final MaskModel model) {
+		IOperation<MaskModel, OperationData> op = (IOperation<MaskModel, OperationData>) Proxy.newProxyInstance(
+				OperationDataCacheTest.class.getClassLoader(), new Class<?>[] {IOperation.class}, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getId")) {
+							return "mask";
+						}
+						if (method.getName().equals("getModel")) {
+							return model;
+						}
+						return null;
+					}
+				});
+		return SeriesJournal.getIdentity(new IOperation[] {op});
+	}
+}
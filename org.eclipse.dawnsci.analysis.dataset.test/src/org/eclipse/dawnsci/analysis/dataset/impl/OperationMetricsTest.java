@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.IBatchOperation;
+import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.OperationException;
+import org.eclipse.dawnsci.analysis.api.processing.OperationMetrics;
+import org.eclipse.dawnsci.analysis.api.processing.OperationStatistics;
+import org.eclipse.dawnsci.analysis.api.processing.TimeHistogram;
+import org.junit.Test;
+
+public class OperationMetricsTest {
+
+	private static final long US = 1000;
+
+	@Test
+	public void testBins() {
+		final TimeHistogram h = new TimeHistogram();
+		// bin 0 is under 1us and bin i is [2^(i-1), 2^i) us
+		final long[] durations = new long[] {-5, 0, 999, US, 2 * US - 1, 2 * US, 4 * US - 1, 4 * US, 1000 * US, Long.MAX_VALUE};
+		final int[] bins = new int[] {0, 0, 0, 1, 1, 2, 2, 3, 10, TimeHistogram.BINS - 1};
+		final long[] expected = new long[TimeHistogram.BINS];
+		for (int i = 0; i < durations.length; i++) {
+			h.add(durations[i]);
+			expected[bins[i]]++;
+		}
+		assertArrayEquals(expected, h.getCounts());
+		assertEquals(durations.length, h.getCount());
+
+		for (int i = 0; i < durations.length; i++) {
+			final long d = Math.max(0, durations[i]);
+			final int b = bins[i];
+			assertTrue(d < TimeHistogram.getUpperBound(b) || b == TimeHistogram.BINS - 1);
+			if (b > 0) {
+				assertTrue(d >= TimeHistogram.getUpperBound(b - 1));
+			}
+		}
+		assertEquals(US, TimeHistogram.getUpperBound(0));
+		assertEquals(1024 * US, TimeHistogram.getUpperBound(10));
+		assertEquals(Long.MAX_VALUE, TimeHistogram.getUpperBound(TimeHistogram.BINS - 1));
+
+		// counts are a copy
+		h.getCounts()[0] = 100;
+		assertEquals(expected[0], h.getCounts()[0]);
+	}
+
+	@Test
+	public void testSummaries() {
+		final TimeHistogram h = new TimeHistogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getTotal());
+		assertEquals(0, h.getMean(), 0);
+		assertEquals(0, h.getMin());
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getPercentile(50));
+
+		h.add(3 * US);
+		h.add(-1); // clamped
+		h.add(9 * US);
+		assertEquals(3, h.getCount());
+		assertEquals(12 * US, h.getTotal());
+		assertEquals(4 * US, h.getMean(), 0);
+		assertEquals(0, h.getMin());
+		assertEquals(9 * US, h.getMax());
+
+		final TimeHistogram copy = new TimeHistogram(h);
+		h.add(100 * US);
+		assertEquals(3, copy.getCount());
+		assertEquals(9 * US, copy.getMax());
+		assertEquals(4, h.getCount());
+		assertEquals(100 * US, h.getMax());
+	}
+
+	@Test
+	public void testPercentiles() {
+		final TimeHistogram h = new TimeHistogram();
+		for (int i = 0; i < 90; i++) {
+			h.add(500); // bin 0
+		}
+		for (int i = 0; i < 9; i++) {
+			h.add(3 * US); // bin 2
+		}
+		h.add(100 * US); // bin 7
+
+		// upper bound of bin holding value of rank ceil(p * n / 100), at least 1
+		assertEquals(US, h.getPercentile(0));
+		assertEquals(US, h.getPercentile(50));
+		assertEquals(US, h.getPercentile(90));
+		assertEquals(4 * US, h.getPercentile(90.5));
+		assertEquals(4 * US, h.getPercentile(99));
+		// clipped to longest duration
+		assertEquals(100 * US, h.getPercentile(99.5));
+		assertEquals(100 * US, h.getPercentile(100));
+
+		final TimeHistogram one = new TimeHistogram();
+		one.add(1500);
+		assertEquals(1500, one.getPercentile(0));
+		assertEquals(1500, one.getPercentile(100));
+
+		final TimeHistogram longest = new TimeHistogram();
+		longest.add(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, longest.getPercentile(50));
+
+		for (double p : new double[] {-1, 100.5}) {
+			try {
+				h.getPercentile(p);
+				fail("Percentile " + p + " should be rejected");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testStatistics() {
+		final OperationMetrics metrics = new OperationMetrics();
+		assertNull(metrics.getStatistics("a"));
+		assertTrue(metrics.getStatistics().isEmpty());
+
+		metrics.addExecution("b", 5 * US, 2 * US, 100, false);
+		metrics.addExecution("b", 7 * US, -1, -1, true); // unknown cpu and allocation
+		metrics.addExecution("b", 1 * US, 0, 0, false);
+		metrics.addExecution("a", 2 * US, 1 * US, 50, false);
+
+		final OperationStatistics b = metrics.getStatistics("b");
+		assertEquals("b", b.getId());
+		assertEquals(3, b.getCount());
+		assertEquals(1, b.getFailures());
+		assertEquals(100, b.getAllocatedBytes());
+		assertEquals(13 * US, b.getWallTime().getTotal());
+		assertEquals(2, b.getCpuTime().getCount());
+		assertEquals(2 * US, b.getCpuTime().getTotal());
+		assertEquals(0, b.getCpuTime().getMin());
+		assertTrue(b.toString().startsWith("b: count=3, failures=1"));
+
+		final Map<String, OperationStatistics> all = metrics.getStatistics();
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(all.keySet()));
+		assertEquals(1, all.get("a").getCount());
+
+		// snapshots do not change
+		metrics.addExecution("b", 1 * US, 1 * US, 10, true);
+		assertEquals(3, b.getCount());
+		assertEquals(1, b.getFailures());
+		assertEquals(3, all.get("b").getCount());
+		assertEquals(4, metrics.getStatistics("b").getCount());
+		assertEquals(2, metrics.getStatistics("b").getFailures());
+		b.getWallTime().add(1);
+		assertEquals(4, metrics.getStatistics("b").getWallTime().getCount());
+	}
+
+	@Test
+	public void testReadsFramesAndReset() throws Exception {
+		final OperationMetrics metrics = new OperationMetrics();
+		assertEquals(0, metrics.getFramesPerSecond(), 0);
+		metrics.addRead(3 * US);
+		metrics.addRead(5 * US);
+		final TimeHistogram reads = metrics.getReadTime();
+		assertEquals(2, reads.getCount());
+		metrics.addRead(US);
+		assertEquals(2, reads.getCount());
+
+		final Dataset data = DatasetFactory.createRange(24, Dataset.FLOAT64).reshape(2, 3, 4);
+		final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, data.getShape(), new ILazyLoader() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean isFileReadable() {
+				return true;
+			}
+
+			@Override
+			public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+				return data.getSlice(start, stop, step);
+			}
+		});
+		final IDataset slice = metrics.getSlice(lazy, null, new Slice(1, 2));
+		assertEquals(data.getSlice(new int[] {1, 0, 0}, new int[] {2, 3, 4}, null), slice);
+		assertEquals(4, metrics.getReadTime().getCount());
+
+		Thread.sleep(5);
+		metrics.frameCompleted();
+		Thread.sleep(5);
+		metrics.frameCompleted();
+		assertEquals(2, metrics.getFrames());
+		final double fps = metrics.getFramesPerSecond();
+		assertTrue(fps > 0 && fps < 2000);
+
+		metrics.addExecution("a", US, US, 1, false);
+		metrics.reset();
+		assertEquals(0, metrics.getFrames());
+		assertEquals(0, metrics.getFramesPerSecond(), 0);
+		assertEquals(0, metrics.getReadTime().getCount());
+		assertTrue(metrics.getStatistics().isEmpty());
+
+		// one frame without a read has no rate
+		metrics.frameCompleted();
+		assertEquals(1, metrics.getFrames());
+		assertEquals(0, metrics.getFramesPerSecond(), 0);
+
+		assertFalse(metrics.isTracing());
+		metrics.setTracing(true);
+		assertTrue(metrics.isTracing());
+		metrics.addRead(US);
+		metrics.setTracing(false);
+	}
+
+	@Test
+	public void testExecute() {
+		final OperationMetrics metrics = new OperationMetrics();
+		final Dataset slice = DatasetFactory.createRange(10, Dataset.FLOAT64);
+		final IOperation<?, OperationData> op = operation("op", false);
+		final OperationData out = metrics.execute(op, slice, null);
+		assertSame(slice, out.getData());
+		assertEquals(1, metrics.getStatistics("op").getCount());
+		assertEquals(0, metrics.getStatistics("op").getFailures());
+
+		final IOperation<?, OperationData> failing = operation("failing", true);
+		try {
+			metrics.execute(failing, slice, null);
+			fail("Exception should be passed on");
+		} catch (OperationException e) {
+			// expected
+		}
+		assertEquals(1, metrics.getStatistics("failing").getCount());
+		assertEquals(1, metrics.getStatistics("failing").getFailures());
+
+		// each output of batch is recorded as an execution
+		final IBatchOperation<?, OperationData> batch = batchOperation("batch", 4, false);
+		final List<OperationData> outs = metrics.executeBatch(batch, slice, null);
+		assertEquals(4, outs.size());
+		OperationStatistics s = metrics.getStatistics("batch");
+		assertEquals(4, s.getCount());
+		assertEquals(0, s.getFailures());
+		final long[] counts = s.getWallTime().getCounts();
+		long max = 0;
+		for (long c : counts) {
+			max = Math.max(max, c);
+		}
+		assertEquals(4, max); // equal shares
+
+		// failed batch counts once
+		try {
+			metrics.executeBatch(batchOperation("batch", 4, true), slice, null);
+			fail("Exception should be passed on");
+		} catch (OperationException e) {
+			// expected
+		}
+		s = metrics.getStatistics("batch");
+		assertEquals(5, s.getCount());
+		assertEquals(1, s.getFailures());
+	}
+
+	@Test
+	public void testMXBean() throws Exception {
+		final OperationMetrics metrics = new OperationMetrics();
+		final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName("org.eclipse.dawnsci.analysis.api.processing:type=OperationMetrics,name=" + ObjectName.quote("test, pipeline"));
+		metrics.register("test, pipeline");
+		try {
+			assertTrue(mbs.isRegistered(name));
+			metrics.addExecution("op", 3 * US, 2 * US, 64, false);
+			metrics.addExecution("op", 5 * US, 2 * US, 64, true);
+			metrics.addRead(7 * US);
+			metrics.frameCompleted();
+
+			assertEquals(1L, mbs.getAttribute(name, "Frames"));
+			assertEquals(Boolean.FALSE, mbs.getAttribute(name, "Tracing"));
+			mbs.setAttribute(name, new Attribute("Tracing", Boolean.TRUE));
+			assertTrue(metrics.isTracing());
+			metrics.setTracing(false);
+
+			final CompositeData read = (CompositeData) mbs.getAttribute(name, "ReadTime");
+			assertEquals(1L, read.get("count"));
+			assertEquals(7 * US, read.get("total"));
+			assertEquals(7 * US, read.get("max"));
+			assertEquals(TimeHistogram.BINS, ((long[]) read.get("counts")).length);
+
+			final TabularData stats = (TabularData) mbs.getAttribute(name, "Statistics");
+			assertEquals(1, stats.size());
+			final CompositeData row = stats.get(new Object[] {"op"});
+			final CompositeData op = (CompositeData) row.get("value");
+			assertEquals("op", op.get("id"));
+			assertEquals(2L, op.get("count"));
+			assertEquals(1L, op.get("failures"));
+			assertEquals(128L, op.get("allocatedBytes"));
+			final CompositeData wall = (CompositeData) op.get("wallTime");
+			assertEquals(8 * US, wall.get("total"));
+
+			mbs.invoke(name, "reset", null, null);
+			assertEquals(0L, mbs.getAttribute(name, "Frames"));
+			assertTrue(metrics.getStatistics().isEmpty());
+
+			// registering again replaces the bean
+			final OperationMetrics other = new OperationMetrics();
+			other.register("test, pipeline");
+			other.frameCompleted();
+			assertEquals(1L, mbs.getAttribute(name, "Frames"));
+			other.unregister();
+			assertFalse(mbs.isRegistered(name));
+		} finally {
+			metrics.unregister();
+		}
+		assertFalse(mbs.isRegistered(name));
+		metrics.unregister();
+	}
+
+	@Test
+	public void testDefault() {
+		assertSame(OperationMetrics.getDefault(), OperationMetrics.getDefault());
+	}
+
+	private static Object handle(Method method, Object[] args, String id, boolean fails, int outputs) throws Throwable {
+		final String m = method.getName();
+		if (m.equals("getId")) {
+			return id;
+		}
+		if (m.equals("execute") || m.equals("executeBatch")) {
+			if (fails) {
+				throw new OperationException(null, "Failed");
+			}
+			final IDataset d = (IDataset) args[0];
+			if (m.equals("execute")) {
+				return new OperationData(d);
+			}
+			final List<OperationData> list = new ArrayList<OperationData>();
+			for (int i = 0; i < outputs; i++) {
+				list.add(new OperationData(d));
+			}
+			return list;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static IOperation<?, OperationData> operation(final String id, final boolean fails) {
+		return (IOperation<?, OperationData>) Proxy.newProxyInstance(OperationMetricsTest.class.getClassLoader(),
+				new Class<?>[] {IOperation.class}, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return handle(method, args, id, fails, 1);
+					}
+				});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static IBatchOperation<?, OperationData> batchOperation(final String id, final int outputs, final boolean fails) {
+		return (IBatchOperation<?, OperationData>) Proxy.newProxyInstance(OperationMetricsTest.class.getClassLoader(),
+				new Class<?>[] {IBatchOperation.class}, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return handle(method, args, id, fails, outputs);
+					}
+				});
+	}
+}
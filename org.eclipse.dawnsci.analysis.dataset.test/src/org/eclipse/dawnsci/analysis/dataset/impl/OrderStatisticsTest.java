@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class OrderStatisticsTest {
+
+	private static final double[] QUANTILES = new double[] {0.75, 0, 0.1, 0.25, 0.5, 0.5, 0.9, 1, 1. / 3};
+
+	@Test
+	public void testQuantilesMatchSorted() {
+		final java.util.Random random = new java.util.Random(1);
+		for (int n : new int[] {1, 2, 3, 5, 16, 17, 100, 1001}) {
+			for (int t = 0; t < 4; t++) {
+				final double[] values = new double[n];
+				for (int i = 0; i < n; i++) {
+					values[i] = t == 0 ? random.nextGaussian() : random.nextInt(5); // with many ties
+				}
+				if (t == 2) {
+					values[random.nextInt(n)] = Double.NaN;
+				}
+				if (t == 3) {
+					Arrays.fill(values, n / 2, n, Double.NaN);
+				}
+				final double[] sorted = values.clone();
+				Arrays.sort(sorted);
+				assertArrayEquals("Length " + n + ", case " + t, sortedQuantiles(sorted, QUANTILES),
+						OrderStatistics.quantile(values.clone(), 0, n, QUANTILES), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSelect() {
+		final java.util.Random random = new java.util.Random(2);
+		final int n = 500;
+		final double[][] inputs = new double[5][n];
+		for (int i = 0; i < n; i++) {
+			inputs[0][i] = random.nextDouble();
+			inputs[1][i] = i;                        // sorted
+			inputs[2][i] = n - i;                    // reversed
+			inputs[3][i] = 7;                        // all equal
+			inputs[4][i] = i < n / 2 ? i : n - i;    // organ pipe
+		}
+		for (double[] input : inputs) {
+			final double[] sorted = input.clone();
+			Arrays.sort(sorted);
+			for (int k : new int[] {0, 1, n / 3, n / 2, n - 2, n - 1}) {
+				final double[] values = input.clone();
+				OrderStatistics.select(values, 0, n, k);
+				assertEquals(sorted[k], values[k], 0);
+				for (int i = 0; i < k; i++) {
+					assertTrue(values[i] <= values[k]);
+				}
+				for (int i = k + 1; i < n; i++) {
+					assertTrue(values[i] >= values[k]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSubrange() {
+		final double[] values = new double[] {9, 9, 4, 1, 3, 2, 9, 9};
+		assertArrayEquals(new double[] {1, 2.5, 4}, OrderStatistics.quantile(values, 2, 6, 0, 0.5, 1), 0);
+		assertEquals(9, values[0], 0);
+		assertEquals(9, values[7], 0);
+	}
+
+	@Test
+	public void testStatsMatchesSorted() {
+		final Dataset a = Random.randn(7, 11, 6);
+		final double[] sorted = new DoubleDataset(a).getData();
+		Arrays.sort(sorted);
+		assertEquals(sortedQuantiles(sorted, 0.5)[0], ((Number) Stats.median(a)).doubleValue(), 0);
+		assertArrayEquals(sortedQuantiles(sorted, QUANTILES), Stats.quantile(a, QUANTILES), 0);
+		final double[] quartiles = sortedQuantiles(sorted, 0.25, 0.75);
+		assertEquals(quartiles[1] - quartiles[0], ((Number) Stats.iqr(a)).doubleValue(), 1e-15);
+
+		for (int axis = 0; axis < a.getRank(); axis++) {
+			checkAxis(a, axis);
+		}
+	}
+
+	@Test
+	public void testViews() {
+		final Dataset big = Random.randn(14, 11, 12);
+		final Dataset view = big.getSliceView(new int[] {1, 0, 2}, null, new int[] {2, 1, 2});
+		final Dataset transposed = Random.randn(6, 11, 7).getTransposedView(2, 0, 1);
+		for (Dataset v : new Dataset[] {view, transposed}) {
+			final double[] sorted = new DoubleDataset(v).getData();
+			Arrays.sort(sorted);
+			assertArrayEquals(sortedQuantiles(sorted, QUANTILES), Stats.quantile(v, QUANTILES), 0);
+			for (int axis = 0; axis < v.getRank(); axis++) {
+				checkAxis(v, axis);
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyAndRankZero() {
+		final Dataset empty = AbstractDataset.zeros(new int[] {0}, Dataset.FLOAT64);
+		assertTrue(Double.isNaN(((Number) Stats.median(empty)).doubleValue()));
+		assertTrue(Double.isNaN(Stats.quantile(empty, 0.25)));
+
+		final Dataset lines = AbstractDataset.zeros(new int[] {3, 0}, Dataset.FLOAT64);
+		assertArrayEquals(new int[] {0}, Stats.median(lines, 0).getShapeRef());
+
+		final Dataset single = DatasetFactory.createFromObject(4.5);
+		assertEquals(0, single.getRank());
+		assertEquals(4.5, ((Number) Stats.median(single)).doubleValue(), 0);
+		assertArrayEquals(new double[] {4.5, 4.5}, Stats.quantile(single, 0.1, 0.9), 0);
+	}
+
+	@Test
+	public void testApproximateQuantile() {
+		final Dataset a = Random.randn(100000);
+		final double[] exact = Stats.quantile(a, 0.1, 0.5, 0.9);
+		assertArrayEquals(exact, Stats.approximateQuantile(a, 0.1, 0.5, 0.9), 0.02);
+
+		final PSquareQuantile few = new PSquareQuantile(0.5);
+		for (double v : new double[] {5, Double.NaN, 1, 3}) {
+			few.add(v);
+		}
+		assertEquals(3, few.getQuantile(), 0);
+	}
+
+	/**
+	 * Check quantiles along axis against those of sorted lines
+	 */
+	private static void checkAxis(Dataset a, int axis) {
+		final Dataset[] q = Stats.quantile(a, axis, QUANTILES);
+		final Dataset median = Stats.median(a, axis);
+		final Dataset moved = a.getTransposedView(moveLast(a.getRank(), axis)).clone();
+		final int alen = a.getShapeRef()[axis];
+		final double[] data = ((DoubleDataset) moved).getData();
+		final int lines = data.length / alen;
+		assertEquals(lines, median.getSize());
+		for (int l = 0; l < lines; l++) {
+			final double[] line = Arrays.copyOfRange(data, l * alen, (l + 1) * alen);
+			Arrays.sort(line);
+			final double[] expected = sortedQuantiles(line, QUANTILES);
+			for (int i = 0; i < QUANTILES.length; i++) {
+				assertEquals("Axis " + axis, expected[i], q[i].getElementDoubleAbs(l), 0);
+			}
+			assertEquals("Axis " + axis, sortedQuantiles(line, 0.5)[0], median.getElementDoubleAbs(l), 0);
+		}
+	}
+
+	private static int[] moveLast(int rank, int axis) {
+		final int[] axes = new int[rank];
+		for (int i = 0, j = 0; i < rank; i++) {
+			if (i != axis) {
+				axes[j++] = i;
+			}
+		}
+		axes[rank - 1] = axis;
+		return axes;
+	}
+
+	/**
+	 * Quantiles interpolated from sorted values as Stats found them before selection was used
+	 */
+	private static double[] sortedQuantiles(double[] sorted, double... q) {
+		final double[] points = new double[q.length];
+		for (int i = 0; i < q.length; i++) {
+			double f = (sorted.length - 1) * q[i];
+			if (f < 0) {
+				points[i] = Double.NaN;
+				continue;
+			}
+			final int qpt = (int) Math.floor(f);
+			f -= qpt;
+			double quantile = sorted[qpt];
+			if (f > 0) {
+				quantile = (1 - f) * quantile + f * sorted[qpt + 1];
+			}
+			points[i] = quantile;
+		}
+		return points;
+	}
+}
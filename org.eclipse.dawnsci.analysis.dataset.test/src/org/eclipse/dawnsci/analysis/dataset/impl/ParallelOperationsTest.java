@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelOperationsTest {
+
+	private static final String[] MATHS = new String[] {"add", "subtract", "multiply", "divide", "dividez", "divideTowardsFloor",
+		"power", "remainder", "maximum", "minimum"};
+	private static final String[] BITWISE = new String[] {"bitwiseAnd", "bitwiseOr", "bitwiseXor", "leftShift", "rightShift", "unsignedRightShift"};
+	private static final String[] COMPARISONS = new String[] {"equalTo", "greaterThan", "greaterThanOrEqualTo", "lessThan", "lessThanOrEqualTo",
+		"logicalAnd", "logicalOr", "logicalXor"};
+
+	private static final int ROWS = 64;
+	private static final int COLS = 300;
+
+	private ForkJoinPool pool;
+	private int threshold;
+
+	@Before
+	public void setUp() {
+		threshold = ParallelOperations.getThreshold();
+		pool = new ForkJoinPool(4);
+		ParallelOperations.setPool(pool);
+		ParallelOperations.setThreshold(0);
+	}
+
+	@After
+	public void tearDown() {
+		ParallelOperations.setThreshold(threshold);
+		ParallelOperations.setPool(null);
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testMathsMatchesSerial() throws Exception {
+		final Dataset a = Random.randn(ROWS, COLS).imultiply(10);
+		final Dataset b = Maths.add(Random.randint(1, 20, new int[] {ROWS, COLS}), 0.5);
+		final Dataset row = b.getSlice(new int[] {3, 0}, new int[] {4, COLS}, null).squeeze();
+		final Dataset column = b.getSlice(new int[] {0, 5}, new int[] {ROWS, 6}, null);
+		assertTrue(ParallelOperations.isWorthwhile(a));
+
+		for (String name : MATHS) {
+			final Method m = Maths.class.getMethod(name, Object.class, Object.class, Dataset.class, boolean.class);
+			check(name, m, a, b);
+			check(name, m, a, row);
+			check(name, m, column, a);
+			check(name, m, stridedView(a), stridedView(b));
+			check(name, m, a, 3);
+			check(name, m, Maths.floor(a).cast(Dataset.INT32), column.cast(Dataset.INT32));
+		}
+	}
+
+	@Test
+	public void testBitwiseMatchesSerial() throws Exception {
+		final Dataset a = Random.randint(-1000, 1000, new int[] {ROWS, COLS});
+		final Dataset b = Random.randint(0, 31, new int[] {ROWS, COLS});
+		for (String name : BITWISE) {
+			final Method m = Maths.class.getMethod(name, Object.class, Object.class, Dataset.class, boolean.class);
+			check(name, m, a, b);
+			check(name, m, stridedView(a), b.getSlice(new int[] {0, 7}, new int[] {ROWS, 8}, null));
+		}
+	}
+
+	@Test
+	public void testComparisonsMatchSerial() throws Exception {
+		final Dataset a = Random.randint(0, 3, new int[] {ROWS, COLS});
+		final Dataset b = Random.randint(0, 3, new int[] {ROWS, COLS});
+		for (String name : COMPARISONS) {
+			final Method m = Comparisons.class.getMethod(name, Object.class, Object.class, BooleanDataset.class, boolean.class);
+			check(name, m, a, b);
+			check(name, m, stridedView(a), b.getSlice(new int[] {2, 0}, new int[] {3, COLS}, null));
+			check(name, m, a, 1);
+		}
+	}
+
+	@Test
+	public void testEmptyAndRankZero() throws Exception {
+		final Dataset empty = AbstractDataset.zeros(new int[] {0}, Dataset.FLOAT64);
+		final Dataset single = DatasetFactory.createFromObject(2.5);
+		assertEquals(0, single.getRank());
+		for (String name : MATHS) {
+			final Method m = Maths.class.getMethod(name, Object.class, Object.class, Dataset.class, boolean.class);
+			check(name, m, empty, empty);
+			check(name, m, single, single);
+		}
+		for (String name : COMPARISONS) {
+			final Method m = Comparisons.class.getMethod(name, Object.class, Object.class, BooleanDataset.class, boolean.class);
+			check(name, m, empty, empty);
+			check(name, m, single, single);
+		}
+	}
+
+	@Test
+	public void testOutputGiven() {
+		final Dataset a = Random.rand(ROWS, COLS);
+		final Dataset b = Random.rand(ROWS, COLS);
+		final Dataset serial = Maths.multiply(a, b, null, false);
+
+		final Dataset big = AbstractDataset.zeros(new int[] {2 * ROWS, COLS}, Dataset.FLOAT64);
+		final Dataset o = big.getSliceView(null, null, new int[] {2, 1});
+		Maths.multiply(a, b, o, true);
+		checkValues("Output view", serial, o);
+		assertEquals(0, big.getSlice(new int[] {1, 0}, null, new int[] {2, 1}).max().doubleValue(), 0);
+	}
+
+	private static void check(String name, Method m, Object a, Object b) throws Exception {
+		final Dataset serial = (Dataset) m.invoke(null, a, b, null, false);
+		final Dataset parallel = (Dataset) m.invoke(null, a, b, null, true);
+		checkValues(name, serial, parallel);
+	}
+
+	private static void checkValues(String name, Dataset expected, Dataset actual) {
+		assertEquals(name, expected.getDtype(), actual.getDtype());
+		assertArrayEquals(name, expected.getShapeRef(), actual.getShapeRef());
+		final double[] e = new DoubleDataset(expected).getData();
+		final double[] f = new DoubleDataset(actual).getData();
+		assertArrayEquals(name, e, f, 0);
+	}
+
+	/**
+	 * @return view over every other row of a larger dataset that holds the same values
+	 */
+	private static Dataset stridedView(Dataset d) {
+		final int[] stop = d.getShape();
+		stop[0] *= 2;
+		final Dataset big = AbstractDataset.zeros(stop, d.getDtype());
+		final int[] step = new int[] {2, 1};
+		big.setSlice(d, null, stop, step);
+		return big.getSliceView(null, stop, step);
+	}
+}
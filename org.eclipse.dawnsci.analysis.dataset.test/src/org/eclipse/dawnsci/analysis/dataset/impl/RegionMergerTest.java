@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.dawnsci.analysis.api.slice.RegionMerger;
+import org.junit.Test;
+
+public class RegionMergerTest {
+
+	@Test
+	public void testMerge() {
+		final int[][] start = new int[][] {{0, 0}, {1, 0}, {2, 0}, {4, 0}, {4, 2}, {5, 0}};
+		final int[][] stop = new int[][] {{1, 4}, {2, 4}, {3, 4}, {5, 2}, {5, 4}, {6, 4}};
+		final int[] bstart = new int[2];
+		final int[] bstop = new int[2];
+
+		// adjacent rows
+		assertEquals(3, RegionMerger.merge(start, stop, null, 0, Long.MAX_VALUE, bstart, bstop));
+		assertArrayEquals(new int[] {0, 0}, bstart);
+		assertArrayEquals(new int[] {3, 4}, bstop);
+
+		// gap before next row
+		assertEquals(3, RegionMerger.merge(start, stop, null, 2, Long.MAX_VALUE, bstart, bstop));
+		assertArrayEquals(new int[] {2, 0}, bstart);
+		assertArrayEquals(new int[] {3, 4}, bstop);
+
+		// halves of row then next row
+		assertEquals(6, RegionMerger.merge(start, stop, null, 3, Long.MAX_VALUE, bstart, bstop));
+		assertArrayEquals(new int[] {4, 0}, bstart);
+		assertArrayEquals(new int[] {6, 4}, bstop);
+
+		// limited size
+		assertEquals(2, RegionMerger.merge(start, stop, null, 0, 8, bstart, bstop));
+		assertArrayEquals(new int[] {2, 4}, bstop);
+		assertEquals(1, RegionMerger.merge(start, stop, null, 0, 7, bstart, bstop));
+		assertArrayEquals(new int[] {1, 4}, bstop);
+
+		// non-unit steps
+		final int[][] step = new int[][] {null, {1, 1}, {1, 2}, {1, 1}, {1, 1}, {1, 1}};
+		assertEquals(2, RegionMerger.merge(start, stop, step, 0, Long.MAX_VALUE, bstart, bstop));
+		assertEquals(3, RegionMerger.merge(start, stop, step, 2, Long.MAX_VALUE, bstart, bstop));
+		assertArrayEquals(new int[] {2, 0}, bstart);
+		assertArrayEquals(new int[] {3, 4}, bstop);
+
+		// other rank
+		final int[][] mixed = new int[][] {{0, 0}, {1}};
+		assertEquals(1, RegionMerger.merge(mixed, new int[][] {{1, 4}, {2}}, null, 0, Long.MAX_VALUE, bstart, bstop));
+	}
+
+	@Test
+	public void testRegions() {
+		final int[][] region = RegionMerger.getOffsetRegion(new int[] {4, 2}, new int[] {5, 4}, new int[] {3, 0});
+		assertArrayEquals(new int[] {1, 2}, region[0]);
+		assertArrayEquals(new int[] {2, 4}, region[1]);
+
+		assertEquals(6, RegionMerger.getSize(new int[] {1, 2}, new int[] {3, 5}));
+		assertEquals(0, RegionMerger.getSize(new int[] {1, 2}, new int[] {1, 5}));
+		assertTrue(RegionMerger.isUnitStep(null));
+		assertTrue(RegionMerger.isUnitStep(new int[] {1, 1}));
+		assertFalse(RegionMerger.isUnitStep(new int[] {1, -1}));
+	}
+}
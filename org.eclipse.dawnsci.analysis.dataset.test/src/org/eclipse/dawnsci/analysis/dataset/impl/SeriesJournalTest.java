@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationException;
+import org.eclipse.dawnsci.analysis.api.processing.SeriesJournal;
+import org.eclipse.dawnsci.analysis.api.processing.model.AbstractOperationModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SeriesJournalTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static class ThresholdModel extends AbstractOperationModel {
+		private double threshold;
+
+		public ThresholdModel(double threshold) {
+			this.threshold = threshold;
+		}
+	}
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("series", SeriesJournal.EXTENSION);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		final IOperation<?, ?>[] series = series("threshold", 0.5);
+		SeriesJournal journal = new SeriesJournal(file, true);
+		journal.setSyncInterval(0);
+		journal.open(series);
+		assertEquals(0, journal.getCompletedCount());
+		for (int i = 0; i < 3; i++) {
+			journal.complete(frame(i));
+		}
+		journal.complete(frame(1)); // only recorded once
+		journal.close();
+		assertEquals(5, readLines().size()); // header, series and slices
+
+		journal = new SeriesJournal(file, true);
+		journal.open(series);
+		assertEquals(3, journal.getCompletedCount());
+		assertTrue(journal.isCompleted(frame(2)));
+		assertFalse(journal.isCompleted(frame(3)));
+		journal.complete(frame(3));
+		journal.close();
+
+		journal = new SeriesJournal(file, true);
+		journal.open(series);
+		assertEquals(4, journal.getCompletedCount());
+		journal.close();
+
+		// starting afresh forgets earlier run
+		journal = new SeriesJournal(file, false);
+		journal.open(series);
+		assertEquals(0, journal.getCompletedCount());
+		journal.close();
+		assertEquals(2, readLines().size());
+	}
+
+	@Test
+	public void testTornFinalLine() throws Exception {
+		final IOperation<?, ?>[] series = series("threshold", 0.5);
+		SeriesJournal journal = new SeriesJournal(file, true);
+		journal.open(series);
+		journal.complete(frame(0));
+		journal.complete(frame(1));
+		journal.close();
+
+		// crash during write of third slice
+		final String third = Slice.createString(frame(2));
+		append(third.substring(0, third.length() - 2));
+
+		journal = new SeriesJournal(file, true);
+		journal.open(series);
+		assertEquals(2, journal.getCompletedCount());
+		assertFalse(journal.isCompleted(frame(2)));
+		journal.complete(frame(2));
+		journal.close();
+
+		final List<String> lines = readLines();
+		assertEquals(5, lines.size());
+		assertEquals(third, lines.get(4));
+
+		journal = new SeriesJournal(file, true);
+		journal.open(series);
+		assertEquals(3, journal.getCompletedCount());
+		assertTrue(journal.isCompleted(frame(2)));
+		journal.close();
+
+		// torn series line leaves no series to resume
+		Files.write(file.toPath(), "# Operation series journal\nseries thr".getBytes(UTF8));
+		checkRejected(series);
+	}
+
+	@Test
+	public void testDifferentSeries() throws Exception {
+		final IOperation<?, ?>[] series = series("threshold", 0.5);
+		final SeriesJournal journal = new SeriesJournal(file, true);
+		journal.open(series);
+		journal.complete(frame(0));
+		journal.close();
+
+		checkRejected(series("threshold", 0.25)); // other model
+		checkRejected(series("mask", 0.5)); // other operation
+		checkRejected(series("threshold", 0.5, "mask", 0.5)); // longer chain
+		checkRejected(new IOperation<?, ?>[0]);
+
+		// journal is left as it was
+		final SeriesJournal same = new SeriesJournal(file, true);
+		same.open(series("threshold", 0.5));
+		assertTrue(same.isCompleted(frame(0)));
+		same.close();
+
+		// starting afresh replaces journal
+		final SeriesJournal other = new SeriesJournal(file, false);
+		other.open(series("mask", 0.5));
+		assertEquals(0, other.getCompletedCount());
+		other.close();
+		checkRejected(series);
+
+		// no series
+		Files.write(file.toPath(), "# Operation series journal\n[0:1, :]\n".getBytes(UTF8));
+		checkRejected(series);
+	}
+
+	@Test
+	public void testState() throws Exception {
+		final SeriesJournal journal = new SeriesJournal(file, false);
+		assertEquals(file, journal.getFile());
+		assertEquals(new File("/tmp/out.nxs" + SeriesJournal.EXTENSION), SeriesJournal.getJournalFile("/tmp/out.nxs"));
+		try {
+			journal.complete(frame(0));
+			fail("Journal should not be written before it is open");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		journal.open(series("threshold", 0.5));
+		try {
+			journal.open(series("threshold", 0.5));
+			fail("Journal should not be opened twice");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		journal.close();
+		journal.close();
+	}
+
+	private void checkRejected(IOperation<?, ?>[] series) throws IOException {
+		final SeriesJournal journal = new SeriesJournal(file, true);
+		try {
+			journal.open(series);
+			fail("Journal for another series should be rejected");
+		} catch (OperationException e) {
+			// expected
+		} finally {
+			journal.close();
+		}
+	}
+
+	private void append(String text) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(text.getBytes(UTF8));
+		} finally {
+			out.close();
+		}
+	}
+
+	private List<String> readLines() throws IOException {
+		return Files.readAllLines(file.toPath(), UTF8);
+	}
+
+	private static Slice[] frame(int i) {
+		return new Slice[] {new Slice(i, i + 1, 1), new Slice(0, 10, 1)};
+	}
+
+	/**
+	 * @param idsAndThresholds pairs of operation id and threshold of its model
+	 * @return series
+	 */
+	private static IOperation<?, ?>[] series(Object... idsAndThresholds) {
+		final IOperation<?, ?>[] series = new IOperation<?, ?>[idsAndThresholds.length / 2];
+		for (int i = 0; i < series.length; i++) {
+			final String id = (String) idsAndThresholds[2 * i];
+			final ThresholdModel model = new ThresholdModel((Double) idsAndThresholds[2 * i + 1]);
+			series[i] = (IOperation<?, ?>) Proxy.newProxyInstance(SeriesJournalTest.class.getClassLoader(),
+					new Class<?>[] {IOperation.class}, new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							if (method.getName().equals("getId")) {
+								return id;
+							}
+							if (method.getName().equals("getModel")) {
+								return model;
+							}
+							return null;
+						}
+					});
+		}
+		return series;
+	}
+}
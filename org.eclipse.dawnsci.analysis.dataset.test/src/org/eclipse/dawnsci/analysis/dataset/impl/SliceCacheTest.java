@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.junit.Test;
+
+public class SliceCacheTest {
+
+	private static final int[] SHAPE = new int[] {10, 4, 5};
+	private static final long FRAME_BYTES = 4 * 5 * 8;
+
+	/**
+	 * Loader of a range dataset that counts reads and returns the slice it keeps
+	 */
+	private static class CountingLoader implements ILazyLoader {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data = DatasetFactory.createRange(10 * 4 * 5, Dataset.FLOAT64).reshape(SHAPE);
+		private final AtomicInteger reads = new AtomicInteger();
+		private Dataset last;
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			reads.incrementAndGet();
+			last = data.getSlice(start, stop, step);
+			return last;
+		}
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		final SliceCache cache = new SliceCache(SliceCache.DEFAULT_BUDGET);
+		final CountingLoader loader = new CountingLoader();
+		final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, SHAPE, loader);
+		lazy.setSliceCache(cache, "file.h5", "/entry/data");
+
+		final IDataset first = lazy.getSlice(new int[] {2, 0, 0}, new int[] {3, 4, 5}, null);
+		assertEquals(1, loader.reads.get());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getCount());
+		assertEquals(FRAME_BYTES, cache.getBytes());
+
+		final IDataset second = lazy.getSlice(new int[] {2, 0, 0}, new int[] {3, 4, 5}, null);
+		assertEquals(1, loader.reads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(first, second);
+		assertEquals(loader.data.getSlice(new int[] {2, 0, 0}, new int[] {3, 4, 5}, null), second);
+
+		// other regions and steps are misses
+		lazy.getSlice(new int[] {3, 0, 0}, new int[] {4, 4, 5}, null);
+		lazy.getSlice(new int[] {2, 0, 0}, new int[] {3, 4, 5}, new int[] {1, 2, 1});
+		assertEquals(3, loader.reads.get());
+		assertEquals(3, cache.getMisses());
+
+		// same region of another dataset is a miss
+		final CountingLoader other = new CountingLoader();
+		final LazyDataset otherLazy = new LazyDataset("data", Dataset.FLOAT64, SHAPE, other);
+		otherLazy.setSliceCache(cache, "other.h5", "/entry/data");
+		otherLazy.getSlice(new int[] {2, 0, 0}, new int[] {3, 4, 5}, null);
+		assertEquals(1, other.reads.get());
+
+		cache.resetStatistics();
+		assertEquals(0, cache.getHits() + cache.getMisses() + cache.getEvictions());
+
+		// detaching stops caching
+		lazy.setSliceCache(null, null, null);
+		lazy.getSlice(new int[] {2, 0, 0}, new int[] {3, 4, 5}, null);
+		assertEquals(4, loader.reads.get());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testEvictionUnderBudget() {
+		final SliceCache cache = new SliceCache(3 * FRAME_BYTES);
+		final CountingLoader loader = new CountingLoader();
+		final CachingLazyLoader caching = new CachingLazyLoader(loader, cache, "file.h5", "/entry/data");
+		for (int i = 0; i < 3; i++) {
+			read(caching, i);
+		}
+		assertEquals(3, cache.getCount());
+		assertEquals(0, cache.getEvictions());
+
+		read(caching, 0); // now most recently used
+		read(caching, 3);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(3, cache.getCount());
+		assertTrue(cache.getBytes() <= cache.getBudget());
+
+		loader.reads.set(0);
+		read(caching, 0);
+		read(caching, 3);
+		assertEquals(0, loader.reads.get());
+		read(caching, 1); // least recently used was evicted
+		assertEquals(1, loader.reads.get());
+
+		// slices larger than budget are not held
+		read(caching, new int[] {0, 0, 0}, new int[] {4, 4, 5});
+		assertEquals(3, cache.getCount());
+
+		cache.setBudget(FRAME_BYTES);
+		assertEquals(1, cache.getCount());
+		assertEquals(FRAME_BYTES, cache.getBytes());
+		cache.setBudget(0);
+		assertEquals(0, cache.getCount());
+		assertEquals(0, cache.getBytes());
+	}
+
+	@Test
+	public void testDefensiveCopies() {
+		final SliceCache cache = new SliceCache(SliceCache.DEFAULT_BUDGET);
+		final CountingLoader loader = new CountingLoader();
+		final CachingLazyLoader caching = new CachingLazyLoader(loader, cache, "file.h5", "/entry/data");
+		final Dataset expected = loader.data.getSlice(new int[] {5, 0, 0}, new int[] {6, 4, 5}, null);
+
+		final Dataset read = read(caching, 5);
+		loader.last.fill(-1); // loader's slice
+		read.fill(-2);
+		final Dataset hit = read(caching, 5);
+		assertEquals(expected, hit);
+		assertNotSame(read, hit);
+		hit.fill(-3);
+		assertEquals(expected, read(caching, 5));
+		assertEquals(1, loader.reads.get());
+	}
+
+	@Test
+	public void testInvalidate() {
+		final SliceCache cache = new SliceCache(SliceCache.DEFAULT_BUDGET);
+		final CachingLazyLoader a = new CachingLazyLoader(new CountingLoader(), cache, "a.h5", "/x");
+		final CachingLazyLoader b = new CachingLazyLoader(new CountingLoader(), cache, "a.h5", "/y");
+		final CachingLazyLoader c = new CachingLazyLoader(new CountingLoader(), cache, "c.h5", "/x");
+		for (int i = 0; i < 2; i++) {
+			read(a, i);
+			read(b, i);
+			read(c, i);
+		}
+		assertEquals(6, cache.getCount());
+		cache.invalidate("a.h5", "/y");
+		assertEquals(4, cache.getCount());
+		cache.invalidate("a.h5");
+		assertEquals(2, cache.getCount());
+		assertEquals(2 * FRAME_BYTES, cache.getBytes());
+		cache.clear();
+		assertEquals(0, cache.getCount());
+		assertEquals(0, cache.getBytes());
+	}
+
+	@Test
+	public void testChunkingAndDefault() {
+		final CachingLazyLoader caching = new CachingLazyLoader(new CountingLoader(), "file.h5", "/entry/data");
+		assertSame(SliceCache.getDefault(), caching.getCache());
+		assertNull(caching.getChunking());
+		assertNull(caching.getChunkOffset());
+	}
+
+	private static Dataset read(CachingLazyLoader loader, int frame) {
+		return read(loader, new int[] {frame, 0, 0}, new int[] {frame + 1, 4, 5});
+	}
+
+	private static Dataset read(CachingLazyLoader loader, int[] start, int[] stop) {
+		try {
+			return (Dataset) loader.getDataset(null, SHAPE, start, stop, new int[] {1, 1, 1});
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IChunked;
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.slice.SlicePlan;
+import org.eclipse.dawnsci.analysis.api.slice.SliceVisitor;
+import org.eclipse.dawnsci.analysis.api.slice.Slicer;
+import org.junit.Test;
+
+public class SlicePlanTest {
+
+	private static final int[] SHAPE = new int[] {20, 3, 5};
+	private static final int[] CHUNKS = new int[] {4, 3, 5};
+
+	/**
+	 * Loader of a range dataset that records the ranges read
+	 */
+	private static class ChunkedLoader implements ILazyLoader, IChunked {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data = DatasetFactory.createRange(20 * 3 * 5, Dataset.INT32).reshape(SHAPE);
+		private final List<int[]> reads = Collections.synchronizedList(new ArrayList<int[]>());
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			reads.add(new int[] {start[0], stop[0]});
+			return data.getSlice(start, stop, step);
+		}
+
+		@Override
+		public int[] getChunking() {
+			return CHUNKS.clone();
+		}
+
+		@Override
+		public int[] getChunkOffset() {
+			return new int[3];
+		}
+	}
+
+	@Test
+	public void testViewChunking() {
+		final LazyDataset lazy = new LazyDataset("data", Dataset.INT32, SHAPE, new ChunkedLoader());
+		assertArrayEquals(CHUNKS, lazy.getChunking());
+		assertArrayEquals(new int[3], lazy.getChunkOffset());
+
+		LazyDataset view = lazy.getSliceView(new int[] {3, 0, 0}, null, null);
+		assertArrayEquals(CHUNKS, view.getChunking());
+		assertArrayEquals(new int[] {1, 0, 0}, view.getChunkOffset());
+
+		// items 1, 3 in first chunk, 5, 7 in second
+		view = lazy.getSliceView(new int[] {1, 0, 0}, null, new int[] {2, 1, 1});
+		assertArrayEquals(new int[] {2, 3, 5}, view.getChunking());
+		assertArrayEquals(new int[] {0, 0, 0}, view.getChunkOffset());
+
+		// items 2 in first chunk, 4, 6 in second
+		view = lazy.getSliceView(new int[] {2, 0, 0}, null, new int[] {2, 1, 1});
+		assertArrayEquals(new int[] {1, 0, 0}, view.getChunkOffset());
+
+		view = lazy.getSliceView(null, null, new int[] {3, 1, 1});
+		assertNull(view.getChunking());
+		assertNull(view.getChunkOffset());
+	}
+
+	@Test
+	public void testBlocksStartOnChunks() {
+		final SlicePlan plan = new SlicePlan(new int[] {17, 5}, new int[] {1}, new int[] {4, 5}, new int[] {1, 0}, false, SlicePlan.DEFAULT_MAX_READ_SIZE);
+		assertEquals(5, plan.getNumberOfBlocks());
+		final int[] starts = new int[] {0, 1, 5, 9, 13};
+		final int[] stops = new int[] {1, 5, 9, 13, 17};
+		for (int b = 0; b < 5; b++) {
+			assertArrayEquals(new int[] {starts[b], 0}, plan.getStart(b));
+			assertArrayEquals(new int[] {stops[b], 5}, plan.getStop(b));
+			assertEquals(stops[b] - starts[b], plan.getPositions(b).size());
+		}
+	}
+
+	@Test
+	public void testVisitViewReadsWholeChunks() throws Exception {
+		final ChunkedLoader loader = new ChunkedLoader();
+		final LazyDataset lazy = new LazyDataset("data", Dataset.INT32, SHAPE, loader);
+		final LazyDataset view = lazy.getSliceView(new int[] {3, 0, 0}, null, null);
+
+		final List<IDataset> frames = new ArrayList<IDataset>();
+		Slicer.visitAll(view, Collections.singletonMap(0, "all"), null, new SliceVisitor() {
+			@Override
+			public void visit(IDataset slice, Slice[] slices, int[] shape) throws Exception {
+				frames.add(slice);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}, false);
+
+		assertEquals(17, frames.size());
+		for (int i = 0; i < 17; i++) {
+			final Dataset expected = loader.data.getSlice(new int[] {3 + i, 0, 0}, new int[] {4 + i, 3, 5}, null);
+			expected.setName(frames.get(i).getName());
+			assertEquals(expected, frames.get(i));
+		}
+		assertEquals(5, loader.reads.size());
+		for (int[] r : loader.reads) {
+			assertTrue("Read crosses chunks", r[0] / 4 == (r[1] - 1) / 4);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.slice.SlicePipeline;
+import org.eclipse.dawnsci.analysis.api.slice.SliceVisitor;
+import org.eclipse.dawnsci.analysis.api.slice.Slicer;
+import org.junit.Test;
+
+public class SlicerTest {
+
+	private static final Map<Integer, String> FIRST = Collections.singletonMap(0, "all");
+	private static final Map<Integer, String> SECOND = Collections.singletonMap(1, "all"); // of slices of first
+
+	@Test(timeout = 60000)
+	public void testNestedVisitAllParallel() throws Exception {
+		final Dataset data = DatasetFactory.zeros(new int[] {64, 8, 16, 16}, Dataset.FLOAT64);
+		final AtomicInteger outer = new AtomicInteger();
+		final AtomicInteger inner = new AtomicInteger();
+
+		Slicer.visitAllParallel(data, FIRST, null, new Visitor() {
+			@Override
+			public void visit(IDataset slice, Slice[] slices, int[] shape) throws Exception {
+				Slicer.visitAllParallel(slice, SECOND, null, new Visitor() {
+					@Override
+					public void visit(IDataset frame, Slice[] slices, int[] shape) throws Exception {
+						inner.incrementAndGet();
+					}
+				});
+				outer.incrementAndGet();
+			}
+		});
+		assertEquals(64, outer.get());
+		assertEquals(64 * 8, inner.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testNestedPipelineOnOneWorker() throws Exception {
+		final Dataset data = DatasetFactory.zeros(new int[] {16, 8, 4}, Dataset.FLOAT64);
+		final ExecutorService pool = new ForkJoinPool(1);
+		final AtomicInteger inner = new AtomicInteger();
+		try {
+			new SlicePipeline().setExecutor(pool).setReadAhead(2).visitAll(data, FIRST, null, new Visitor() {
+				@Override
+				public void visit(IDataset slice, Slice[] slices, int[] shape) throws Exception {
+					new SlicePipeline().setExecutor(pool).setReadAhead(2).visitAll(slice, SECOND, null, new Visitor() {
+						@Override
+						public void visit(IDataset frame, Slice[] slices, int[] shape) throws Exception {
+							inner.incrementAndGet();
+						}
+					});
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(16 * 8, inner.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testReadersShareExecutor() throws Exception {
+		final Dataset data = DatasetFactory.createRange(40 * 3 * 4, Dataset.FLOAT64).reshape(40, 3, 4);
+		final ConcurrentLoader loader = new ConcurrentLoader(data);
+		final LazyDataset lazy = new LazyDataset("data", Dataset.FLOAT64, data.getShape(), loader);
+		final ExecutorService pool = Executors.newCachedThreadPool();
+		final AtomicInteger reads = new AtomicInteger();
+		final Executor readers = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				reads.incrementAndGet();
+				pool.execute(command);
+			}
+		};
+		try {
+			for (boolean ordered : new boolean[] {false, true}) {
+				for (int r : new int[] {1, 3}) {
+					final AtomicInteger visits = new AtomicInteger();
+					final AtomicInteger sum = new AtomicInteger();
+					for (int run = 0; run < 5; run++) {
+						new SlicePipeline().setReadExecutor(readers).setReaders(r).setOrdered(ordered).visitAll(lazy, FIRST, null, new Visitor() {
+							@Override
+							public void visit(IDataset slice, Slice[] slices, int[] shape) throws Exception {
+								visits.incrementAndGet();
+								sum.addAndGet(slice.getInt(0, 0, 0));
+							}
+						});
+					}
+					assertEquals(5 * 40, visits.get());
+					assertEquals(5 * 12 * (39 * 40 / 2), sum.get());
+					assertTrue("At most " + r + " reads at once", loader.maximum.get() <= r);
+					loader.maximum.set(0);
+				}
+			}
+			assertEquals(2 * 2 * 5 * 40, reads.get());
+		} finally {
+			pool.shutdown();
+		}
+
+		// shared executor is reused
+		new SlicePipeline().visitAll(lazy, FIRST, null, new Visitor() {
+			@Override
+			public void visit(IDataset slice, Slice[] slices, int[] shape) throws Exception {
+			}
+		});
+		assertSame(SlicePipeline.getSharedReadExecutor(), SlicePipeline.getSharedReadExecutor());
+		assertFalse(SlicePipeline.getSharedReadExecutor().isShutdown());
+	}
+
+	/**
+	 * Loader that records the largest number of concurrent reads
+	 */
+	private static class ConcurrentLoader implements ILazyLoader {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data;
+		private final AtomicInteger current = new AtomicInteger();
+		private final AtomicInteger maximum = new AtomicInteger();
+
+		ConcurrentLoader(Dataset data) {
+			this.data = data;
+		}
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			final int c = current.incrementAndGet();
+			try {
+				int m = maximum.get();
+				while (m < c && !maximum.compareAndSet(m, c)) {
+					m = maximum.get();
+				}
+				Thread.sleep(1);
+				return data.getSlice(start, stop, step);
+			} finally {
+				current.decrementAndGet();
+			}
+		}
+	}
+
+	private abstract static class Visitor implements SliceVisitor {
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+	}
+}
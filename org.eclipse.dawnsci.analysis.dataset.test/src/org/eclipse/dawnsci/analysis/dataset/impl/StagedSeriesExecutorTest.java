@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.AbstractOperation;
+import org.eclipse.dawnsci.analysis.api.processing.IBatchOperation;
+import org.eclipse.dawnsci.analysis.api.processing.IExecutionVisitor;
+import org.eclipse.dawnsci.analysis.api.processing.ISliceConfiguration;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.OperationDataCache;
+import org.eclipse.dawnsci.analysis.api.processing.OperationException;
+import org.eclipse.dawnsci.analysis.api.processing.OperationRank;
+import org.eclipse.dawnsci.analysis.api.processing.StagedSeriesExecutor;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+import org.junit.Test;
+
+public class StagedSeriesExecutorTest {
+
+	private static final int FRAMES = 24;
+	private static final int WIDTH = 8;
+
+	/**
+	 * Frames of a range dataset, stacked along first dimension, that counts reads and can become
+	 * unreadable (a lazy dataset gives no slice then)
+	 */
+	private static class FrameLoader implements ILazyLoader {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data;
+		private final AtomicInteger reads = new AtomicInteger();
+		private final AtomicInteger inPipeline = new AtomicInteger();
+		private final AtomicInteger maxInPipeline = new AtomicInteger();
+		private int failAt = -1;
+
+		FrameLoader() {
+			this(0);
+		}
+
+		FrameLoader(double offset) {
+			data = Maths.add(DatasetFactory.createRange(FRAMES * WIDTH, Dataset.FLOAT64).reshape(FRAMES, WIDTH), offset);
+		}
+
+		@Override
+		public boolean isFileReadable() {
+			return failAt < 0 || reads.get() < failAt;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+			reads.incrementAndGet();
+			final int n = inPipeline.addAndGet(stop[0] - start[0]);
+			int m;
+			while (n > (m = maxInPipeline.get()) && !maxInPipeline.compareAndSet(m, n)) {
+				// retry
+			}
+			return data.getSlice(start, stop, step);
+		}
+
+		LazyDataset createLazy() {
+			return new LazyDataset("frames", Dataset.FLOAT64, data.getShape(), this);
+		}
+	}
+
+	/**
+	 * Multiplies frame by factor, sleeping for some frames and failing at one
+	 */
+	private static class ScaleOperation extends AbstractOperation<IOperationModel, OperationData> {
+		private final double factor;
+		private int failAt = -1;
+		private RuntimeException failure;
+		private int slowUntil = -1;
+		private final AtomicInteger executions = new AtomicInteger();
+
+		ScaleOperation(double factor) {
+			this.factor = factor;
+		}
+
+		@Override
+		public String getId() {
+			return "scale" + factor;
+		}
+
+		@Override
+		public OperationRank getInputRank() {
+			return OperationRank.ONE;
+		}
+
+		@Override
+		public OperationRank getOutputRank() {
+			return OperationRank.ONE;
+		}
+
+		@Override
+		public OperationData execute(IDataset slice, IMonitor monitor) throws OperationException {
+			executions.incrementAndGet();
+			final int frame = getFrame(slice);
+			if (frame == failAt) {
+				throw failure;
+			}
+			if (frame < slowUntil) { // earlier frames finish last
+				try {
+					Thread.sleep(2 * (slowUntil - frame));
+				} catch (InterruptedException e) {
+					throw new OperationException(this, e);
+				}
+			}
+			final Dataset out = Maths.multiply(slice, factor);
+			out.setMetadata(getOriginMetadata(slice));
+			return new OperationData(out);
+		}
+	}
+
+	/**
+	 * Splits stack into frames
+	 */
+	private static class SplitOperation extends ScaleOperation implements IBatchOperation<IOperationModel, OperationData> {
+		private final AtomicInteger batches = new AtomicInteger();
+
+		SplitOperation() {
+			super(1);
+		}
+
+		@Override
+		protected List<OperationData> processBatch(IDataset stack, IMonitor monitor) throws OperationException {
+			batches.incrementAndGet();
+			final int n = stack.getShape()[0];
+			final List<OperationData> outputs = new ArrayList<OperationData>(n);
+			for (int i = 0; i < n; i++) {
+				outputs.add(new OperationData(stack.getSlice(new int[] {i, 0}, new int[] {i + 1, WIDTH}, null).squeeze()));
+			}
+			return outputs;
+		}
+	}
+
+	/**
+	 * Records frames in order of output and can fail or cancel
+	 */
+	private static class RecordingVisitor extends IExecutionVisitor.Stub {
+		private final List<Integer> frames = Collections.synchronizedList(new ArrayList<Integer>());
+		private final List<Dataset> results = Collections.synchronizedList(new ArrayList<Dataset>());
+		private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+		private final AtomicBoolean closed = new AtomicBoolean();
+		private FrameLoader loader;
+		private int failAt = -1;
+		private int cancelAt = -1;
+		private CancellableMonitor monitor;
+
+		@Override
+		public void executed(OperationData result, IMonitor monitor, Slice[] slices, int[] shape, int[] dataDims) throws Exception {
+			final int frame = slices[0].getStart();
+			if (frame == failAt) {
+				throw new Exception("Cannot write frame " + frame);
+			}
+			frames.add(frame);
+			results.add(DatasetUtils.convertToDataset(result.getData()));
+			threads.add(Thread.currentThread().getName());
+			if (loader != null) {
+				loader.inPipeline.decrementAndGet();
+			}
+			if (frame == cancelAt) {
+				this.monitor.cancelled = true;
+			}
+		}
+
+		@Override
+		public void close() throws Exception {
+			assertTrue(closed.compareAndSet(false, true));
+		}
+	}
+
+	private static class CancellableMonitor extends IMonitor.Stub {
+		private volatile boolean cancelled;
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testOrderedOutputWithSlowStage() {
+		final FrameLoader loader = new FrameLoader();
+		final ScaleOperation slow = new ScaleOperation(2);
+		slow.slowUntil = FRAMES;
+		final ScaleOperation fast = new ScaleOperation(3);
+		final RecordingVisitor visitor = new RecordingVisitor();
+		visitor.loader = loader;
+		final int capacity = 6;
+
+		new StagedSeriesExecutor().addStage(4, slow).addStage(2, fast).setCapacity(capacity)
+				.execute(configure(loader.createLazy()), null, visitor);
+
+		assertEquals(range(FRAMES), visitor.frames);
+		for (int i = 0; i < FRAMES; i++) {
+			final Dataset expected = Maths.multiply(loader.data.getSlice(new int[] {i, 0}, new int[] {i + 1, WIDTH}, null), 6);
+			assertEquals(expected, visitor.results.get(i));
+			assertEquals("Series output", visitor.threads.get(i));
+		}
+		assertEquals(FRAMES, loader.reads.get());
+		assertTrue(loader.maxInPipeline.get() <= capacity);
+		assertTrue(visitor.closed.get());
+	}
+
+	@Test(timeout = 20000)
+	public void testBatches() {
+		final FrameLoader loader = new FrameLoader();
+		final SplitOperation split = new SplitOperation();
+		final ScaleOperation slow = new ScaleOperation(2);
+		slow.slowUntil = FRAMES;
+		final RecordingVisitor visitor = new RecordingVisitor();
+
+		new StagedSeriesExecutor().addStage(2, split, slow).setCapacity(5)
+				.execute(configure(loader.createLazy()), null, visitor);
+
+		assertEquals(range(FRAMES), visitor.frames);
+		assertEquals(5, loader.reads.get()); // batches of at most capacity
+		assertEquals(5, split.batches.get());
+		for (int i = 0; i < FRAMES; i++) {
+			final Dataset expected = Maths.multiply(loader.data.getSlice(new int[] {i, 0}, new int[] {i + 1, WIDTH}, null), 2);
+			assertArrayEquals(new DoubleDataset(expected).getData(), new DoubleDataset(visitor.results.get(i)).getData(), 0);
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testErrorPropagation() {
+		final FrameLoader loader = new FrameLoader();
+		final ScaleOperation op = new ScaleOperation(2);
+		op.failAt = 7;
+		op.failure = new OperationException(op, "Bad frame");
+		RecordingVisitor visitor = new RecordingVisitor();
+		try {
+			new StagedSeriesExecutor().addStage(3, op).setCapacity(4).execute(configure(loader.createLazy()), null, visitor);
+			fail("Failure should be passed on");
+		} catch (OperationException e) {
+			assertSame(op.failure, e);
+		}
+		checkPrefix(visitor, 7);
+
+		// other exceptions are wrapped
+		op.failure = new IllegalArgumentException("Bad value");
+		visitor = new RecordingVisitor();
+		try {
+			new StagedSeriesExecutor().addStage(3, op).setCapacity(4).execute(configure(loader.createLazy()), null, visitor);
+			fail("Failure should be passed on");
+		} catch (OperationException e) {
+			assertSame(op.failure, e.getCause());
+		}
+		checkPrefix(visitor, 7);
+
+		// reading with one loader
+		loader.reads.set(0);
+		loader.failAt = 11;
+		op.failAt = -1;
+		visitor = new RecordingVisitor();
+		try {
+			new StagedSeriesExecutor().addStage(3, op).execute(configure(loader.createLazy()), null, visitor);
+			fail("Failure should be passed on");
+		} catch (OperationException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		checkPrefix(visitor, 11);
+
+		// output
+		loader.failAt = -1;
+		visitor = new RecordingVisitor();
+		visitor.failAt = 3;
+		try {
+			new StagedSeriesExecutor().addStage(3, op).execute(configure(loader.createLazy()), null, visitor);
+			fail("Failure should be passed on");
+		} catch (OperationException e) {
+			assertEquals("Cannot write frame 3", e.getCause().getMessage());
+		}
+		assertEquals(range(3), visitor.frames);
+		assertTrue(visitor.closed.get());
+	}
+
+	@Test(timeout = 20000)
+	public void testCancellation() {
+		final FrameLoader loader = new FrameLoader();
+		final ScaleOperation op = new ScaleOperation(2);
+		final RecordingVisitor visitor = new RecordingVisitor();
+		final CancellableMonitor monitor = new CancellableMonitor();
+		visitor.monitor = monitor;
+		visitor.cancelAt = 4;
+		final int capacity = 3;
+
+		new StagedSeriesExecutor().addStage(2, op).setCapacity(capacity).execute(configure(loader.createLazy()), monitor, visitor);
+
+		assertEquals(range(5), visitor.frames);
+		assertTrue(loader.reads.get() <= 5 + capacity);
+		assertTrue(op.executions.get() <= 5 + capacity);
+		assertTrue(visitor.closed.get());
+
+		// cancelled before start
+		final RecordingVisitor none = new RecordingVisitor();
+		new StagedSeriesExecutor().addStage(2, op).execute(configure(new FrameLoader().createLazy()), monitor, none);
+		assertTrue(none.frames.isEmpty());
+		assertTrue(none.closed.get());
+	}
+
+	/**
+	 * A permit that is not given back after a failure leaves execute waiting for the pipeline to empty
+	 */
+	@Test(timeout = 60000)
+	public void testNoPermitLeakAfterFailure() {
+		for (int capacity = 1; capacity <= 4; capacity++) {
+			for (int at = 0; at < FRAMES; at += 5) {
+				for (int where = 0; where < 5; where++) {
+					final FrameLoader loader = new FrameLoader();
+					final SplitOperation split = new SplitOperation();
+					final ScaleOperation first = new ScaleOperation(2);
+					final ScaleOperation second = new ScaleOperation(3);
+					first.slowUntil = 4;
+					final RecordingVisitor visitor = new RecordingVisitor();
+					switch (where) {
+					case 0:
+						loader.failAt = at;
+						break;
+					case 1:
+						first.failAt = at;
+						break;
+					case 2:
+						second.failAt = at;
+						break;
+					case 3:
+						visitor.failAt = at;
+						break;
+					case 4: // after batch in same stage
+						first.failAt = at;
+						break;
+					}
+					first.failure = new OperationException(first, "Bad frame");
+					second.failure = first.failure;
+					final StagedSeriesExecutor executor = new StagedSeriesExecutor().setCapacity(capacity);
+					if (where == 4) {
+						executor.addStage(2, split, first).addStage(1, second);
+					} else {
+						executor.addStage(3, first).addStage(2, second);
+					}
+					try {
+						executor.execute(configure(loader.createLazy()), null, visitor);
+						fail("Failure should be passed on");
+					} catch (OperationException e) {
+						// expected
+					}
+					final String msg = "Capacity " + capacity + ", failure at " + at + " in " + where;
+					assertTrue(msg, visitor.closed.get());
+					assertEquals(msg, range(visitor.frames.size()), visitor.frames);
+					assertTrue(msg, visitor.frames.size() <= at);
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testCacheIdentity() throws Exception {
+		final OperationDataCache cache = OperationDataCache.createTemporary();
+		try {
+			final FrameLoader a = new FrameLoader();
+			final FrameLoader b = new FrameLoader(1000); // dataset of same name in another file
+			final ScaleOperation op = new ScaleOperation(2);
+			checkScaled(a, 2, executeCached(cache, "a.h5", a, op));
+			checkScaled(b, 2, executeCached(cache, "b.h5", b, op));
+			assertEquals(0, cache.getHits());
+
+			// results of datasets without a file cannot be told apart so are not cached
+			final int count = cache.getCount();
+			checkScaled(b, 2, executeCached(cache, null, b, op));
+			checkScaled(a, 2, executeCached(cache, null, a, op));
+			assertEquals(0, cache.getHits());
+			assertEquals(count, cache.getCount());
+
+			// same file
+			final int executions = op.executions.get();
+			checkScaled(a, 2, executeCached(cache, "a.h5", a, op));
+			assertEquals(FRAMES, cache.getHits());
+			assertEquals(executions, op.executions.get());
+
+			// other series
+			checkScaled(a, 3, executeCached(cache, "a.h5", a, new ScaleOperation(3)));
+			assertEquals(FRAMES, cache.getHits());
+		} finally {
+			cache.close();
+		}
+	}
+
+	private static List<Dataset> executeCached(OperationDataCache cache, String filePath, FrameLoader loader, ScaleOperation op) {
+		final RecordingVisitor visitor = new RecordingVisitor();
+		new StagedSeriesExecutor().addStage(2, op).setCache(cache).setFilePath(filePath).execute(configure(loader.createLazy()), null, visitor);
+		return visitor.results;
+	}
+
+	private static void checkScaled(FrameLoader loader, double factor, List<Dataset> results) {
+		assertEquals(FRAMES, results.size());
+		for (int i = 0; i < FRAMES; i++) {
+			final Dataset expected = Maths.multiply(loader.data.getSlice(new int[] {i, 0}, new int[] {i + 1, WIDTH}, null), factor);
+			assertArrayEquals(new DoubleDataset(expected).getData(), new DoubleDataset(results.get(i)).getData(), 0);
+		}
+	}
+
+	private static void checkPrefix(RecordingVisitor visitor, int failed) {
+		assertEquals(range(visitor.frames.size()), visitor.frames);
+		assertTrue(visitor.frames.size() <= failed);
+		assertTrue(visitor.closed.get());
+	}
+
+	private static List<Integer> range(int n) {
+		final List<Integer> list = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; i++) {
+			list.add(i);
+		}
+		return list;
+	}
+
+	private static int getFrame(IDataset slice) {
+		return AbstractOperation.getOriginMetadata(slice).getCurrentSlice()[0].getStart();
+	}
+
+	private static ISliceConfiguration configure(final ILazyDataset lazy) {
+		return new ISliceConfiguration() {
+			@Override
+			public ILazyDataset getData() {
+				return lazy;
+			}
+
+			@Override
+			public Map<Integer, String> getSlicing() {
+				final Map<Integer, String> slicing = new HashMap<Integer, String>();
+				slicing.put(0, "all");
+				return slicing;
+			}
+		};
+	}
+}
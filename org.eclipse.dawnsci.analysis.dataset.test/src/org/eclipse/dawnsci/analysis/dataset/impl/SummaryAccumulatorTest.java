@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SummaryAccumulatorTest {
+
+	private ForkJoinPool pool;
+	private boolean parallel;
+	private int threshold;
+
+	@Before
+	public void setUp() {
+		parallel = ParallelOperations.isParallel();
+		threshold = ParallelOperations.getThreshold();
+		pool = new ForkJoinPool(4);
+		ParallelOperations.setPool(pool);
+		ParallelOperations.setThreshold(0);
+	}
+
+	@After
+	public void tearDown() {
+		ParallelOperations.setParallel(parallel);
+		ParallelOperations.setThreshold(threshold);
+		ParallelOperations.setPool(null);
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testMatchesSummaryStatistics() {
+		final double[] values = values(1001);
+		final SummaryAccumulator acc = accumulate(values, 0, values.length, false, false);
+		final SummaryStatistics stats = new SummaryStatistics();
+		for (double v : values) {
+			stats.addValue(v);
+		}
+
+		assertEquals(stats.getN(), acc.getN());
+		assertEquals(stats.getSum(), acc.getSum(), 1e-6);
+		assertEquals(stats.getMean(), acc.getMean(), 1e-9);
+		assertEquals(stats.getVariance(), acc.getVariance(), 1e-9);
+		assertEquals(stats.getPopulationVariance(), acc.getPopulationVariance(), 1e-9);
+		assertEquals(stats.getMax(), acc.getMax(), 0);
+		assertEquals(stats.getMin(), acc.getMin(), 0);
+		assertEquals(firstIndex(values, stats.getMax()), acc.getMaxIndex());
+		assertEquals(firstIndex(values, stats.getMin()), acc.getMinIndex());
+	}
+
+	@Test
+	public void testMergeMatchesSinglePass() {
+		final double[] values = values(500);
+		values[17] = Double.NaN;
+		values[301] = Double.POSITIVE_INFINITY;
+		values[420] = values[3]; // tie with earlier value
+		for (boolean ignore : new boolean[] {false, true}) {
+			final SummaryAccumulator whole = accumulate(values, 0, values.length, ignore, ignore);
+			for (int[] splits : new int[][] {{0, 250, 500}, {0, 0, 1, 499, 500}, {0, 3, 4, 17, 18, 300, 420, 421, 500}}) {
+				final SummaryAccumulator merged = accumulate(values, splits[0], splits[1], ignore, ignore);
+				for (int i = 2; i < splits.length; i++) {
+					merged.merge(accumulate(values, splits[i - 1], splits[i], ignore, ignore));
+				}
+				assertEquals(whole.getHash(), merged.getHash());
+				assertEquals(whole.getN(), merged.getN());
+				assertEquals(whole.getNaNCount(), merged.getNaNCount());
+				assertEquals(whole.getInfCount(), merged.getInfCount());
+				assertEquals(whole.hasNaNs(), merged.hasNaNs());
+				assertEquals(whole.getMaxIndex(), merged.getMaxIndex());
+				assertEquals(whole.getMinIndex(), merged.getMinIndex());
+				assertEquals(whole.getMax(), merged.getMax(), 0);
+				assertEquals(whole.getMin(), merged.getMin(), 0);
+				assertEquals(whole.getPositiveMax(), merged.getPositiveMax(), 0);
+				assertEquals(whole.getPositiveMin(), merged.getPositiveMin(), 0);
+				assertEquals(whole.getSum(), merged.getSum(), 1e-6);
+				assertEquals(whole.getMean(), merged.getMean(), 1e-9);
+				assertEquals(whole.getVariance(), merged.getVariance(), whole.getVariance() * 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidValues() {
+		final double[] values = new double[] {1, Double.NaN, 5, Double.NEGATIVE_INFINITY, -2, Double.NaN};
+		SummaryAccumulator acc = accumulate(values, 0, values.length, false, false);
+		assertTrue(acc.hasNaNs());
+		assertTrue(Double.isNaN(acc.getMax()));
+		assertEquals(1, acc.getMaxIndex()); // first NaN
+		assertEquals(1, acc.getMinIndex());
+		assertEquals(2, acc.getNaNCount());
+		assertEquals(1, acc.getInfCount());
+
+		acc = accumulate(values, 0, values.length, true, false);
+		assertFalse(acc.hasNaNs());
+		assertEquals(5, acc.getMax(), 0);
+		assertEquals(Double.NEGATIVE_INFINITY, acc.getMin(), 0);
+		assertEquals(3, acc.getMinIndex());
+
+		acc = accumulate(values, 0, values.length, true, true);
+		assertEquals(3, acc.getN());
+		assertEquals(-2, acc.getMin(), 0);
+		assertEquals(4, acc.getMinIndex());
+		assertEquals(5, acc.getPositiveMax(), 0);
+		assertEquals(1, acc.getPositiveMin(), 0);
+		assertEquals(4. / 3, acc.getMean(), 1e-15);
+	}
+
+	@Test
+	public void testDatasetParallelMatchesSerial() {
+		final Dataset a = Random.randn(64, 300);
+		a.set(Double.NaN, 10, 20);
+		a.set(a.getDouble(5, 5), 60, 7);
+
+		ParallelOperations.setParallel(false);
+		final Dataset serial = a.clone();
+		final Object[] expected = summarise(serial);
+
+		ParallelOperations.setParallel(true);
+		assertTrue(ParallelOperations.isWorthwhile(a));
+		final Dataset parallel = a.clone();
+		final Object[] actual = summarise(parallel);
+		checkSummaries(expected, actual);
+		assertEquals(serial.hashCode(), parallel.hashCode());
+	}
+
+	@Test
+	public void testDatasetMatchesNaiveScan() {
+		final Dataset a = Random.randn(30, 40);
+		final double[] values = ((DoubleDataset) a).getData();
+		final SummaryStatistics stats = new SummaryStatistics();
+		double max = Double.NEGATIVE_INFINITY;
+		double min = Double.POSITIVE_INFINITY;
+		for (double v : values) {
+			stats.addValue(v);
+			max = Math.max(max, v);
+			min = Math.min(min, v);
+		}
+		assertEquals(max, a.max().doubleValue(), 0);
+		assertEquals(min, a.min().doubleValue(), 0);
+		assertEquals(stats.getMean(), ((Number) a.mean()).doubleValue(), 1e-12);
+		assertEquals(stats.getVariance(), a.variance().doubleValue(), 1e-12);
+		assertEquals(stats.getSum(), ((Number) a.sum()).doubleValue(), 1e-9);
+		assertEquals(firstIndex(values, max), a.argMax());
+		assertEquals(firstIndex(values, min), a.argMin());
+		assertArrayEquals(a.getNDPosition(firstIndex(values, max)), a.maxPos());
+	}
+
+	@Test
+	public void testViewMatchesCopy() {
+		ParallelOperations.setParallel(true);
+		final Dataset big = Random.randn(128, 300);
+		final Dataset view = big.getSliceView(new int[] {1, 3}, null, new int[] {2, 2});
+		final Dataset copy = view.clone();
+		assertTrue(view.getStrides() != null);
+		checkSummaries(summarise(copy), summarise(view));
+		assertEquals(copy.hashCode(), view.hashCode());
+	}
+
+	@Test
+	public void testEmptyAndRankZero() {
+		for (boolean p : new boolean[] {false, true}) {
+			ParallelOperations.setParallel(p);
+			final Dataset empty = AbstractDataset.zeros(new int[] {0}, Dataset.FLOAT64);
+			assertEquals(0, empty.count());
+			assertEquals(0, ((Number) empty.sum()).doubleValue(), 0);
+			assertTrue(Double.isNaN(((Number) empty.mean()).doubleValue()));
+			assertTrue(Double.isNaN(empty.variance().doubleValue()));
+
+			final Dataset single = DatasetFactory.createFromObject(-3.5);
+			assertEquals(0, single.getRank());
+			assertEquals(-3.5, single.max().doubleValue(), 0);
+			assertEquals(-3.5, single.min().doubleValue(), 0);
+			assertEquals(-3.5, ((Number) single.mean()).doubleValue(), 0);
+			assertEquals(0, single.variance().doubleValue(), 0);
+			assertEquals(0, single.argMax());
+			assertArrayEquals(new int[0], single.maxPos());
+		}
+	}
+
+	private static Object[] summarise(Dataset d) {
+		return new Object[] {d.max(), d.min(), d.max(true), d.min(true), d.positiveMax(true), d.positiveMin(true),
+				d.mean(), d.mean(true), d.variance(), d.variance(true), d.sum(true), d.count(true),
+				d.argMax(), d.argMin(), d.argMax(true), d.argMin(true), d.maxPos(true), d.minPos(true)};
+	}
+
+	private static void checkSummaries(Object[] expected, Object[] actual) {
+		for (int i = 0; i < expected.length; i++) {
+			final Object e = expected[i];
+			final Object a = actual[i];
+			if (e instanceof int[]) {
+				assertArrayEquals("Summary " + i, (int[]) e, (int[]) a);
+			} else if (e instanceof Integer || e instanceof Long) {
+				assertEquals("Summary " + i, e, a);
+			} else {
+				assertEquals("Summary " + i, ((Number) e).doubleValue(), ((Number) a).doubleValue(), 1e-9);
+			}
+		}
+	}
+
+	private static SummaryAccumulator accumulate(double[] values, int start, int end, boolean ignoreNaNs, boolean ignoreInfs) {
+		final SummaryAccumulator acc = new SummaryAccumulator(ignoreNaNs, ignoreInfs, start);
+		for (int i = start; i < end; i++) {
+			acc.add(values[i]);
+		}
+		return acc;
+	}
+
+	private static int firstIndex(double[] values, double v) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == v) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static double[] values(int n) {
+		final java.util.Random random = new java.util.Random(n);
+		final double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = random.nextGaussian() * 100 + 1e6; // large offset tests stability
+		}
+		return values;
+	}
+}
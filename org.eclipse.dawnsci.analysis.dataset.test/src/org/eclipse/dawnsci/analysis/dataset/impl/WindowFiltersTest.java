@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WindowFiltersTest {
+
+	private ForkJoinPool pool;
+	private boolean parallel;
+
+	@Before
+	public void setUp() {
+		parallel = ParallelOperations.isParallel();
+		pool = new ForkJoinPool(4);
+		ParallelOperations.setPool(pool);
+	}
+
+	@After
+	public void tearDown() {
+		ParallelOperations.setParallel(parallel);
+		ParallelOperations.setPool(null);
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testHandComputed() {
+		final double[] values = new double[] {3, 1, 4, 1, 5};
+		final int[] shape = new int[] {values.length};
+
+		// odd kernel: windows clipped at both ends
+		int[] kernel = new int[] {3};
+		assertArrayEquals(new double[] {1, 1, 1, 1, 1}, WindowFilters.minimum(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {3, 4, 4, 5, 5}, WindowFilters.maximum(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {2, 8. / 3, 2, 10. / 3, 3}, WindowFilters.mean(values, shape, kernel), 1e-15);
+		assertArrayEquals(new double[] {2, 3, 1, 4, 3}, WindowFilters.median(values, shape, kernel), 0);
+
+		// even kernel: window for p is [p - 1, p + 1)
+		kernel = new int[] {2};
+		assertArrayEquals(new double[] {3, 1, 1, 1, 1}, WindowFilters.minimum(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {3, 3, 4, 4, 5}, WindowFilters.maximum(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {3, 2, 2.5, 2.5, 3}, WindowFilters.mean(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {3, 2, 2.5, 2.5, 3}, WindowFilters.median(values, shape, kernel), 0);
+
+		// kernel longer than axis
+		kernel = new int[] {7};
+		assertArrayEquals(new double[] {1, 1, 1, 1, 1}, WindowFilters.minimum(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {4, 5, 5, 5, 5}, WindowFilters.maximum(values, shape, kernel), 0);
+		assertArrayEquals(new double[] {9. / 4, 14. / 5, 14. / 5, 14. / 5, 11. / 4}, WindowFilters.mean(values, shape, kernel), 1e-15);
+		assertArrayEquals(new double[] {2, 3, 3, 3, 2.5}, WindowFilters.median(values, shape, kernel), 0);
+
+		// unit kernel leaves values alone
+		kernel = new int[] {1};
+		assertArrayEquals(values, WindowFilters.minimum(values, shape, kernel), 0);
+		assertArrayEquals(values, WindowFilters.mean(values, shape, kernel), 0);
+		assertArrayEquals(values, WindowFilters.median(values, shape, kernel), 0);
+	}
+
+	@Test
+	public void testMatchesSlicing() {
+		final Dataset[] inputs = new Dataset[] {Random.randint(0, 10, new int[] {23}).cast(Dataset.FLOAT64),
+				Random.randn(9, 12), Random.randint(0, 50, new int[] {5, 6, 7}).cast(Dataset.FLOAT64)};
+		final int[][][] kernels = new int[][][] {{{1}, {4}, {5}, {30}},
+			{{3, 3}, {2, 4}, {1, 5}, {10, 3}, {20, 25}},
+			{{3, 2, 5}, {1, 1, 8}, {6, 7, 2}}};
+		for (boolean p : new boolean[] {false, true}) {
+			ParallelOperations.setParallel(p);
+			for (int i = 0; i < inputs.length; i++) {
+				for (int[] kernel : kernels[i]) {
+					final String msg = Arrays.toString(inputs[i].getShapeRef()) + " with kernel " + Arrays.toString(kernel);
+					check(msg, sliceFilter(inputs[i], kernel, 0), Image.minFilter(inputs[i], kernel), 0);
+					check(msg, sliceFilter(inputs[i], kernel, 1), Image.maxFilter(inputs[i], kernel), 0);
+					check(msg, sliceFilter(inputs[i], kernel, 2), Image.meanFilter(inputs[i], kernel), 1e-12);
+					check(msg, sliceFilter(inputs[i], kernel, 3), Image.medianFilter(inputs[i], kernel), 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNonFinite() {
+		final Dataset input = Random.randn(8, 9);
+		input.set(Double.NaN, 2, 3);
+		input.set(Double.POSITIVE_INFINITY, 6, 1);
+		input.set(Double.NEGATIVE_INFINITY, 7, 8);
+		final int[] kernel = new int[] {3, 4};
+		for (boolean p : new boolean[] {false, true}) {
+			ParallelOperations.setParallel(p);
+			check("Minimum", sliceFilter(input, kernel, 0), Image.minFilter(input, kernel), 0);
+			check("Maximum", sliceFilter(input, kernel, 1), Image.maxFilter(input, kernel), 0);
+			check("Mean", sliceFilter(input, kernel, 2), Image.meanFilter(input, kernel), 1e-12);
+		}
+	}
+
+	@Test
+	public void testMeanOnLongLine() {
+		final int n = 1 << 20;
+		final double[] values = new double[n];
+		final java.util.Random random = new java.util.Random(5);
+		for (int i = 0; i < n; i++) {
+			// large values early on would leave rounding errors in a plain running sum
+			values[i] = i < 1000 ? 1e12 * random.nextDouble() : random.nextDouble();
+		}
+		final int k = 5;
+		final double[] mean = WindowFilters.mean(values, new int[] {n}, new int[] {k});
+		for (int p = n - 1000; p < n; p++) {
+			double sum = 0;
+			final int lo = p - k / 2;
+			final int hi = Math.min(n, lo + k);
+			for (int i = lo; i < hi; i++) {
+				sum += values[i];
+			}
+			assertEquals(sum / (hi - lo), mean[p], 1e-14);
+		}
+	}
+
+	@Test
+	public void testLinesAreSplit() {
+		// images have fewer lines than the minimum number of items in a chunk
+		assertTrue(ParallelOperations.numberOfChunks(512, 512) > 1);
+		assertTrue(ParallelOperations.numberOfChunks(2048, 2048) > 1);
+		assertEquals(1, ParallelOperations.numberOfChunks(512, 1));
+		assertTrue(ParallelOperations.numberOfChunks(3, 1 << 20) <= 3);
+
+		final List<int[]> ranges = Collections.synchronizedList(new ArrayList<int[]>());
+		ParallelOperations.operate(512, 512, new ParallelOperations.RangeChunk() {
+			@Override
+			public void operate(int start, int end) {
+				ranges.add(new int[] {start, end});
+			}
+		});
+		assertTrue(ranges.size() > 1);
+		int lines = 0;
+		for (int[] r : ranges) {
+			lines += r[1] - r[0];
+		}
+		assertEquals(512, lines);
+	}
+
+	@Test
+	public void testParallelMatchesSerial() {
+		final int[] shape = new int[] {512, 512};
+		final double[] values = new double[shape[0] * shape[1]];
+		final java.util.Random random = new java.util.Random(12345);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(1000);
+		}
+		final int[] kernel = new int[] {5, 7};
+
+		ParallelOperations.setParallel(false);
+		final double[] mean = WindowFilters.mean(values, shape, kernel);
+		final double[] maximum = WindowFilters.maximum(values, shape, kernel);
+		final double[] median = WindowFilters.median(values, shape, kernel);
+
+		ParallelOperations.setParallel(true);
+		assertTrue(WindowFilters.isParallel(values.length));
+		assertArrayEquals(mean, WindowFilters.mean(values, shape, kernel), 1e-12);
+		assertArrayEquals(maximum, WindowFilters.maximum(values, shape, kernel), 0);
+		assertArrayEquals(median, WindowFilters.median(values, shape, kernel), 0);
+	}
+
+	private static void check(String msg, Dataset expected, Dataset actual, double delta) {
+		assertArrayEquals(msg, expected.getShapeRef(), actual.getShapeRef());
+		assertArrayEquals(msg, new DoubleDataset(expected).getData(), new DoubleDataset(actual).getData(), delta);
+	}
+
+	/**
+	 * Filter by finding statistics of each window's slice as Image did before WindowFilters
+	 * @param type 0 for minimum, 1 for maximum, 2 for mean, 3 for median
+	 */
+	private static Dataset sliceFilter(Dataset input, int[] kernel, int type) {
+		final int[] shape = input.getShape();
+		final Dataset result = input.clone();
+		final IndexIterator iter = input.getIterator(true);
+		final int[] pos = iter.getPos();
+		final int[] start = new int[pos.length];
+		final int[] stop = new int[pos.length];
+		while (iter.hasNext()) {
+			for (int i = 0; i < pos.length; i++) {
+				start[i] = Math.max(0, pos[i] - kernel[i] / 2);
+				stop[i] = Math.min(shape[i], pos[i] - kernel[i] / 2 + kernel[i]);
+			}
+			final Dataset slice = input.getSlice(start, stop, null);
+			switch (type) {
+			case 0:
+				result.set(slice.min(), pos);
+				break;
+			case 1:
+				result.set(slice.max(), pos);
+				break;
+			case 2:
+				// a sum as the streaming mean loses infinities
+				result.set(((Number) slice.sum()).doubleValue() / slice.getSize(), pos);
+				break;
+			default:
+				result.set(Stats.median(slice), pos);
+				break;
+			}
+		}
+		return result;
+	}
+}
@@ -18,9 +18,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.stat.descriptive.StorelessUnivariateStatistic;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
-import org.apache.commons.math3.stat.descriptive.moment.Variance;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.Slice;
@@ -273,7 +271,11 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 			view.stride = orig instanceof AbstractDataset ? ((AbstractDataset) orig).stride : null;
 		}
 
-		view.metadata = getMetadataMap(orig, cloneMetadata);
+		if (cloneMetadata && orig instanceof LazyDatasetBase) {
+			((LazyDatasetBase) orig).copyMetadataTo(view); // keep any deferred slicing and reshaping
+		} else {
+			view.metadata = getMetadataMap(orig, cloneMetadata);
+		}
 		int odtype = orig.getDtype();
 		int vdtype = view.getDtype();
 		if (getBestDType(odtype, vdtype) != vdtype) {
@@ -1693,7 +1695,7 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 		s.offset = sOffset[0];
 		s.base = base == null ? this : base;
 
-		s.metadata = copyMetadata();
+		copyMetadataTo(s);
 		s.sliceMetadata(true, start, stop, step, shape);
 
 		if (Arrays.equals(shape, s.shape)) {
@@ -2584,7 +2586,7 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 	@Override
 	public Dataset getSlice(final int[] start, final int[] stop, final int[] step) {
 		AbstractDataset s = getSlice((SliceIterator) getSliceIterator(start, stop, step));
-		s.metadata = copyMetadata();
+		copyMetadataTo(s);
 		s.sliceMetadata(true, start, stop, step, shape);
 		return s;
 	}
@@ -2791,51 +2793,7 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 	 * @param ignoreInfs if true, ignore infinities
 	 */
 	protected void calculateMaxMin(final boolean ignoreNaNs, final boolean ignoreInfs) {
-		IndexIterator iter = getIterator();
-		double amax = Double.NEGATIVE_INFINITY;
-		double amin = Double.POSITIVE_INFINITY;
-		double pmax = Double.MIN_VALUE;
-		double pmin = Double.POSITIVE_INFINITY;
-		double hash = 0;
-		boolean hasNaNs = false;
-
-		while (iter.hasNext()) {
-			final double val = getElementDoubleAbs(iter.index);
-			if (Double.isNaN(val)) {
-				hash = (hash * 19) % Integer.MAX_VALUE;
-				if (ignoreNaNs)
-					continue;
-				hasNaNs = true;
-			} else if (Double.isInfinite(val)) {
-				hash = (hash * 19) % Integer.MAX_VALUE;
-				if (ignoreInfs)
-					continue;
-			} else {
-				hash = (hash * 19 + val) % Integer.MAX_VALUE;
-			}
-
-			if (val > amax) {
-				amax = val;
-			}
-			if (val < amin) {
-				amin = val;
-			}
-			if (val > 0) {
-				if (val < pmin) {
-					pmin = val;
-				}
-				if (val > pmax) {
-					pmax = val;
-				}
-			}
-		}
-
-		int ihash = ((int) hash) * 19 + getDtype() * 17 + getElementsPerItem();
-		setStoredValue(storeName(ignoreNaNs, ignoreInfs, STORE_SHAPELESS_HASH), ihash);
-		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_MAX), hasNaNs ? Double.NaN : fromDoubleToNumber(amax));
-		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_MIN), hasNaNs ? Double.NaN : fromDoubleToNumber(amin));
-		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_POS_MAX), hasNaNs ? Double.NaN : fromDoubleToNumber(pmax));
-		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_POS_MIN), hasNaNs ? Double.NaN : fromDoubleToNumber(pmin));
+		storeSummary(ignoreNaNs, ignoreInfs, accumulateSummary(ignoreNaNs, ignoreInfs));
 	}
 
 	/**
@@ -2845,61 +2803,69 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 	 * @param name
 	 */
 	protected void calculateSummaryStats(final boolean ignoreNaNs, final boolean ignoreInfs, final String name) {
-		final IndexIterator iter = getIterator();
-		final SummaryStatistics stats = new SummaryStatistics();
-
-		if (storedValues == null || !storedValues.containsKey(STORE_HASH)) {
-			boolean hasNaNs = false;
-			double hash = 0;
-			double pmax = Double.MIN_VALUE;
-			double pmin = Double.POSITIVE_INFINITY;
-
-			while (iter.hasNext()) {
-				final double val = getElementDoubleAbs(iter.index);
-				if (Double.isNaN(val)) {
-					hash = (hash * 19) % Integer.MAX_VALUE;
-					if (ignoreNaNs)
-						continue;
-					hasNaNs = true;
-				} else if (Double.isInfinite(val)) {
-					hash = (hash * 19) % Integer.MAX_VALUE;
-					if (ignoreInfs)
-						continue;
-				} else {
-					hash = (hash * 19 + val) % Integer.MAX_VALUE;
-				}
-				if (val > 0) {
-					if (val < pmin) {
-						pmin = val;
-					}
-					if (val > pmax) {
-						pmax = val;
+		final SummaryAccumulator stats = accumulateSummary(ignoreNaNs, ignoreInfs);
+		storeSummary(ignoreNaNs, ignoreInfs, stats);
+		storedValues.put(name, stats);
+	}
+
+	/**
+	 * Accumulate summary statistics in a single pass. Large contiguous datasets are split
+	 * into chunks that are accumulated in parallel and then merged when parallel operations
+	 * are enabled
+	 * @param ignoreNaNs
+	 * @param ignoreInfs
+	 * @return accumulator
+	 */
+	private SummaryAccumulator accumulateSummary(final boolean ignoreNaNs, final boolean ignoreInfs) {
+		if (stride == null && getElementsPerItem() == 1 && ParallelOperations.isParallel() && ParallelOperations.isWorthwhile(size)) {
+			List<SummaryAccumulator> chunks = ParallelOperations.reduce(size, new ParallelOperations.RangeReduction<SummaryAccumulator>() {
+				@Override
+				public SummaryAccumulator reduce(int start, int end) {
+					final SummaryAccumulator stats = new SummaryAccumulator(ignoreNaNs, ignoreInfs, start);
+					for (int i = start; i < end; i++) {
+						stats.add(getElementDoubleAbs(i));
 					}
+					return stats;
 				}
-				stats.addValue(val);
+			});
+			final SummaryAccumulator stats = chunks.get(0);
+			for (int i = 1, imax = chunks.size(); i < imax; i++) {
+				stats.merge(chunks.get(i));
 			}
+			return stats;
+		}
 
-			int ihash = ((int) hash) * 19 + getDtype() * 17 + getElementsPerItem();
-			setStoredValue(storeName(ignoreNaNs, ignoreInfs, STORE_SHAPELESS_HASH), ihash);
-			storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_MAX), hasNaNs ? Double.NaN : fromDoubleToNumber(stats.getMax()));
-			storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_MIN), hasNaNs ? Double.NaN : fromDoubleToNumber(stats.getMin()));
-			storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_POS_MAX), hasNaNs ? Double.NaN : fromDoubleToNumber(pmax));
-			storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_POS_MIN), hasNaNs ? Double.NaN : fromDoubleToNumber(pmin));
-			storedValues.put(name, stats);
-		} else {
-			while (iter.hasNext()) {
-				final double val = getElementDoubleAbs(iter.index);
-				if (ignoreNaNs && Double.isNaN(val)) {
-					continue;
-				}
-				if (ignoreInfs && Double.isInfinite(val)) {
-					continue;
-				}
+		final SummaryAccumulator stats = new SummaryAccumulator(ignoreNaNs, ignoreInfs, 0);
+		final IndexIterator iter = getIterator();
+		while (iter.hasNext()) {
+			stats.add(getElementDoubleAbs(iter.index));
+		}
+		return stats;
+	}
 
-				stats.addValue(val);
-			}
+	/**
+	 * Store hash, extrema and positions of first extrema from summary statistics
+	 * @param ignoreNaNs
+	 * @param ignoreInfs
+	 * @param stats
+	 */
+	private void storeSummary(final boolean ignoreNaNs, final boolean ignoreInfs, final SummaryAccumulator stats) {
+		int ihash = stats.getHash() * 19 + getDtype() * 17 + getElementsPerItem();
+		setStoredValue(storeName(ignoreNaNs, ignoreInfs, STORE_SHAPELESS_HASH), ihash);
+		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_MAX), stats.hasNaNs() ? Double.NaN : fromDoubleToNumber(stats.getMax()));
+		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_MIN), stats.hasNaNs() ? Double.NaN : fromDoubleToNumber(stats.getMin()));
+		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_POS_MAX), stats.hasNaNs() ? Double.NaN : fromDoubleToNumber(stats.getPositiveMax()));
+		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_POS_MIN), stats.hasNaNs() ? Double.NaN : fromDoubleToNumber(stats.getPositiveMin()));
+		storedValues.put(storeName(ignoreNaNs, ignoreInfs, STORE_STATS), stats);
+		storePosition(storeName(ignoreNaNs, ignoreInfs, STORE_MAX_POS), stats.getMaxIndex());
+		storePosition(storeName(ignoreNaNs, ignoreInfs, STORE_MIN_POS), stats.getMinIndex());
+	}
 
-			storedValues.put(name, stats);
+	private void storePosition(final String name, final int index) {
+		if (index >= 0) {
+			List<int[]> posns = new ArrayList<int[]>(1);
+			posns.add(getNDPositionFromShape(index, shape));
+			storedValues.put(name, posns);
 		}
 	}
 
@@ -3096,17 +3062,17 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 		return null;
 	}
 
-	private SummaryStatistics getStatistics(boolean ignoreNaNs) {
+	private SummaryAccumulator getStatistics(boolean ignoreNaNs) {
 		boolean ignoreInfs = false; // TODO
 		if (!hasFloatingPointElements()) {
 			ignoreNaNs = false;
 		}
 
 		String n = storeName(ignoreNaNs, ignoreInfs, STORE_STATS);
-		SummaryStatistics stats = (SummaryStatistics) getStoredValue(n);
+		SummaryAccumulator stats = (SummaryAccumulator) getStoredValue(n);
 		if (stats == null) {
 			calculateSummaryStats(ignoreNaNs, ignoreInfs, n);
-			stats = (SummaryStatistics) getStoredValue(n);
+			stats = (SummaryAccumulator) getStoredValue(n);
 		}
 
 		return stats;
@@ -3378,16 +3344,9 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 
 	@Override
 	public Number variance(boolean isDatasetWholePopulation) {
-		SummaryStatistics stats = getStatistics(false);
+		SummaryAccumulator stats = getStatistics(false);
 
-		if (isDatasetWholePopulation) {
-			StorelessUnivariateStatistic oldVar = stats.getVarianceImpl();
-			stats.setVarianceImpl(new Variance(false));
-			Number var = stats.getVariance();
-			stats.setVarianceImpl(oldVar);
-			return var;
-		}
-		return stats.getVariance();
+		return isDatasetWholePopulation ? stats.getPopulationVariance() : stats.getVariance();
 	}
 
 	@Override
@@ -3413,7 +3372,7 @@ public abstract class AbstractDataset extends LazyDatasetBase implements Dataset
 
 	@Override
 	public Number rootMeanSquare() {
-		final SummaryStatistics stats = getStatistics(false);
+		final SummaryAccumulator stats = getStatistics(false);
 		final double mean = stats.getMean();
 		return Math.sqrt(stats.getVariance() + mean * mean);
 	}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.io.IAsyncLazyLoader;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.slice.RegionMerger;
+
+/**
+ * Asynchronous lazy loader that runs a blocking loader with an executor
+ * <p>
+ * Consecutive regions requested together are read as one region when they have unit steps
+ * and the region that bounds them holds no more items than they do, e.g. adjacent frames
+ * (see {@link RegionMerger}).
+ * Use {@link #getAsyncLoader(ILazyLoader)} to get an asynchronous version of any loader.
+ */
+public class AsyncLazyLoader implements IAsyncLazyLoader {
+	private static final long serialVersionUID = -3169128462473905318L;
+
+	private static volatile ExecutorService shared;
+
+	private final ILazyLoader loader;
+	private transient ExecutorService executor; // not serialized so deserialized loaders use shared executor
+
+	/**
+	 * @return executor shared by loaders that have not been given one
+	 */
+	public static ExecutorService getSharedExecutor() {
+		ExecutorService s = shared;
+		if (s == null) {
+			synchronized (AsyncLazyLoader.class) {
+				s = shared;
+				if (s == null) {
+					final AtomicInteger count = new AtomicInteger();
+					shared = s = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Lazy loader " + count.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+				}
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * @param loader
+	 * @return loader if it is asynchronous, otherwise loader that runs it with shared executor
+	 */
+	public static IAsyncLazyLoader getAsyncLoader(ILazyLoader loader) {
+		return loader instanceof IAsyncLazyLoader ? (IAsyncLazyLoader) loader : new AsyncLazyLoader(loader);
+	}
+
+	/**
+	 * Create loader that uses shared executor
+	 * @param loader
+	 */
+	public AsyncLazyLoader(ILazyLoader loader) {
+		this(loader, null);
+	}
+
+	/**
+	 * @param loader
+	 * @param executor (if null, use shared executor)
+	 */
+	public AsyncLazyLoader(ILazyLoader loader, ExecutorService executor) {
+		if (loader == null) {
+			throw new IllegalArgumentException("Loader must not be null");
+		}
+		this.loader = loader;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return loader that is run
+	 */
+	public ILazyLoader getLoader() {
+		return loader;
+	}
+
+	private ExecutorService getExecutor() {
+		return executor == null ? getSharedExecutor() : executor;
+	}
+
+	@Override
+	public boolean isFileReadable() {
+		return loader.isFileReadable();
+	}
+
+	@Override
+	public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+		return loader.getDataset(mon, shape, start, stop, step);
+	}
+
+	@Override
+	public Future<IDataset> getDatasetAsync(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) {
+		return read(mon, shape, start, stop, step, false);
+	}
+
+	@Override
+	public List<Future<IDataset>> getDatasetsAsync(IMonitor mon, int[] shape, int[][] start, int[][] stop, int[][] step) {
+		final int n = start.length;
+		final List<Future<IDataset>> futures = new ArrayList<Future<IDataset>>(n);
+		int i = 0;
+		while (i < n) {
+			final int[] bstart = new int[start[i].length];
+			final int[] bstop = new int[start[i].length];
+			final int j = RegionMerger.merge(start, stop, step, i, Long.MAX_VALUE, bstart, bstop);
+			if (j == i + 1) {
+				futures.add(read(mon, shape, start[i], stop[i], step == null ? null : step[i], false));
+			} else {
+				final Future<IDataset> block = read(mon, shape, bstart, bstop, null, true);
+				for (; i < j; i++) {
+					final int[][] region = RegionMerger.getOffsetRegion(start[i], stop[i], bstart);
+					futures.add(new MappedFuture<IDataset, IDataset>(block, true) {
+						@Override
+						protected IDataset map(IDataset b) throws Exception {
+							return b.getSlice(region[0], region[1], null);
+						}
+					});
+				}
+			}
+			i = j;
+		}
+		return futures;
+	}
+
+	/**
+	 * @param reshape if true, give result the full rank of region (as steps are one)
+	 */
+	private Future<IDataset> read(final IMonitor mon, final int[] shape, final int[] start, final int[] stop, int[] step, final boolean reshape) {
+		final int[] lstep;
+		if (step == null) {
+			lstep = new int[start.length];
+			Arrays.fill(lstep, 1);
+		} else {
+			lstep = step;
+		}
+		return getExecutor().submit(new Callable<IDataset>() {
+			@Override
+			public IDataset call() throws Exception {
+				IDataset d = loader.getDataset(mon, shape, start, stop, lstep);
+				if (reshape && d != null) {
+					int[] rshape = new int[start.length];
+					for (int k = 0; k < rshape.length; k++) {
+						rshape[k] = stop[k] - start[k];
+					}
+					d.setShape(rshape);
+				}
+				return d;
+			}
+		});
+	}
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+/**
+ * Type-specialised kernels for binary operations on contiguous datasets.
+ * <p>
+ * These run primitive loops directly over the backing arrays when both inputs are either
+ * contiguous, unbroadcasted datasets of the output's type or single items. All other cases
+ * are left to the {@link BroadcastIterator} loops in {@link Maths}. The arithmetic matches
+ * those loops exactly: floats are promoted to doubles and integers to longs before the
+ * operation is done and the result is cast back to the output type.
+ */
+final class BinaryKernels {
+	static final int ADD = 0;
+	static final int SUBTRACT = 1;
+	static final int MULTIPLY = 2;
+	static final int DIVIDE = 3;
+	static final int POWER = 4;
+
+	private BinaryKernels() {
+	}
+
+	/**
+	 * Run operation with a primitive loop if possible
+	 * @param op
+	 * @param a
+	 * @param b
+	 * @param o output (must already be created)
+	 * @param parallel if true, split large outputs into ranges that are run in parallel
+	 * @return true if the operation has been done
+	 */
+	static boolean operate(final int op, final Dataset a, final Dataset b, final Dataset o, final boolean parallel) {
+		final int dt = o.getDtype();
+		if (!isSupported(op, dt)) {
+			return false;
+		}
+
+		final int n = o.getSize();
+		if (!isLinear(o, n)) {
+			return false;
+		}
+
+		final boolean sa; // a is a single item
+		if (isLinear(a, n) && a.getDtype() == dt) {
+			sa = false;
+		} else if (isSingle(a)) {
+			sa = true;
+		} else {
+			return false;
+		}
+
+		final boolean sb;
+		if (isLinear(b, n) && b.getDtype() == dt) {
+			sb = false;
+		} else if (isSingle(b)) {
+			sb = true;
+		} else {
+			return false;
+		}
+
+		if (sa && sb) {
+			return false;
+		}
+
+		if (parallel && ParallelOperations.isWorthwhile(n)) {
+			ParallelOperations.operate(n, new ParallelOperations.RangeChunk() {
+				@Override
+				public void operate(int start, int end) {
+					BinaryKernels.operate(op, a, sa, b, sb, o, start, end);
+				}
+			});
+		} else {
+			operate(op, a, sa, b, sb, o, 0, n);
+		}
+		return true;
+	}
+
+	/**
+	 * @param op
+	 * @param dtype
+	 * @return true if there is a kernel for operation on given type
+	 */
+	static boolean isSupported(final int op, final int dtype) {
+		switch (dtype) {
+		case Dataset.FLOAT64:
+		case Dataset.FLOAT32:
+			return op >= ADD && op <= POWER;
+		case Dataset.INT32:
+			return op >= ADD && op <= DIVIDE;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @param d
+	 * @param n
+	 * @return true if dataset has single elements that lie in its buffer from zero to n
+	 */
+	static boolean isLinear(final Dataset d, final int n) {
+		return d.getElementsPerItem() == 1 && d.getStrides() == null && d.getOffset() == 0 && d.getSize() == n;
+	}
+
+	private static boolean isSingle(final Dataset d) {
+		return d.getElementsPerItem() == 1 && d.getSize() == 1;
+	}
+
+	/**
+	 * Run operation over part of output
+	 * @param op
+	 * @param a
+	 * @param sa true if a is a single item
+	 * @param b
+	 * @param sb true if b is a single item
+	 * @param o
+	 * @param start
+	 * @param end
+	 */
+	static void operate(final int op, final Dataset a, final boolean sa, final Dataset b, final boolean sb, final Dataset o, final int start, final int end) {
+		switch (o.getDtype()) {
+		case Dataset.FLOAT64:
+			final double[] of64data = ((DoubleDataset) o).data;
+			if (sa) {
+				float64(op, a.getElementDoubleAbs(a.getOffset()), ((DoubleDataset) b).data, of64data, start, end);
+			} else if (sb) {
+				float64(op, ((DoubleDataset) a).data, b.getElementDoubleAbs(b.getOffset()), of64data, start, end);
+			} else {
+				float64(op, ((DoubleDataset) a).data, ((DoubleDataset) b).data, of64data, start, end);
+			}
+			break;
+		case Dataset.FLOAT32:
+			final float[] of32data = ((FloatDataset) o).data;
+			if (sa) {
+				float32(op, a.getElementDoubleAbs(a.getOffset()), ((FloatDataset) b).data, of32data, start, end);
+			} else if (sb) {
+				float32(op, ((FloatDataset) a).data, b.getElementDoubleAbs(b.getOffset()), of32data, start, end);
+			} else {
+				float32(op, ((FloatDataset) a).data, ((FloatDataset) b).data, of32data, start, end);
+			}
+			break;
+		case Dataset.INT32:
+			final int[] oi32data = ((IntegerDataset) o).data;
+			if (sa) {
+				int32(op, a.getElementLongAbs(a.getOffset()), ((IntegerDataset) b).data, oi32data, start, end);
+			} else if (sb) {
+				int32(op, ((IntegerDataset) a).data, b.getElementLongAbs(b.getOffset()), oi32data, start, end);
+			} else {
+				int32(op, ((IntegerDataset) a).data, ((IntegerDataset) b).data, oi32data, start, end);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Dataset type not supported");
+		}
+	}
+
+	private static void float64(final int op, final double[] a, final double[] b, final double[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] + b[i];
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] - b[i];
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] * b[i];
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] / b[i];
+			}
+			break;
+		case POWER:
+			for (int i = start; i < end; i++) {
+				o[i] = Math.pow(a[i], b[i]);
+			}
+			break;
+		}
+	}
+
+	private static void float64(final int op, final double a, final double[] b, final double[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = a + b[i];
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = a - b[i];
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = a * b[i];
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				o[i] = a / b[i];
+			}
+			break;
+		case POWER:
+			for (int i = start; i < end; i++) {
+				o[i] = Math.pow(a, b[i]);
+			}
+			break;
+		}
+	}
+
+	private static void float64(final int op, final double[] a, final double b, final double[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] + b;
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] - b;
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] * b;
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				o[i] = a[i] / b;
+			}
+			break;
+		case POWER:
+			for (int i = start; i < end; i++) {
+				o[i] = Math.pow(a[i], b);
+			}
+			break;
+		}
+	}
+
+	private static void float32(final int op, final float[] a, final float[] b, final float[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) ((double) a[i] + b[i]);
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) ((double) a[i] - b[i]);
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) ((double) a[i] * b[i]);
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) ((double) a[i] / b[i]);
+			}
+			break;
+		case POWER:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) Math.pow(a[i], b[i]);
+			}
+			break;
+		}
+	}
+
+	private static void float32(final int op, final double a, final float[] b, final float[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a + b[i]);
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a - b[i]);
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a * b[i]);
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a / b[i]);
+			}
+			break;
+		case POWER:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) Math.pow(a, b[i]);
+			}
+			break;
+		}
+	}
+
+	private static void float32(final int op, final float[] a, final double b, final float[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a[i] + b);
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a[i] - b);
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a[i] * b);
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) (a[i] / b);
+			}
+			break;
+		case POWER:
+			for (int i = start; i < end; i++) {
+				o[i] = (float) Math.pow(a[i], b);
+			}
+			break;
+		}
+	}
+
+	private static void int32(final int op, final int[] a, final int[] b, final int[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) ((long) a[i] + b[i]);
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) ((long) a[i] - b[i]);
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) ((long) a[i] * b[i]);
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				final long ib = b[i];
+				o[i] = (int) (ib == 0 ? 0 : a[i] / ib);
+			}
+			break;
+		}
+	}
+
+	private static void int32(final int op, final long a, final int[] b, final int[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) (a + b[i]);
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) (a - b[i]);
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) (a * b[i]);
+			}
+			break;
+		case DIVIDE:
+			for (int i = start; i < end; i++) {
+				final long ib = b[i];
+				o[i] = (int) (ib == 0 ? 0 : a / ib);
+			}
+			break;
+		}
+	}
+
+	private static void int32(final int op, final int[] a, final long b, final int[] o, final int start, final int end) {
+		switch (op) {
+		case ADD:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) (a[i] + b);
+			}
+			break;
+		case SUBTRACT:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) (a[i] - b);
+			}
+			break;
+		case MULTIPLY:
+			for (int i = start; i < end; i++) {
+				o[i] = (int) (a[i] * b);
+			}
+			break;
+		case DIVIDE:
+			if (b == 0) {
+				for (int i = start; i < end; i++) {
+					o[i] = 0;
+				}
+			} else {
+				for (int i = start; i < end; i++) {
+					o[i] = (int) (a[i] / b);
+				}
+			}
+			break;
+		}
+	}
+}
@@ -460,7 +460,7 @@ public class BroadcastIterator extends IndexIterator {
 			oIndex = oStart - oStep;
 		}
 
-		if (aIndex == 0 || bIndex == 0) { // for zero-ranked datasets
+		if ((aIndex == aStart || bIndex == bStart) && aDataset.getSize() > 0 && bDataset.getSize() > 0) { // for zero-ranked or broadcasted datasets (which may be views)
 			storeCurrentValues();
 			if (aMax == aIndex)
 				aMax++;
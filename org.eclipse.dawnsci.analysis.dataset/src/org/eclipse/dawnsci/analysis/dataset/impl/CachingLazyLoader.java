@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IChunked;
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+
+/**
+ * Lazy loader that keeps slices read by another loader in a {@link SliceCache}
+ * <p>
+ * Use {@link LazyDataset#setSliceCache(SliceCache, String, String)} to attach one to a lazy dataset.
+ */
+public class CachingLazyLoader implements ILazyLoader, IChunked {
+	private static final long serialVersionUID = 6457209574215349652L;
+
+	private final ILazyLoader loader;
+	private final String file;
+	private final String path;
+	private transient SliceCache cache; // not serialized so deserialized loaders use shared cache
+
+	/**
+	 * Create loader that uses shared cache
+	 * @param loader
+	 * @param file name of file holding dataset
+	 * @param path of dataset in file
+	 */
+	public CachingLazyLoader(ILazyLoader loader, String file, String path) {
+		this(loader, SliceCache.getDefault(), file, path);
+	}
+
+	/**
+	 * @param loader
+	 * @param cache
+	 * @param file name of file holding dataset
+	 * @param path of dataset in file
+	 */
+	public CachingLazyLoader(ILazyLoader loader, SliceCache cache, String file, String path) {
+		if (loader == null) {
+			throw new IllegalArgumentException("Loader must not be null");
+		}
+		this.loader = loader;
+		this.cache = cache;
+		this.file = file;
+		this.path = path;
+	}
+
+	/**
+	 * @return loader whose slices are cached
+	 */
+	public ILazyLoader getLoader() {
+		return loader;
+	}
+
+	/**
+	 * @return cache
+	 */
+	public SliceCache getCache() {
+		if (cache == null) {
+			cache = SliceCache.getDefault();
+		}
+		return cache;
+	}
+
+	@Override
+	public int[] getChunking() {
+		return loader instanceof IChunked ? ((IChunked) loader).getChunking() : null;
+	}
+
+	@Override
+	public int[] getChunkOffset() {
+		return loader instanceof IChunked ? ((IChunked) loader).getChunkOffset() : null;
+	}
+
+	@Override
+	public boolean isFileReadable() {
+		return loader.isFileReadable();
+	}
+
+	@Override
+	public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+		final SliceCache c = getCache();
+		final SliceCache.Key key = new SliceCache.Key(file, path, shape, start, stop, step);
+		Dataset slice = c.get(key);
+		if (slice != null) {
+			return slice;
+		}
+
+		IDataset d = loader.getDataset(mon, shape, start, stop, step);
+		if (d instanceof Dataset) {
+			c.put(key, (Dataset) d);
+		}
+		return d;
+	}
+}
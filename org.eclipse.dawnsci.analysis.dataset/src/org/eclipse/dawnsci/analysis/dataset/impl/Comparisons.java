@@ -44,6 +44,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a == b
 	 */
 	public static BooleanDataset equalTo(Object a, Object b, BooleanDataset o) {
+		return equalTo(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's element is equal b's
+	 * <p>
+	 * For multi-element items, comparison is true if all elements in an item
+	 * are equal. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a == b
+	 */
+	public static BooleanDataset equalTo(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -51,6 +67,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					equalTo(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -249,6 +276,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a > b
 	 */
 	public static BooleanDataset greaterThan(Object a, Object b, BooleanDataset o) {
+		return greaterThan(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's element is greater than b's
+	 * <p>
+	 * For multi-element items, comparison is true if all elements in an item
+	 * are greater. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a > b
+	 */
+	public static BooleanDataset greaterThan(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -256,6 +299,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					greaterThan(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -323,6 +377,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a >= b
 	 */
 	public static BooleanDataset greaterThanOrEqualTo(Object a, Object b, BooleanDataset o) {
+		return greaterThanOrEqualTo(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's element is greater than or equal to b's
+	 * <p>
+	 * For multi-element items, comparison is true if all elements in an item
+	 * are greater or equal. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a >= b
+	 */
+	public static BooleanDataset greaterThanOrEqualTo(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -330,6 +400,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					greaterThanOrEqualTo(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -397,6 +478,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a < b
 	 */
 	public static BooleanDataset lessThan(Object a, Object b, BooleanDataset o) {
+		return lessThan(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's element is less than b's
+	 * <p>
+	 * For multi-element items, comparison is true if all elements in an item
+	 * are lesser. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a < b
+	 */
+	public static BooleanDataset lessThan(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -404,6 +501,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					lessThan(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -471,6 +579,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a <= b
 	 */
 	public static BooleanDataset lessThanOrEqualTo(Object a, Object b, BooleanDataset o) {
+		return lessThanOrEqualTo(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's element is less than or equal to b's
+	 * <p>
+	 * For multi-element items, comparison is true if all elements in an item
+	 * are lesser or equal. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a <= b
+	 */
+	public static BooleanDataset lessThanOrEqualTo(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -478,6 +602,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					lessThanOrEqualTo(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -858,6 +993,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a && b is true
 	 */
 	public static BooleanDataset logicalAnd(Object a, Object b, BooleanDataset o) {
+		return logicalAnd(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's item is true and b's true too.
+	 * <p>
+	 * For multi-element items, comparison is true if all elements in a pair of items
+	 * are true. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a && b is true
+	 */
+	public static BooleanDataset logicalAnd(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -865,6 +1016,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					logicalAnd(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -932,6 +1094,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a || b is true
 	 */
 	public static BooleanDataset logicalOr(Object a, Object b, BooleanDataset o) {
+		return logicalOr(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's item is true or b's true.
+	 * <p>
+	 * For multi-element items, comparison is true if any elements in a pair of items
+	 * are true. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a || b is true
+	 */
+	public static BooleanDataset logicalOr(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -939,6 +1117,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					logicalOr(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
@@ -1006,6 +1195,22 @@ public class Comparisons {
 	 * @return dataset where item is true if a ^ b is true
 	 */
 	public static BooleanDataset logicalXor(Object a, Object b, BooleanDataset o) {
+		return logicalXor(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Compare item-wise for whether a's item is true or b's true exclusively.
+	 * <p>
+	 * For multi-element items, comparison is true if one element in a pair of items
+	 * is true. Where the datasets have mismatched item sizes, the first element
+	 * of the dataset with smaller items is used for comparison.
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return dataset where item is true if a ^ b is true
+	 */
+	public static BooleanDataset logicalXor(Object a, Object b, BooleanDataset o, boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 
@@ -1013,6 +1218,17 @@ public class Comparisons {
 
 		final BooleanDataset r = o == null ? new BooleanDataset(sl.get(0)) : o;
 
+		if (parallel && ParallelOperations.isWorthwhile(r)) {
+			ParallelOperations.operate(da, db, r, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					logicalXor(ca, cb, (BooleanDataset) co, false);
+				}
+			});
+			r.setDirty();
+			return r;
+		}
+
 		final BroadcastIterator it = new BroadcastIterator(da, db, r);
 		final int as = da.getElementsPerItem();
 		final int bs = db.getElementsPerItem();
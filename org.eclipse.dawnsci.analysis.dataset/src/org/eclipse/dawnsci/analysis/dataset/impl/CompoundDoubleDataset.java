@@ -1173,6 +1173,9 @@ public class CompoundDoubleDataset extends AbstractCompoundDataset {
 
 		SliceIterator siter = getSliceIteratorFromAxes(pos, axes);
 		int[] sshape = squeezeShape(siter.getShape(), false);
+		if (sshape.length == 0 && dest.getRank() == 1) { // single item
+			sshape = new int[] {1};
+		}
 
 		IndexIterator diter = dest.getSliceIterator(null, sshape, null);
 
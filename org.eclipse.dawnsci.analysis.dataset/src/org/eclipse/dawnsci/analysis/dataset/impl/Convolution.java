@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Image.BoundaryMode;
+
+/**
+ * Kernel filtering of N-dimensional arrays held in row-major order.
+ * <p>
+ * Output at p is the sum over kernel positions j of kernel[j] * input[p - k/2 + j] (so the kernel
+ * is not flipped) where input beyond the array is given by the boundary mode. One of three paths is
+ * taken: kernels that are outer products of vectors are applied as one pass per axis; otherwise
+ * the sum is done directly over the non-zero kernel items, or with FFTs (see {@link Signal}) when
+ * that is estimated to be cheaper.
+ */
+final class Convolution {
+	private static final double SEPARABLE_TOLERANCE = 1e-12;
+
+	private static final double FFT_COST = 16; // relative cost of one butterfly to a multiply-add
+
+	/**
+	 * Way of filtering
+	 */
+	enum Path {
+		/**
+		 * Chosen by kernel and estimated cost
+		 */
+		AUTO,
+		/**
+		 * One pass per axis (kernel must be separable)
+		 */
+		SEPARABLE,
+		/**
+		 * Sum over non-zero kernel items
+		 */
+		DIRECT,
+		/**
+		 * FFTs
+		 */
+		FOURIER
+	}
+
+	private Convolution() {
+	}
+
+	/**
+	 * @param values
+	 * @param shape
+	 * @param kernel
+	 * @param mode
+	 * @return filtered values
+	 */
+	static double[] filter(final double[] values, final int[] shape, final Dataset kernel, final BoundaryMode mode) {
+		return filter(values, shape, kernel, mode, Path.AUTO);
+	}
+
+	/**
+	 * @param values
+	 * @param shape
+	 * @param kernel
+	 * @param mode
+	 * @param path
+	 * @return filtered values
+	 */
+	static double[] filter(final double[] values, final int[] shape, final Dataset kernel, final BoundaryMode mode, final Path path) {
+		final int rank = shape.length;
+		final int[] kshape = kernel.getShape();
+		final double[] k = toArray(kernel);
+		if (values.length == 0) {
+			return new double[0];
+		}
+		if (rank == 0) {
+			return new double[] {values[0] * k[0]};
+		}
+
+		final double[][] factors = path == Path.AUTO || path == Path.SEPARABLE ? factorize(k, kshape) : null;
+		if (factors != null) {
+			return separable(values, shape, factors, mode);
+		}
+		if (path == Path.SEPARABLE) {
+			if (rank == 1) { // a line is its own factor
+				return separable(values, shape, new double[][] {k}, mode);
+			}
+			throw new IllegalArgumentException("Kernel is not separable");
+		}
+
+		final int[] eshape = new int[rank];
+		double nnz = 0;
+		for (double v : k) {
+			if (v != 0) {
+				nnz++;
+			}
+		}
+		double fsize = 1;
+		for (int i = 0; i < rank; i++) {
+			eshape[i] = shape[i] + kshape[i] - 1;
+			fsize *= eshape[i] + kshape[i] - 1;
+		}
+		final double[] extended = extend(values, shape, kshape, eshape, mode);
+
+		if (path == Path.FOURIER || (path == Path.AUTO && FFT_COST * fsize * Math.log(fsize) / Math.log(2) < nnz * values.length)) {
+			return fourier(extended, eshape, k, kshape);
+		}
+		return direct(extended, eshape, k, kshape, shape);
+	}
+
+	private static double[] toArray(final Dataset d) {
+		final double[] values = new double[d.getSize()];
+		final IndexIterator iter = d.getIterator();
+		int i = 0;
+		while (iter.hasNext()) {
+			values[i++] = d.getElementDoubleAbs(iter.index);
+		}
+		return values;
+	}
+
+	/**
+	 * Find vectors whose outer product is the kernel
+	 * @param k
+	 * @param kshape
+	 * @return vectors for each axis or null if kernel is not separable
+	 */
+	static double[][] factorize(final double[] k, final int[] kshape) {
+		final int rank = kshape.length;
+		if (rank < 2) {
+			return null;
+		}
+
+		int p = 0; // pivot at largest item
+		for (int i = 1; i < k.length; i++) {
+			if (Math.abs(k[i]) > Math.abs(k[p])) {
+				p = i;
+			}
+		}
+		final double pivot = k[p];
+		if (pivot == 0 || Double.isNaN(pivot) || Double.isInfinite(pivot)) {
+			return null;
+		}
+
+		final int[] strides = strides(kshape);
+		final int[] ppos = AbstractDataset.getNDPositionFromShape(p, kshape);
+		final double[][] factors = new double[rank][];
+		for (int a = 0; a < rank; a++) {
+			final int l = kshape[a];
+			factors[a] = new double[l];
+			final int base = p - ppos[a] * strides[a];
+			for (int x = 0; x < l; x++) {
+				final double v = k[base + x * strides[a]];
+				factors[a][x] = a == 0 ? v : v / pivot;
+			}
+		}
+
+		// check product matches kernel
+		final double tolerance = SEPARABLE_TOLERANCE * Math.abs(pivot);
+		final int[] pos = new int[rank];
+		for (int i = 0; i < k.length; i++) {
+			double v = 1;
+			for (int a = 0; a < rank; a++) {
+				v *= factors[a][pos[a]];
+			}
+			if (!(Math.abs(v - k[i]) <= tolerance)) {
+				return null;
+			}
+			for (int a = rank - 1; a >= 0 && ++pos[a] == kshape[a]; a--) {
+				pos[a] = 0;
+			}
+		}
+		return factors;
+	}
+
+	private static int[] strides(final int[] shape) {
+		final int rank = shape.length;
+		final int[] strides = new int[rank];
+		int s = 1;
+		for (int i = rank - 1; i >= 0; i--) {
+			strides[i] = s;
+			s *= shape[i];
+		}
+		return strides;
+	}
+
+	private static double[] separable(final double[] values, final int[] shape, final double[][] factors, final BoundaryMode mode) {
+		final int rank = shape.length;
+		final int[] kshape = new int[rank];
+		final WindowFilters.LineFilter[] filters = new WindowFilters.LineFilter[rank];
+		double scale = 1; // from axes where kernel has length one
+		int last = -1;
+		for (int a = 0; a < rank; a++) {
+			kshape[a] = factors[a].length;
+			if (kshape[a] == 1) {
+				scale *= factors[a][0];
+			} else {
+				filters[a] = new LineFilter(factors[a], mode);
+				last = a;
+			}
+		}
+
+		if (last < 0) {
+			final double[] out = new double[values.length];
+			for (int i = 0; i < out.length; i++) {
+				out[i] = values[i] * scale;
+			}
+			return out;
+		}
+		if (scale != 1) {
+			final double[] f = factors[last].clone();
+			for (int i = 0; i < f.length; i++) {
+				f[i] *= scale;
+			}
+			filters[last] = new LineFilter(f, mode);
+		}
+		return WindowFilters.separable(values, shape, kshape, filters);
+	}
+
+	/**
+	 * Kernel filter of line
+	 */
+	private static class LineFilter implements WindowFilters.LineFilter {
+		private final double[] kernel;
+		private final BoundaryMode mode;
+
+		LineFilter(final double[] kernel, final BoundaryMode mode) {
+			this.kernel = kernel;
+			this.mode = mode;
+		}
+
+		@Override
+		public void filter(final double[] in, final double[] out, final int n, final int k) {
+			final int h = k / 2;
+			final double[] e = new double[n + k - 1];
+			for (int i = 0; i < e.length; i++) {
+				final int j = map(i - h, n, mode);
+				e[i] = j < 0 ? 0 : in[j];
+			}
+			for (int p = 0; p < n; p++) {
+				double sum = 0;
+				for (int i = 0; i < k; i++) {
+					sum += kernel[i] * e[p + i];
+				}
+				out[p] = sum;
+			}
+		}
+	}
+
+	/**
+	 * @param i
+	 * @param n
+	 * @param mode
+	 * @return index within [0, n) of value to use at given index (or -1 for zero)
+	 */
+	private static int map(int i, final int n, final BoundaryMode mode) {
+		if (i >= 0 && i < n) {
+			return i;
+		}
+		switch (mode) {
+		case NEAREST:
+			return i < 0 ? 0 : n - 1;
+		case REFLECT:
+			final int period = 2 * n;
+			i %= period;
+			if (i < 0) {
+				i += period;
+			}
+			return i < n ? i : period - 1 - i;
+		case ZERO:
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * @return values extended along each axis by kernel length/2 items before and
+	 * (kernel length - 1)/2 items after
+	 */
+	private static double[] extend(final double[] values, final int[] shape, final int[] kshape, final int[] eshape, final BoundaryMode mode) {
+		final int rank = shape.length;
+		int esize = 1;
+		for (int l : eshape) {
+			esize *= l;
+		}
+		final double[] extended = new double[esize];
+		final int[] strides = strides(shape);
+		final int[] epos = new int[rank];
+		for (int i = 0; i < esize; i++) {
+			int index = 0;
+			for (int a = 0; a < rank; a++) {
+				final int j = map(epos[a] - kshape[a] / 2, shape[a], mode);
+				if (j < 0) {
+					index = -1;
+					break;
+				}
+				index += j * strides[a];
+			}
+			extended[i] = index < 0 ? 0 : values[index];
+			for (int a = rank - 1; a >= 0 && ++epos[a] == eshape[a]; a--) {
+				epos[a] = 0;
+			}
+		}
+		return extended;
+	}
+
+	/**
+	 * Sum over non-zero kernel items
+	 */
+	private static double[] direct(final double[] extended, final int[] eshape, final double[] k, final int[] kshape, final int[] shape) {
+		final int rank = shape.length;
+		final int[] estrides = strides(eshape);
+
+		int nnz = 0;
+		for (double v : k) {
+			if (v != 0) {
+				nnz++;
+			}
+		}
+		final double[] weights = new double[nnz];
+		final int[] offsets = new int[nnz];
+		final int[] kpos = new int[rank];
+		for (int i = 0, j = 0; i < k.length; i++) {
+			if (k[i] != 0) {
+				int o = 0;
+				for (int a = 0; a < rank; a++) {
+					o += kpos[a] * estrides[a];
+				}
+				weights[j] = k[i];
+				offsets[j++] = o;
+			}
+			for (int a = rank - 1; a >= 0 && ++kpos[a] == kshape[a]; a--) {
+				kpos[a] = 0;
+			}
+		}
+
+		int size = 1;
+		for (int l : shape) {
+			size *= l;
+		}
+		final double[] out = new double[size];
+		final int n = shape[rank - 1];
+		final int lines = size / n;
+		ParallelOperations.RangeChunk chunk = new ParallelOperations.RangeChunk() {
+			@Override
+			public void operate(int start, int end) {
+				final int[] pos = new int[rank];
+				for (int l = start; l < end; l++) {
+					int r = l;
+					int base = 0;
+					for (int a = rank - 2; a >= 0; a--) {
+						pos[a] = r % shape[a];
+						r /= shape[a];
+						base += pos[a] * estrides[a];
+					}
+					for (int p = 0, o = l * n; p < n; p++, o++) {
+						final int b = base + p;
+						double sum = 0;
+						for (int j = 0; j < weights.length; j++) {
+							sum += weights[j] * extended[b + offsets[j]];
+						}
+						out[o] = sum;
+					}
+				}
+			}
+		};
+
+		if (WindowFilters.isParallel(size)) {
+			ParallelOperations.operate(lines, n, chunk);
+		} else {
+			chunk.operate(0, lines);
+		}
+		return out;
+	}
+
+	/**
+	 * Convolve with flipped kernel using FFTs along axes where the kernel is longer than one
+	 */
+	private static double[] fourier(final double[] extended, final int[] eshape, final double[] k, final int[] kshape) {
+		final int rank = kshape.length;
+		final int[] step = new int[rank];
+		int n = 0;
+		for (int i = 0; i < rank; i++) {
+			step[i] = -1;
+			if (kshape[i] > 1) {
+				n++;
+			}
+		}
+		if (n == 0) { // extended array is not extended
+			final double[] out = new double[extended.length];
+			for (int i = 0; i < out.length; i++) {
+				out[i] = extended[i] * k[0];
+			}
+			return out;
+		}
+
+		// nothing to transform along unit axes
+		final int[] axes = new int[n];
+		for (int i = 0, j = 0; i < rank; i++) {
+			if (kshape[i] > 1) {
+				axes[j++] = i;
+			}
+		}
+		final Dataset flipped = new DoubleDataset(k, kshape).getSlice(null, null, step);
+		return toArray(Signal.convolveForOverlap(new DoubleDataset(extended, eshape), flipped, axes));
+	}
+}
@@ -184,7 +184,7 @@ public class DCT {
 
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
-			FloatDCT_1D ffft = new FloatDCT_1D(n);
+			FloatDCT_1D ffft = TransformPlans.acquire(FloatDCT_1D.class, n);
 			shape = a.getShape().clone();
 			shape[axis] = n;
 			result = new FloatDataset(shape);
@@ -199,9 +199,10 @@ public class DCT {
 				ffft.forward(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, n);
 			break;
 		case Dataset.FLOAT64:
-			DoubleDCT_1D dfft = new DoubleDCT_1D(n);
+			DoubleDCT_1D dfft = TransformPlans.acquire(DoubleDCT_1D.class, n);
 			shape = a.getShape().clone();
 			shape[axis] = n;
 			result = new DoubleDataset(shape);
@@ -216,6 +217,7 @@ public class DCT {
 				dfft.forward(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, n);
 			break;
 		default:
 			logger.warn("Non-float dataset not yet supported");
@@ -235,7 +237,7 @@ public class DCT {
 
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
-			FloatDCT_2D ffft = new FloatDCT_2D(s[0], s[1]);
+			FloatDCT_2D ffft = TransformPlans.acquire(FloatDCT_2D.class, s[0], s[1]);
 			float[] fdata = null;
 			result = new FloatDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new FloatDataset(s);
@@ -249,9 +251,10 @@ public class DCT {
 				ffft.forward(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1]);
 			break;
 		case Dataset.FLOAT64:
-			DoubleDCT_2D dfft = new DoubleDCT_2D(s[0], s[1]);
+			DoubleDCT_2D dfft = TransformPlans.acquire(DoubleDCT_2D.class, s[0], s[1]);
 			double[] ddata = null;
 			result = new DoubleDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new DoubleDataset(s);
@@ -265,6 +268,7 @@ public class DCT {
 				dfft.forward(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, s[0], s[1]);
 			break;
 		default:
 			logger.warn("Non-float dataset not yet supported");
@@ -284,7 +288,7 @@ public class DCT {
 
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
-			FloatDCT_3D ffft = new FloatDCT_3D(s[0], s[1], s[2]);
+			FloatDCT_3D ffft = TransformPlans.acquire(FloatDCT_3D.class, s[0], s[1], s[2]);
 
 			float[] fdata = null;
 			result = new FloatDataset(newShape(a.getShapeRef(), s, axes));
@@ -299,9 +303,10 @@ public class DCT {
 				ffft.forward(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1], s[2]);
 			break;
 		case Dataset.FLOAT64:
-			DoubleDCT_3D dfft = new DoubleDCT_3D(s[0], s[1], s[2]);
+			DoubleDCT_3D dfft = TransformPlans.acquire(DoubleDCT_3D.class, s[0], s[1], s[2]);
 
 			double[] ddata = null;
 			result = new DoubleDataset(newShape(a.getShapeRef(), s, axes));
@@ -316,6 +321,7 @@ public class DCT {
 				dfft.forward(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, s[0], s[1], s[2]);
 			break;
 		default:
 			logger.warn("Non-float dataset not yet supported");
@@ -464,7 +470,7 @@ public class DCT {
 
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
-			FloatDCT_1D ffft = new FloatDCT_1D(n);
+			FloatDCT_1D ffft = TransformPlans.acquire(FloatDCT_1D.class, n);
 			float[] fdata = null;
 			shape = a.getShape();
 			shape[axis] = n;
@@ -480,9 +486,10 @@ public class DCT {
 				ffft.inverse(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, n);
 			break;
 		case Dataset.FLOAT64:
-			DoubleDCT_1D dfft = new DoubleDCT_1D(n);
+			DoubleDCT_1D dfft = TransformPlans.acquire(DoubleDCT_1D.class, n);
 			double[] ddata = null;
 			shape = a.getShape();
 			shape[axis] = n;
@@ -498,6 +505,7 @@ public class DCT {
 				dfft.inverse(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, n);
 			break;
 		default:
 			logger.warn("Non-complex dataset not yet supported");
@@ -517,7 +525,7 @@ public class DCT {
 
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
-			FloatDCT_2D ffft = new FloatDCT_2D(s[0], s[1]);
+			FloatDCT_2D ffft = TransformPlans.acquire(FloatDCT_2D.class, s[0], s[1]);
 			float[] fdata = null;
 			result = new FloatDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new FloatDataset(s);
@@ -531,9 +539,10 @@ public class DCT {
 				ffft.inverse(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1]);
 			break;
 		case Dataset.FLOAT64:
-			DoubleDCT_2D dfft = new DoubleDCT_2D(s[0], s[1]);
+			DoubleDCT_2D dfft = TransformPlans.acquire(DoubleDCT_2D.class, s[0], s[1]);
 			double[] ddata = null;
 			result = new DoubleDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new DoubleDataset(s);
@@ -547,6 +556,7 @@ public class DCT {
 				dfft.inverse(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, s[0], s[1]);
 			break;
 		default:
 			logger.warn("Non-complex dataset not yet supported");
@@ -566,7 +576,7 @@ public class DCT {
 
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
-			FloatDCT_3D ffft = new FloatDCT_3D(s[0], s[1], s[2]);
+			FloatDCT_3D ffft = TransformPlans.acquire(FloatDCT_3D.class, s[0], s[1], s[2]);
 			float[] fdata = null;
 			result = new FloatDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new FloatDataset(s);
@@ -580,9 +590,10 @@ public class DCT {
 				ffft.inverse(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1], s[2]);
 			break;
 		case Dataset.FLOAT64:
-				DoubleDCT_3D dfft = new DoubleDCT_3D(s[0], s[1], s[2]);
+				DoubleDCT_3D dfft = TransformPlans.acquire(DoubleDCT_3D.class, s[0], s[1], s[2]);
 				double[] ddata = null;
 				result = new DoubleDataset(newShape(a.getShapeRef(), s, axes));
 				dest = new DoubleDataset(s);
@@ -596,6 +607,7 @@ public class DCT {
 					dfft.inverse(ddata, true);
 					result.setItemsOnAxes(pos, hit, ddata);
 				}
+				TransformPlans.release(dfft, s[0], s[1], s[2]);
 				break;
 		default:
 			logger.warn("Non-complex dataset not yet supported");
@@ -0,0 +1,613 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deferred element-wise expression of datasets and numbers
+ * <p>
+ * An expression is built up as a tree, for example
+ * <pre>
+ * DatasetExpression.of(img).subtract(dark).divide(DatasetExpression.of(flat).subtract(dark)).evaluate();
+ * </pre>
+ * and evaluated in a single pass over the output. The inputs are broadcasted as in {@link Maths}
+ * and read in blocks that are small enough to stay in cache, so no full-size intermediate datasets
+ * are created. Only the final result is allocated.
+ * <p>
+ * All arithmetic is done in double precision. The result has the best floating point type of
+ * the input datasets so integer inputs give floating point results (unlike integer division in
+ * {@link Maths}). Only datasets with single-element items are supported.
+ * <p>
+ * An expression holds state while it is evaluated so must not be evaluated by more than
+ * one thread at a time.
+ */
+public abstract class DatasetExpression {
+	private static final int BLOCK_SIZE = 1024;
+
+	private static final int ADD = 0;
+	private static final int SUBTRACT = 1;
+	private static final int MULTIPLY = 2;
+	private static final int DIVIDE = 3;
+	private static final int POWER = 4;
+	private static final int MAXIMUM = 5;
+	private static final int MINIMUM = 6;
+
+	private static final int NEGATIVE = 0;
+	private static final int ABS = 1;
+	private static final int SQRT = 2;
+	private static final int SQUARE = 3;
+	private static final int EXP = 4;
+	private static final int LOG = 5;
+	private static final int LOG10 = 6;
+
+	/**
+	 * Node index in evaluation buffers
+	 */
+	private int id;
+
+	private DatasetExpression() {
+	}
+
+	/**
+	 * @param a dataset, number or expression
+	 * @return expression
+	 */
+	public static DatasetExpression of(final Object a) {
+		if (a instanceof DatasetExpression) {
+			return (DatasetExpression) a;
+		}
+		if (a instanceof Dataset) {
+			return new Leaf((Dataset) a);
+		}
+		if (a instanceof Number) {
+			return new Constant(((Number) a).doubleValue());
+		}
+		return new Leaf(DatasetFactory.createFromObject(a));
+	}
+
+	/**
+	 * @param b
+	 * @return this + b
+	 */
+	public DatasetExpression add(final Object b) {
+		return new Binary(ADD, "+", this, of(b));
+	}
+
+	/**
+	 * @param b
+	 * @return this - b
+	 */
+	public DatasetExpression subtract(final Object b) {
+		return new Binary(SUBTRACT, "-", this, of(b));
+	}
+
+	/**
+	 * @param b
+	 * @return this * b
+	 */
+	public DatasetExpression multiply(final Object b) {
+		return new Binary(MULTIPLY, "*", this, of(b));
+	}
+
+	/**
+	 * @param b
+	 * @return this / b
+	 */
+	public DatasetExpression divide(final Object b) {
+		return new Binary(DIVIDE, "/", this, of(b));
+	}
+
+	/**
+	 * @param b
+	 * @return this ** b
+	 */
+	public DatasetExpression power(final Object b) {
+		return new Binary(POWER, "**", this, of(b));
+	}
+
+	/**
+	 * @param b
+	 * @return maximum of this and b
+	 */
+	public DatasetExpression maximum(final Object b) {
+		return new Binary(MAXIMUM, "maximum", this, of(b));
+	}
+
+	/**
+	 * @param b
+	 * @return minimum of this and b
+	 */
+	public DatasetExpression minimum(final Object b) {
+		return new Binary(MINIMUM, "minimum", this, of(b));
+	}
+
+	/**
+	 * @return -this
+	 */
+	public DatasetExpression negative() {
+		return new Unary(NEGATIVE, "negative", this);
+	}
+
+	/**
+	 * @return absolute value of this
+	 */
+	public DatasetExpression abs() {
+		return new Unary(ABS, "abs", this);
+	}
+
+	/**
+	 * @return square root of this
+	 */
+	public DatasetExpression sqrt() {
+		return new Unary(SQRT, "sqrt", this);
+	}
+
+	/**
+	 * @return square of this
+	 */
+	public DatasetExpression square() {
+		return new Unary(SQUARE, "square", this);
+	}
+
+	/**
+	 * @return exponential of this
+	 */
+	public DatasetExpression exp() {
+		return new Unary(EXP, "exp", this);
+	}
+
+	/**
+	 * @return natural logarithm of this
+	 */
+	public DatasetExpression log() {
+		return new Unary(LOG, "log", this);
+	}
+
+	/**
+	 * @return base 10 logarithm of this
+	 */
+	public DatasetExpression log10() {
+		return new Unary(LOG10, "log10", this);
+	}
+
+	/**
+	 * Evaluate expression into a new dataset
+	 * @return result
+	 */
+	public Dataset evaluate() {
+		return evaluate(null, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * Evaluate expression
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return result
+	 */
+	public Dataset evaluate(final Dataset o, final boolean parallel) {
+		final List<DatasetExpression> nodes = new ArrayList<DatasetExpression>();
+		final List<Leaf> leaves = new ArrayList<Leaf>();
+		collect(nodes, leaves);
+
+		final int[][] shapes = new int[leaves.size() + 1][];
+		int dtype = -1;
+		for (int i = 0; i < leaves.size(); i++) {
+			final Dataset d = leaves.get(i).data;
+			shapes[i] = d.getShapeRef();
+			dtype = dtype < 0 ? d.getDtype() : AbstractDataset.getBestDType(dtype, d.getDtype());
+		}
+		if (o != null) {
+			shapes[leaves.size()] = o.getShapeRef();
+		}
+		final int[] shape = leaves.isEmpty() && o == null ? new int[0] : BroadcastIterator.broadcastShapes(shapes).get(0);
+		if (o != null && !Arrays.equals(shape, o.getShapeRef())) {
+			throw new IllegalArgumentException("Output does not match broadcasted shape");
+		}
+
+		final Dataset result;
+		if (o != null && BinaryKernels.isLinear(o, o.getSize()) &&
+				(o.getDtype() == Dataset.FLOAT64 || o.getDtype() == Dataset.FLOAT32)) {
+			result = o;
+		} else {
+			result = DatasetFactory.zeros(shape, dtype < 0 ? Dataset.FLOAT64 : AbstractDataset.getBestFloatDType(dtype));
+		}
+
+		for (Leaf l : leaves) {
+			l.prepare(shape);
+		}
+
+		final int size = result.getSize();
+		final int count = nodes.size();
+		if (parallel && ParallelOperations.isWorthwhile(size)) {
+			ParallelOperations.operate(size, new ParallelOperations.RangeChunk() {
+				@Override
+				public void operate(int start, int end) {
+					evaluate(result, count, start, end);
+				}
+			});
+		} else {
+			evaluate(result, count, 0, size);
+		}
+
+		result.setDirty();
+		result.setName(toString());
+		if (result != o && o != null) {
+			o.setSlice(result, null, null, null);
+			o.setName(result.getName());
+			return o;
+		}
+		return result;
+	}
+
+	private void evaluate(final Dataset result, final int count, final int start, final int end) {
+		final double[][] buffers = new double[count][BLOCK_SIZE];
+		final double[] out = buffers[id];
+		for (int i = start; i < end; i += BLOCK_SIZE) {
+			final int n = Math.min(BLOCK_SIZE, end - i);
+			evaluate(buffers, i, n);
+			if (result.getDtype() == Dataset.FLOAT64) {
+				System.arraycopy(out, 0, ((DoubleDataset) result).data, i, n);
+			} else {
+				final float[] fdata = ((FloatDataset) result).data;
+				for (int j = 0; j < n; j++) {
+					fdata[i + j] = (float) out[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Assign node indexes and gather leaves
+	 * @param nodes
+	 * @param leaves
+	 */
+	abstract void collect(List<DatasetExpression> nodes, List<Leaf> leaves);
+
+	/**
+	 * Evaluate node for a block of output into its buffer
+	 * @param buffers
+	 * @param start index of output
+	 * @param n number of items
+	 */
+	abstract void evaluate(double[][] buffers, int start, int n);
+
+	/**
+	 * @return true if name needs brackets when used in a larger expression
+	 */
+	boolean isCompound() {
+		return false;
+	}
+
+	private static String bracketIfNecessary(final DatasetExpression e) {
+		return e.isCompound() ? "(" + e + ")" : e.toString();
+	}
+
+	private static class Constant extends DatasetExpression {
+		private final double value;
+
+		Constant(final double value) {
+			this.value = value;
+		}
+
+		@Override
+		void collect(List<DatasetExpression> nodes, List<Leaf> leaves) {
+			super.id = nodes.size();
+			nodes.add(this);
+		}
+
+		@Override
+		void evaluate(double[][] buffers, int start, int n) {
+			Arrays.fill(buffers[super.id], 0, n, value);
+		}
+
+		@Override
+		public String toString() {
+			return Double.toString(value);
+		}
+	}
+
+	private static class Leaf extends DatasetExpression {
+		private final Dataset data;
+		private int[] shape;
+		private int[] stride;
+		private int offset;
+		private boolean linear;
+
+		Leaf(final Dataset data) {
+			if (data.getElementsPerItem() != 1) {
+				throw new IllegalArgumentException("Expressions only support datasets with single-element items");
+			}
+			this.data = data;
+		}
+
+		@Override
+		void collect(List<DatasetExpression> nodes, List<Leaf> leaves) {
+			super.id = nodes.size();
+			nodes.add(this);
+			leaves.add(this);
+		}
+
+		/**
+		 * Set up strides to read dataset broadcasted to given shape
+		 * @param bShape
+		 */
+		void prepare(final int[] bShape) {
+			shape = bShape;
+			final int size = AbstractDataset.calcSize(bShape);
+			linear = BinaryKernels.isLinear(data, size);
+			if (linear) {
+				return;
+			}
+
+			final int rank = bShape.length;
+			final int[] dShape = data.getShapeRef();
+			final int pad = rank - dShape.length;
+			int[] dStride = data.getStrides();
+			if (dStride == null) {
+				dStride = new int[dShape.length];
+				int s = 1;
+				for (int j = dShape.length - 1; j >= 0; j--) {
+					dStride[j] = s;
+					s *= dShape[j];
+				}
+			}
+			stride = new int[rank];
+			for (int j = pad; j < rank; j++) {
+				stride[j] = dShape[j - pad] == bShape[j] ? dStride[j - pad] : 0;
+			}
+			offset = data.getOffset();
+		}
+
+		@Override
+		void evaluate(double[][] buffers, int start, int n) {
+			final double[] out = buffers[super.id];
+			if (linear) {
+				read(out, start, n);
+				return;
+			}
+
+			final int rank = shape.length;
+			if (rank == 0) {
+				Arrays.fill(out, 0, n, data.getElementDoubleAbs(offset));
+				return;
+			}
+
+			final int[] pos = new int[rank];
+			int index = offset;
+			int r = start;
+			for (int j = rank - 1; j >= 0; j--) {
+				pos[j] = r % shape[j];
+				r /= shape[j];
+				index += pos[j] * stride[j];
+			}
+
+			final int end = rank - 1;
+			for (int i = 0; i < n; i++) {
+				out[i] = data.getElementDoubleAbs(index);
+				int j = end;
+				pos[j]++;
+				index += stride[j];
+				while (j > 0 && pos[j] == shape[j]) {
+					index -= stride[j] * shape[j];
+					pos[j--] = 0;
+					pos[j]++;
+					index += stride[j];
+				}
+			}
+		}
+
+		private void read(final double[] out, final int start, final int n) {
+			switch (data.getDtype()) {
+			case Dataset.FLOAT64:
+				System.arraycopy(((DoubleDataset) data).data, start, out, 0, n);
+				break;
+			case Dataset.FLOAT32:
+				final float[] f32data = ((FloatDataset) data).data;
+				for (int i = 0; i < n; i++) {
+					out[i] = f32data[start + i];
+				}
+				break;
+			case Dataset.INT64:
+				final long[] i64data = ((LongDataset) data).data;
+				for (int i = 0; i < n; i++) {
+					out[i] = i64data[start + i];
+				}
+				break;
+			case Dataset.INT32:
+				final int[] i32data = ((IntegerDataset) data).data;
+				for (int i = 0; i < n; i++) {
+					out[i] = i32data[start + i];
+				}
+				break;
+			case Dataset.INT16:
+				final short[] i16data = ((ShortDataset) data).data;
+				for (int i = 0; i < n; i++) {
+					out[i] = i16data[start + i];
+				}
+				break;
+			case Dataset.INT8:
+				final byte[] i8data = ((ByteDataset) data).data;
+				for (int i = 0; i < n; i++) {
+					out[i] = i8data[start + i];
+				}
+				break;
+			default:
+				for (int i = 0; i < n; i++) {
+					out[i] = data.getElementDoubleAbs(start + i);
+				}
+				break;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return data.getName() == null ? "" : data.getName().trim();
+		}
+
+		@Override
+		boolean isCompound() {
+			final String name = toString();
+			return name.contains("+") || name.contains("-") || name.contains("*") ||
+					name.contains("/") || name.contains("%") || name.contains("^") || name.contains("'");
+		}
+	}
+
+	private static class Unary extends DatasetExpression {
+		private final int op;
+		private final String name;
+		private final DatasetExpression a;
+
+		Unary(final int op, final String name, final DatasetExpression a) {
+			this.op = op;
+			this.name = name;
+			this.a = a;
+		}
+
+		@Override
+		void collect(List<DatasetExpression> nodes, List<Leaf> leaves) {
+			a.collect(nodes, leaves);
+			super.id = nodes.size();
+			nodes.add(this);
+		}
+
+		@Override
+		void evaluate(double[][] buffers, int start, int n) {
+			a.evaluate(buffers, start, n);
+			final double[] x = buffers[a.id];
+			final double[] o = buffers[super.id];
+			switch (op) {
+			case NEGATIVE:
+				for (int i = 0; i < n; i++) {
+					o[i] = -x[i];
+				}
+				break;
+			case ABS:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.abs(x[i]);
+				}
+				break;
+			case SQRT:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.sqrt(x[i]);
+				}
+				break;
+			case SQUARE:
+				for (int i = 0; i < n; i++) {
+					o[i] = x[i] * x[i];
+				}
+				break;
+			case EXP:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.exp(x[i]);
+				}
+				break;
+			case LOG:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.log(x[i]);
+				}
+				break;
+			case LOG10:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.log10(x[i]);
+				}
+				break;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name + "(" + a + ")";
+		}
+	}
+
+	private static class Binary extends DatasetExpression {
+		private final int op;
+		private final String symbol;
+		private final DatasetExpression a;
+		private final DatasetExpression b;
+
+		Binary(final int op, final String symbol, final DatasetExpression a, final DatasetExpression b) {
+			this.op = op;
+			this.symbol = symbol;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		void collect(List<DatasetExpression> nodes, List<Leaf> leaves) {
+			a.collect(nodes, leaves);
+			b.collect(nodes, leaves);
+			super.id = nodes.size();
+			nodes.add(this);
+		}
+
+		@Override
+		void evaluate(double[][] buffers, int start, int n) {
+			a.evaluate(buffers, start, n);
+			b.evaluate(buffers, start, n);
+			final double[] x = buffers[a.id];
+			final double[] y = buffers[b.id];
+			final double[] o = buffers[super.id];
+			switch (op) {
+			case ADD:
+				for (int i = 0; i < n; i++) {
+					o[i] = x[i] + y[i];
+				}
+				break;
+			case SUBTRACT:
+				for (int i = 0; i < n; i++) {
+					o[i] = x[i] - y[i];
+				}
+				break;
+			case MULTIPLY:
+				for (int i = 0; i < n; i++) {
+					o[i] = x[i] * y[i];
+				}
+				break;
+			case DIVIDE:
+				for (int i = 0; i < n; i++) {
+					o[i] = x[i] / y[i];
+				}
+				break;
+			case POWER:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.pow(x[i], y[i]);
+				}
+				break;
+			case MAXIMUM:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.max(x[i], y[i]);
+				}
+				break;
+			case MINIMUM:
+				for (int i = 0; i < n; i++) {
+					o[i] = Math.min(x[i], y[i]);
+				}
+				break;
+			}
+		}
+
+		@Override
+		boolean isCompound() {
+			return op <= POWER;
+		}
+
+		@Override
+		public String toString() {
+			if (op > POWER) {
+				return symbol + "(" + a + ", " + b + ")";
+			}
+			return bracketIfNecessary(a) + symbol + bracketIfNecessary(b);
+		}
+	}
+}
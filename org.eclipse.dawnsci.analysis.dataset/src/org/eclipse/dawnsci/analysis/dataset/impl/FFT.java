@@ -189,7 +189,7 @@ public class FFT {
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
 		case Dataset.COMPLEX64:
-			FloatFFT_1D ffft = new FloatFFT_1D(n);
+			FloatFFT_1D ffft = TransformPlans.acquire(FloatFFT_1D.class, n);
 			shape = a.getShape();
 			shape[axis] = n;
 			result = new ComplexFloatDataset(shape);
@@ -204,10 +204,11 @@ public class FFT {
 				ffft.complexForward(fdata);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, n);
 			break;
 		case Dataset.FLOAT64:
 		case Dataset.COMPLEX128:
-			DoubleFFT_1D dfft = new DoubleFFT_1D(n);
+			DoubleFFT_1D dfft = TransformPlans.acquire(DoubleFFT_1D.class, n);
 			shape = a.getShape();
 			shape[axis] = n;
 			result = new ComplexDoubleDataset(shape);
@@ -222,6 +223,7 @@ public class FFT {
 				dfft.complexForward(ddata);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, n);
 			break;
 		default:
 			logger.warn("Non-float dataset not yet supported");
@@ -242,7 +244,7 @@ public class FFT {
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
 		case Dataset.COMPLEX64:
-			FloatFFT_2D ffft = new FloatFFT_2D(s[0], s[1]);
+			FloatFFT_2D ffft = TransformPlans.acquire(FloatFFT_2D.class, s[0], s[1]);
 			float[] fdata = null;
 			result = new ComplexFloatDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new ComplexFloatDataset(s);
@@ -256,10 +258,11 @@ public class FFT {
 				ffft.complexForward(fdata);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1]);
 			break;
 		case Dataset.FLOAT64:
 		case Dataset.COMPLEX128:
-			DoubleFFT_2D dfft = new DoubleFFT_2D(s[0], s[1]);
+			DoubleFFT_2D dfft = TransformPlans.acquire(DoubleFFT_2D.class, s[0], s[1]);
 			double[] ddata = null;
 			result = new ComplexDoubleDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new ComplexDoubleDataset(s);
@@ -273,6 +276,7 @@ public class FFT {
 				dfft.complexForward(ddata);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, s[0], s[1]);
 			break;
 		default:
 			logger.warn("Non-float dataset not yet supported");
@@ -293,7 +297,7 @@ public class FFT {
 		switch (a.getDtype()) {
 		case Dataset.FLOAT32:
 		case Dataset.COMPLEX64:
-			FloatFFT_3D ffft = new FloatFFT_3D(s[0], s[1], s[2]);
+			FloatFFT_3D ffft = TransformPlans.acquire(FloatFFT_3D.class, s[0], s[1], s[2]);
 
 			float[] fdata = null;
 			result = new ComplexFloatDataset(newShape(a.getShapeRef(), s, axes));
@@ -308,10 +312,11 @@ public class FFT {
 				ffft.complexForward(fdata);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1], s[2]);
 			break;
 		case Dataset.FLOAT64:
 		case Dataset.COMPLEX128:
-			DoubleFFT_3D dfft = new DoubleFFT_3D(s[0], s[1], s[2]);
+			DoubleFFT_3D dfft = TransformPlans.acquire(DoubleFFT_3D.class, s[0], s[1], s[2]);
 
 			double[] ddata = null;
 			result = new ComplexDoubleDataset(newShape(a.getShapeRef(), s, axes));
@@ -326,6 +331,7 @@ public class FFT {
 				dfft.complexForward(ddata);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, s[0], s[1], s[2]);
 			break;
 		default:
 			logger.warn("Non-float dataset not yet supported");
@@ -476,7 +482,7 @@ public class FFT {
 
 		switch (a.getDtype()) {
 		case Dataset.COMPLEX64:
-			FloatFFT_1D ffft = new FloatFFT_1D(n);
+			FloatFFT_1D ffft = TransformPlans.acquire(FloatFFT_1D.class, n);
 			float[] fdata = null;
 			shape = a.getShape();
 			shape[axis] = n;
@@ -492,9 +498,10 @@ public class FFT {
 				ffft.complexInverse(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, n);
 			break;
 		case Dataset.COMPLEX128:
-			DoubleFFT_1D dfft = new DoubleFFT_1D(n);
+			DoubleFFT_1D dfft = TransformPlans.acquire(DoubleFFT_1D.class, n);
 			double[] ddata = null;
 			shape = a.getShape();
 			shape[axis] = n;
@@ -510,6 +517,7 @@ public class FFT {
 				dfft.complexInverse(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, n);
 			break;
 		default:
 			logger.warn("Non-complex dataset not yet supported");
@@ -529,7 +537,7 @@ public class FFT {
 
 		switch (a.getDtype()) {
 		case Dataset.COMPLEX64:
-			FloatFFT_2D ffft = new FloatFFT_2D(s[0], s[1]);
+			FloatFFT_2D ffft = TransformPlans.acquire(FloatFFT_2D.class, s[0], s[1]);
 			float[] fdata = null;
 			result = new ComplexFloatDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new ComplexFloatDataset(s);
@@ -543,9 +551,10 @@ public class FFT {
 				ffft.complexInverse(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1]);
 			break;
 		case Dataset.COMPLEX128:
-			DoubleFFT_2D dfft = new DoubleFFT_2D(s[0], s[1]);
+			DoubleFFT_2D dfft = TransformPlans.acquire(DoubleFFT_2D.class, s[0], s[1]);
 			double[] ddata = null;
 			result = new ComplexDoubleDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new ComplexDoubleDataset(s);
@@ -559,6 +568,7 @@ public class FFT {
 				dfft.complexInverse(ddata, true);
 				result.setItemsOnAxes(pos, hit, ddata);
 			}
+			TransformPlans.release(dfft, s[0], s[1]);
 			break;
 		default:
 			logger.warn("Non-complex dataset not yet supported");
@@ -578,7 +588,7 @@ public class FFT {
 
 		switch (a.getDtype()) {
 		case Dataset.COMPLEX64:
-			FloatFFT_3D ffft = new FloatFFT_3D(s[0], s[1], s[2]);
+			FloatFFT_3D ffft = TransformPlans.acquire(FloatFFT_3D.class, s[0], s[1], s[2]);
 			float[] fdata = null;
 			result = new ComplexFloatDataset(newShape(a.getShapeRef(), s, axes));
 			dest = new ComplexFloatDataset(s);
@@ -592,9 +602,10 @@ public class FFT {
 				ffft.complexInverse(fdata, true);
 				result.setItemsOnAxes(pos, hit, fdata);
 			}
+			TransformPlans.release(ffft, s[0], s[1], s[2]);
 			break;
 		case Dataset.COMPLEX128:
-				DoubleFFT_3D dfft = new DoubleFFT_3D(s[0], s[1], s[2]);
+				DoubleFFT_3D dfft = TransformPlans.acquire(DoubleFFT_3D.class, s[0], s[1], s[2]);
 				double[] ddata = null;
 				result = new ComplexDoubleDataset(newShape(a.getShapeRef(), s, axes));
 				dest = new ComplexDoubleDataset(s);
@@ -608,6 +619,7 @@ public class FFT {
 					dfft.complexInverse(ddata, true);
 					result.setItemsOnAxes(pos, hit, ddata);
 				}
+				TransformPlans.release(dfft, s[0], s[1], s[2]);
 				break;
 		default:
 			logger.warn("Non-complex dataset not yet supported");
@@ -617,6 +629,335 @@ public class FFT {
 		return result;
 	}
 
+	/**
+	 * forward 1D fast Fourier transform of real dataset
+	 * @param a dataset
+	 * @return new dataset holding non-negative frequency terms of transform
+	 */
+	public static Dataset rfft(final Dataset a) {
+		return rfft(a, a.getShapeRef()[a.getRank() - 1], -1);
+	}
+
+	/**
+	 * forward 1D fast Fourier transform of real dataset
+	 * <p>
+	 * As the transform of real values has Hermitian symmetry, only the n/2 + 1 terms
+	 * of non-negative frequency are computed and returned.
+	 * @param a dataset
+	 * @param n number of points
+	 * @param axis (negative numbers refer to axes from end, eg. -1 is last axis)
+	 * @return new dataset holding non-negative frequency terms of transform
+	 */
+	public static Dataset rfft(final Dataset a, final int n, int axis) {
+		if (n <= 0) {
+			logger.error("number of points should be greater than zero");
+			throw new IllegalArgumentException("number of points should be greater than zero");
+		}
+		axis = a.checkAxis(axis);
+
+		return rfft1d(a, n, axis);
+	}
+
+	/**
+	 * forward nD fast Fourier transform of real dataset
+	 * <p>
+	 * A real transform is done over the last of the axes and complex transforms over the others
+	 * so only the non-negative frequency terms of the last axis are returned.
+	 * @param a dataset
+	 * @param s shape of FFT dataset (if null, use whole dataset)
+	 * @param axes for FFT (if null, default as [..., -1])
+	 * @return new dataset holding transform
+	 */
+	public static Dataset rfftn(final Dataset a, int[] s, int[] axes) {
+		axes = checkRealAxes(a, s, axes);
+		if (s == null) {
+			s = new int[axes.length];
+			int[] shape = a.getShapeRef();
+			for (int i = 0; i < axes.length; i++) {
+				s[i] = shape[axes[i]];
+			}
+		}
+		checkRealShape(s, axes);
+
+		int last = axes.length - 1;
+		Dataset result = rfft1d(a, s[last], axes[last]);
+		for (int i = last - 1; i >= 0; i--) {
+			result = fft1d(result, s[i], axes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * inverse 1D fast Fourier transform to real dataset
+	 * @param a dataset holding non-negative frequency terms
+	 * @return new dataset holding real transform of 2(m-1) points where m is the length of the last axis
+	 */
+	public static Dataset irfft(final Dataset a) {
+		return irfft(a, 2 * (a.getShapeRef()[a.getRank() - 1] - 1), -1);
+	}
+
+	/**
+	 * inverse 1D fast Fourier transform to real dataset
+	 * <p>
+	 * This is the inverse of {@link #rfft(Dataset, int, int)} so only the first n/2 + 1 terms
+	 * are used (with zeros if there are fewer) and the imaginary parts of the zero and Nyquist
+	 * frequency terms are ignored.
+	 * @param a dataset holding non-negative frequency terms
+	 * @param n number of points
+	 * @param axis (negative numbers refer to axes from end, eg. -1 is last axis)
+	 * @return new dataset holding real transform
+	 */
+	public static Dataset irfft(final Dataset a, final int n, int axis) {
+		if (n <= 0) {
+			logger.error("number of points should be greater than zero");
+			throw new IllegalArgumentException("number of points should be greater than zero");
+		}
+		axis = a.checkAxis(axis);
+
+		return irfft1d(a, n, axis);
+	}
+
+	/**
+	 * inverse nD fast Fourier transform to real dataset
+	 * <p>
+	 * This is the inverse of {@link #rfftn(Dataset, int[], int[])}
+	 * @param a dataset holding non-negative frequency terms of last axis
+	 * @param s shape of real dataset (if null, use whole dataset except last axis is 2(m-1) where
+	 * m is its length in dataset)
+	 * @param axes for FFT (if null, default as [..., -1])
+	 * @return new dataset holding real transform
+	 */
+	public static Dataset irfftn(final Dataset a, int[] s, int[] axes) {
+		axes = checkRealAxes(a, s, axes);
+		if (s == null) {
+			s = new int[axes.length];
+			int[] shape = a.getShapeRef();
+			for (int i = 0; i < axes.length; i++) {
+				s[i] = shape[axes[i]];
+			}
+			s[axes.length - 1] = 2 * (s[axes.length - 1] - 1);
+		}
+		checkRealShape(s, axes);
+
+		int last = axes.length - 1;
+		Dataset result = a;
+		for (int i = 0; i < last; i++) {
+			if (!result.isComplex()) {
+				result = result.cast(Dataset.COMPLEX128);
+			}
+			result = ifft1d(result, s[i], axes[i]);
+		}
+		return irfft1d(result, s[last], axes[last]);
+	}
+
+	private static int[] checkRealAxes(final Dataset a, final int[] s, int[] axes) {
+		int rank = a.getRank();
+		if (axes == null) {
+			int alen = s == null ? rank : s.length;
+			if (alen > rank) {
+				logger.error("shape of FFT should not have more dimensions than dataset");
+				throw new IllegalArgumentException("shape of FFT should not have more dimensions than dataset");
+			}
+			axes = new int[alen];
+			for (int i = 0; i < alen; i++) {
+				axes[i] = rank - alen + i;
+			}
+		} else {
+			axes = axes.clone();
+			for (int i = 0; i < axes.length; i++) {
+				axes[i] = a.checkAxis(axes[i]);
+			}
+		}
+		if (axes.length == 0) {
+			logger.error("axes should have at least one entry");
+			throw new IllegalArgumentException("axes should have at least one entry");
+		}
+		return axes;
+	}
+
+	private static void checkRealShape(final int[] s, final int[] axes) {
+		if (s.length != axes.length) {
+			logger.error("shape of FFT should have same rank as axes");
+			throw new IllegalArgumentException("shape of FFT should have same rank as axes");
+		}
+		for (int l : s) {
+			if (l <= 0) {
+				logger.error("dimensions should be greater than zero");
+				throw new IllegalArgumentException("dimensions should be greater than zero");
+			}
+		}
+	}
+
+	private static Dataset rfft1d(Dataset a, final int n, final int axis) {
+		if (a.isComplex()) {
+			logger.error("dataset should not be complex");
+			throw new IllegalArgumentException("dataset should not be complex");
+		}
+		if (a.getDtype() != Dataset.FLOAT32 && a.getDtype() != Dataset.FLOAT64) {
+			a = a.cast(Dataset.FLOAT64);
+		}
+
+		Dataset result = null;
+		Dataset dest = null;
+
+		int[] shape = a.getShape();
+		final int l = Math.max(n, shape[axis]);
+		shape[axis] = n / 2 + 1;
+		PositionIterator pi = a.getPositionIterator(axis);
+		int[] pos = pi.getPos();
+		boolean[] hit = pi.getOmit();
+
+		if (a.getDtype() == Dataset.FLOAT32) {
+			FloatFFT_1D ffft = TransformPlans.acquire(FloatFFT_1D.class, n);
+			result = new ComplexFloatDataset(shape);
+			dest = new FloatDataset(new int[] {l});
+			float[] fdata = (float[]) dest.getBuffer();
+			float[] fout = new float[2 * shape[axis]];
+			while (pi.hasNext()) {
+				Arrays.fill(fdata, 0.f);
+				a.copyItemsFromAxes(pos, hit, dest);
+				ffft.realForward(fdata);
+				unpackReal(n, fdata, fout);
+				result.setItemsOnAxes(pos, hit, fout);
+			}
+			TransformPlans.release(ffft, n);
+		} else {
+			DoubleFFT_1D dfft = TransformPlans.acquire(DoubleFFT_1D.class, n);
+			result = new ComplexDoubleDataset(shape);
+			dest = new DoubleDataset(new int[] {l});
+			double[] ddata = (double[]) dest.getBuffer();
+			double[] dout = new double[2 * shape[axis]];
+			while (pi.hasNext()) {
+				Arrays.fill(ddata, 0.);
+				a.copyItemsFromAxes(pos, hit, dest);
+				dfft.realForward(ddata);
+				unpackReal(n, ddata, dout);
+				result.setItemsOnAxes(pos, hit, dout);
+			}
+			TransformPlans.release(dfft, n);
+		}
+
+		return result;
+	}
+
+	private static Dataset irfft1d(Dataset a, final int n, final int axis) {
+		if (!a.isComplex()) {
+			a = a.cast(a.getDtype() == Dataset.FLOAT32 ? Dataset.COMPLEX64 : Dataset.COMPLEX128);
+		}
+
+		Dataset result = null;
+		Dataset dest = null;
+
+		int[] shape = a.getShape();
+		final int l = Math.max(n / 2 + 1, shape[axis]);
+		shape[axis] = n;
+		PositionIterator pi = a.getPositionIterator(axis);
+		int[] pos = pi.getPos();
+		boolean[] hit = pi.getOmit();
+
+		switch (a.getDtype()) {
+		case Dataset.COMPLEX64:
+			FloatFFT_1D ffft = TransformPlans.acquire(FloatFFT_1D.class, n);
+			result = new FloatDataset(shape);
+			dest = new ComplexFloatDataset(new int[] {l});
+			float[] fdata = (float[]) dest.getBuffer();
+			float[] fout = new float[n];
+			while (pi.hasNext()) {
+				Arrays.fill(fdata, 0.f);
+				a.copyItemsFromAxes(pos, hit, dest);
+				packReal(n, fdata, fout);
+				ffft.realInverse(fout, true);
+				result.setItemsOnAxes(pos, hit, fout);
+			}
+			TransformPlans.release(ffft, n);
+			break;
+		case Dataset.COMPLEX128:
+			DoubleFFT_1D dfft = TransformPlans.acquire(DoubleFFT_1D.class, n);
+			result = new DoubleDataset(shape);
+			dest = new ComplexDoubleDataset(new int[] {l});
+			double[] ddata = (double[]) dest.getBuffer();
+			double[] dout = new double[n];
+			while (pi.hasNext()) {
+				Arrays.fill(ddata, 0.);
+				a.copyItemsFromAxes(pos, hit, dest);
+				packReal(n, ddata, dout);
+				dfft.realInverse(dout, true);
+				result.setItemsOnAxes(pos, hit, dout);
+			}
+			TransformPlans.release(dfft, n);
+			break;
+		default:
+			logger.warn("Non-complex dataset not yet supported");
+			break;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Convert from packed format of JTransforms' real forward transform to non-negative frequency terms
+	 * @param n number of points
+	 * @param in packed
+	 * @param out interleaved complex
+	 */
+	private static void unpackReal(final int n, final double[] in, final double[] out) {
+		out[0] = in[0];
+		out[1] = 0;
+		for (int i = 2; i < n; i++) {
+			out[i] = in[i];
+		}
+		if (n % 2 == 0) {
+			if (n > 1) {
+				out[n] = in[1];
+				out[n + 1] = 0;
+			}
+		} else if (n > 1) {
+			out[n] = in[1];
+		}
+	}
+
+	private static void unpackReal(final int n, final float[] in, final float[] out) {
+		out[0] = in[0];
+		out[1] = 0;
+		for (int i = 2; i < n; i++) {
+			out[i] = in[i];
+		}
+		if (n % 2 == 0) {
+			if (n > 1) {
+				out[n] = in[1];
+				out[n + 1] = 0;
+			}
+		} else if (n > 1) {
+			out[n] = in[1];
+		}
+	}
+
+	/**
+	 * Convert from non-negative frequency terms to packed format of JTransforms' real inverse transform
+	 * @param n number of points
+	 * @param in interleaved complex
+	 * @param out packed
+	 */
+	private static void packReal(final int n, final double[] in, final double[] out) {
+		out[0] = in[0];
+		for (int i = 2; i < n; i++) {
+			out[i] = in[i];
+		}
+		if (n > 1) {
+			out[1] = in[n];
+		}
+	}
+
+	private static void packReal(final int n, final float[] in, final float[] out) {
+		out[0] = in[0];
+		for (int i = 2; i < n; i++) {
+			out[i] = in[i];
+		}
+		if (n > 1) {
+			out[1] = in[n];
+		}
+	}
+
 	/**
 	 * Shift zero-frequency component to centre of dataset
 	 * @param a
@@ -230,7 +230,25 @@ public class Image {
 	}
 
 	/**
-	 * Applies a minimum filter (slower)
+	 * How values beyond the edges of an input are given
+	 */
+	public static enum BoundaryMode {
+		/**
+		 * Zero
+		 */
+		ZERO,
+		/**
+		 * Reflection about edge so edge values are repeated (d c b a | a b c d | d c b a)
+		 */
+		REFLECT,
+		/**
+		 * Nearest edge value (a a a a | a b c d | d d d d)
+		 */
+		NEAREST
+	}
+
+	/**
+	 * Applies a minimum filter
 	 * @param input
 	 * @param kernel
 	 * @return filtered data
@@ -240,7 +258,7 @@ public class Image {
 	}
 
 	/**
-	 * Applies a maximum filter (slower)
+	 * Applies a maximum filter
 	 * @param input
 	 * @param kernel
 	 * @return filtered data
@@ -250,7 +268,7 @@ public class Image {
 	}
 
 	/**
-	 * Applies a median filter (slower)
+	 * Applies a median filter
 	 * @param input
 	 * @param kernel
 	 * @return filtered data
@@ -260,7 +278,7 @@ public class Image {
 	}
 
 	/**
-	 * Applies a mean Filter (slower)
+	 * Applies a mean filter
 	 * @param input
 	 * @param kernel
 	 * @return filtered data
@@ -310,7 +328,41 @@ public class Image {
 		int[] shape = input.getShape();
 		if (kernel.length != shape.length)
 			throw new IllegalArgumentException("Kernel shape must be the same shape as the input dataset");
+		for (int k : kernel) {
+			if (k < 1)
+				throw new IllegalArgumentException("Kernel lengths must be positive");
+		}
+
+		if (input.getElementsPerItem() != 1) {
+			return sliceFilter(input, kernel, type);
+		}
+
+		double[] values = new double[input.getSize()];
+		IndexIterator iter = input.getIterator();
+		int i = 0;
+		while (iter.hasNext()) {
+			values[i++] = input.getElementDoubleAbs(iter.index);
+		}
+
+		double[] filtered = null;
+		if (type == FilterType.MEDIAN) {
+			filtered = WindowFilters.median(values, shape, kernel);
+		} else if (type == FilterType.MIN) {
+			filtered = WindowFilters.minimum(values, shape, kernel);
+		} else if (type == FilterType.MAX) {
+			filtered = WindowFilters.maximum(values, shape, kernel);
+		} else if (type == FilterType.MEAN) {
+			filtered = WindowFilters.mean(values, shape, kernel);
+		}
 
+		Dataset result = input.clone();
+		result.setSlice(new DoubleDataset(filtered, shape), null, null, null);
+		return result;
+	}
+
+	// filters compound datasets by finding statistics of each window
+	private static Dataset sliceFilter(Dataset input, int[] kernel, FilterType type) {
+		int[] shape = input.getShape();
 		Dataset result = input.clone();
 		int[] offset = kernel.clone();
 		for (int i = 0; i < offset.length; i++) {
@@ -359,13 +411,55 @@ public class Image {
 		return Maths.subtract(input, median2);
 	}
 
+	/**
+	 * Applies a kernel filter with zeros beyond the edges of the input
+	 * @param input
+	 * @param kernel
+	 * @return filtered data
+	 */
 	public static Dataset convolutionFilter(Dataset input, Dataset kernel) {
+		return convolutionFilter(input, kernel, BoundaryMode.ZERO);
+	}
+
+	/**
+	 * Applies a kernel filter. The output at each position is the sum of the products of the kernel
+	 * and the input in a window that is centred on that position (the kernel is not flipped).
+	 * Separable kernels are applied as one pass per axis and large kernels use FFTs
+	 * @param input
+	 * @param kernel
+	 * @param mode how input values beyond its edges are given
+	 * @return filtered data
+	 */
+	public static Dataset convolutionFilter(Dataset input, Dataset kernel, BoundaryMode mode) {
 		// check to see if the kernel shape in the correct dimensionality.
 		int[] shape = input.getShape();
 		int[] kShape = kernel.getShape();
 		if (kShape.length != shape.length)
 			throw new IllegalArgumentException("Kernel shape must be the same shape as the input dataset");
 
+		if (input.getElementsPerItem() != 1 || kernel.getElementsPerItem() != 1) {
+			if (mode != BoundaryMode.ZERO)
+				throw new IllegalArgumentException("Only zero boundary mode is supported for compound datasets");
+			return sliceConvolutionFilter(input, kernel);
+		}
+
+		double[] values = new double[input.getSize()];
+		IndexIterator iter = input.getIterator();
+		int i = 0;
+		while (iter.hasNext()) {
+			values[i++] = input.getElementDoubleAbs(iter.index);
+		}
+
+		Dataset result = input.clone();
+		result.setSlice(new DoubleDataset(Convolution.filter(values, shape, kernel, mode), shape), null, null, null);
+		return result;
+	}
+
+	// filters compound datasets by summing products of each window and kernel
+	private static Dataset sliceConvolutionFilter(Dataset input, Dataset kernel) {
+		int[] shape = input.getShape();
+		int[] kShape = kernel.getShape();
+
 		Dataset result = input.clone();
 		int[] offset = kShape.clone();
 		for (int i = 0; i < offset.length; i++) {
@@ -407,12 +501,22 @@ public class Image {
 	}
 	
 	public static Dataset sobelFilter(Dataset input) {
+		return sobelFilter(input, BoundaryMode.ZERO);
+	}
+
+	/**
+	 * Applies the sum of horizontal and vertical Sobel filters
+	 * @param input
+	 * @param mode how input values beyond its edges are given
+	 * @return filtered data
+	 */
+	public static Dataset sobelFilter(Dataset input, BoundaryMode mode) {
 		//TODO should be extended for Nd but 2D is all that is required for now.
 		if(input.getShape().length != 2) throw new IllegalArgumentException("The sobel filter only works on 2D datasets");
 		DoubleDataset kernel = new DoubleDataset(new double[] {-1,0,1,-2,0,2,-1,0,1}, 3 ,3);
-		Dataset result = convolutionFilter(input, kernel);
+		Dataset result = convolutionFilter(input, kernel, mode);
 		kernel = new DoubleDataset(new double[] {-1,-2,-1,0,0,0,1,2,1}, 3 ,3);
-		result.iadd(convolutionFilter(input, kernel));
+		result.iadd(convolutionFilter(input, kernel, mode));
 		return result;
 	}
 	
@@ -10,8 +10,14 @@
 package org.eclipse.dawnsci.analysis.dataset.impl;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
+import org.eclipse.dawnsci.analysis.api.dataset.IChunked;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.Slice;
@@ -21,7 +27,7 @@ import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
 /**
  * Class that implements lazy dataset interface
  */
-public class LazyDataset extends LazyDatasetBase implements Cloneable, Serializable {
+public class LazyDataset extends LazyDatasetBase implements IChunked, Cloneable, Serializable {
 
 	/**
 	 * Update this when there are any serious changes to API
@@ -87,7 +93,7 @@ public class LazyDataset extends LazyDatasetBase implements Cloneable, Serializa
 			ret.sliceStart = sliceStart.clone();
 			ret.sliceStep = sliceStep.clone();
 		}
-		ret.metadata = copyMetadata();
+		copyMetadataTo(ret);
 		return ret;
 	}
 
@@ -248,94 +254,217 @@ public class LazyDataset extends LazyDatasetBase implements Cloneable, Serializa
 		if (loader != null && !loader.isFileReadable())
 			return null; // TODO add interaction to use plot server to load dataset
 
-		int rank = shape.length;
-		int[] lstart;
-		int[] lstop;
-		int[] lstep;
-		if (step == null) {
-			lstep = new int[rank];
-			Arrays.fill(lstep, 1);
-		} else {
-			lstep = step;
+		Region g = new Region(start, stop, step);
+		if (base != null) {
+			return base.getSlice(monitor, g.getBaseStart(), g.getBaseStop(), g.getBaseStep());
 		}
 
-		if (start == null) {
-			lstart = new int[rank];
-		} else {
-			lstart = start;
+		IDataset a;
+		try {
+			a = loader.getDataset(monitor, oShape, g.nstart, g.nstop, g.nstep);
+			a.setShape(g.lshape);
+		} catch (Exception e) {
+			// return a fake dataset to show that this has not worked, should not be used in general though.
+			logger.debug("Problem getting {}: {}", String.format("slice %s %s %s", Arrays.toString(start), Arrays.toString(stop),
+							Arrays.toString(step)), e);
+			a = new DoubleDataset(1);
 		}
+		return finishSlice(a, g);
+	}
 
-		if (stop == null) {
-			lstop = getShape();
-		} else {
-			lstop = stop;
+	private IDataset finishSlice(IDataset a, Region g) {
+		a.setName(name + AbstractDataset.BLOCK_OPEN + Slice.createString(oShape, g.nstart, g.nstop, g.nstep) + AbstractDataset.BLOCK_CLOSE);
+		if (metadata != null && a instanceof LazyDatasetBase) {
+			copyMetadataTo((LazyDatasetBase) a);
+			((LazyDatasetBase) a).sliceMetadata(false, g.lstart, g.lstop, g.lstep, shape);
 		}
 
-		int[] lshape = AbstractDataset.checkSlice(shape, start, stop, lstart, lstop, lstep);
-		int[] nstart;
-		int[] nstop;
-		int[] nstep;
-		int[] nshape;
-
-		int r = oShape.length;
-		if (r != shape.length || oOffset != nOffset) {
-			nstart = new int[r];
-			nstop = new int[r];
-			nstep = new int[r];
-			nshape = new int[r];
-			int i = 0;
-			for (; i < oOffset; i++) {
-				nstart[i] = 0;
-				nstop[i]  = 1;
-				nstep[i]  = 1;
-				nshape[i] = 1;
-			}
-			int j = nOffset;
-			for (; i < r && j < shape.length; i++, j++) {
-				nstart[i] = lstart[j];
-				nstop[i]  = lstop[j];
-				nstep[i]  = lstep[j];
-				nshape[i] = lshape[j];
+		return a;
+	}
+
+	/**
+	 * Get slice without blocking. Unlike {@link #getSlice(IMonitor, int[], int[], int[])}, a failed read is
+	 * reported by the future throwing an exception. Loaders that are not {@link IAsyncLazyLoader}s are run
+	 * by an {@link AsyncLazyLoader}
+	 * @param monitor
+	 * @param start
+	 * @param stop
+	 * @param step
+	 * @return future of slice (whose result is null if file is not readable)
+	 */
+	public Future<IDataset> getSliceAsync(IMonitor monitor, int[] start, int[] stop, int[] step) {
+		return getSlicesAsync(monitor, new int[][] {start}, new int[][] {stop}, new int[][] {step}).get(0);
+	}
+
+	/**
+	 * Get slice without blocking
+	 * @param monitor
+	 * @param slice
+	 * @return future of slice
+	 * @see #getSliceAsync(IMonitor, int[], int[], int[])
+	 */
+	public Future<IDataset> getSliceAsync(IMonitor monitor, Slice... slice) {
+		return getSlicesAsync(monitor, Collections.singletonList(slice)).get(0);
+	}
+
+	/**
+	 * Get several slices without blocking. These are requested from the loader together
+	 * so it can read them in fewer operations
+	 * @param monitor
+	 * @param slices
+	 * @return futures of slices in same order
+	 * @see #getSliceAsync(IMonitor, int[], int[], int[])
+	 */
+	public List<Future<IDataset>> getSlicesAsync(IMonitor monitor, List<Slice[]> slices) {
+		final int n = slices.size();
+		final int rank = shape.length;
+		final int[][] start = new int[n][rank];
+		final int[][] stop = new int[n][rank];
+		final int[][] step = new int[n][rank];
+		for (int i = 0; i < n; i++) {
+			Slice.convertFromSlice(slices.get(i), shape, start[i], stop[i], step[i]);
+		}
+		return getSlicesAsync(monitor, start, stop, step);
+	}
+
+	private List<Future<IDataset>> getSlicesAsync(IMonitor monitor, int[][] start, int[][] stop, int[][] step) {
+		final int n = start.length;
+		final List<Future<IDataset>> futures = new ArrayList<Future<IDataset>>(n);
+		if (loader != null && !loader.isFileReadable()) {
+			for (int i = 0; i < n; i++) {
+				FutureTask<IDataset> f = new FutureTask<IDataset>(new Runnable() {
+					@Override
+					public void run() {
+					}
+				}, null);
+				f.run();
+				futures.add(f);
 			}
-			for (; i < r; i++) {
-				nstart[i] = 0;
-				nstop[i]  = 1;
-				nstep[i]  = 1;
-				nshape[i] = 1;
+			return futures;
+		}
+
+		final Region[] regions = new Region[n];
+		final int[][] nstart = new int[n][];
+		final int[][] nstop = new int[n][];
+		final int[][] nstep = new int[n][];
+		for (int i = 0; i < n; i++) {
+			Region g = new Region(start[i], stop[i], step[i]);
+			regions[i] = g;
+			if (base != null) {
+				nstart[i] = g.getBaseStart();
+				nstop[i] = g.getBaseStop();
+				nstep[i] = g.getBaseStep();
+			} else {
+				nstart[i] = g.nstart;
+				nstop[i] = g.nstop;
+				nstep[i] = g.nstep;
 			}
-		} else {
-			nstart = lstart;
-			nstop  = lstop;
-			nstep  = lstep;
-			nshape = lshape;
 		}
-
 		if (base != null) {
-			for (int i = 0; i < r; i++) {
-				nstart[i] = sliceStart[i] + nstart[i] * sliceStep[i];
-				nstop[i]  = sliceStart[i] + (nstop[i] - 1) * sliceStep[i] + 1;
-				nstep[i]  = nstep[i] * sliceStep[i];
+			return base.getSlicesAsync(monitor, nstart, nstop, nstep);
+		}
+
+		List<Future<IDataset>> read = AsyncLazyLoader.getAsyncLoader(loader).getDatasetsAsync(monitor, oShape, nstart, nstop, nstep);
+		for (int i = 0; i < n; i++) {
+			final Region g = regions[i];
+			futures.add(new MappedFuture<IDataset, IDataset>(read.get(i), false) {
+				@Override
+				protected IDataset map(IDataset a) throws Exception {
+					a.setShape(g.lshape);
+					return finishSlice(a, g);
+				}
+			});
+		}
+		return futures;
+	}
+
+	/**
+	 * Region of slice in this dataset and in the original shape
+	 */
+	private class Region {
+		private final int[] lstart;
+		private final int[] lstop;
+		private final int[] lstep;
+		private final int[] lshape;
+		private final int[] nstart;
+		private final int[] nstop;
+		private final int[] nstep;
+
+		Region(int[] start, int[] stop, int[] step) {
+			int rank = shape.length;
+			if (step == null) {
+				lstep = new int[rank];
+				Arrays.fill(lstep, 1);
+			} else {
+				lstep = step;
+			}
+
+			if (start == null) {
+				lstart = new int[rank];
+			} else {
+				lstart = start;
+			}
+
+			if (stop == null) {
+				lstop = getShape();
+			} else {
+				lstop = stop;
+			}
+
+			lshape = AbstractDataset.checkSlice(shape, start, stop, lstart, lstop, lstep);
+
+			int r = oShape.length;
+			if (r != shape.length || oOffset != nOffset) {
+				nstart = new int[r];
+				nstop = new int[r];
+				nstep = new int[r];
+				int i = 0;
+				for (; i < oOffset; i++) {
+					nstart[i] = 0;
+					nstop[i]  = 1;
+					nstep[i]  = 1;
+				}
+				int j = nOffset;
+				for (; i < r && j < shape.length; i++, j++) {
+					nstart[i] = lstart[j];
+					nstop[i]  = lstop[j];
+					nstep[i]  = lstep[j];
+				}
+				for (; i < r; i++) {
+					nstart[i] = 0;
+					nstop[i]  = 1;
+					nstep[i]  = 1;
+				}
+			} else {
+				nstart = lstart;
+				nstop  = lstop;
+				nstep  = lstep;
 			}
-			return base.getSlice(monitor, nstart, nstop, nstep);
 		}
 
-		IDataset a;
-		try {
-			a = loader.getDataset(monitor, oShape, nstart, nstop, nstep);
-			a.setShape(lshape);
-		} catch (Exception e) {
-			// return a fake dataset to show that this has not worked, should not be used in general though.
-			logger.debug("Problem getting {}: {}", String.format("slice %s %s %s", Arrays.toString(start), Arrays.toString(stop),
-							Arrays.toString(step)), e);
-			a = new DoubleDataset(1);
+		int[] getBaseStart() {
+			int[] bstart = new int[nstart.length]; // not in place as these may be the arguments
+			for (int i = 0; i < bstart.length; i++) {
+				bstart[i] = sliceStart[i] + nstart[i] * sliceStep[i];
+			}
+			return bstart;
 		}
-		a.setName(name + AbstractDataset.BLOCK_OPEN + Slice.createString(oShape, nstart, nstop, nstep) + AbstractDataset.BLOCK_CLOSE);
-		if (metadata != null && a instanceof LazyDatasetBase) {
-			((LazyDatasetBase) a).metadata = copyMetadata();
-			((LazyDatasetBase) a).sliceMetadata(false, lstart, lstop, lstep, shape);
+
+		int[] getBaseStop() {
+			int[] bstop = new int[nstop.length];
+			for (int i = 0; i < bstop.length; i++) {
+				bstop[i] = sliceStart[i] + (nstop[i] - 1) * sliceStep[i] + 1;
+			}
+			return bstop;
 		}
 
-		return a;
+		int[] getBaseStep() {
+			int[] bstep = new int[nstep.length];
+			for (int i = 0; i < bstep.length; i++) {
+				bstep[i] = nstep[i] * sliceStep[i];
+			}
+			return bstep;
+		}
 	}
 
 	@Override
@@ -384,14 +513,112 @@ public class LazyDataset extends LazyDatasetBase implements Cloneable, Serializa
 		}
 		LazyDataset lazy = new LazyDataset(name + "[" + Slice.createString(nShape, lstart, lstop, lstep) + "]",
 				dtype, nShape, null);
-		lazy.sliceStart = lstart.clone();
-		lazy.sliceStep  = lstep.clone();
-		lazy.base = base == null ? this : base;
-		lazy.metadata = copyMetadata();
+		if (base != null && oShape.length == shape.length && oOffset == nOffset) { // view of view so compose slices
+			lazy.sliceStart = new int[rank];
+			lazy.sliceStep  = new int[rank];
+			for (int i = 0; i < rank; i++) {
+				lazy.sliceStart[i] = sliceStart[i] + lstart[i] * sliceStep[i];
+				lazy.sliceStep[i]  = lstep[i] * sliceStep[i];
+			}
+			lazy.base = base;
+		} else {
+			lazy.sliceStart = lstart.clone();
+			lazy.sliceStep  = lstep.clone();
+			lazy.base = this;
+		}
+		copyMetadataTo(lazy);
 		lazy.sliceMetadata(true, lstart, lstop, lstep, shape);
 		return lazy;
 	}
 
+	/**
+	 * Keep slices read from file in cache
+	 * @param cache (if null, stop caching)
+	 * @param file name of file holding dataset
+	 * @param path of dataset in file
+	 */
+	public void setSliceCache(SliceCache cache, String file, String path) {
+		if (base != null) {
+			base.setSliceCache(cache, file, path);
+			return;
+		}
+		if (loader == null) {
+			return;
+		}
+
+		ILazyLoader l = loader instanceof CachingLazyLoader ? ((CachingLazyLoader) loader).getLoader() : loader;
+		loader = cache == null ? l : new CachingLazyLoader(l, cache, file, path);
+	}
+
+	/**
+	 * @return shape of chunks in terms of this dataset's items if its loader is chunked. Null if not
+	 * known, if this has been reshaped or if this is a view whose step does not fit the chunks
+	 */
+	@Override
+	public int[] getChunking() {
+		int[][] c = getChunks();
+		return c == null ? null : c[0];
+	}
+
+	/**
+	 * @return position in this dataset of the start of a chunk. Null where {@link #getChunking()} is
+	 */
+	@Override
+	public int[] getChunkOffset() {
+		int[][] c = getChunks();
+		return c == null ? null : c[1];
+	}
+
+	/**
+	 * @return shape and offset of chunks, or null
+	 */
+	private int[][] getChunks() {
+		if (oShape.length != shape.length || oOffset != nOffset) {
+			return null;
+		}
+
+		if (base != null) {
+			int[][] b = base.getChunks();
+			if (b == null || b[0].length != sliceStep.length) {
+				return null;
+			}
+			int[] c = new int[b[0].length];
+			int[] o = new int[c.length];
+			for (int i = 0; i < c.length; i++) {
+				final int bc = b[0][i];
+				final int s = sliceStep[i];
+				if (s < 1) {
+					return null;
+				} else if (bc % s == 0) {
+					c[i] = bc / s;
+					final int r = ((sliceStart[i] - b[1][i]) % bc + bc) % bc; // position of start in its chunk
+					final int d = (bc - r) % bc; // distance to next chunk
+					o[i] = ((d + s - 1) / s) % c[i];
+				} else if (s % bc == 0) { // each item in a different chunk
+					c[i] = 1;
+				} else {
+					return null;
+				}
+			}
+			return new int[][] {c, o};
+		}
+
+		if (!(loader instanceof IChunked)) {
+			return null;
+		}
+		int[] c = ((IChunked) loader).getChunking();
+		if (c == null || c.length != shape.length) {
+			return null;
+		}
+		for (int i : c) {
+			if (i < 1) {
+				return null;
+			}
+		}
+		int[] o = ((IChunked) loader).getChunkOffset();
+		return new int[][] {c.clone(), o == null || o.length != c.length ? new int[c.length] : o.clone()};
+	}
+
 	/**
 	 * Gets the maximum size of a slice of a dataset in a given dimension
 	 * which should normally fit in memory. Note that it might be possible
@@ -9,6 +9,8 @@
 
 package org.eclipse.dawnsci.analysis.dataset.impl;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
@@ -19,6 +21,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
@@ -47,6 +51,13 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 
 	protected Map<Class<? extends MetadataType>, List<MetadataType>> metadata = null;
 
+	/**
+	 * Slicing and reshaping operations not yet applied to all metadata and, for each type of
+	 * metadata, the number of these applied to it
+	 */
+	private transient List<MetadatasetAnnotationOperation> deferred = null;
+	private transient Map<Class<? extends MetadataType>, Integer> applied = null;
+
 	/**
 	 * @return type of dataset item
 	 */
@@ -162,6 +173,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		if (!this.metadata.containsKey(clazz)) {
 			this.metadata.put(clazz, new ArrayList<MetadataType>());
 		}
+		applyDeferred(clazz, true); // as added metadata matches current shape
 		this.metadata.get(clazz).add(metadata);
 	}
 
@@ -195,6 +207,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 			return null;
 
 		if (clazz == null) {
+			applyDeferred(null, true);
 			List<T> all = new ArrayList<T>();
 			for (Class<? extends MetadataType> c : metadata.keySet()) {
 				all.addAll((Collection<? extends T>) metadata.get(c));
@@ -202,7 +215,9 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 			return all;
 		}
 
-		return (List<T>) metadata.get(findMetadataTypeSubInterfaces(clazz));
+		Class<? extends MetadataType> c = findMetadataTypeSubInterfaces(clazz);
+		applyDeferred(c, true);
+		return (List<T>) metadata.get(c);
 	}
 
 	@Override
@@ -212,9 +227,16 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 
 		if (clazz == null) {
 			metadata.clear();
+			synchronized (this) {
+				deferred = null;
+				applied = null;
+			}
+			return;
 		}
 
-		List<MetadataType> list = metadata.get(findMetadataTypeSubInterfaces(clazz));
+		Class<? extends MetadataType> c = findMetadataTypeSubInterfaces(clazz);
+		applyDeferred(c, false);
+		List<MetadataType> list = metadata.get(c);
 		if( list != null){
 			list.clear();
 		}
@@ -224,6 +246,35 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		if (metadata == null)
 			return null;
 
+		applyDeferred(null, true);
+		return cloneMetadata();
+	}
+
+	/**
+	 * Copy metadata to given dataset along with any slicing and reshaping operations that
+	 * have not yet been applied to it. Use this rather than {@link #copyMetadata()} when
+	 * deriving a dataset so the operations are only done if its metadata is read
+	 * @param to
+	 */
+	protected void copyMetadataTo(LazyDatasetBase to) {
+		if (metadata == null) {
+			to.metadata = null;
+			return;
+		}
+
+		synchronized (this) {
+			to.metadata = cloneMetadata();
+			if (deferred == null) {
+				to.deferred = null;
+				to.applied = null;
+			} else {
+				to.deferred = new ArrayList<MetadatasetAnnotationOperation>(deferred);
+				to.applied = new HashMap<Class<? extends MetadataType>, Integer>(applied);
+			}
+		}
+	}
+
+	private Map<Class<? extends MetadataType>, List<MetadataType>> cloneMetadata() {
 		HashMap<Class<? extends MetadataType>, List<MetadataType>> map = new HashMap<Class<? extends MetadataType>, List<MetadataType>>();
 
 		for (Class<? extends MetadataType> c : metadata.keySet()) {
@@ -237,8 +288,81 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		return map;
 	}
 
+	/**
+	 * Fields of a metadata class (and its super-classes) that hold datasets to slice or reshape.
+	 * These are found once per class as walking and checking fields on every slice is slow
+	 */
+	static class MetadataPlan {
+		private final Field[] sliceable;
+		private final Annotation[] sliceableAnnotations;
+		private final Field[] reshapeable;
+		private final Annotation[] reshapeableAnnotations;
+
+		@SuppressWarnings("unchecked")
+		MetadataPlan(Class<? extends MetadataType> clazz) {
+			List<Field> sf = new ArrayList<Field>();
+			List<Annotation> sa = new ArrayList<Annotation>();
+			List<Field> rf = new ArrayList<Field>();
+			List<Annotation> ra = new ArrayList<Annotation>();
+			Class<? extends MetadataType> mc = clazz;
+			do { // iterate over super-classes
+				for (Field f : mc.getDeclaredFields()) {
+					Sliceable sl = f.getAnnotation(Sliceable.class);
+					Reshapeable rs = f.getAnnotation(Reshapeable.class);
+					if (sl == null && rs == null)
+						continue;
+
+					try {
+						f.setAccessible(true);
+					} catch (SecurityException e) {
+						logger.error("Cannot access field {} of metadata class {}", f.getName(), mc.getCanonicalName());
+						continue;
+					}
+					if (sl != null) {
+						sf.add(f);
+						sa.add(sl);
+					}
+					if (rs != null) {
+						rf.add(f);
+						ra.add(rs);
+					}
+				}
+				Class<?> sclazz = mc.getSuperclass();
+				if (sclazz == null || !MetadataType.class.isAssignableFrom(sclazz))
+					break;
+				mc = (Class<? extends MetadataType>) sclazz;
+			} while (true);
+			sliceable = sf.toArray(new Field[sf.size()]);
+			sliceableAnnotations = sa.toArray(new Annotation[sa.size()]);
+			reshapeable = rf.toArray(new Field[rf.size()]);
+			reshapeableAnnotations = ra.toArray(new Annotation[ra.size()]);
+		}
+
+		Field[] getFields(Class<? extends Annotation> ann) {
+			return ann == Sliceable.class ? sliceable : reshapeable;
+		}
+
+		Annotation[] getAnnotations(Class<? extends Annotation> ann) {
+			return ann == Sliceable.class ? sliceableAnnotations : reshapeableAnnotations;
+		}
+	}
+
+	private static final ConcurrentMap<Class<? extends MetadataType>, MetadataPlan> plans = new ConcurrentHashMap<Class<? extends MetadataType>, MetadataPlan>();
+
+	static MetadataPlan getMetadataPlan(Class<? extends MetadataType> clazz) {
+		MetadataPlan p = plans.get(clazz);
+		if (p == null) {
+			p = new MetadataPlan(clazz);
+			MetadataPlan o = plans.putIfAbsent(clazz, p);
+			if (o != null) {
+				p = o;
+			}
+		}
+		return p;
+	}
+
 	interface MetadatasetAnnotationOperation {
-		void processField(Field f);
+		void processField(Field f, Annotation a);
 		Class<? extends Annotation> getAnnClass();
 		/**
 		 * @param axis
@@ -253,7 +377,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		ILazyDataset run(ILazyDataset lz);
 	}
 
-	class MdsSlice implements MetadatasetAnnotationOperation {
+	static class MdsSlice implements MetadatasetAnnotationOperation {
 		private boolean asView;
 		private int[] start;
 		private int[] stop;
@@ -269,7 +393,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		}
 
 		@Override
-		public void processField(Field field) {
+		public void processField(Field field, Annotation a) {
 		}
 
 		@Override
@@ -321,7 +445,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		}
 	}
 
-	class MdsReshape implements MetadatasetAnnotationOperation {
+	static class MdsReshape implements MetadatasetAnnotationOperation {
 		private boolean matchRank;
 		private int[] oldShape;
 		private int[] newShape;
@@ -341,8 +465,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 		}
 
 		@Override
-		public void processField(Field field) {
-			Annotation a = field.getAnnotation(getAnnClass());
+		public void processField(Field field, Annotation a) {
 			if (a instanceof Reshapeable) {
 				matchRank = ((Reshapeable) a).matchRank();
 			}
@@ -536,7 +659,7 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 
 	/**
 	 * Slice all datasets in metadata that are annotated by @Sliceable. Call this on the new sliced
-	 * dataset after cloning the metadata
+	 * dataset after copying the metadata. The slicing is deferred until the metadata is read
 	 * @param asView if true then just a view
 	 * @param start
 	 * @param stop
@@ -544,130 +667,187 @@ public abstract class LazyDatasetBase implements ILazyDataset, Serializable {
 	 * @param oShape
 	 */
 	protected void sliceMetadata(boolean asView, final int[] start, final int[] stop, final int[] step, final int[] oShape) {
-		processAnnotatedMetadata(new MdsSlice(asView, start, stop, step, oShape), true);
+		defer(new MdsSlice(asView, clone(start), clone(stop), clone(step), clone(oShape)));
 	}
 
 	/**
 	 * Reshape all datasets in metadata that are annotated by @Reshapeable. Call this when squeezing
-	 * or setting the shape
+	 * or setting the shape. The reshaping is deferred until the metadata is read
 	 * 
 	 * @param newShape
 	 */
 	protected void reshapeMetadata(final int[] oldShape, final int[] newShape) {
-		processAnnotatedMetadata(new MdsReshape(oldShape, newShape), true);
+		defer(new MdsReshape(clone(oldShape), clone(newShape)));
 	}
 
-	@SuppressWarnings("unchecked")
-	private void processAnnotatedMetadata(MetadatasetAnnotationOperation op, boolean throwException) {
-		if (metadata == null)
+	private static int[] clone(int[] a) {
+		return a == null ? null : a.clone();
+	}
+
+	private void defer(MetadatasetAnnotationOperation op) {
+		if (metadata == null || metadata.isEmpty())
 			return;
 
+		synchronized (this) {
+			if (deferred == null) {
+				deferred = new ArrayList<MetadatasetAnnotationOperation>();
+				applied = new HashMap<Class<? extends MetadataType>, Integer>();
+			}
+			deferred.add(op);
+		}
+	}
+
+	/**
+	 * Apply deferred operations to metadata
+	 * @param clazz type of metadata (null for all types)
+	 * @param process if false, just mark operations as applied (e.g. when metadata is to be cleared)
+	 */
+	private synchronized void applyDeferred(Class<? extends MetadataType> clazz, boolean process) {
+		if (deferred == null)
+			return;
+
+		if (clazz == null) {
+			for (Class<? extends MetadataType> c : new ArrayList<Class<? extends MetadataType>>(metadata.keySet())) {
+				applyDeferredOperations(c, process);
+			}
+		} else {
+			applyDeferredOperations(clazz, process);
+		}
+
+		final int n = deferred.size();
 		for (Class<? extends MetadataType> c : metadata.keySet()) {
-			for (MetadataType m : metadata.get(c)) {
-				if (m == null)
-					continue;
+			Integer a = applied.get(c);
+			if (a == null || a < n)
+				return;
+		}
+		deferred = null;
+		applied = null;
+	}
+
+	private void applyDeferredOperations(Class<? extends MetadataType> clazz, boolean process) {
+		final int n = deferred.size();
+		Integer a = applied.put(clazz, n);
+		List<MetadataType> list = metadata.get(clazz);
+		if (!process || list == null)
+			return;
 
-				Class<? extends MetadataType> mc = m.getClass();
-				do { // iterate over super-classes
-					processClass(op, m, mc, throwException);
-					Class<?> sclazz = mc.getSuperclass();
-					if (!MetadataType.class.isAssignableFrom(sclazz))
-						break;
-					mc = (Class<? extends MetadataType>) sclazz;
-				} while (true);
+		try {
+			for (int i = a == null ? 0 : a; i < n; i++) {
+				processAnnotatedMetadata(deferred.get(i), list, true);
 			}
+		} catch (RuntimeException e) {
+			metadata.remove(clazz); // as it is only partly processed
+			applied.remove(clazz);
+			throw e;
 		}
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static void processClass(MetadatasetAnnotationOperation op, MetadataType m, Class<? extends MetadataType> mc, boolean throwException) {
-		for (Field f : mc.getDeclaredFields()) {
-			if (!f.isAnnotationPresent(op.getAnnClass()))
-				continue;
-
-			try {
-				f.setAccessible(true);
-				Object o = f.get(m);
-				if (o == null)
+	private static void processAnnotatedMetadata(MetadatasetAnnotationOperation op, List<MetadataType> list, boolean throwException) {
+		final Class<? extends Annotation> ann = op.getAnnClass();
+		synchronized (op) { // as operation can be shared by copies of metadata
+			for (MetadataType m : list) {
+				if (m == null)
 					continue;
 
-				op.processField(f);
-				Object r = null;
-				if (o instanceof ILazyDataset) {
-					f.set(m, op.run((ILazyDataset) o));
-				} else if (o.getClass().isArray()) {
-					int l = Array.getLength(o);
-					if (l <= 0)
-						continue;
-
-					for (int i = 0; r == null && i < l; i++) {
-						r = Array.get(o, i);
-					}
-					if (r == null)
-						continue;
+				MetadataPlan plan = getMetadataPlan(m.getClass());
+				Field[] fields = plan.getFields(ann);
+				Annotation[] anns = plan.getAnnotations(ann);
+				for (int i = 0; i < fields.length; i++) {
+					processField(op, m, fields[i], anns[i], throwException);
+				}
+			}
+		}
+	}
 
-					int n = op.getNewRank();
-					if (n < 0)
-						n = l;
-					Object narray = Array.newInstance(r.getClass(), n);
-					for (int i = 0, si = 0, di = 0; i < l && si < l; i++) {
-						int c = op.change(i);
-						if (c == 0) {
-							Array.set(narray, di++, processObject(op, Array.get(o, si++)));
-						} else if (c > 0) {
-							di += c; // add nulls by skipping forward in destination array
-						} else if (c < 0) {
-							si -= c; // remove dimensions by skipping forward in source array
-						}
-					}
-					if (n == l) {
-						for (int i = 0; i < l; i++) {
-							Array.set(o, i, Array.get(narray, i));
-						}
-					} else {
-						f.set(m, narray);
-					}
-				} else if (o instanceof List<?>) {
-					List list = (List) o;
-					int l = list.size();
-					if (l <= 0)
-						continue;
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (metadata != null)
+			applyDeferred(null, true);
+		out.defaultWriteObject();
+	}
 
-					for (int i = 0; r == null && i < l; i++) {
-						r = list.get(i);
-					}
-					if (r == null)
-						continue;
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void processField(MetadatasetAnnotationOperation op, MetadataType m, Field f, Annotation a, boolean throwException) {
+		try {
+			Object o = f.get(m);
+			if (o == null)
+				return;
 
-					int n = op.getNewRank();
-					if (n < 0)
-						n = l;
-					Object narray = Array.newInstance(r.getClass(), n);
-					for (int i = 0, si = 0, di = 0; i < l && si < l; i++) {
-						int c = op.change(i);
-						if (c == 0) {
-							Array.set(narray, di++, processObject(op, list.get(si++)));
-						} else if (c > 0) {
-							di += c; // add nulls by skipping forward in destination array
-						} else if (c < 0) {
-							si -= c; // remove dimensions by skipping forward in source array
-						}
+			op.processField(f, a);
+			Object r = null;
+			if (o instanceof ILazyDataset) {
+				f.set(m, op.run((ILazyDataset) o));
+			} else if (o.getClass().isArray()) {
+				int l = Array.getLength(o);
+				if (l <= 0)
+					return;
+
+				for (int i = 0; r == null && i < l; i++) {
+					r = Array.get(o, i);
+				}
+				if (r == null)
+					return;
+
+				int n = op.getNewRank();
+				if (n < 0)
+					n = l;
+				Object narray = Array.newInstance(o.getClass().getComponentType(), n);
+				for (int i = 0, si = 0, di = 0; i < l && si < l; i++) {
+					int c = op.change(i);
+					if (c == 0) {
+						Array.set(narray, di++, processObject(op, Array.get(o, si++)));
+					} else if (c > 0) {
+						di += c; // add nulls by skipping forward in destination array
+					} else if (c < 0) {
+						si -= c; // remove dimensions by skipping forward in source array
 					}
-					list.clear();
-					for (int i = 0; i < n; i++) {
-						list.add(Array.get(narray, i));
+				}
+				if (n == l) {
+					for (int i = 0; i < l; i++) {
+						Array.set(o, i, Array.get(narray, i));
 					}
-				} else if (o instanceof Map<?,?>) {
-					Map map = (Map) o;
-					for (Object k : map.keySet()) {
-						map.put(k, processObject(op, map.get(k)));
+				} else {
+					f.set(m, narray);
+				}
+			} else if (o instanceof List<?>) {
+				List list = (List) o;
+				int l = list.size();
+				if (l <= 0)
+					return;
+
+				for (int i = 0; r == null && i < l; i++) {
+					r = list.get(i);
+				}
+				if (r == null)
+					return;
+
+				int n = op.getNewRank();
+				if (n < 0)
+					n = l;
+				Object narray = Array.newInstance(Object.class, n);
+				for (int i = 0, si = 0, di = 0; i < l && si < l; i++) {
+					int c = op.change(i);
+					if (c == 0) {
+						Array.set(narray, di++, processObject(op, list.get(si++)));
+					} else if (c > 0) {
+						di += c; // add nulls by skipping forward in destination array
+					} else if (c < 0) {
+						si -= c; // remove dimensions by skipping forward in source array
 					}
 				}
-			} catch (Exception e) {
-				logger.error("Problem occurred when processing metadata of class {}: {}", mc.getCanonicalName(), e);
-				if (throwException)
-					throw new RuntimeException(e);
+				list.clear();
+				for (int i = 0; i < n; i++) {
+					list.add(Array.get(narray, i));
+				}
+			} else if (o instanceof Map<?,?>) {
+				Map map = (Map) o;
+				for (Object k : map.keySet()) {
+					map.put(k, processObject(op, map.get(k)));
+				}
 			}
+		} catch (Exception e) {
+			logger.error("Problem occurred when processing metadata of class {}: {}", f.getDeclaringClass().getCanonicalName(), e);
+			if (throwException)
+				throw new RuntimeException(e);
 		}
 	}
 
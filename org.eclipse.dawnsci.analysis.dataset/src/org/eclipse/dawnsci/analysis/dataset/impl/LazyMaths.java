@@ -10,13 +10,27 @@
 package org.eclipse.dawnsci.analysis.dataset.impl;
 
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Mathematics class for lazy datasets
+ * <p>
+ * Reductions stream through the lazy dataset a chunk at a time. A chunk is a hyperslab that is
+ * contiguous in row-major order: it spans whole trailing axes and as many indexes along the next
+ * axis as fit in the chunk size, so each read is one large request rather than many small ones.
+ * While a chunk is being reduced, the next one is read in a background thread. Memory use is
+ * bounded by about two chunks plus the reduced outputs.
  */
 public final class LazyMaths {
 	/**
@@ -24,29 +38,76 @@ public final class LazyMaths {
 	 */
 	protected static final Logger logger = LoggerFactory.getLogger(LazyMaths.class);
 
+	/**
+	 * Default number of bytes read per chunk
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private static volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private static volatile ExecutorService readers;
+
+	/**
+	 * @return executor for background reads shared by all reductions. Its threads are daemons and
+	 * are created as needed so a reduction started by another never waits for a free thread
+	 */
+	private static ExecutorService getReaders() {
+		ExecutorService r = readers;
+		if (r == null) {
+			synchronized (LazyMaths.class) {
+				r = readers;
+				if (r == null) {
+					final AtomicInteger count = new AtomicInteger();
+					readers = r = Executors.newCachedThreadPool(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread t = new Thread(runnable, "LazyMaths reader " + count.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+				}
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * @return number of bytes read per chunk
+	 */
+	public static int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Set number of bytes read per chunk. At least one item is always read
+	 * @param bytes
+	 */
+	public static void setChunkSize(int bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("Chunk size must be greater than zero");
+		}
+		chunkSize = bytes;
+	}
+
 	/**
 	 * @param data
 	 * @param axis (can be negative)
 	 * @return sum along axis in lazy dataset
 	 */
 	public static Dataset sum(final ILazyDataset data, int axis) {
-		int[][] sliceInfo = new int[3][];
-		int[] shape = data.getShape();
-		final Dataset result = prepareDataset(axis, shape, sliceInfo);
-
-		final int[] start = sliceInfo[0];
-		final int[] stop = sliceInfo[1];
-		final int[] step = sliceInfo[2];
-		final int length = shape[axis];
-
-		for (int i = 0; i < length; i++) {
-			start[axis] = i;
-			stop[axis] = i + 1;
-			result.iadd(data.getSlice(start, stop, step));
-		}
+		final int[] axes = checkAxes(data.getRank(), axis);
+		final Reduction sum = new Reduction(outputSize(data.getShape(), axes)) {
+			@Override
+			void add(double[] values, int from, int to, int o, int ostride) {
+				for (int i = from; i < to; i++, o += ostride) {
+					results[o] += values[i];
+				}
+			}
+		};
+		reduce(data, axes, sum);
 
-		result.setShape(AbstractDataset.squeezeShape(shape, axis));
-		return result;
+		return new DoubleDataset(sum.results, AbstractDataset.squeezeShape(data.getShape(), axes[0]));
 	}
 
 	/**
@@ -55,84 +116,479 @@ public final class LazyMaths {
 	 * @return product along axis in lazy dataset
 	 */
 	public static Dataset product(final ILazyDataset data, int axis) {
-		int[][] sliceInfo = new int[3][];
-		int[] shape = data.getShape();
-		final Dataset result = prepareDataset(axis, shape, sliceInfo);
-		result.fill(1);
-
-		final int[] start = sliceInfo[0];
-		final int[] stop = sliceInfo[1];
-		final int[] step = sliceInfo[2];
-		final int length = shape[axis];
-
-		for (int i = 0; i < length; i++) {
-			start[axis] = i;
-			stop[axis] = i + 1;
-			result.imultiply(data.getSlice(start, stop, step));
-		}
+		final int[] axes = checkAxes(data.getRank(), axis);
+		final Reduction product = new Reduction(outputSize(data.getShape(), axes)) {
+			@Override
+			void add(double[] values, int from, int to, int o, int ostride) {
+				for (int i = from; i < to; i++, o += ostride) {
+					results[o] *= values[i];
+				}
+			}
+		};
+		Arrays.fill(product.results, 1);
+		reduce(data, axes, product);
 
-		result.setShape(AbstractDataset.squeezeShape(shape, axis));
-		return result;
+		return new DoubleDataset(product.results, AbstractDataset.squeezeShape(data.getShape(), axes[0]));
 	}
 
 	/**
-	 * 
+	 *
 	 * @param data
 	 * @param ignoreAxes
 	 * @return mean when given axes are ignored in lazy dataset
 	 */
 	public static Dataset mean(ILazyDataset data, int... ignoreAxes) {
-		int[] shape = data.getShape();
-		PositionIterator iter = new PositionIterator(shape, ignoreAxes);
-		int[] pos = iter.getPos();
-		boolean[] omit = iter.getOmit();
-
-		int rank = shape.length;
-		int[] st = new int[rank];
-		Arrays.fill(st, 1);
-		int[] end = new int[rank];
-
-		Dataset average = null;
-		int count = 1;
-		while (iter.hasNext()) {
+		final int rank = data.getRank();
+		final boolean[] ignore = new boolean[rank];
+		for (int a : checkAxes(rank, ignoreAxes)) {
+			ignore[a] = true;
+		}
+		final int n = rank - ignoreAxes.length;
+
+		Dataset average;
+		if (n == 0) { // nothing to reduce (summarize would reduce over all axes)
+			average = DatasetUtils.cast(data.getSlice(), Dataset.FLOAT64);
+		} else {
+			final int[] axes = new int[n];
+			for (int i = 0, j = 0; i < rank; i++) {
+				if (!ignore[i]) {
+					axes[j++] = i;
+				}
+			}
+			average = summarize(data, false, axes).getMean();
+		}
+		average.squeeze();
+		return average;
+	}
+
+	/**
+	 * Calculate summary statistics over given axes in a single pass through lazy dataset
+	 * @param data
+	 * @param ignoreNaNs if true, ignore NaNs
+	 * @param axes to reduce over (can be negative; if none are given, reduce over all axes)
+	 * @return summary whose datasets have the shape of the lazy dataset without given axes
+	 */
+	public static Summary summarize(final ILazyDataset data, final boolean ignoreNaNs, int... axes) {
+		final int rank = data.getRank();
+		if (axes == null || axes.length == 0) {
+			axes = new int[rank];
 			for (int i = 0; i < rank; i++) {
-				end[i] = omit[i] ? shape[i] : pos[i] + 1;
+				axes[i] = i;
+			}
+		} else {
+			axes = checkAxes(rank, axes);
+		}
+
+		final Summary summary = new Summary(reducedShape(data.getShape(), axes));
+		reduce(data, axes, summary.new Accumulator(ignoreNaNs));
+		return summary;
+	}
+
+	/**
+	 * Summary statistics of the values reduced to each output item
+	 */
+	public static final class Summary {
+		private final int[] shape;
+		private final long[] count;
+		private final double[] sum;
+		private final double[] mean;
+		private final double[] m2; // sum of squared deviations from mean
+		private final double[] min;
+		private final double[] max;
+
+		private Summary(final int[] shape) {
+			this.shape = shape;
+			final int size = AbstractDataset.calcSize(shape);
+			count = new long[size];
+			sum = new double[size];
+			mean = new double[size];
+			m2 = new double[size];
+			min = new double[size];
+			max = new double[size];
+			Arrays.fill(min, Double.POSITIVE_INFINITY);
+			Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		}
+
+		private class Accumulator extends Reduction {
+			private final boolean ignoreNaNs;
+
+			Accumulator(final boolean ignoreNaNs) {
+				super(0);
+				this.ignoreNaNs = ignoreNaNs;
+			}
+
+			@Override
+			void add(double[] values, int from, int to, int o, int ostride) {
+				for (int i = from; i < to; i++, o += ostride) {
+					final double v = values[i];
+					if (ignoreNaNs && Double.isNaN(v)) {
+						continue;
+					}
+					final long n = ++count[o];
+					final double dev = v - mean[o];
+					mean[o] += dev / n;
+					m2[o] += dev * (v - mean[o]);
+					sum[o] += v;
+					min[o] = Math.min(min[o], v);
+					max[o] = Math.max(max[o], v);
+				}
+			}
+		}
+
+		/**
+		 * @return numbers of values (excluding ignored NaNs)
+		 */
+		public Dataset getCount() {
+			return shaped(new LongDataset(count.clone(), shape));
+		}
+
+		/**
+		 * @return sums
+		 */
+		public Dataset getSum() {
+			return shaped(new DoubleDataset(sum.clone(), shape));
+		}
+
+		/**
+		 * @return means (NaN where there are no values)
+		 */
+		public Dataset getMean() {
+			final double[] r = mean.clone();
+			for (int i = 0; i < r.length; i++) {
+				if (count[i] == 0) {
+					r[i] = Double.NaN;
+				}
 			}
+			return shaped(new DoubleDataset(r, shape));
+		}
 
-			Dataset ds = DatasetUtils.cast(data.getSlice(pos, end, st), Dataset.FLOAT64);
+		/**
+		 * @return sample variances
+		 */
+		public Dataset getVariance() {
+			return getVariance(false);
+		}
 
-			if (average == null) {
-				average = ds;
-				count++;
+		/**
+		 * @param isWholePopulation
+		 * @return population variances if true, sample variances otherwise (NaN where there are no values)
+		 */
+		public Dataset getVariance(final boolean isWholePopulation) {
+			final double[] r = new double[m2.length];
+			for (int i = 0; i < r.length; i++) {
+				final long n = count[i];
+				if (n == 0) {
+					r[i] = Double.NaN;
+				} else if (isWholePopulation) {
+					r[i] = m2[i] / n;
+				} else {
+					r[i] = n == 1 ? 0 : m2[i] / (n - 1);
+				}
+			}
+			return shaped(new DoubleDataset(r, shape));
+		}
+
+		/**
+		 * @return minima (NaN where there are no values)
+		 */
+		public Dataset getMin() {
+			return extrema(min);
+		}
+
+		/**
+		 * @return maxima (NaN where there are no values)
+		 */
+		public Dataset getMax() {
+			return extrema(max);
+		}
+
+		/**
+		 * @return dataset with rank zero when all axes are reduced (constructors give those shape [1])
+		 */
+		private Dataset shaped(final Dataset d) {
+			if (shape.length == 0) {
+				d.setShape(shape);
+			}
+			return d;
+		}
+
+		private Dataset extrema(final double[] values) {
+			final double[] r = values.clone();
+			for (int i = 0; i < r.length; i++) {
+				if (count[i] == 0) {
+					r[i] = Double.NaN;
+				}
+			}
+			return shaped(new DoubleDataset(r, shape));
+		}
+	}
+
+	/**
+	 * Reduction of lines of values into output items
+	 */
+	private static abstract class Reduction {
+		final double[] results;
+
+		Reduction(final int size) {
+			results = new double[size];
+		}
+
+		/**
+		 * Reduce values into output items
+		 * @param values
+		 * @param from
+		 * @param to (exclusive)
+		 * @param o output index of first value
+		 * @param ostride step in output index between values
+		 */
+		abstract void add(double[] values, int from, int to, int o, int ostride);
+	}
+
+	private static int[] checkAxes(final int rank, final int... axes) {
+		final int[] checked = new int[axes.length];
+		final boolean[] seen = new boolean[rank];
+		for (int i = 0; i < axes.length; i++) {
+			int a = axes[i];
+			if (a < 0)
+				a += rank;
+			if (a < 0 || a >= rank) {
+				logger.error("Axis argument is outside allowed range");
+				throw new IllegalArgumentException("Axis argument is outside allowed range");
+			}
+			if (seen[a]) {
+				logger.error("Axis argument is repeated");
+				throw new IllegalArgumentException("Axis argument is repeated");
+			}
+			seen[a] = true;
+			checked[i] = a;
+		}
+		return checked;
+	}
+
+	private static int[] reducedShape(final int[] shape, final int[] axes) {
+		final boolean[] reduced = new boolean[shape.length];
+		for (int a : axes) {
+			reduced[a] = true;
+		}
+		final int[] rshape = new int[shape.length - axes.length];
+		for (int i = 0, j = 0; i < shape.length; i++) {
+			if (!reduced[i]) {
+				rshape[j++] = shape[i];
+			}
+		}
+		return rshape;
+	}
+
+	private static int outputSize(final int[] shape, final int[] axes) {
+		return AbstractDataset.calcSize(reducedShape(shape, axes));
+	}
+
+	/**
+	 * Stream chunks of lazy dataset through reduction
+	 * @param data
+	 * @param axes to reduce over
+	 * @param reduction
+	 */
+	private static void reduce(final ILazyDataset data, final int[] axes, final Reduction reduction) {
+		if (data.getElementsPerItem() != 1) {
+			logger.error("Compound datasets are not supported");
+			throw new IllegalArgumentException("Compound datasets are not supported");
+		}
+		final int[] shape = data.getShape();
+		final int rank = shape.length;
+		if (data.getSize() == 0) {
+			return;
+		}
+
+		// output strides with zero for reduced axes
+		final boolean[] reduced = new boolean[rank];
+		for (int a : axes) {
+			reduced[a] = true;
+		}
+		final int[] ostrides = new int[rank];
+		for (int i = rank - 1, s = 1; i >= 0; i--) {
+			if (!reduced[i]) {
+				ostrides[i] = s;
+				s *= shape[i];
+			}
+		}
+
+		// chunk spans trailing axes after split axis and some indexes along it
+		final long budget = chunkSize;
+		long inner = AbstractDataset.getItemsize(AbstractDataset.getDType(data), 1);
+		int split = rank - 1;
+		while (split > 0 && inner * shape[split] <= budget) {
+			inner *= shape[split--];
+		}
+		final int length = rank == 0 ? 1 : (int) Math.max(1, Math.min(shape[split], budget / inner));
+
+		final ChunkIterator chunks = new ChunkIterator(shape, split, length);
+		if (chunks.total == 1) {
+			chunks.next();
+			reduceChunk(read(data, chunks.start, chunks.stop), chunks.start, chunks.stop, ostrides, reduction);
+			return;
+		}
+
+		final ExecutorService reader = getReaders();
+		Future<double[]> next = null;
+		try {
+			chunks.next();
+			int[] start = chunks.start.clone();
+			int[] stop = chunks.stop.clone();
+			next = submitRead(reader, data, start, stop);
+			while (next != null) {
+				final double[] values = getRead(next);
+				final int[] cstart = start;
+				final int[] cstop = stop;
+				if (chunks.next()) { // overlap reading next chunk with reduction of current one
+					start = chunks.start.clone();
+					stop = chunks.stop.clone();
+					next = submitRead(reader, data, start, stop);
+				} else {
+					next = null;
+				}
+				reduceChunk(values, cstart, cstop, ostrides, reduction);
+			}
+		} finally {
+			if (next != null) { // stop read that is no longer needed
+				next.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Iterator over chunks in row-major order
+	 */
+	private static class ChunkIterator {
+		final int[] shape;
+		final int split;
+		final int length;
+		final int[] start;
+		final int[] stop;
+		final long total;
+		private boolean first = true;
+
+		ChunkIterator(final int[] shape, final int split, final int length) {
+			this.shape = shape;
+			this.split = split;
+			this.length = length;
+			start = new int[shape.length];
+			stop = shape.clone();
+			long t = 1;
+			for (int i = 0; i < split; i++) {
+				t *= shape[i];
+			}
+			total = shape.length == 0 ? 1 : t * ((shape[split] + length - 1) / length);
+		}
+
+		/**
+		 * @return true if start and stop have been moved to next chunk
+		 */
+		boolean next() {
+			if (shape.length == 0) {
+				boolean f = first;
+				first = false;
+				return f;
+			}
+			if (first) {
+				first = false;
 			} else {
-				ds.isubtract(average);
-				ds.idivide(count++);
-				average.iadd(ds);
+				start[split] += length;
+				for (int i = split; i > 0 && start[i] >= shape[i]; i--) {
+					start[i] = 0;
+					start[i - 1]++;
+				}
+				if (start[split] >= shape[split] || start[0] >= shape[0]) {
+					return false;
+				}
+			}
+			for (int i = 0; i < split; i++) {
+				stop[i] = start[i] + 1;
 			}
+			stop[split] = Math.min(start[split] + length, shape[split]);
+			return true;
 		}
+	}
 
-		if (average != null)
-			average.squeeze();
-		return average;
+	private static double[] read(final ILazyDataset data, final int[] start, final int[] stop) {
+		int size = 1;
+		for (int i = 0; i < start.length; i++) {
+			size *= stop[i] - start[i];
+		}
+		IDataset slice = data.getSlice(start, stop, null);
+		if (slice == null || slice.getSize() != size) { // lazy datasets can log failures and return a placeholder
+			logger.error("Could not read chunk of lazy dataset");
+			throw new IllegalStateException("Could not read chunk of lazy dataset from " + Arrays.toString(start) + " to " + Arrays.toString(stop));
+		}
+		Dataset chunk = DatasetUtils.cast(slice, Dataset.FLOAT64);
+		return ((DoubleDataset) chunk).getData();
 	}
 
-	private static Dataset prepareDataset(int axis, int[] shape, int[][] sliceInfo) {
-		int rank = shape.length;
-		if (axis < 0)
-			axis += rank;
-		if (axis < 0 || axis >= rank) {
-			logger.error("Axis argument is outside allowed range");
-			throw new IllegalArgumentException("Axis argument is outside allowed range");
+	private static Future<double[]> submitRead(final ExecutorService reader, final ILazyDataset data, final int[] start, final int[] stop) {
+		return reader.submit(new Callable<double[]>() {
+			@Override
+			public double[] call() throws Exception {
+				return read(data, start, stop);
+			}
+		});
+	}
+
+	private static double[] getRead(final Future<double[]> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading lazy dataset", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Could not read lazy dataset", cause);
 		}
+	}
 
-		sliceInfo[0] = new int[rank];
-		sliceInfo[1] = shape.clone();
-		sliceInfo[2] = new int[rank];
-		Arrays.fill(sliceInfo[2], 1);
+	/**
+	 * Reduce chunk line by line
+	 * @param values of chunk
+	 * @param start of chunk in lazy dataset
+	 * @param stop of chunk in lazy dataset
+	 * @param ostrides
+	 * @param reduction
+	 */
+	private static void reduceChunk(final double[] values, final int[] start, final int[] stop, final int[] ostrides, final Reduction reduction) {
+		final int rank = start.length;
+		if (rank == 0) {
+			reduction.add(values, 0, 1, 0, 0);
+			return;
+		}
 
-		final int[] nshape = shape.clone();
-		nshape[axis] = 1;
+		int base = 0;
+		for (int i = 0; i < rank; i++) {
+			base += start[i] * ostrides[i];
+		}
 
-		return DatasetFactory.zeros(nshape, Dataset.FLOAT64);
+		final int[] cshape = new int[rank];
+		for (int i = 0; i < rank; i++) {
+			cshape[i] = stop[i] - start[i];
+		}
+		final int n = cshape[rank - 1];
+		final int lines = values.length / n;
+		final int[] pos = new int[rank];
+		int o = base;
+		for (int l = 0; l < lines; l++) {
+			reduction.add(values, l * n, (l + 1) * n, o, ostrides[rank - 1]);
+			for (int a = rank - 2; a >= 0; a--) {
+				o += ostrides[a];
+				if (++pos[a] < cshape[a]) {
+					break;
+				}
+				o -= pos[a] * ostrides[a];
+				pos[a] = 0;
+			}
+		}
 	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future whose result is made once from the result of another future
+ */
+abstract class MappedFuture<S, T> implements Future<T> {
+	private final Future<S> source;
+	private final boolean shared;
+	private volatile boolean cancelled = false;
+	private boolean mapped = false;
+	private T result;
+	private ExecutionException failure;
+
+	/**
+	 * @param source
+	 * @param shared if true, source is not cancelled as other futures use it
+	 */
+	MappedFuture(Future<S> source, boolean shared) {
+		this.source = source;
+		this.shared = shared;
+	}
+
+	/**
+	 * @param s result of source
+	 * @return result
+	 * @throws Exception
+	 */
+	protected abstract T map(S s) throws Exception;
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (mapped || cancelled) {
+				return false;
+			}
+			cancelled = true;
+		}
+		if (!shared) {
+			source.cancel(mayInterruptIfRunning);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled || source.isCancelled();
+	}
+
+	@Override
+	public boolean isDone() {
+		return cancelled || source.isDone();
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		return mapResult(source.get());
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		return mapResult(source.get(timeout, unit));
+	}
+
+	private synchronized T mapResult(S s) throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (!mapped) {
+			try {
+				result = map(s);
+			} catch (Exception e) {
+				failure = new ExecutionException(e);
+			}
+			mapped = true;
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		return result;
+	}
+}
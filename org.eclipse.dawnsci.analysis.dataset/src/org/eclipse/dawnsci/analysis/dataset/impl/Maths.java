@@ -3255,12 +3255,38 @@ public class Maths {
 	 * @return a + b, addition of a and b
 	 */
 	public static Dataset add(final Object a, final Object b, final Dataset o) {
+		return add(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * add operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a + b, addition of a and b
+	 */
+	public static Dataset add(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (BinaryKernels.operate(BinaryKernels.ADD, da, db, result, parallel)) {
+			addBinaryOperatorName(da, db, result, "+");
+			return result;
+		}
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					add(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "+");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -3775,12 +3801,38 @@ public class Maths {
 	 * @return a - b, subtraction of a by b
 	 */
 	public static Dataset subtract(final Object a, final Object b, final Dataset o) {
+		return subtract(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * subtract operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a - b, subtraction of a by b
+	 */
+	public static Dataset subtract(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (BinaryKernels.operate(BinaryKernels.SUBTRACT, da, db, result, parallel)) {
+			addBinaryOperatorName(da, db, result, "-");
+			return result;
+		}
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					subtract(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "-");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -4295,12 +4347,38 @@ public class Maths {
 	 * @return a * b, product of a and b
 	 */
 	public static Dataset multiply(final Object a, final Object b, final Dataset o) {
+		return multiply(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * multiply operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a * b, product of a and b
+	 */
+	public static Dataset multiply(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (BinaryKernels.operate(BinaryKernels.MULTIPLY, da, db, result, parallel)) {
+			addBinaryOperatorName(da, db, result, "*");
+			return result;
+		}
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					multiply(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "*");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -4815,12 +4893,38 @@ public class Maths {
 	 * @return a / b, division of a by b
 	 */
 	public static Dataset divide(final Object a, final Object b, final Dataset o) {
+		return divide(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * divide operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a / b, division of a by b
+	 */
+	public static Dataset divide(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (BinaryKernels.operate(BinaryKernels.DIVIDE, da, db, result, parallel)) {
+			addBinaryOperatorName(da, db, result, "/");
+			return result;
+		}
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					divide(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "/");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -5437,12 +5541,34 @@ public class Maths {
 	 * @return a / b, division of a by b
 	 */
 	public static Dataset dividez(final Object a, final Object b, final Dataset o) {
+		return dividez(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * dividez operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a / b, division of a by b
+	 */
+	public static Dataset dividez(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					dividez(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "/");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -6041,12 +6167,34 @@ public class Maths {
 	 * @return a / b, division of a by b but rounded towards negative infinity
 	 */
 	public static Dataset divideTowardsFloor(final Object a, final Object b, final Dataset o) {
+		return divideTowardsFloor(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * divideTowardsFloor operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a / b, division of a by b but rounded towards negative infinity
+	 */
+	public static Dataset divideTowardsFloor(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					divideTowardsFloor(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "/");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -6887,12 +7035,38 @@ public class Maths {
 	 * @return a ** b, raise a to power of b
 	 */
 	public static Dataset power(final Object a, final Object b, final Dataset o) {
+		return power(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * power operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a ** b, raise a to power of b
+	 */
+	public static Dataset power(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (BinaryKernels.operate(BinaryKernels.POWER, da, db, result, parallel)) {
+			addBinaryOperatorName(da, db, result, "**");
+			return result;
+		}
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					power(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "**");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -7419,12 +7593,34 @@ public class Maths {
 	 * @return a % b, remainder of division of a by b
 	 */
 	public static Dataset remainder(final Object a, final Object b, final Dataset o) {
+		return remainder(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * remainder operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a % b, remainder of division of a by b
+	 */
+	public static Dataset remainder(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					remainder(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "%");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -7849,12 +8045,34 @@ public class Maths {
 	 * @return return maximum of a and b
 	 */
 	public static Dataset maximum(final Object a, final Object b, final Dataset o) {
+		return maximum(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * maximum operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return return maximum of a and b
+	 */
+	public static Dataset maximum(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					maximum(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "maximum");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -8417,12 +8635,34 @@ public class Maths {
 	 * @return return minimum of a and b
 	 */
 	public static Dataset minimum(final Object a, final Object b, final Dataset o) {
+		return minimum(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * minimum operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return return minimum of a and b
+	 */
+	public static Dataset minimum(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					minimum(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "minimum");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -8985,12 +9225,34 @@ public class Maths {
 	 * @return a & b, bitwise AND of a and b
 	 */
 	public static Dataset bitwiseAnd(final Object a, final Object b, final Dataset o) {
+		return bitwiseAnd(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * bitwiseAnd operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a & b, bitwise AND of a and b
+	 */
+	public static Dataset bitwiseAnd(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					bitwiseAnd(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "&");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -9283,12 +9545,34 @@ public class Maths {
 	 * @return a | b, bitwise inclusive OR of a and b
 	 */
 	public static Dataset bitwiseOr(final Object a, final Object b, final Dataset o) {
+		return bitwiseOr(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * bitwiseOr operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a | b, bitwise inclusive OR of a and b
+	 */
+	public static Dataset bitwiseOr(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					bitwiseOr(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "|");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -9581,12 +9865,34 @@ public class Maths {
 	 * @return a ^ b, bitwise exclusive OR of a and b
 	 */
 	public static Dataset bitwiseXor(final Object a, final Object b, final Dataset o) {
+		return bitwiseXor(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * bitwiseXor operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a ^ b, bitwise exclusive OR of a and b
+	 */
+	public static Dataset bitwiseXor(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					bitwiseXor(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "^");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -9879,12 +10185,34 @@ public class Maths {
 	 * @return a << b, bitwise left shift of a by b
 	 */
 	public static Dataset leftShift(final Object a, final Object b, final Dataset o) {
+		return leftShift(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * leftShift operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a << b, bitwise left shift of a by b
+	 */
+	public static Dataset leftShift(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					leftShift(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, "<<");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -10177,12 +10505,34 @@ public class Maths {
 	 * @return a >> b, bitwise right shift of a by b
 	 */
 	public static Dataset rightShift(final Object a, final Object b, final Dataset o) {
+		return rightShift(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * rightShift operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a >> b, bitwise right shift of a by b
+	 */
+	public static Dataset rightShift(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					rightShift(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, ">>");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -10475,6 +10825,18 @@ public class Maths {
 	 * @return a >>> b, bitwise right shift of a by b with zeros added
 	 */
 	public static Dataset unsignedRightShift(final Object a, final Object b, final Dataset o) {
+		return unsignedRightShift(a, b, o, ParallelOperations.isParallel());
+	}
+
+	/**
+	 * unsignedRightShift operator
+	 * @param a
+	 * @param b
+	 * @param o output can be null - in which case, a new dataset is created
+	 * @param parallel if true, split large outputs into chunks that are run in parallel
+	 * @return a >>> b, bitwise right shift of a by b with zeros added
+	 */
+	public static Dataset unsignedRightShift(final Object a, final Object b, final Dataset o, final boolean parallel) {
 		final Dataset da = a instanceof Dataset ? (Dataset) a : DatasetFactory.createFromObject(a);
 		final Dataset db = b instanceof Dataset ? (Dataset) b : DatasetFactory.createFromObject(b);
 		final BroadcastIterator it = new BroadcastIterator(da, db, o, true);
@@ -10482,6 +10844,16 @@ public class Maths {
 		final Dataset result = it.getOutput();
 		final int is = result.getElementsPerItem();
 		final int dt = result.getDtype();
+		if (parallel && ParallelOperations.isWorthwhile(result)) {
+			ParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {
+				@Override
+				public void operate(Dataset ca, Dataset cb, Dataset co) {
+					unsignedRightShift(ca, cb, co, false);
+				}
+			});
+			addBinaryOperatorName(da, db, result, ">>>");
+			return result;
+		}
 
 		switch(dt) {
 		case Dataset.INT8:
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Order statistics of arrays found by selection rather than by sorting.
+ * <p>
+ * Selection is done in place with an introselect: a quickselect with median-of-three pivots and
+ * three-way partitioning that falls back to sorting the remaining range if partitioning stops
+ * making progress. Values are ordered as they are by {@link Arrays#sort(double[])} so NaNs come
+ * after all other values and quantiles match those interpolated from a sorted copy.
+ */
+final class OrderStatistics {
+	private static final int SORT_THRESHOLD = 16;
+
+	private OrderStatistics() {
+	}
+
+	/**
+	 * Calculate quantiles of values in range of array by linear interpolation between the
+	 * closest ranks. The range is reordered in place
+	 * @param values
+	 * @param from
+	 * @param to (exclusive)
+	 * @param q quantiles (each in [0,1])
+	 * @return points at which the cumulative distribution function has given values (NaN if range is empty)
+	 */
+	static double[] quantile(final double[] values, final int from, final int to, final double... q) {
+		final int n = to - from;
+		final int end = from + partitionNaNs(values, from, to); // first NaN
+		final double[] points = new double[q.length];
+
+		final Integer[] order = new Integer[q.length]; // process in increasing order to narrow selection
+		for (int i = 0; i < q.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(q[o1], q[o2]);
+			}
+		});
+
+		int lo = from;
+		for (int i : order) {
+			double f = (n - 1) * q[i]; // fraction of sample number
+			if (f < 0) {
+				points[i] = Double.NaN;
+				continue;
+			}
+			final int qpt = (int) Math.floor(f); // quantile point
+			f -= qpt;
+
+			final int k = from + qpt;
+			if (k >= end) {
+				points[i] = Double.NaN;
+				continue;
+			}
+			select(values, lo, end, k);
+			lo = k;
+
+			double quantile = values[k];
+			if (f > 0) {
+				quantile = (1 - f) * quantile + f * (k + 1 < end ? minimum(values, k + 1, end) : Double.NaN);
+			}
+			points[i] = quantile;
+		}
+		return points;
+	}
+
+	/**
+	 * Move NaNs to end of range
+	 * @param values
+	 * @param from
+	 * @param to (exclusive)
+	 * @return number of values that are not NaNs
+	 */
+	static int partitionNaNs(final double[] values, final int from, int to) {
+		int i = from;
+		while (i < to) {
+			if (Double.isNaN(values[i])) {
+				values[i] = values[--to];
+				values[to] = Double.NaN;
+			} else {
+				i++;
+			}
+		}
+		return to - from;
+	}
+
+	/**
+	 * Reorder range of array (which must not contain NaNs) so that the value at k is the one
+	 * that would be there if the range were sorted, values before it are not greater and values
+	 * after it are not less
+	 * @param values
+	 * @param from
+	 * @param to (exclusive)
+	 * @param k
+	 */
+	static void select(final double[] values, int from, int to, final int k) {
+		int limit = 2 * (32 - Integer.numberOfLeadingZeros(to - from)); // allowed number of partitions
+		while (to - from > SORT_THRESHOLD) {
+			if (limit-- == 0) {
+				break;
+			}
+
+			// three-way partition so runs of equal values are dealt with at once
+			final double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to - 1]);
+			int lt = from; // [from, lt) are less than pivot
+			int gt = to;   // [gt, to) are greater than pivot
+			int i = from;
+			while (i < gt) {
+				final double v = values[i];
+				if (less(v, pivot)) {
+					swap(values, lt++, i++);
+				} else if (less(pivot, v)) {
+					swap(values, i, --gt);
+				} else {
+					i++;
+				}
+			}
+
+			if (k < lt) {
+				to = lt;
+			} else if (k >= gt) {
+				from = gt;
+			} else {
+				return;
+			}
+		}
+		Arrays.sort(values, from, to);
+	}
+
+	private static double medianOfThree(final double a, final double b, final double c) {
+		if (less(a, b)) {
+			return less(b, c) ? b : (less(a, c) ? c : a);
+		}
+		return less(a, c) ? a : (less(b, c) ? c : b);
+	}
+
+	private static double minimum(final double[] values, final int from, final int to) {
+		double m = values[from];
+		for (int i = from + 1; i < to; i++) {
+			if (less(values[i], m)) {
+				m = values[i];
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @return true if a is ordered before b (with -0 ordered before 0)
+	 */
+	private static boolean less(final double a, final double b) {
+		return a < b || (a == b && a == 0 && Double.doubleToRawLongBits(a) < Double.doubleToRawLongBits(b));
+	}
+
+	private static void swap(final double[] values, final int i, final int j) {
+		final double t = values[i];
+		values[i] = values[j];
+		values[j] = t;
+	}
+}
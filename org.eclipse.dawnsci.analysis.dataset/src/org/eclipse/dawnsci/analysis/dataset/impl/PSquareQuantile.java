@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimator of a quantile that uses the P-square algorithm of Jain and Chlamtac
+ * (Communications of the ACM, 28(10), 1985).
+ * <p>
+ * Five markers are kept whose heights are adjusted with piecewise-parabolic interpolation as
+ * values are added, so the estimate needs constant memory and a single pass. Until five
+ * values have been added, the quantile is exact. NaNs are ignored.
+ */
+public class PSquareQuantile {
+	private static final int MARKERS = 5;
+
+	private final double p;
+	private final double[] q = new double[MARKERS];  // marker heights
+	private final int[] n = new int[MARKERS];        // marker positions
+	private final double[] np = new double[MARKERS]; // desired marker positions
+	private final double[] dn;                       // increments of desired positions
+	private int count;
+
+	/**
+	 * @param p quantile to estimate (in [0,1])
+	 */
+	public PSquareQuantile(final double p) {
+		if (p < 0 || p > 1) {
+			throw new IllegalArgumentException("Quantile requested is outside [0,1]");
+		}
+		this.p = p;
+		dn = new double[] {0, p / 2, p, (1 + p) / 2, 1};
+		for (int i = 0; i < MARKERS; i++) {
+			n[i] = i;
+			np[i] = 4 * dn[i];
+		}
+	}
+
+	/**
+	 * Add value
+	 * @param x
+	 */
+	public void add(final double x) {
+		if (Double.isNaN(x)) {
+			return;
+		}
+
+		if (count < MARKERS) {
+			q[count++] = x;
+			if (count == MARKERS) {
+				Arrays.sort(q);
+			}
+			return;
+		}
+		count++;
+
+		// find cell containing value and update extreme markers
+		int k;
+		if (x < q[0]) {
+			q[0] = x;
+			k = 0;
+		} else if (x >= q[4]) {
+			q[4] = x;
+			k = 3;
+		} else {
+			k = 0;
+			while (x >= q[k + 1]) {
+				k++;
+			}
+		}
+
+		for (int i = k + 1; i < MARKERS; i++) {
+			n[i]++;
+		}
+		for (int i = 0; i < MARKERS; i++) {
+			np[i] += dn[i];
+		}
+
+		// adjust heights of middle markers if they are off their desired positions
+		for (int i = 1; i < 4; i++) {
+			final double d = np[i] - n[i];
+			if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+				final int s = d > 0 ? 1 : -1;
+				final double h = parabolic(i, s);
+				if (q[i - 1] < h && h < q[i + 1]) {
+					q[i] = h;
+				} else {
+					q[i] += s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+				}
+				n[i] += s;
+			}
+		}
+	}
+
+	private double parabolic(final int i, final int s) {
+		final double nl = n[i] - n[i - 1];
+		final double nr = n[i + 1] - n[i];
+		return q[i] + s / (nl + nr) * ((nl + s) * (q[i + 1] - q[i]) / nr + (nr - s) * (q[i] - q[i - 1]) / nl);
+	}
+
+	/**
+	 * @return number of values added (excluding NaNs)
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return estimate of quantile (or NaN if no values have been added)
+	 */
+	public double getQuantile() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (count <= MARKERS) {
+			return OrderStatistics.quantile(Arrays.copyOf(q, count), 0, count, p)[0];
+		}
+		if (p == 0) {
+			return q[0];
+		}
+		if (p == 1) {
+			return q[4];
+		}
+		return q[2];
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Settings and support for running element-wise operations in parallel.
+ * <p>
+ * An operation is run in parallel by splitting its output into chunks and running the
+ * operation on each chunk in a shared fork/join pool. As each output element depends only
+ * on its corresponding input elements, results are identical to those of the serial case.
+ * <p>
+ * Parallel execution is off by default. It can be switched on globally with {@link #setParallel(boolean)}
+ * (or with the system property "org.eclipse.dawnsci.analysis.dataset.parallel") and overridden
+ * per call with the methods in {@link Maths} and {@link Comparisons} that take a parallel flag.
+ * Outputs smaller than the threshold are always done serially.
+ */
+public class ParallelOperations {
+	/**
+	 * Default number of items in output below which operations are done serially
+	 */
+	public static final int DEFAULT_THRESHOLD = 1 << 16;
+
+	private static final int MINIMUM_CHUNK_SIZE = 1 << 12;
+
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static volatile boolean parallel = Boolean.getBoolean("org.eclipse.dawnsci.analysis.dataset.parallel");
+
+	private static volatile int threshold = DEFAULT_THRESHOLD;
+
+	private static volatile ForkJoinPool pool;
+
+	/**
+	 * Operation on a chunk of the broadcasted inputs and output
+	 */
+	interface BinaryChunk {
+		/**
+		 * @param a chunk of first input (or whole input where it is broadcasted)
+		 * @param b chunk of second input (or whole input where it is broadcasted)
+		 * @param o chunk of output
+		 */
+		void operate(Dataset a, Dataset b, Dataset o);
+	}
+
+	/**
+	 * Operation on a range of indexes of a contiguous output
+	 */
+	interface RangeChunk {
+		/**
+		 * @param start
+		 * @param end (exclusive)
+		 */
+		void operate(int start, int end);
+	}
+
+	/**
+	 * Reduction over a range of indexes of a contiguous input
+	 */
+	interface RangeReduction<T> {
+		/**
+		 * @param start
+		 * @param end (exclusive)
+		 * @return result for range
+		 */
+		T reduce(int start, int end);
+	}
+
+	/**
+	 * @return true if operations run in parallel by default
+	 */
+	public static boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Set whether operations run in parallel by default
+	 * @param parallel
+	 */
+	public static void setParallel(boolean parallel) {
+		ParallelOperations.parallel = parallel;
+	}
+
+	/**
+	 * @return number of items in output below which operations are done serially
+	 */
+	public static int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Set number of items in output below which operations are done serially
+	 * @param threshold
+	 */
+	public static void setThreshold(int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold must be zero or greater");
+		}
+		ParallelOperations.threshold = threshold;
+	}
+
+	/**
+	 * @return pool used to run operations (created with one thread per processor if none was set)
+	 */
+	public static ForkJoinPool getPool() {
+		ForkJoinPool p = pool;
+		if (p == null) {
+			synchronized (ParallelOperations.class) {
+				p = pool;
+				if (p == null) {
+					pool = p = new ForkJoinPool();
+				}
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Set pool used to run operations
+	 * @param pool can be null to use a default pool
+	 */
+	public static synchronized void setPool(ForkJoinPool pool) {
+		ParallelOperations.pool = pool;
+	}
+
+	/**
+	 * @param o output
+	 * @return true if output is large enough to be split
+	 */
+	static boolean isWorthwhile(final Dataset o) {
+		return isWorthwhile(o.getSize());
+	}
+
+	/**
+	 * @param size number of items in output
+	 * @return true if output is large enough to be split
+	 */
+	static boolean isWorthwhile(final int size) {
+		return size >= threshold && numberOfChunks(size) > 1;
+	}
+
+	private static int numberOfChunks(final int size) {
+		return Math.min(CHUNKS_PER_THREAD * getPool().getParallelism(), size / MINIMUM_CHUNK_SIZE);
+	}
+
+	/**
+	 * Run operation over chunks of output. The output is split along one axis and the inputs
+	 * are split to match unless they are broadcasted along that axis
+	 * @param a
+	 * @param b
+	 * @param o output with broadcasted shape of inputs
+	 * @param op
+	 */
+	static void operate(final Dataset a, final Dataset b, final Dataset o, final BinaryChunk op) {
+		final int[] shape = o.getShapeRef();
+		final int rank = shape.length;
+		final int n = numberOfChunks(o.getSize());
+		final int axis = findSplitAxis(shape, n);
+		if (axis < 0) {
+			op.operate(a, b, o);
+			return;
+		}
+
+		final int length = shape[axis];
+		final int chunks = Math.min(length, n);
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			final int start = (int) (((long) length * i) / chunks);
+			final int end = (int) (((long) length * (i + 1)) / chunks);
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					op.operate(split(a, rank, axis, start, end), split(b, rank, axis, start, end), split(o, rank, axis, start, end));
+				}
+			});
+		}
+		run(tasks);
+	}
+
+	/**
+	 * Run operation over chunks of index range
+	 * @param size number of items in output
+	 * @param op
+	 */
+	static void operate(final int size, final RangeChunk op) {
+		operateChunks(size, Math.max(1, numberOfChunks(size)), op);
+	}
+
+	/**
+	 * Run operation over chunks of a range of lines. The number of chunks is found from
+	 * the number of items in the lines rather than the number of lines
+	 * @param lines number of lines in output
+	 * @param length number of items in each line
+	 * @param op called with ranges of lines
+	 */
+	static void operate(final int lines, final int length, final RangeChunk op) {
+		operateChunks(lines, numberOfChunks(lines, length), op);
+	}
+
+	/**
+	 * @param lines
+	 * @param length number of items in each line
+	 * @return number of chunks that lines are split into (at least one)
+	 */
+	static int numberOfChunks(final int lines, final int length) {
+		final long size = (long) lines * length;
+		return Math.max(1, Math.min(lines, numberOfChunks((int) Math.min(Integer.MAX_VALUE, size))));
+	}
+
+	private static void operateChunks(final int size, final int chunks, final RangeChunk op) {
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			final int start = (int) (((long) size * i) / chunks);
+			final int end = (int) (((long) size * (i + 1)) / chunks);
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					op.operate(start, end);
+				}
+			});
+		}
+		run(tasks);
+	}
+
+	/**
+	 * Run reduction over chunks of index range
+	 * @param size number of items in input
+	 * @param op
+	 * @return results for each chunk in order of their ranges
+	 */
+	static <T> List<T> reduce(final int size, final RangeReduction<T> op) {
+		final int chunks = Math.max(1, numberOfChunks(size));
+		final List<T> results = new ArrayList<T>(chunks);
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			final int c = i;
+			final int start = (int) (((long) size * i) / chunks);
+			final int end = (int) (((long) size * (i + 1)) / chunks);
+			results.add(null);
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					results.set(c, op.reduce(start, end)); // joining the tasks publishes the results
+				}
+			});
+		}
+		run(tasks);
+		return results;
+	}
+
+	/**
+	 * @param shape
+	 * @param chunks
+	 * @return first axis that can be split into given number of chunks, or the longest axis
+	 * (or -1 if no axis can be split)
+	 */
+	private static int findSplitAxis(final int[] shape, final int chunks) {
+		int axis = -1;
+		int max = 1;
+		for (int i = 0; i < shape.length; i++) {
+			final int l = shape[i];
+			if (l >= chunks) {
+				return i;
+			}
+			if (l > max) {
+				max = l;
+				axis = i;
+			}
+		}
+		return axis;
+	}
+
+	private static Dataset split(final Dataset d, final int rank, final int axis, final int start, final int end) {
+		final int[] dshape = d.getShapeRef();
+		final int dr = dshape.length;
+		final int ax = axis - (rank - dr);
+		if (ax < 0 || dshape[ax] == 1) { // broadcasted along axis
+			return d;
+		}
+
+		final int[] begin = new int[dr];
+		final int[] stop = dshape.clone();
+		begin[ax] = start;
+		stop[ax] = end;
+		return d.getSliceView(begin, stop, null);
+	}
+
+	private static void run(final List<RecursiveAction> tasks) {
+		final ForkJoinPool p = getPool();
+		if (ForkJoinTask.getPool() == p) {
+			ForkJoinTask.invokeAll(tasks);
+		} else {
+			p.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+	}
+}
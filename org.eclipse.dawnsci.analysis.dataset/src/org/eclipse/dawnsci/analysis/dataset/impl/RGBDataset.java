@@ -379,7 +379,7 @@ public class RGBDataset extends CompoundShortDataset implements Cloneable {
 		view.size = size;
 		view.shape = shape.clone();
 		view.odata = view.data = data;
-		view.metadata = metadata;
+		view.metadata = getMetadataMap(this, false);
 
 		return view;
 	}
@@ -19,24 +19,20 @@ import java.util.List;
 public class Signal {
 
 	private static int[] paddedShape(final int[] ashape, final int[] bshape, final int[] axes) {
-		int[] s = ashape.clone();
 		if (axes == null) {
 			 // pad all axes
+			int[] s = ashape.clone();
 			for (int i = 0; i < s.length; i++) {
 				s[i] += bshape[i] - 1; // pad 
 			}
-		} else {
-			 // pad chosen axes
-			for (int i = 0; i < s.length; i++) {
-				int j = 0;
-				for (; j < axes.length; j++) {
-					if (i == axes[j])
-						break;
-				}
-				if (j < axes.length) {
-					s[i] += bshape[i] - 1;
-				}
-			}
+			return s;
+		}
+
+		 // pad chosen axes (the FFTs take a length for each of those axes)
+		int[] s = new int[axes.length];
+		for (int j = 0; j < axes.length; j++) {
+			int i = axes[j] < 0 ? axes[j] + ashape.length : axes[j];
+			s[j] = ashape[i] + bshape[i] - 1;
 		}
 		return s;
 	}
@@ -93,14 +89,18 @@ public class Signal {
 
 		Dataset c = null, d = null;
 		int[] s = paddedShape(f.getShapeRef(), g.getShapeRef(), axes);
-		c = FFT.fftn(f, s, axes);
-		d = FFT.fftn(g, s, axes);
-		c = Maths.multiply(c, d);
+		if (f.isComplex() || g.isComplex()) {
+			c = FFT.fftn(f, s, axes);
+			d = FFT.fftn(g, s, axes);
+			c = Maths.multiply(c, d);
+			return FFT.ifftn(c, s, axes);
+		}
 
-		Dataset conv = FFT.ifftn(c, s, axes);
-		if (f.isComplex() || g.isComplex())
-			return conv;
-		return conv.real();
+		// real transforms only need half the spectrum
+		c = FFT.rfftn(f, s, axes);
+		d = FFT.rfftn(g, s, axes);
+		c = Maths.multiply(c, d);
+		return FFT.irfftn(c, s, axes);
 	}
 
 	/**
@@ -150,15 +150,20 @@ public class Signal {
 		Dataset c = null, d = null;
 		int[] s = paddedShape(f.getShapeRef(), g.getShapeRef(), axes);
 		
-		c = FFT.fftn(f, s, axes);
-		d = FFT.fftn(g, s, axes);
-		c = Maths.multiply(c, Maths.conjugate(d));
-
-		Dataset corr = FFT.ifftn(c, s, axes);
-		if (!f.isComplex() && !g.isComplex())
-			corr = corr.real();
+		Dataset corr;
+		if (f.isComplex() || g.isComplex()) {
+			c = FFT.fftn(f, s, axes);
+			d = FFT.fftn(g, s, axes);
+			c = Maths.multiply(c, Maths.conjugate(d));
+			corr = FFT.ifftn(c, s, axes);
+		} else {
+			c = FFT.rfftn(f, s, axes);
+			d = FFT.rfftn(g, s, axes);
+			c = Maths.multiply(c, Maths.conjugate(d));
+			corr = FFT.irfftn(c, s, axes);
+		}
 
-		int rank = s.length;
+		int rank = corr.getRank();
 		int alen;
 		if (axes == null) {
 			alen = rank;
@@ -224,27 +229,24 @@ public class Signal {
 	public static List<Dataset> phaseCorrelate(final Dataset f, final Dataset g, final int[] axes, boolean includeInverse) {
 		Dataset c = null, d = null;
 		int[] s = paddedShape(f.getShapeRef(), g.getShapeRef(), axes);
-		c = FFT.fftn(f, s, axes);
-		d = FFT.fftn(g, s, axes);
+		boolean isReal = !f.isComplex() && !g.isComplex();
+		if (isReal) {
+			c = FFT.rfftn(f, s, axes);
+			d = FFT.rfftn(g, s, axes);
+		} else {
+			c = FFT.fftn(f, s, axes);
+			d = FFT.fftn(g, s, axes);
+		}
 		c.idivide(d);
 
-		Dataset corr;
 		List<Dataset> results = new ArrayList<Dataset>();
 
 		d = Maths.phaseAsComplexNumber(c, true);
 
-		corr = FFT.ifftn(d, s, axes);
-		if (f.isComplex() || g.isComplex())
-			results.add(corr);
-		else
-			results.add(corr.real());
+		results.add(isReal ? FFT.irfftn(d, s, axes) : FFT.ifftn(d, s, axes));
 
 		if (includeInverse) {
-			corr = FFT.ifftn(c, s, axes);
-			if (f.isComplex() || g.isComplex())
-				results.add(corr);
-			else
-				results.add(corr.real());
+			results.add(isReal ? FFT.irfftn(c, s, axes) : FFT.ifftn(c, s, axes));
 		}
 
 		return results;
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of slices read from files with a budget on the number of bytes held.
+ * <p>
+ * Slices are keyed by file name, dataset path and slice region. Datasets are copied on the way in
+ * and out so callers can modify what they get. Slices larger than the budget are not cached. This
+ * is thread-safe and used by {@link CachingLazyLoader}.
+ */
+public class SliceCache {
+	/**
+	 * Default number of bytes held by shared cache
+	 */
+	public static final long DEFAULT_BUDGET = 128 * 1024 * 1024;
+
+	private static final SliceCache DEFAULT = new SliceCache(DEFAULT_BUDGET);
+
+	private final LinkedHashMap<Key, Dataset> slices = new LinkedHashMap<Key, Dataset>(16, 0.75f, true);
+	private volatile long budget; // also read outside lock to skip copying slices that are too large
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @return cache shared by default
+	 */
+	public static SliceCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param budget maximum number of bytes held
+	 */
+	public SliceCache(long budget) {
+		setBudget(budget);
+	}
+
+	static class Key {
+		private final String file;
+		private final String path;
+		private final int[] shape;
+		private final int[] start;
+		private final int[] stop;
+		private final int[] step;
+		private final int hash;
+
+		Key(String file, String path, int[] shape, int[] start, int[] stop, int[] step) {
+			this.file = file;
+			this.path = path;
+			this.shape = shape.clone();
+			this.start = start.clone();
+			this.stop = stop.clone();
+			this.step = step.clone();
+			int h = file == null ? 0 : file.hashCode();
+			h = h * 31 + (path == null ? 0 : path.hashCode());
+			h = h * 31 + Arrays.hashCode(shape);
+			h = h * 31 + Arrays.hashCode(start);
+			h = h * 31 + Arrays.hashCode(stop);
+			hash = h * 31 + Arrays.hashCode(step);
+		}
+
+		boolean isFrom(String file, String path) {
+			return equal(this.file, file) && (path == null || equal(this.path, path));
+		}
+
+		private static boolean equal(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && equal(file, other.file) && equal(path, other.path)
+					&& Arrays.equals(start, other.start) && Arrays.equals(stop, other.stop)
+					&& Arrays.equals(step, other.step) && Arrays.equals(shape, other.shape);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return copy of slice or null if it is not held
+	 */
+	Dataset get(Key key) {
+		Dataset d;
+		synchronized (this) {
+			d = slices.get(key);
+			if (d == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return d.clone();
+	}
+
+	/**
+	 * Hold copy of slice
+	 * @param key
+	 * @param slice
+	 */
+	void put(Key key, Dataset slice) {
+		final long n = slice.getNbytes();
+		if (n > budget) {
+			return;
+		}
+		final Dataset copy = slice.clone();
+		synchronized (this) {
+			if (n > budget) { // budget has been reduced
+				return;
+			}
+			final Dataset old = slices.put(key, copy);
+			if (old != null) {
+				bytes -= old.getNbytes();
+			}
+			bytes += n;
+			evict();
+		}
+	}
+
+	private void evict() {
+		final Iterator<Dataset> it = slices.values().iterator();
+		while (bytes > budget && it.hasNext()) {
+			bytes -= it.next().getNbytes();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Remove all slices from file
+	 * @param file
+	 */
+	public void invalidate(String file) {
+		invalidate(file, null);
+	}
+
+	/**
+	 * Remove all slices of dataset in file
+	 * @param file
+	 * @param path of dataset (if null, all datasets in file)
+	 */
+	public synchronized void invalidate(String file, String path) {
+		final Iterator<Map.Entry<Key, Dataset>> it = slices.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, Dataset> e = it.next();
+			if (e.getKey().isFrom(file, path)) {
+				bytes -= e.getValue().getNbytes();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove all slices
+	 */
+	public synchronized void clear() {
+		slices.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Set maximum number of bytes held, evicting slices if necessary
+	 * @param budget
+	 */
+	public synchronized void setBudget(long budget) {
+		if (budget < 0) {
+			throw new IllegalArgumentException("Budget must be zero or greater");
+		}
+		this.budget = budget;
+		evict();
+	}
+
+	/**
+	 * @return maximum number of bytes held
+	 */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return number of bytes held
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return number of slices held
+	 */
+	public synchronized int getCount() {
+		return slices.size();
+	}
+
+	/**
+	 * @return number of requests that found slice in cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of requests that did not find slice in cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of slices evicted to keep within budget
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Reset hit, miss and eviction counts
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+}
@@ -33,38 +33,31 @@ public class Stats {
 	private static final String STORE_QUARTILE1 = "quartile1";
 	private static final String STORE_QUARTILE3 = "quartile3";
 
-	// calculates statistics and returns sorted dataset (0th element if compound)
-	private static Dataset calcQuartileStats(final AbstractDataset a) {
-		Dataset s = null;
+	private static final double[] QUARTILES = {0.25, 0.5, 0.75};
+
+	// calculates and stores quartiles
+	private static void calcQuartileStats(final AbstractDataset a) {
 		final int is = a.getElementsPerItem();
 
 		if (is == 1) {
-			s = DatasetUtils.sort(a, null);
-		
-			a.setStoredValue(STORE_MEDIAN, Double.valueOf(pQuantile(s, 0.5)));
-			a.setStoredValue(STORE_QUARTILE1, Double.valueOf(pQuantile(s, 0.25)));
-			a.setStoredValue(STORE_QUARTILE3, Double.valueOf(pQuantile(s, 0.75)));
+			final double[] q = pQuantileOfElement(a, 0, QUARTILES);
+			a.setStoredValue(STORE_QUARTILE1, Double.valueOf(q[0]));
+			a.setStoredValue(STORE_MEDIAN, Double.valueOf(q[1]));
+			a.setStoredValue(STORE_QUARTILE3, Double.valueOf(q[2]));
 		} else {
-			Dataset w = DatasetFactory.zeros(a.getShapeRef(), a.getDtype());
-			a.setStoredValue(STORE_MEDIAN, new double[is]);
-			a.setStoredValue(STORE_QUARTILE1, new double[is]);
-			a.setStoredValue(STORE_QUARTILE3, new double[is]);
+			final double[] q1 = new double[is];
+			final double[] q2 = new double[is];
+			final double[] q3 = new double[is];
 			for (int j = 0; j < is; j++) {
-				((CompoundDataset) a).copyElements(w, j);
-				w.sort(null);
-
-				double[] store;
-				store = (double[]) a.getStoredValue(STORE_MEDIAN);
-				store[j] = pQuantile(w, 0.5);
-				store = (double[]) a.getStoredValue(STORE_QUARTILE1);
-				store[j] = pQuantile(w, 0.25);
-				store = (double[]) a.getStoredValue(STORE_QUARTILE3);
-				store[j] = pQuantile(w, 0.75);
-				if (j == 0)
-					s = w.clone();
+				final double[] q = pQuantileOfElement(a, j, QUARTILES);
+				q1[j] = q[0];
+				q2[j] = q[1];
+				q3[j] = q[2];
 			}
+			a.setStoredValue(STORE_MEDIAN, q2);
+			a.setStoredValue(STORE_QUARTILE1, q1);
+			a.setStoredValue(STORE_QUARTILE3, q3);
 		}
-		return s;
 	}
 
 	static private Object getQStatistics(final AbstractDataset a, final String stat) {
@@ -79,117 +72,74 @@ public class Stats {
 	static private Dataset getQStatistics(final AbstractDataset a, int axis, final String stat) {
 		axis = a.checkAxis(axis);
 		Object obj = a.getStoredValue(stat);
-		final int is = a.getElementsPerItem();
 
 		if (obj == null) {
-			if (is == 1) {
-				Dataset s = DatasetUtils.sort(a, axis);
-
-				a.setStoredValue(STORE_MEDIAN + "-" + axis, pQuantile(s, axis, 0.5));
-				a.setStoredValue(STORE_QUARTILE1 + "-" + axis, pQuantile(s, axis, 0.25));
-				a.setStoredValue(STORE_QUARTILE3 + "-" + axis, pQuantile(s, axis, 0.75));
-			} else {
-				Dataset w = DatasetFactory.zeros(a.getShapeRef(), a.getDtype());
-				for (int j = 0; j < is; j++) {
-					((CompoundDataset) a).copyElements(w, j);
-					w.sort(axis);
-
-					CompoundDoubleDataset s;
-					final Dataset c = pQuantile(w, axis, 0.5);
-					if (j == 0) {
-						s = (CompoundDoubleDataset) DatasetFactory.zeros(is, c.getShapeRef(), c.getDtype());
-						a.setStoredValue(STORE_MEDIAN + "-" + axis, s);
-						s = (CompoundDoubleDataset) DatasetFactory.zeros(is, c.getShapeRef(), c.getDtype());
-						a.setStoredValue(STORE_QUARTILE1 + "-" + axis, s);
-						s = (CompoundDoubleDataset) DatasetFactory.zeros(is, c.getShapeRef(), c.getDtype());
-						a.setStoredValue(STORE_QUARTILE3 + "-" + axis, s);
-					}
-					s = (CompoundDoubleDataset) a.getStoredValue(STORE_MEDIAN + "-" + axis);
-					s.setElements(c, j);
-
-					s = (CompoundDoubleDataset) a.getStoredValue(STORE_QUARTILE1 + "-" + axis);
-					s.setElements(pQuantile(w, axis, 0.25), j);
-
-					s = (CompoundDoubleDataset) a.getStoredValue(STORE_QUARTILE3 + "-" + axis);
-					s.setElements(pQuantile(w, axis, 0.75), j);
-				}
-			}
+			final Dataset[] q = pQuantile(a, axis, QUARTILES);
+			a.setStoredValue(STORE_QUARTILE1 + "-" + axis, q[0]);
+			a.setStoredValue(STORE_MEDIAN + "-" + axis, q[1]);
+			a.setStoredValue(STORE_QUARTILE3 + "-" + axis, q[2]);
 			obj = a.getStoredValue(stat);
 		}
 
 		return (Dataset) obj;
 	}
 
-	// process a sorted dataset
-	private static double pQuantile(final Dataset s, final double q) {
-		double f = (s.getSize() - 1) * q; // fraction of sample number
-		if (f < 0)
-			return Double.NaN;
-		int qpt = (int) Math.floor(f); // quantile point
-		f -= qpt;
-
-		double quantile = s.getElementDoubleAbs(qpt);
-		if (f > 0) {
-			quantile = (1-f)*quantile + f*s.getElementDoubleAbs(qpt+1);
+	// copies given element of each item and selects quantiles from the copy
+	private static double[] pQuantileOfElement(final Dataset a, final int element, final double... q) {
+		final double[] values = new double[a.getSize()];
+		final IndexIterator iter = a.getIterator();
+		int i = 0;
+		while (iter.hasNext()) {
+			values[i++] = a.getElementDoubleAbs(iter.index + element);
 		}
-		return quantile;
-	}
-
-	// process a sorted dataset and returns a double or compound double dataset
-	private static Dataset pQuantile(final Dataset s, final int axis, final double q) {
-		final int rank = s.getRank();
-		final int is = s.getElementsPerItem();
 
-		int[] oshape = s.getShape();
+		return OrderStatistics.quantile(values, 0, values.length, q);
+	}
 
-		double f = (oshape[axis] - 1) * q; // fraction of sample number
-		int qpt = (int) Math.floor(f); // quantile point
-		f -= qpt;
+	// selects quantiles from each line along axis and returns double or compound double datasets
+	private static Dataset[] pQuantile(final AbstractDataset a, final int axis, final double... q) {
+		final int is = a.getElementsPerItem();
 
+		int[] oshape = a.getShape();
+		final int alen = oshape[axis];
 		oshape[axis] = 1;
 		int[] qshape = AbstractDataset.squeezeShape(oshape, false);
-		Dataset qds = DatasetFactory.zeros(is, qshape, Dataset.FLOAT64);
 
-		IndexIterator qiter = qds.getIterator(true);
-		int[] qpos = qiter.getPos();
-		int[] spos = oshape;
-
-		while (qiter.hasNext()) {
-			int i = 0;
-			for (; i < axis; i++) {
-				spos[i] = qpos[i];
-			}
-			spos[i++] = qpt;
-			for (; i < rank; i++) {
-				spos[i] = qpos[i-1];
-			}
+		final Dataset[] qds = new Dataset[q.length];
+		final double[][] qdata = new double[q.length][];
+		for (int i = 0; i < q.length; i++) {
+			qds[i] = DatasetFactory.zeros(is, qshape, Dataset.FLOAT64);
+			qdata[i] = is == 1 ? ((DoubleDataset) qds[i]).getData() : ((CompoundDoubleDataset) qds[i]).getData();
+		}
+		if (a.getSize() == 0) {
+			return qds;
+		}
 
-			Object obj = s.getObject(spos);
-			qds.set(obj, qpos);
+		// lines are linear in the buffer so only their starts need to be found
+		final PositionIterator iter = a.getPositionIterator(axis);
+		final int[] pos = iter.getPos();
+		int step = 0;
+		if (alen > 1) {
+			pos[axis] = 1;
+			step = a.get1DIndex(pos);
+			pos[axis] = 0;
+			step -= a.get1DIndex(pos);
 		}
 
-		if (f > 0) {
-			qiter = qds.getIterator(true);
-			qpos = qiter.getPos();
-			qpt++;
-			Dataset rds = DatasetFactory.zeros(is, qshape, Dataset.FLOAT64);
-			
-			while (qiter.hasNext()) {
-				int i = 0;
-				for (; i < axis; i++) {
-					spos[i] = qpos[i];
+		final double[] line = new double[alen]; // scratch buffer reused for each line
+		int n = 0; // index of line
+		while (iter.hasNext()) {
+			final int base = a.get1DIndex(pos);
+			for (int j = 0; j < is; j++) {
+				for (int k = 0, index = base + j; k < alen; k++, index += step) {
+					line[k] = a.getElementDoubleAbs(index);
 				}
-				spos[i++] = qpt;
-				for (; i < rank; i++) {
-					spos[i] = qpos[i-1];
+				final double[] points = OrderStatistics.quantile(line, 0, alen, q);
+				for (int i = 0; i < q.length; i++) {
+					qdata[i][n * is + j] = points[i];
 				}
-
-				Object obj = s.getObject(spos);
-				rds.set(obj, qpos);
 			}
-			rds.imultiply(f);
-			qds.imultiply(1-f);
-			qds.iadd(rds);
+			n++;
 		}
 
 		return qds;
@@ -205,8 +155,7 @@ public class Stats {
 		if (q < 0 || q > 1) {
 			throw new IllegalArgumentException("Quantile requested is outside [0,1]");
 		}
-		final Dataset s = calcQuartileStats(DatasetUtils.convertToAbstractDataset(a));
-		return pQuantile(s, q);
+		return pQuantileOfElement(a, 0, q)[0];
 	}
 
 	/**
@@ -216,16 +165,12 @@ public class Stats {
 	 * @return points at which CDF has given values
 	 */
 	public static double[] quantile(final Dataset a, final double... values) {
-		final double[] points  = new double[values.length];
-		final Dataset s = calcQuartileStats(DatasetUtils.convertToAbstractDataset(a));
-		for (int i = 0; i < points.length; i++) {
-			final double q = values[i];
+		for (double q : values) {
 			if (q < 0 || q > 1) {
 				throw new IllegalArgumentException("Quantile requested is outside [0,1]");
 			}
-			points[i] = pQuantile(s, q);
 		}
-		return points;
+		return pQuantileOfElement(a, 0, values);
 	}
 
 	/**
@@ -236,38 +181,40 @@ public class Stats {
 	 * @return points at which CDF has given values
 	 */
 	public static Dataset[] quantile(final Dataset a, final int axis, final double... values) {
-		final Dataset[] points  = new Dataset[values.length];
-		final int is = a.getElementsPerItem();
-
-		if (is == 1) {
-			Dataset s = DatasetUtils.sort(a, axis);
-			for (int i = 0; i < points.length; i++) {
-				final double q = values[i];
-				if (q < 0 || q > 1) {
-					throw new IllegalArgumentException("Quantile requested is outside [0,1]");
-				}
-				points[i] = pQuantile(s, axis, q);
+		for (double q : values) {
+			if (q < 0 || q > 1) {
+				throw new IllegalArgumentException("Quantile requested is outside [0,1]");
 			}
-		} else {
-			Dataset w = DatasetFactory.zeros(a.getShapeRef(), a.getDtype());
-			for (int j = 0; j < is; j++) {
-				((CompoundDataset) a).copyElements(w, j);
-				w.sort(axis);
+		}
+		final AbstractDataset aa = DatasetUtils.convertToAbstractDataset(a);
+		return pQuantile(aa, aa.checkAxis(axis), values);
+	}
 
-				for (int i = 0; i < points.length; i++) {
-					final double q = values[i];
-					if (q < 0 || q > 1) {
-						throw new IllegalArgumentException("Quantile requested is outside [0,1]");
-					}
-					final Dataset c = pQuantile(w, axis, q);
-					if (j == 0) {
-						points[i] = DatasetFactory.zeros(is, c.getShapeRef(), c.getDtype());
-					}
-					((CompoundDoubleDataset) points[i]).setElements(c, j);
-				}
+	/**
+	 * Estimate quantiles of dataset in a single pass without copying it. This uses the P-square
+	 * algorithm (see {@link PSquareQuantile}) and ignores NaNs
+	 * @param a
+	 * @param values
+	 * @return estimates of points at which CDF has given values
+	 */
+	public static double[] approximateQuantile(final Dataset a, final double... values) {
+		final PSquareQuantile[] estimators = new PSquareQuantile[values.length];
+		for (int i = 0; i < values.length; i++) {
+			estimators[i] = new PSquareQuantile(values[i]);
+		}
+
+		final IndexIterator iter = a.getIterator();
+		while (iter.hasNext()) {
+			final double v = a.getElementDoubleAbs(iter.index);
+			for (PSquareQuantile e : estimators) {
+				e.add(v);
 			}
 		}
 
+		final double[] points = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			points[i] = estimators[i].getQuantile();
+		}
 		return points;
 	}
 
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+/**
+ * Accumulator of summary statistics for a run of values that can be merged with the
+ * accumulator of the run that follows it.
+ * <p>
+ * This holds the count, sum, mean and sum of squared deviations (using Welford's updates,
+ * which match commons-math's {@code SummaryStatistics}), the minimum and maximum values and
+ * the indexes of their first occurrences, the positive minimum and maximum values, the numbers
+ * of NaNs and infinities seen and a hash of all values. Merging uses Chan's pairwise updates
+ * and the hash is combined exactly so it does not depend on how the values were split.
+ */
+final class SummaryAccumulator {
+	private static final long HASH_MULTIPLIER = 19;
+
+	private final boolean ignoreNaNs;
+	private final boolean ignoreInfs;
+
+	private int seen;  // number of values seen (including ignored values)
+	private final int start; // index of first value
+	private long n;    // number of values added
+	private double sum;
+	private double m1 = Double.NaN; // mean
+	private double m2; // sum of squared deviations from mean
+	private double max = Double.NEGATIVE_INFINITY;
+	private double min = Double.POSITIVE_INFINITY;
+	private double pmax = Double.MIN_VALUE;
+	private double pmin = Double.POSITIVE_INFINITY;
+	private int maxIndex = -1;
+	private int minIndex = -1;
+	private int nanIndex = -1; // first NaN that has been added
+	private long nans;
+	private long infs;
+	private long hash;
+
+	/**
+	 * @param ignoreNaNs if true, ignore NaNs
+	 * @param ignoreInfs if true, ignore infinities
+	 * @param start index of first value
+	 */
+	SummaryAccumulator(final boolean ignoreNaNs, final boolean ignoreInfs, final int start) {
+		this.ignoreNaNs = ignoreNaNs;
+		this.ignoreInfs = ignoreInfs;
+		this.start = start;
+	}
+
+	/**
+	 * Add next value
+	 * @param val
+	 */
+	void add(final double val) {
+		final int i = start + seen++;
+		if (Double.isNaN(val)) {
+			hash *= HASH_MULTIPLIER;
+			nans++;
+			if (ignoreNaNs) {
+				return;
+			}
+			if (nanIndex < 0) {
+				nanIndex = i;
+			}
+		} else if (Double.isInfinite(val)) {
+			hash *= HASH_MULTIPLIER;
+			infs++;
+			if (ignoreInfs) {
+				return;
+			}
+		} else {
+			hash = hash * HASH_MULTIPLIER + Double.doubleToLongBits(val + 0.0); // so -0 hashes as 0
+		}
+
+		if (val > max) {
+			max = val;
+			maxIndex = i;
+		}
+		if (val < min) {
+			min = val;
+			minIndex = i;
+		}
+		if (val > 0) {
+			if (val < pmin) {
+				pmin = val;
+			}
+			if (val > pmax) {
+				pmax = val;
+			}
+		}
+
+		if (n == 0) {
+			m1 = 0;
+		}
+		final double n0 = n++;
+		final double dev = val - m1;
+		final double nDev = dev / n;
+		m1 += nDev;
+		m2 += n0 * dev * nDev;
+		sum += val;
+	}
+
+	/**
+	 * Merge with accumulator of values that follow those of this accumulator
+	 * @param other
+	 */
+	void merge(final SummaryAccumulator other) {
+		if (other.seen == 0) {
+			return;
+		}
+
+		hash = hash * power(HASH_MULTIPLIER, other.seen) + other.hash;
+		seen += other.seen;
+		nans += other.nans;
+		infs += other.infs;
+		if (nanIndex < 0) {
+			nanIndex = other.nanIndex;
+		}
+		if (other.n == 0) {
+			return;
+		}
+
+		// ties go to this as its values come first
+		if (other.max > max) {
+			max = other.max;
+			maxIndex = other.maxIndex;
+		}
+		if (other.min < min) {
+			min = other.min;
+			minIndex = other.minIndex;
+		}
+		if (other.pmin < pmin) {
+			pmin = other.pmin;
+		}
+		if (other.pmax > pmax) {
+			pmax = other.pmax;
+		}
+
+		if (n == 0) {
+			m1 = other.m1;
+			m2 = other.m2;
+		} else {
+			final double na = n;
+			final double nb = other.n;
+			final double nt = na + nb;
+			final double delta = other.m1 - m1;
+			m1 += delta * nb / nt;
+			m2 += other.m2 + delta * delta * na * nb / nt;
+		}
+		n += other.n;
+		sum += other.sum;
+	}
+
+	private static long power(long x, int e) {
+		long r = 1;
+		while (e > 0) {
+			if ((e & 1) != 0) {
+				r *= x;
+			}
+			x *= x;
+			e >>= 1;
+		}
+		return r;
+	}
+
+	/**
+	 * @return true if a NaN has been added
+	 */
+	boolean hasNaNs() {
+		return nanIndex >= 0;
+	}
+
+	/**
+	 * @return number of values added
+	 */
+	long getN() {
+		return n;
+	}
+
+	/**
+	 * @return sum of values added
+	 */
+	double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return mean of values added (or NaN if none)
+	 */
+	double getMean() {
+		return m1;
+	}
+
+	/**
+	 * @return bias-corrected sample variance of values added (or NaN if none)
+	 */
+	double getVariance() {
+		return n == 0 ? Double.NaN : (n == 1 ? 0 : m2 / (n - 1.0));
+	}
+
+	/**
+	 * @return population variance of values added (or NaN if none)
+	 */
+	double getPopulationVariance() {
+		return n == 0 ? Double.NaN : m2 / n;
+	}
+
+	/**
+	 * @return maximum (or NaN if a NaN has been added)
+	 */
+	double getMax() {
+		return hasNaNs() ? Double.NaN : max;
+	}
+
+	/**
+	 * @return minimum (or NaN if a NaN has been added)
+	 */
+	double getMin() {
+		return hasNaNs() ? Double.NaN : min;
+	}
+
+	/**
+	 * @return positive maximum (or NaN if a NaN has been added)
+	 */
+	double getPositiveMax() {
+		return hasNaNs() ? Double.NaN : pmax;
+	}
+
+	/**
+	 * @return positive minimum (or NaN if a NaN has been added)
+	 */
+	double getPositiveMin() {
+		return hasNaNs() ? Double.NaN : pmin;
+	}
+
+	/**
+	 * @return index of first maximum (or first NaN if a NaN has been added), -1 if there is none
+	 */
+	int getMaxIndex() {
+		return hasNaNs() ? nanIndex : maxIndex;
+	}
+
+	/**
+	 * @return index of first minimum (or first NaN if a NaN has been added), -1 if there is none
+	 */
+	int getMinIndex() {
+		return hasNaNs() ? nanIndex : minIndex;
+	}
+
+	/**
+	 * @return number of NaNs seen (including ignored ones)
+	 */
+	long getNaNCount() {
+		return nans;
+	}
+
+	/**
+	 * @return number of infinities seen (including ignored ones)
+	 */
+	long getInfCount() {
+		return infs;
+	}
+
+	/**
+	 * @return hash of all values seen
+	 */
+	int getHash() {
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
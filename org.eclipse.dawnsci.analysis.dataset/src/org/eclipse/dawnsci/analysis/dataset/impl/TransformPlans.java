@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of JTransforms plans (FFT and DCT objects) keyed by class, which gives the precision,
+ * and transform dimensions.
+ * <p>
+ * Creating a plan computes its twiddle factors and bit-reversal tables so repeated transforms of the
+ * same size reuse idle plans. As multi-dimensional plans hold scratch arrays, a plan is used by one
+ * caller at a time: it is taken from the pool with {@link #acquire(Class, int...)} and given back with
+ * {@link #release(Object, int...)}. A plan that is not given back (e.g. when a transform fails) is
+ * simply dropped. Once more than {@link #MAX_PLANS} plans are idle, those least recently used are
+ * discarded.
+ */
+final class TransformPlans {
+	static final int MAX_PLANS = 32;
+
+	private static final LinkedHashMap<Key, ArrayDeque<Object>> idle = new LinkedHashMap<Key, ArrayDeque<Object>>(16, 0.75f, true);
+	private static int count = 0; // number of idle plans
+
+	private TransformPlans() {
+	}
+
+	private static class Key {
+		private final Class<?> type;
+		private final int[] dims;
+		private final int hash;
+
+		Key(final Class<?> type, final int[] dims) {
+			this.type = type;
+			this.dims = dims;
+			hash = type.hashCode() * 31 + Arrays.hashCode(dims);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return type == other.type && Arrays.equals(dims, other.dims);
+		}
+	}
+
+	/**
+	 * Get idle plan or create a new one
+	 * @param type class of plan
+	 * @param dims transform dimensions (as given to constructor)
+	 * @return plan for exclusive use by caller
+	 */
+	static <T> T acquire(final Class<T> type, final int... dims) {
+		final Key key = new Key(type, dims.clone());
+		synchronized (idle) {
+			final ArrayDeque<Object> plans = idle.get(key);
+			if (plans != null) {
+				final Object p = plans.poll();
+				if (plans.isEmpty()) {
+					idle.remove(key);
+				}
+				count--;
+				return type.cast(p);
+			}
+		}
+
+		return create(type, dims);
+	}
+
+	/**
+	 * Give back plan that is no longer used by caller
+	 * @param plan
+	 * @param dims transform dimensions (as given to {@link #acquire(Class, int...)})
+	 */
+	static void release(final Object plan, final int... dims) {
+		final Key key = new Key(plan.getClass(), dims.clone());
+		synchronized (idle) {
+			ArrayDeque<Object> plans = idle.get(key);
+			if (plans == null) {
+				plans = new ArrayDeque<Object>();
+				idle.put(key, plans);
+			}
+			plans.push(plan);
+			count++;
+
+			Iterator<Map.Entry<Key, ArrayDeque<Object>>> it = idle.entrySet().iterator();
+			ArrayDeque<Object> oldest = null;
+			while (count > MAX_PLANS) {
+				if (oldest == null || oldest.isEmpty()) {
+					oldest = it.next().getValue();
+				}
+				oldest.removeLast();
+				count--;
+				if (oldest.isEmpty()) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Discard all idle plans
+	 */
+	static void clear() {
+		synchronized (idle) {
+			idle.clear();
+			count = 0;
+		}
+	}
+
+	private static <T> T create(final Class<T> type, final int[] dims) {
+		final Class<?>[] params = new Class<?>[dims.length];
+		final Object[] args = new Object[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			params[i] = int.class;
+			args[i] = dims[i];
+		}
+		try {
+			Constructor<T> c = type.getConstructor(params);
+			return c.newInstance(args);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Could not create transform plan for " + type.getSimpleName(), e);
+		}
+	}
+}
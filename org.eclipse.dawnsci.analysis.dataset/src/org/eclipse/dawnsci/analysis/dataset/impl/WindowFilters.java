@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.eclipse.dawnsci.analysis.dataset.impl;
+
+import java.util.Arrays;
+
+/**
+ * Sliding-window filters over N-dimensional arrays held in row-major order.
+ * <p>
+ * The window for position p along an axis with kernel length k covers [p - k/2, p - k/2 + k)
+ * clipped to the array. As clipped windows are products of intervals, minimum, maximum and
+ * mean filters are done as one pass per axis: the minimum and maximum use the van Herk/Gil-Werman
+ * algorithm (three comparisons per item whatever the kernel length) and the mean uses running
+ * sums. The median filter slides along the last axis and keeps counts of the ranks of the window's
+ * values, so each step adds and removes one slab of values. The counts are held in a histogram
+ * when there are few distinct values and in a Fenwick tree otherwise.
+ * <p>
+ * Lines are run in parallel when parallel operations are enabled and the array is large enough.
+ */
+final class WindowFilters {
+	private static final int LINES_PER_GROUP = 16;
+	private static final int HISTOGRAM_SIZE = 1 << 12;
+
+	private WindowFilters() {
+	}
+
+	/**
+	 * Operation on a line of values
+	 */
+	interface LineFilter {
+		/**
+		 * @param in line of input values
+		 * @param out line of output values
+		 * @param n length of line
+		 * @param k kernel length
+		 */
+		void filter(double[] in, double[] out, int n, int k);
+	}
+
+	/**
+	 * @param values
+	 * @param shape
+	 * @param kernel
+	 * @return minima of windows
+	 */
+	static double[] minimum(final double[] values, final int[] shape, final int[] kernel) {
+		return separable(values, shape, kernel, new ExtremumFilter(false));
+	}
+
+	/**
+	 * @param values
+	 * @param shape
+	 * @param kernel
+	 * @return maxima of windows
+	 */
+	static double[] maximum(final double[] values, final int[] shape, final int[] kernel) {
+		return separable(values, shape, kernel, new ExtremumFilter(true));
+	}
+
+	/**
+	 * @param values
+	 * @param shape
+	 * @param kernel
+	 * @return means of windows
+	 */
+	static double[] mean(final double[] values, final int[] shape, final int[] kernel) {
+		return separable(values, shape, kernel, new MeanFilter());
+	}
+
+	static boolean isParallel(final int size) {
+		return ParallelOperations.isParallel() && ParallelOperations.isWorthwhile(size);
+	}
+
+	private static double[] separable(final double[] values, final int[] shape, final int[] kernel, final LineFilter filter) {
+		final LineFilter[] filters = new LineFilter[shape.length];
+		Arrays.fill(filters, filter);
+		return separable(values, shape, kernel, filters);
+	}
+
+	/**
+	 * Apply line filters along each axis in turn
+	 * @param values
+	 * @param shape
+	 * @param kernel lengths of kernel
+	 * @param filters line filter for each axis
+	 * @return filtered values
+	 */
+	static double[] separable(final double[] values, final int[] shape, final int[] kernel, final LineFilter[] filters) {
+		double[] in = values;
+		double[] free = null; // buffer that can be overwritten
+		for (int a = 0; a < shape.length; a++) {
+			if (kernel[a] == 1) {
+				continue;
+			}
+			final double[] out = free == null ? new double[values.length] : free;
+			filterAxis(in, out, shape, a, kernel[a], filters[a]);
+			free = in == values ? null : in;
+			in = out;
+		}
+		return in == values ? values.clone() : in;
+	}
+
+	private static void filterAxis(final double[] in, final double[] out, final int[] shape, final int axis, final int k, final LineFilter filter) {
+		final int n = shape[axis];
+		if (n == 0) {
+			return;
+		}
+		int stride = 1;
+		for (int i = axis + 1; i < shape.length; i++) {
+			stride *= shape[i];
+		}
+		final int step = stride;
+		final int lines = in.length / n;
+
+		// adjacent lines are done together so strided reads and writes are of contiguous runs
+		final int group = Math.min(step, LINES_PER_GROUP);
+		ParallelOperations.RangeChunk chunk = new ParallelOperations.RangeChunk() {
+			@Override
+			public void operate(int start, int end) {
+				final double[][] lin = new double[group][n];
+				final double[] lout = new double[n];
+				for (int l = start; l < end;) {
+					final int base = (l / step) * n * step + l % step;
+					final int g = Math.min(Math.min(group, end - l), step - l % step);
+					for (int i = 0, j = base; i < n; i++, j += step) {
+						for (int t = 0; t < g; t++) {
+							lin[t][i] = in[j + t];
+						}
+					}
+					for (int t = 0; t < g; t++) {
+						filter.filter(lin[t], lout, n, k);
+						System.arraycopy(lout, 0, lin[t], 0, n);
+					}
+					for (int i = 0, j = base; i < n; i++, j += step) {
+						for (int t = 0; t < g; t++) {
+							out[j + t] = lin[t][i];
+						}
+					}
+					l += g;
+				}
+			}
+		};
+
+		if (isParallel(in.length)) {
+			ParallelOperations.operate(lines, n, chunk);
+		} else {
+			chunk.operate(0, lines);
+		}
+	}
+
+	/**
+	 * van Herk/Gil-Werman filter. The line is padded with the identity value and split into
+	 * blocks of the kernel length. Each window spans at most two blocks so its extremum is that of
+	 * the suffix extremum at its start and the prefix extremum at its end
+	 */
+	private static class ExtremumFilter implements LineFilter {
+		private final boolean isMax;
+		private final double identity;
+
+		ExtremumFilter(final boolean isMax) {
+			this.isMax = isMax;
+			identity = isMax ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+
+		private double pick(final double a, final double b) {
+			return isMax ? Math.max(a, b) : Math.min(a, b); // propagates NaNs
+		}
+
+		@Override
+		public void filter(final double[] in, final double[] out, final int n, final int k) {
+			final int h = k / 2;
+			final int l = n + k - 1;
+			final double[] g = new double[l]; // prefix extrema in blocks
+			final double[] s = new double[l]; // suffix extrema in blocks
+			for (int j = 0; j < l; j++) {
+				final int i = j - h;
+				final double v = i >= 0 && i < n ? in[i] : identity;
+				g[j] = j % k == 0 ? v : pick(g[j - 1], v);
+			}
+			for (int j = l - 1; j >= 0; j--) {
+				final int i = j - h;
+				final double v = i >= 0 && i < n ? in[i] : identity;
+				s[j] = (j == l - 1 || (j + 1) % k == 0) ? v : pick(s[j + 1], v);
+			}
+			for (int p = 0; p < n; p++) {
+				out[p] = pick(s[p], g[p + k - 1]);
+			}
+		}
+	}
+
+	/**
+	 * Running sum filter. Non-finite values are counted rather than summed so they do not
+	 * linger in the sum once they have left the window. The sum is compensated (Neumaier's
+	 * variant of Kahan summation) so rounding errors do not build up along long lines
+	 */
+	private static class MeanFilter implements LineFilter {
+		@Override
+		public void filter(final double[] in, final double[] out, final int n, final int k) {
+			final int h = k / 2;
+			final CompensatedSum sum = new CompensatedSum();
+			int nans = 0;
+			int pinfs = 0;
+			int ninfs = 0;
+			int lo = 0;
+			int hi = 0;
+			for (int p = 0; p < n; p++) {
+				final int nlo = Math.max(0, p - h);
+				final int nhi = Math.min(n, p - h + k);
+				for (; hi < nhi; hi++) {
+					final double v = in[hi];
+					if (Double.isNaN(v)) {
+						nans++;
+					} else if (v == Double.POSITIVE_INFINITY) {
+						pinfs++;
+					} else if (v == Double.NEGATIVE_INFINITY) {
+						ninfs++;
+					} else {
+						sum.add(v);
+					}
+				}
+				for (; lo < nlo; lo++) {
+					final double v = in[lo];
+					if (Double.isNaN(v)) {
+						nans--;
+					} else if (v == Double.POSITIVE_INFINITY) {
+						pinfs--;
+					} else if (v == Double.NEGATIVE_INFINITY) {
+						ninfs--;
+					} else {
+						sum.add(-v);
+					}
+				}
+
+				if (nans > 0 || (pinfs > 0 && ninfs > 0)) {
+					out[p] = Double.NaN;
+				} else if (pinfs > 0) {
+					out[p] = Double.POSITIVE_INFINITY;
+				} else if (ninfs > 0) {
+					out[p] = Double.NEGATIVE_INFINITY;
+				} else {
+					out[p] = sum.get() / (nhi - nlo);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sum with a running compensation for lost low-order bits
+	 */
+	private static class CompensatedSum {
+		private double sum;
+		private double c;
+
+		void add(final double v) {
+			final double t = sum + v;
+			if (Math.abs(sum) >= Math.abs(v)) {
+				c += (sum - t) + v;
+			} else {
+				c += (v - t) + sum;
+			}
+			sum = t;
+		}
+
+		double get() {
+			return sum + c;
+		}
+	}
+
+	/**
+	 * Median filter. Values are ranked as by {@link Arrays#sort(double[])} (with NaNs last) and
+	 * medians of windows with even numbers of values are the means of the middle two values
+	 * @param values
+	 * @param shape
+	 * @param kernel
+	 * @return medians of windows
+	 */
+	static double[] median(final double[] values, final int[] shape, final int[] kernel) {
+		final int size = values.length;
+		final double[] out = new double[size];
+		final int rank = shape.length;
+		if (size == 0) {
+			return out;
+		}
+		if (rank == 0) {
+			out[0] = values[0];
+			return out;
+		}
+
+		// rank values
+		final double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int m = 0;
+		for (int i = 0; i < size; i++) {
+			if (m == 0 || Double.compare(sorted[i], sorted[m - 1]) != 0) {
+				sorted[m++] = sorted[i];
+			}
+		}
+		final double[] distinct = Arrays.copyOf(sorted, m);
+		final int[] ranks = new int[size];
+		for (int i = 0; i < size; i++) {
+			ranks[i] = Arrays.binarySearch(distinct, values[i]);
+		}
+
+		final int[] strides = new int[rank];
+		strides[rank - 1] = 1;
+		for (int i = rank - 2; i >= 0; i--) {
+			strides[i] = strides[i + 1] * shape[i + 1];
+		}
+
+		final int n = shape[rank - 1];
+		final int lines = size / n;
+		ParallelOperations.RangeChunk chunk = new ParallelOperations.RangeChunk() {
+			@Override
+			public void operate(int start, int end) {
+				final RankCounts tree = distinct.length <= HISTOGRAM_SIZE ? new RankHistogram(distinct.length) : new RankTree(distinct.length);
+				final int[] pos = new int[rank];
+				final int[] lo = new int[rank];
+				final int[] hi = new int[rank];
+				for (int l = start; l < end; l++) {
+					// find starts of lines within window across other axes
+					int r = l;
+					int slab = 1;
+					for (int i = rank - 2; i >= 0; i--) {
+						pos[i] = r % shape[i];
+						r /= shape[i];
+						lo[i] = Math.max(0, pos[i] - kernel[i] / 2);
+						hi[i] = Math.min(shape[i], pos[i] - kernel[i] / 2 + kernel[i]);
+						slab *= hi[i] - lo[i];
+					}
+					final int[] bases = new int[slab];
+					int b = 0;
+					for (int i = 0; i < rank - 1; i++) {
+						pos[i] = lo[i];
+						b += lo[i] * strides[i];
+					}
+					for (int j = 0; j < slab; j++) {
+						bases[j] = b;
+						for (int i = rank - 2; i >= 0; i--) { // odometer
+							if (++pos[i] < hi[i]) {
+								b += strides[i];
+								break;
+							}
+							b -= (pos[i] - 1 - lo[i]) * strides[i];
+							pos[i] = lo[i];
+						}
+					}
+
+					// slide along line
+					final int k = kernel[rank - 1];
+					final int h = k / 2;
+					final int ob = l * n;
+					int clo = 0;
+					int chi = 0;
+					for (int p = 0; p < n; p++) {
+						final int nlo = Math.max(0, p - h);
+						final int nhi = Math.min(n, p - h + k);
+						for (; chi < nhi; chi++) {
+							for (int base : bases) {
+								tree.add(ranks[base + chi], 1);
+							}
+						}
+						for (; clo < nlo; clo++) {
+							for (int base : bases) {
+								tree.add(ranks[base + clo], -1);
+							}
+						}
+
+						final int count = slab * (nhi - nlo);
+						double f = (count - 1) * 0.5;
+						final int q = (int) Math.floor(f);
+						f -= q;
+						double median = distinct[tree.find(q)];
+						if (f > 0) {
+							median = (1 - f) * median + f * distinct[tree.find(q + 1)];
+						}
+						out[ob + p] = median;
+					}
+					for (; clo < chi; clo++) { // empty tree for next line
+						for (int base : bases) {
+							tree.add(ranks[base + clo], -1);
+						}
+					}
+				}
+			}
+		};
+
+		if (isParallel(size)) {
+			ParallelOperations.operate(lines, n, chunk);
+		} else {
+			chunk.operate(0, lines);
+		}
+		return out;
+	}
+
+	/**
+	 * Counts of ranks of values in window
+	 */
+	private interface RankCounts {
+		/**
+		 * @param rank
+		 * @param delta change in count
+		 */
+		void add(int rank, int delta);
+
+		/**
+		 * @param k
+		 * @return rank of k-th smallest item (zero-based)
+		 */
+		int find(int k);
+	}
+
+	/**
+	 * Histogram of ranks with a pointer that is moved from one query to the next (as in Huang's
+	 * algorithm). This suits few distinct values as the median of a window is close to that of
+	 * the previous window
+	 */
+	private static class RankHistogram implements RankCounts {
+		private final int[] counts;
+		private int m;  // rank at pointer
+		private int lt; // number of items of lesser rank
+
+		RankHistogram(final int size) {
+			counts = new int[size];
+		}
+
+		@Override
+		public void add(final int rank, final int delta) {
+			counts[rank] += delta;
+			if (rank < m) {
+				lt += delta;
+			}
+		}
+
+		@Override
+		public int find(final int k) {
+			while (lt > k) {
+				lt -= counts[--m];
+			}
+			while (lt + counts[m] <= k) {
+				lt += counts[m++];
+			}
+			return m;
+		}
+	}
+
+	/**
+	 * Fenwick tree of counts of ranks
+	 */
+	private static class RankTree implements RankCounts {
+		private final int[] tree;
+		private final int top; // highest power of two not greater than size
+
+		RankTree(final int size) {
+			tree = new int[size + 1];
+			top = Integer.highestOneBit(size);
+		}
+
+		@Override
+		public void add(final int rank, final int delta) {
+			for (int i = rank + 1; i < tree.length; i += i & -i) {
+				tree[i] += delta;
+			}
+		}
+
+		@Override
+		public int find(int k) {
+			int i = 0;
+			for (int bit = top; bit > 0; bit >>= 1) {
+				final int j = i + bit;
+				if (j < tree.length && tree[j] <= k) {
+					i = j;
+					k -= tree[j];
+				}
+			}
+			return i;
+		}
+	}
+}
@@ -101,6 +101,9 @@ class StateMachine:
 is_binaryop = False
 def_unsigned_mask = False
 
+# binary operations that have type-specialised kernels for contiguous datasets
+kernel_ops = { 'add':'ADD', 'subtract':'SUBTRACT', 'multiply':'MULTIPLY', 'divide':'DIVIDE', 'power':'POWER' }
+
 def oldmethod(name, jdoc=None, params=0):
     if is_binaryop:
         print("\t/**\n\t * %s operator" %  name)
@@ -142,13 +145,27 @@ def oldmethod(name, jdoc=None, params=0):
             print("\t\treturn %s(a, null);" % name)
     print("\t}\n")
 
+def serialmethod(name, jdoc):
+    print("\t/**\n\t * %s operator" %  name)
+    print("\t * @param a")
+    print("\t * @param b")
+    print("\t * @param o output can be null - in which case, a new dataset is created")
+    print("\t * @return %s\n\t */" % jdoc)
+    print("\tpublic static Dataset %s(final Object a, final Object b, final Dataset o) {" % name)
+    print("\t\treturn %s(a, b, o, ParallelOperations.isParallel());" % name)
+    print("\t}\n")
+
 def beginmethod(name, jdoc=None, params=0, allow_ints=False):
     oldmethod(name, jdoc, params)
+    if is_binaryop and params == 0:
+        serialmethod(name, jdoc)
     if is_binaryop:
         print("\t/**\n\t * %s operator" %  name)
         print("\t * @param a")
         print("\t * @param b")
         print("\t * @param o output can be null - in which case, a new dataset is created")
+        if params == 0:
+            print("\t * @param parallel if true, split large outputs into chunks that are run in parallel")
     else:
         print("\t/**\n\t * %s - %s" %  (name, jdoc))
         print("\t * @param a")
@@ -173,7 +190,7 @@ def beginmethod(name, jdoc=None, params=0, allow_ints=False):
     else:
         if is_binaryop:
             print("\t * @return %s\n\t */" % jdoc)
-            print("\tpublic static Dataset %s(final Object a, final Object b, final Dataset o) {" % name)
+            print("\tpublic static Dataset %s(final Object a, final Object b, final Dataset o, final boolean parallel) {" % name)
         else:
             print("\t * @return dataset\n\t */")
             print("\tpublic static Dataset %s(final Object a, final Dataset o) {" % name)
@@ -198,6 +215,24 @@ def beginmethod(name, jdoc=None, params=0, allow_ints=False):
         print("\t\tfinal double %s = AbstractDataset.toReal(%s);" % (p+"x", p))
 #        print("\t\tfinal double %s = AbstractDataset.toImag(%s);" % (p+"y", p))
 
+    if is_binaryop and params == 0:
+        opsym = jdoc.split()[1]
+        if name in kernel_ops:
+            print("\t\tif (BinaryKernels.operate(BinaryKernels.%s, da, db, result, parallel)) {" % kernel_ops[name])
+            print("\t\t\taddBinaryOperatorName(da, db, result, \"%s\");" % opsym)
+            print("\t\t\treturn result;")
+            print("\t\t}")
+        print("\t\tif (parallel && ParallelOperations.isWorthwhile(result)) {")
+        print("\t\t\tParallelOperations.operate(da, db, result, new ParallelOperations.BinaryChunk() {")
+        print("\t\t\t\t@Override")
+        print("\t\t\t\tpublic void operate(Dataset ca, Dataset cb, Dataset co) {")
+        print("\t\t\t\t\t%s(ca, cb, co, false);" % name)
+        print("\t\t\t\t}")
+        print("\t\t\t});")
+        print("\t\t\taddBinaryOperatorName(da, db, result, \"%s\");" % opsym)
+        print("\t\t\treturn result;")
+        print("\t\t}")
+
     print("")
     print("\t\tswitch(dt) {")
 
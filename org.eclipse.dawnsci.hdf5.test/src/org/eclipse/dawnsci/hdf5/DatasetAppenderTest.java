@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetAppenderTest {
+
+	private static final long[] FRAME = new long[]{2, 3};
+
+	private File tmp;
+
+	@Before
+	public void setUp() throws Exception {
+		tmp = File.createTempFile("Appender", ".h5");
+		tmp.delete();
+	}
+
+	@After
+	public void tearDown() {
+		tmp.delete();
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			final IDatasetAppender appender = file.createAppender("data", Dataset.INT32, FRAME, group, 8, IDatasetAppender.DEFAULT_BYTES, 0);
+			try {
+				appender.append(frame(0));
+				appender.append(frame(1));
+				assertEquals(2, appender.getFrameCount());
+				assertNull("Frames written before flush", file.getData(appender.getPath()));
+
+				appender.flush();
+				final ncsa.hdf.object.Dataset set = (ncsa.hdf.object.Dataset)file.getData(appender.getPath());
+				set.getMetadata();
+				assertArrayEquals(new long[]{2, 2, 3}, set.getDims());
+			} finally {
+				appender.close();
+			}
+		} finally {
+			file.close();
+		}
+		checkFrames(2);
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		final IDatasetAppender appender;
+		try {
+			final String group = file.group("entry");
+			appender = file.createAppender("data", Dataset.INT32, FRAME, group, 2, IDatasetAppender.DEFAULT_BYTES, 0);
+			for (int i = 0; i < 5; i++) appender.append(frame(i));
+			appender.close();
+			appender.close(); // does nothing
+		} finally {
+			file.close();
+		}
+		checkFrames(5);
+
+		try {
+			appender.append(frame(5));
+			fail("Appended after close");
+		} catch (IllegalStateException expected) {
+			// appender is closed
+		}
+	}
+
+	@Test
+	public void testCloseFileClosesAppender() throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			final IDatasetAppender appender = file.createAppender("data", Dataset.INT32, FRAME, group, 8, IDatasetAppender.DEFAULT_BYTES, 0);
+			for (int i = 0; i < 3; i++) appender.append(frame(i));
+		} finally {
+			file.close();
+		}
+		checkFrames(3);
+	}
+
+	@Test
+	public void testAppendToExisting() throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			final IDatasetAppender appender = file.createAppender("data", Dataset.INT32, FRAME, group, 2, IDatasetAppender.DEFAULT_BYTES, 0);
+			try {
+				for (int i = 0; i < 3; i++) appender.append(frame(i));
+			} finally {
+				appender.close();
+			}
+		} finally {
+			file.close();
+		}
+
+		file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			final IDatasetAppender appender = file.createAppender("data", Dataset.INT32, FRAME, group, 2, IDatasetAppender.DEFAULT_BYTES, 0);
+			try {
+				assertEquals(3, appender.getFrameCount());
+				for (int i = 3; i < 6; i++) appender.append(frame(i));
+			} finally {
+				appender.close();
+			}
+
+			try {
+				file.createAppender("data", Dataset.INT32, new long[]{3, 2}, group).close();
+				fail("Appender made for frames of a different shape");
+			} catch (Exception expected) {
+				// shape does not match
+			}
+			try {
+				file.createAppender("data", Dataset.FLOAT64, FRAME, group).close();
+				fail("Appender made for frames of a different type");
+			} catch (Exception expected) {
+				// type does not match
+			}
+		} finally {
+			file.close();
+		}
+		checkFrames(6);
+	}
+
+	@Test
+	public void testAppendView() throws Exception {
+		// every other row and column of frames held in a larger dataset
+		final Dataset all = DatasetFactory.createRange(6*4*6, Dataset.INT32).reshape(6, 4, 6);
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			final IDatasetAppender appender = file.createAppender("data", Dataset.INT32, FRAME, group);
+			try {
+				for (int i = 0; i < 6; i++) {
+					appender.append(all.getSliceView(new int[]{i, 0, 0}, new int[]{i+1, 4, 6}, new int[]{1, 2, 2}));
+				}
+			} finally {
+				appender.close();
+			}
+		} finally {
+			file.close();
+		}
+
+		final int[] data = read(6);
+		int k = 0;
+		for (int i = 0; i < 6; i++) {
+			for (int j = 0; j < 4; j += 2) {
+				for (int l = 0; l < 6; l += 2) {
+					assertEquals(all.getInt(i, j, l), data[k++]);
+				}
+			}
+		}
+	}
+
+	private static int[] frame(int n) {
+		final int[] frame = new int[6];
+		for (int i = 0; i < frame.length; i++) frame[i] = n*frame.length+i;
+		return frame;
+	}
+
+	/**
+	 * Checks file holds the given number of frames made by {@link #frame(int)}
+	 * @param frames
+	 * @throws Exception
+	 */
+	private void checkFrames(int frames) throws Exception {
+		final int[] data = read(frames);
+		for (int i = 0; i < data.length; i++) {
+			assertEquals(i, data[i]);
+		}
+	}
+
+	private int[] read(int frames) throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getReader(tmp.getAbsolutePath());
+		try {
+			final ncsa.hdf.object.Dataset set = (ncsa.hdf.object.Dataset)file.getData("/entry/data");
+			set.getMetadata();
+			assertArrayEquals(new long[]{frames, 2, 3}, set.getDims());
+			return (int[])set.getData();
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchicalDataServiceTest {
+
+	private static final int ROWS = 64;
+	private static final int COLS = 16;
+
+	private File tmp;
+	private HierarchicalDataService service;
+
+	@Before
+	public void setUp() throws Exception {
+		tmp = File.createTempFile("Service", ".h5");
+		tmp.delete();
+
+		final int[] data = new int[ROWS*COLS];
+		for (int i = 0; i < data.length; i++) data[i] = i;
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			file.createDataset("data", Dataset.INT32, new long[]{ROWS, COLS}, data, group);
+		} finally {
+			file.close();
+		}
+		service = new HierarchicalDataService(500);
+	}
+
+	@After
+	public void tearDown() {
+		service.shutdown();
+		tmp.delete();
+	}
+
+	@Test
+	public void testCoalescedReadsMatchDirect() throws Exception {
+		final CountDownLatch latch = block();
+		final List<Future<IDataset>> rows    = new ArrayList<Future<IDataset>>();
+		final List<Future<IDataset>> strided = new ArrayList<Future<IDataset>>();
+		try {
+			for (int i = ROWS-1; i >= 0; i--) { // out of order, as several viewers may ask
+				rows.add(service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{i, 0}, new int[]{i+1, COLS}, null));
+			}
+			for (int i = 0; i < 4; i++) {
+				strided.add(service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{i, 1}, new int[]{ROWS, COLS}, new int[]{4, 3}));
+			}
+		} finally {
+			latch.countDown();
+		}
+
+		for (int n = 0; n < ROWS; n++) {
+			final int i = ROWS-1-n;
+			final IDataset row = rows.get(n).get(10, TimeUnit.SECONDS);
+			assertArrayEquals(new int[]{1, COLS}, row.getShape());
+			for (int j = 0; j < COLS; j++) assertEquals(i*COLS+j, row.getInt(0, j));
+		}
+		for (int i = 0; i < 4; i++) {
+			final IDataset d = strided.get(i).get(10, TimeUnit.SECONDS);
+			assertArrayEquals(new int[]{ROWS/4, 5}, d.getShape());
+			for (int r = 0; r < ROWS/4; r++) {
+				for (int c = 0; c < 5; c++) assertEquals((i+4*r)*COLS+1+3*c, d.getInt(r, c));
+			}
+		}
+
+		// read alone
+		final IDataset row = service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{5, 2}, new int[]{6, 7}, null).get(10, TimeUnit.SECONDS);
+		assertArrayEquals(new int[]{1, 5}, row.getShape());
+		for (int j = 0; j < 5; j++) assertEquals(5*COLS+2+j, row.getInt(0, j));
+	}
+
+	@Test
+	public void testErrorsReachFutures() throws Exception {
+		final CountDownLatch latch = block();
+		final Future<IDataset> missingData, missingFile, badRank, good;
+		final Future<Object> failedTask;
+		try {
+			missingData = service.read(tmp.getAbsolutePath(), "/entry/none", new int[]{0, 0}, new int[]{1, COLS}, null);
+			missingFile = service.read(tmp.getAbsolutePath()+".none", "/entry/data", new int[]{0, 0}, new int[]{1, COLS}, null);
+			badRank     = service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{0}, new int[]{1}, null);
+			failedTask  = service.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					throw new IllegalStateException("Task failed");
+				}
+			});
+			good        = service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{1, 0}, new int[]{2, COLS}, null);
+		} finally {
+			latch.countDown();
+		}
+
+		checkFails(missingData);
+		checkFails(missingFile);
+		checkFails(badRank);
+		try {
+			failedTask.get(10, TimeUnit.SECONDS);
+			fail("Task did not fail");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(COLS, good.get(10, TimeUnit.SECONDS).getInt(0, 0));
+	}
+
+	@Test
+	public void testRequestFromTaskOfService() throws Exception {
+		final Future<IDataset> f = service.submit(new Callable<IDataset>() {
+			@Override
+			public IDataset call() throws Exception {
+				// would never end if the request waited for this task
+				return service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{2, 0}, new int[]{3, COLS}, null).get();
+			}
+		});
+		assertEquals(2*COLS, f.get(10, TimeUnit.SECONDS).getInt(0, 0));
+	}
+
+	@Test
+	public void testBusyFileIsRetriedThenFails() throws Exception {
+		final String path = tmp.getAbsolutePath();
+		HierarchicalDataFactory.acquireLowLevelReadingAccess(path);
+		final Callable<String> task = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				IHierarchicalDataFile file = null;
+				try {
+					file = HierarchicalDataFactory.getReader(path, false); // fails if file is busy
+					return "read";
+				} finally {
+					if (file!=null) file.close();
+				}
+			}
+		};
+		Future<IDataset> later;
+		Future<String>   laterTask;
+		try {
+			final Future<IDataset> read  = service.read(path, "/entry/data", new int[]{0, 0}, new int[]{1, COLS}, null);
+			final Future<String>   write = service.appendDataset(path, "more", null, "/entry");
+			final Future<String>   fileTask = service.submitRead(path, task);
+			final Future<String>   other = service.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					return "done";
+				}
+			});
+			assertEquals("Worker waited for busy file", "done", other.get(10, TimeUnit.SECONDS));
+			checkFails(read);
+			checkFails(write);
+			checkFails(fileTask);
+
+			later     = service.read(path, "/entry/data", new int[]{3, 0}, new int[]{4, COLS}, null);
+			laterTask = service.submitRead(path, task);
+			Thread.sleep(100);
+			assertFalse(later.isDone());
+			assertFalse(laterTask.isDone());
+		} finally {
+			HierarchicalDataFactory.releaseLowLevelReadingAccess(path);
+		}
+		assertEquals(3*COLS, later.get(10, TimeUnit.SECONDS).getInt(0, 0));
+		assertEquals("read", laterTask.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testInterruptFailsPending() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch latch   = new CountDownLatch(1);
+		service.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				started.countDown();
+				latch.await();
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		final Future<IDataset> read = service.read(tmp.getAbsolutePath(), "/entry/data", new int[]{0, 0}, new int[]{1, COLS}, null);
+		final Future<Object>   task = service.submit(new Callable<Object>() {
+			@Override
+			public Object call() {
+				return null;
+			}
+		});
+		latch.countDown();
+
+		checkFails(read);
+		try {
+			task.get(10, TimeUnit.SECONDS);
+			fail("Task ran after interrupt");
+		} catch (CancellationException expected) {
+			// not run
+		}
+		assertTrue(service.isShutdown());
+	}
+
+	/**
+	 * Blocks the worker so that requests made before the latch is counted down are run together
+	 * @return latch
+	 */
+	private CountDownLatch block() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch latch   = new CountDownLatch(1);
+		service.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				started.countDown();
+				latch.await();
+				return null;
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		return latch;
+	}
+
+	private static void checkFails(Future<?> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Request did not fail");
+		} catch (ExecutionException expected) {
+			// error of request
+		}
+	}
+}
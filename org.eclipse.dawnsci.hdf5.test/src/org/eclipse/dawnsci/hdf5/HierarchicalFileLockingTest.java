@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Opening and closing files from several threads with the locks of their paths.
+ */
+public class HierarchicalFileLockingTest extends AbstractThreadTestBase {
+
+	private File[] files;
+	private boolean samePath;
+
+	@Before
+	public void setUp() throws Exception {
+		files = new File[4];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = File.createTempFile("Locking", ".h5");
+			files[i].deleteOnExit();
+			HierarchicalDataUtils.copy(new File("testfiles/FeKedge_1_15.nxs"), files[i]);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		HierarchicalDataFile.clear();
+		for (File f : files) f.delete();
+	}
+
+	@Test
+	public void testOpenCloseSamePath() throws Throwable {
+		samePath = true;
+		testWithNThreads(20);
+		assertFalse("Reader left open", HierarchicalDataFile.isReading(files[0].getAbsolutePath()));
+	}
+
+	@Test
+	public void testOpenCloseDifferentPaths() throws Throwable {
+		samePath = false;
+		testWithNThreads(20);
+		for (File f : files) assertFalse("Reader left open", HierarchicalDataFile.isReading(f.getAbsolutePath()));
+	}
+
+	@Override
+	protected void doTestOfDataSet(int index) throws Throwable {
+		final String path = files[samePath ? 0 : index % files.length].getAbsolutePath();
+		for (int i = 0; i < 20; i++) {
+			final IHierarchicalDataFile file = HierarchicalDataFactory.getReader(path);
+			try {
+				assertNotNull(file.getData("/entry1/counterTimer01/lnI0It"));
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testWriterWaitsForWriter() throws Exception {
+		final String path  = files[0].getAbsolutePath();
+		final String other = files[1].getAbsolutePath();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final IHierarchicalDataFile first = HierarchicalDataFactory.getWriter(path);
+			Future<Boolean> waiting;
+			try {
+				try {
+					HierarchicalDataFactory.getWriter(path, false).close();
+					fail("Second writer did not fail");
+				} catch (Exception expected) {
+					// already writing
+				}
+
+				waiting = executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						final IHierarchicalDataFile second = HierarchicalDataFactory.getWriter(path, true);
+						try {
+							second.group("second");
+							return true;
+						} finally {
+							second.close();
+						}
+					}
+				});
+				Thread.sleep(200);
+				assertFalse("Second writer did not wait", waiting.isDone());
+
+				// the waiting writer does not hold the path or other paths
+				PathLocks.lock(path);
+				PathLocks.unlock(path);
+				final IHierarchicalDataFile otherWriter = HierarchicalDataFactory.getWriter(other);
+				otherWriter.close();
+
+				first.group("first");
+			} finally {
+				first.close();
+			}
+			assertTrue(waiting.get(30, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final IHierarchicalDataFile reader = HierarchicalDataFactory.getReader(path);
+		try {
+			assertTrue(reader.isGroup("/first"));
+			assertTrue(reader.isGroup("/second"));
+		} finally {
+			reader.close();
+		}
+	}
+}
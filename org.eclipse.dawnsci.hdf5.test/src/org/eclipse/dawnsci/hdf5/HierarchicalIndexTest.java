@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchicalIndexTest {
+
+	private File tmp;
+
+	@Before
+	public void setUp() throws Exception {
+		tmp = File.createTempFile("Index", ".h5");
+		tmp.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		HierarchicalDataFile.clear();
+		tmp.delete();
+	}
+
+	@Test
+	public void testIndexInvalidatedByWrites() throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			file.createDataset("a", Dataset.FLOAT64, new long[]{2, 3}, new double[6], group);
+
+			final HierarchicalIndex index = getIndex(file);
+			assertSame("Index is kept while there are no writes", index, getIndex(file));
+			assertTrue(index.isDataset("/entry/a"));
+			assertFalse(index.contains("/entry/b"));
+
+			// create
+			file.createDataset("b", Dataset.INT32, new long[]{4}, new int[4], group);
+			assertNotSame(index, getIndex(file));
+			assertTrue(file.isDataset("/entry/b"));
+			List<String> names = file.getDatasetNames(IHierarchicalDataFile.NUMBER_ARRAY);
+			assertTrue(names.contains("/entry/a"));
+			assertTrue(names.contains("/entry/b"));
+
+			// new group
+			file.group("more", group);
+			assertTrue(file.isGroup("/entry/more"));
+			assertTrue(file.memberList("/entry").contains("/entry/more"));
+
+			// append changes shape
+			file.appendDataset("b", Dataset.INT32, new long[]{4}, new int[4], group);
+			Map<String, int[]> shapes = file.getDatasetShapes(IHierarchicalDataFile.NUMBER_ARRAY);
+			assertArrayEquals(new int[]{2, 4}, shapes.get("/entry/b"));
+
+			// appender
+			final IDatasetAppender appender = file.createAppender("c", Dataset.INT32, new long[]{3}, group, 2, IDatasetAppender.DEFAULT_BYTES, 0);
+			try {
+				appender.append(new int[3]);
+				appender.flush();
+				shapes = file.getDatasetShapes(IHierarchicalDataFile.NUMBER_ARRAY);
+				assertArrayEquals(new int[]{1, 3}, shapes.get("/entry/c"));
+				appender.append(new int[3]);
+				appender.flush();
+				shapes = file.getDatasetShapes(IHierarchicalDataFile.NUMBER_ARRAY);
+				assertArrayEquals(new int[]{2, 3}, shapes.get("/entry/c"));
+			} finally {
+				appender.close();
+			}
+
+			// rename
+			file.rename("/entry/a", "d");
+			assertFalse(file.isDataset("/entry/a"));
+			assertTrue(file.isDataset("/entry/d"));
+			names = file.getDatasetNames(IHierarchicalDataFile.NUMBER_ARRAY);
+			assertFalse(names.contains("/entry/a"));
+			assertTrue(names.contains("/entry/d"));
+		} finally {
+			file.close();
+		}
+	}
+
+	@Test
+	public void testWriteInvalidatesIndexOfReader() throws Exception {
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			file.createDataset("a", Dataset.FLOAT64, new long[]{2}, new double[2], file.group("entry"));
+		} finally {
+			file.close();
+		}
+
+		final IHierarchicalDataFile reader = HierarchicalDataFactory.getReader(tmp.getAbsolutePath());
+		try {
+			final HierarchicalIndex index = getIndex(reader);
+			assertTrue(index.isDataset("/entry/a"));
+
+			file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+			try {
+				file.createDataset("b", Dataset.FLOAT64, new long[]{2}, new double[2], "/entry");
+			} finally {
+				file.close();
+			}
+			assertNotSame("Index of reader of written file is dropped", index, getIndex(reader));
+		} finally {
+			reader.close();
+		}
+
+		final IHierarchicalDataFile again = HierarchicalDataFactory.getReader(tmp.getAbsolutePath());
+		try {
+			assertEquals(2, again.getDatasetNames(IHierarchicalDataFile.NUMBER_ARRAY).size());
+		} finally {
+			again.close();
+		}
+	}
+
+	private static HierarchicalIndex getIndex(IHierarchicalDataFile file) throws Exception {
+		return ((IFileFormatDataFile)file).getIndex();
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.LazyDataset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchicalLazyLoaderTest {
+
+	private static final int ROWS = 64;
+	private static final int COLS = 16;
+
+	private File    tmp;
+	private Dataset direct;
+
+	@Before
+	public void setUp() throws Exception {
+		tmp = File.createTempFile("Loader", ".h5");
+		tmp.delete();
+
+		final int[] data = new int[ROWS*COLS];
+		for (int i = 0; i < data.length; i++) data[i] = i;
+		IHierarchicalDataFile file = HierarchicalDataFactory.getWriter(tmp.getAbsolutePath());
+		try {
+			final String group = file.group("entry");
+			file.createDataset("data", Dataset.INT32, new long[]{ROWS, COLS}, data, group);
+		} finally {
+			file.close();
+		}
+
+		file = HierarchicalDataFactory.getReader(tmp.getAbsolutePath());
+		try {
+			direct = H5Utils.getSet(file, "/entry/data");
+		} finally {
+			file.close();
+		}
+		assertArrayEquals(new int[]{ROWS, COLS}, direct.getShape());
+	}
+
+	@After
+	public void tearDown() {
+		tmp.delete();
+	}
+
+	@Test
+	public void testSlicesMatchDirect() throws Exception {
+		final LazyDataset lazy = createLazy();
+		final Slice[][] slices = new Slice[][] {
+			{new Slice(3, 4)},
+			{new Slice(4, 10), new Slice(2, 7)},
+			{new Slice(1, ROWS, 4), new Slice(1, COLS, 3)},
+			{null, new Slice(0, COLS, 5)},
+		};
+		for (Slice[] s : slices) {
+			check(Slice.createString(s), direct.getSlice(s), lazy.getSlice(s));
+		}
+
+		// adjacent rows, which the service reads together, and others
+		final List<Slice[]> rows = new ArrayList<Slice[]>();
+		for (int i = ROWS-1; i >= ROWS-8; i--) rows.add(new Slice[]{new Slice(i, i+1)});
+		for (Slice[] s : slices) rows.add(s);
+		final List<Future<IDataset>> futures = lazy.getSlicesAsync(null, rows);
+		assertEquals(rows.size(), futures.size());
+		for (int i = 0; i < rows.size(); i++) {
+			final Slice[] s = rows.get(i);
+			check("Async "+Slice.createString(s), direct.getSlice(s), futures.get(i).get(10, TimeUnit.SECONDS));
+		}
+
+		// view of part of the data set
+		final LazyDataset view = lazy.getSliceView(new int[]{8, 2}, new int[]{40, 14}, new int[]{2, 1});
+		final Dataset expected = direct.getSlice(new int[]{8, 2}, new int[]{40, 14}, new int[]{2, 1});
+		check("View", expected, view.getSlice());
+		final List<Slice[]> parts = new ArrayList<Slice[]>();
+		for (int i = 0; i < 4; i++) parts.add(new Slice[]{new Slice(i, i+1), new Slice(i, null)});
+		final List<Future<IDataset>> viewed = view.getSlicesAsync(null, parts);
+		for (int i = 0; i < parts.size(); i++) {
+			check("View part "+i, expected.getSlice(parts.get(i)), viewed.get(i).get(10, TimeUnit.SECONDS));
+		}
+		check("View slice", expected.getSlice(new Slice(5, 9)), view.getSliceAsync(null, new Slice(5, 9)).get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testChunking() throws Exception {
+		final HierarchicalLazyLoader loader = new HierarchicalLazyLoader(tmp.getAbsolutePath(), "/entry/data");
+		assertEquals(tmp.getAbsolutePath(), loader.getFilePath());
+		assertEquals("/entry/data", loader.getDataPath());
+
+		final int[] chunking = loader.getChunking();
+		assertSame(chunking, loader.getChunking()); // cached
+		if (chunking==null) {
+			assertNull(loader.getChunkOffset());
+		} else {
+			assertEquals(2, chunking.length);
+			assertArrayEquals(new int[2], loader.getChunkOffset());
+		}
+
+		final HierarchicalLazyLoader missing = new HierarchicalLazyLoader(tmp.getAbsolutePath(), "/entry/none");
+		assertNull(missing.getChunking());
+		assertNull(missing.getChunkOffset());
+	}
+
+	private LazyDataset createLazy() {
+		return new LazyDataset("data", Dataset.INT32, new int[]{ROWS, COLS}, new HierarchicalLazyLoader(tmp.getAbsolutePath(), "/entry/data"));
+	}
+
+	private static void check(String msg, Dataset expected, IDataset actual) {
+		final Dataset a = DatasetUtils.convertToDataset(actual);
+		assertArrayEquals(msg, expected.getShape(), a.getShape());
+		assertEquals(msg, expected, a);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PathLocksTest {
+
+	@Test(timeout = 10000)
+	public void testOtherPathNotBlocked() throws Exception {
+		PathLocks.lock("/a.h5");
+		try {
+			final CountDownLatch done = new CountDownLatch(1);
+			final Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					PathLocks.lock("/b.h5");
+					PathLocks.unlock("/b.h5");
+					done.countDown();
+				}
+			});
+			t.start();
+			assertTrue("Other path waited", done.await(5, TimeUnit.SECONDS));
+		} finally {
+			PathLocks.unlock("/a.h5");
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testSamePathBlocked() throws Exception {
+		final CountDownLatch done = new CountDownLatch(1);
+		final Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				PathLocks.lock("/a.h5");
+				PathLocks.unlock("/a.h5");
+				done.countDown();
+			}
+		});
+		PathLocks.lock("/a.h5");
+		try {
+			PathLocks.lock("/a.h5"); // reentrant
+			PathLocks.unlock("/a.h5");
+			t.start();
+			assertFalse("Same path did not wait", done.await(200, TimeUnit.MILLISECONDS));
+		} finally {
+			PathLocks.unlock("/a.h5");
+		}
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockNotHeld() {
+		PathLocks.unlock("/c.h5");
+	}
+
+	@Test(timeout = 30000)
+	public void testConcurrentUse() throws Exception {
+		final String[] paths = new String[] {"/a.h5", "/b.h5", "/c.h5"};
+		final int[] inside = new int[paths.length]; // guarded by the path locks
+		final AtomicInteger errors = new AtomicInteger();
+		final Thread[] threads = new Thread[12];
+		for (int i = 0; i < threads.length; i++) {
+			final int p = i % paths.length;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int n = 0; n < 2000; n++) {
+						PathLocks.lock(paths[p]);
+						try {
+							if (++inside[p]!=1) errors.incrementAndGet();
+							Thread.yield();
+							inside[p]--;
+						} finally {
+							PathLocks.unlock(paths[p]);
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) t.join();
+		assertEquals("Threads held the same path at once", 0, errors.get());
+	}
+}
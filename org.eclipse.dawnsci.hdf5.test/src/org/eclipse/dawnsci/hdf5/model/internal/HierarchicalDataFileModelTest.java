@@ -20,6 +20,7 @@ import java.util.Map.Entry;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.hdf5.HierarchicalDataFactory;
 import org.eclipse.dawnsci.hdf5.HierarchicalDataUtils;
+import org.eclipse.dawnsci.hdf5.HierarchicalIndexStore;
 import org.eclipse.dawnsci.hdf5.IHierarchicalDataFile;
 import org.eclipse.dawnsci.hdf5.model.IHierarchicalDataFileModel;
 import org.eclipse.dawnsci.hdf5.model.internal.HierarchicalDataFileModel;
@@ -285,6 +286,45 @@ public class HierarchicalDataFileModelTest {
 		assertEquals(expectedCount, count[0]);
 	}
 
+	/**
+	 * Makes sure that a model using an index store reads the file once and
+	 * that a later model answers from the stored index without opening the
+	 * file.
+	 */
+	@Test
+	public void testIndexStore() throws Exception {
+		final File dir = File.createTempFile("HierarchicalDataFileModelTest", "");
+		dir.delete();
+		HierarchicalIndexStore.setDefault(new HierarchicalIndexStore(dir));
+		try {
+			final String path = new File("testfiles/i05-4859.nxs").getAbsolutePath();
+			final int[] count = new int[] { 0 };
+			IHierarchicalDataFileGetReader getCountingReader = new IHierarchicalDataFileGetReader() {
+				@Override
+				public IHierarchicalDataFile getReader() throws Exception {
+					count[0] += 1;
+					return get_i05_4859_Reader.getReader();
+				}
+			};
+
+			IHierarchicalDataFileModel model = new HierarchicalDataFileModel(
+					getCountingReader, path);
+			checkGetPathOnAllCases(model);
+			checkHasPathOnAllCases(model);
+			assertEquals(1, count[0]);
+
+			model = new HierarchicalDataFileModel(getCountingReader, path);
+			checkGetPathOnAllCases(model);
+			checkHasPathOnAllCases(model);
+			assertEquals(1, count[0]);
+
+		} finally {
+			HierarchicalIndexStore.setDefault(null);
+			for (File f : dir.listFiles()) f.delete();
+			dir.delete();
+		}
+	}
+
 	@Test
 	public void testReadAttribFirst() {
 		IHierarchicalDataFileModel model = new HierarchicalDataFileModel(
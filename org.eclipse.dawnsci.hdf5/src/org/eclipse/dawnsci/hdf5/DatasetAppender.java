@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ncsa.hdf.object.Datatype;
+import ncsa.hdf.object.Group;
+import ncsa.hdf.object.HObject;
+import ncsa.hdf.object.h5.H5ScalarDS;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appender which holds frames in one buffer and writes them with one
+ * extend and one hyperslab write. The data set is made on the first
+ * write with chunks of as many frames as are written at a time, so that
+ * each write fills whole chunks.
+ *
+ * Writing is synchronized on the file, as the other writes of HierarchicalDataFile are,
+ * after the appender so a file must not be locked when closing its appenders.
+ */
+class DatasetAppender implements IDatasetAppender {
+
+	private static final Logger logger = LoggerFactory.getLogger(DatasetAppender.class);
+
+	private static ScheduledExecutorService timer;
+
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer==null) {
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "HDF5 appender flush");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return timer;
+	}
+
+	private final HierarchicalDataFile file;
+	private final String     name;
+	private final String     parentPath;
+	private final String     path;
+	private final Datatype   dtype;
+	private final long[]     shape;    // of frame
+	private final int        frameSize;
+	private final int        frames;   // held before writing
+
+	private H5ScalarDS       dataset;  // null until first write if it did not exist
+	private int              id = -1;
+	private long             written;  // frames in data set
+	private Object           buffer;
+	private int              held;
+	private long             heldSince;
+	private Exception        failure;  // of timed flush
+	private boolean          closed;
+	private final ScheduledFuture<?> flusher;
+
+	/**
+	 * @param file
+	 * @param name of data set
+	 * @param parent group
+	 * @param dtype
+	 * @param shape of frame
+	 * @param maxFrames largest number of frames to hold
+	 * @param maxBytes largest number of bytes to hold
+	 * @param flushPeriod time in ms after which frames are written, if not positive they are only written when full
+	 * @throws Exception
+	 */
+	DatasetAppender(HierarchicalDataFile file, String name, Group parent, Datatype dtype, long[] shape,
+			        int maxFrames, long maxBytes, final long flushPeriod) throws Exception {
+
+		this.file       = file;
+		this.name       = name;
+		this.parentPath = parent.getFullName();
+		this.path       = parentPath.endsWith("/") ? parentPath+name : parentPath+"/"+name;
+		this.dtype      = dtype;
+		this.shape      = shape.clone();
+
+		long size = 1;
+		for (long s : shape) size*=s;
+		if (size>Integer.MAX_VALUE) throw new IllegalArgumentException("Frames of "+size+" items are too large to append!");
+		this.frameSize = (int)size;
+
+		final HObject o = file.checkExists(name, parent, ncsa.hdf.object.Dataset.class);
+		int chunk = 0;
+		if (o!=null) {
+			dataset = (H5ScalarDS)o;
+			dataset.getMetadata();
+			final long[] dims = dataset.getDims();
+			if (dims.length!=shape.length+1) throw new Exception("'"+path+"' does not have rank "+(shape.length+1)+"!");
+			for (int i = 0; i < shape.length; i++) {
+				if (dims[i+1]!=shape[i]) throw new Exception("'"+path+"' does not have frames of shape "+Arrays.toString(shape)+"!");
+			}
+			final Datatype type = dataset.getDatatype();
+			if (type.getDatatypeClass()!=dtype.getDatatypeClass() || type.getDatatypeSize()!=dtype.getDatatypeSize() ||
+				(dtype.getDatatypeClass()==Datatype.CLASS_INTEGER && type.isUnsigned()!=dtype.isUnsigned())) {
+				throw new Exception("'"+path+"' does not have type "+dtype.getDatatypeDescription()+"!");
+			}
+			written = dims[0];
+			final long[] chunks = dataset.getChunkSize();
+			if (chunks!=null) chunk = (int)chunks[0];
+			id = dataset.open();
+		}
+
+		final long bytes = Math.max(1, size*dtype.getDatatypeSize());
+		int n = (int)Math.max(1, Math.min(maxFrames, maxBytes/bytes));
+		if (chunk>0 && n>=chunk) n -= n % chunk; // whole chunks of existing data set
+		this.frames = n;
+
+		if (flushPeriod>0) {
+			flusher = getTimer().scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flushIfOlder(flushPeriod);
+				}
+			}, flushPeriod, flushPeriod, TimeUnit.MILLISECONDS);
+		} else {
+			flusher = null;
+		}
+	}
+
+	@Override
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public synchronized long getFrameCount() {
+		return written+held;
+	}
+
+	@Override
+	public void append(IDataset frame) throws Exception {
+		Dataset data = DatasetUtils.convertToDataset(frame);
+		// a view can share a larger buffer or hold its items out of order
+		if (data.getStrides()!=null || data.getOffset()!=0 || Array.getLength(data.getBuffer())!=data.getSize()) {
+			data = data.clone();
+		}
+		append(data.getBuffer());
+	}
+
+	@Override
+	public synchronized void append(Object frame) throws Exception {
+		checkState();
+		if (frame==null || !frame.getClass().isArray()) throw new IllegalArgumentException("Frame must be an array!");
+		if (Array.getLength(frame)!=frameSize) throw new IllegalArgumentException("Frame must have "+frameSize+" items!");
+
+		if (buffer==null) {
+			buffer = Array.newInstance(frame.getClass().getComponentType(), frames*frameSize);
+		} else if (buffer.getClass()!=frame.getClass()) {
+			throw new IllegalArgumentException("Frame must be a "+buffer.getClass().getSimpleName()+"!");
+		}
+
+		if (held==0) heldSince = System.currentTimeMillis();
+		System.arraycopy(frame, 0, buffer, held*frameSize, frameSize);
+		held++;
+		if (held==frames) write();
+	}
+
+	@Override
+	public synchronized void flush() throws Exception {
+		checkState();
+		write();
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			synchronized (this) {
+				if (closed) return;
+				closed = true;
+				if (flusher!=null) flusher.cancel(false);
+				try {
+					if (failure==null) write();
+				} finally {
+					buffer = null;
+					if (dataset!=null && id>=0) {
+						synchronized (file) {
+							dataset.close(id);
+						}
+					}
+					id = -1;
+				}
+			}
+		} finally {
+			file.removeAppender(this);
+		}
+		final Exception e = failure;
+		if (e!=null) throw e;
+	}
+
+	private synchronized void flushIfOlder(long period) {
+		if (closed || failure!=null || held==0) return;
+		if (System.currentTimeMillis()-heldSince < period) return;
+		try {
+			write();
+		} catch (Exception ne) {
+			logger.error("Cannot write frames to "+path, ne);
+			failure = ne;
+		}
+	}
+
+	private void checkState() throws Exception {
+		if (closed) throw new IllegalStateException("Appender for "+path+" is closed!");
+		if (failure!=null) throw failure;
+	}
+
+	/**
+	 * Writes frames held, called when synchronized on this appender.
+	 */
+	private void write() throws Exception {
+		if (held==0) return;
+
+		final Object data;
+		if (held==frames) {
+			data = buffer;
+		} else {
+			data = Array.newInstance(buffer.getClass().getComponentType(), held*frameSize);
+			System.arraycopy(buffer, 0, data, 0, held*frameSize);
+		}
+
+		synchronized (file) {
+			try {
+				if (dataset==null) {
+					create(data);
+				} else {
+					extend(data);
+				}
+			} finally {
+				file.invalidateIndex();
+			}
+		}
+		written += held;
+		held = 0;
+	}
+
+	private void create(Object data) throws Exception {
+		final int    rank   = shape.length+1;
+		final long[] dims   = new long[rank];
+		final long[] max    = new long[rank];
+		final long[] chunks = new long[rank];
+		dims[0]   = held;
+		max[0]    = Long.MAX_VALUE;
+		chunks[0] = frames;
+		for (int i = 1; i < rank; i++) {
+			dims[i] = max[i] = chunks[i] = shape[i-1];
+		}
+
+		final Group parent = file._group(parentPath);
+		final int   pid    = parent.open();
+		try {
+			dataset = (H5ScalarDS)file.getFileFormat().createScalarDS(name, parent, dtype, dims, max, chunks, 0, data);
+		} finally {
+			parent.close(pid);
+		}
+		dataset.getMetadata();
+		id = dataset.open();
+	}
+
+	private void extend(Object data) throws Exception {
+		final long[] dims = dataset.getDims();
+		dims[0] = written+held;
+		dataset.extend(dims);
+
+		final long[] start    = dataset.getStartDims();
+		final long[] stride   = dataset.getStride();
+		final long[] selected = dataset.getSelectedDims();
+
+		start[0]    = written;
+		stride[0]   = 1;
+		selected[0] = held;
+		for (int i = 1; i < start.length; i++) {
+			start[i]    = 0;
+			stride[i]   = 1;
+			selected[i] = dims[i];
+		}
+
+		dataset.write(data);
+	}
+}
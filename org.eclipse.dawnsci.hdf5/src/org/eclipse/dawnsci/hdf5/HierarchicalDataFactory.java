@@ -159,7 +159,13 @@ public class HierarchicalDataFactory {
 	 */
 	private static Map<String, ReentrantLock> lowLevelLocks = new Hashtable<String, ReentrantLock>();
 
-	private static ReentrantLock accessLock = new ReentrantLock();
+	/**
+	 * @param absolutePath
+	 * @return true if the low level API is using the file
+	 */
+	static boolean isLowLevelLocked(final String absolutePath) {
+		return lowLevelLocks.containsKey(absolutePath);
+	}
 
 	/**
 	 * Ask to acquire a lock on a given file path. This call will block until
@@ -180,7 +186,7 @@ public class HierarchicalDataFactory {
 	 */
 	public static void acquireLowLevelReadingAccess(final String absolutePath) throws Exception {
 		
-		accessLock.lock();		
+		PathLocks.lock(absolutePath); // Only this path, other files may be opened meanwhile
 		ReentrantLock l;
 		try {
 			// If the high level has the lock, we attempt to close it
@@ -211,7 +217,7 @@ public class HierarchicalDataFactory {
 				logger.trace(String.format(" Lock exists for %s (%b)", absolutePath, l.isLocked()));
 			}
 		} finally {
-			accessLock.unlock();
+			PathLocks.unlock(absolutePath);
 		}
 
 		if (l.tryLock()) {
@@ -234,7 +240,7 @@ public class HierarchicalDataFactory {
 	 */
 	public static void releaseLowLevelReadingAccess(final String absolutePath) {
 		
-		accessLock.lock();
+		PathLocks.lock(absolutePath);
 		try {
 			ReentrantLock l = lowLevelLocks.get(absolutePath);
 			if (l != null) {
@@ -250,7 +256,7 @@ public class HierarchicalDataFactory {
 				l = null;
 			}
 		} finally {
-			accessLock.unlock();
+			PathLocks.unlock(absolutePath);
 		}
 	}
 
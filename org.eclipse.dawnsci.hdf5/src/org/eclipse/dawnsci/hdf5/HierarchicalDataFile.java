@@ -8,9 +8,11 @@
  */ 
 package org.eclipse.dawnsci.hdf5;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -31,6 +33,7 @@ import ncsa.hdf.object.h5.H5Datatype;
 import ncsa.hdf.object.h5.H5ScalarDS;
 
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.hdf5.HierarchicalIndex.DatasetEntry;
 import org.eclipse.dawnsci.hdf5.nexus.NexusUtils;
 import org.eclipse.dawnsci.hdf5.nexus.NexusUtils.ATTRIBUTE_TYPE;
 import org.slf4j.Logger;
@@ -65,9 +68,9 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	
 	private static final Logger logger = LoggerFactory.getLogger(HierarchicalDataFile.class);
 	
-	private static Map<String,HierarchicalDataFile> readCache;
-	private static Collection<String>               writeCache;
-	private static Map<String,ReentrantLock>        lockMap;
+	private static final Map<String,HierarchicalDataFile> readCache  = new Hashtable<String,HierarchicalDataFile>(7); // Synchronized!
+	private static final Collection<String>               writeCache = Collections.synchronizedSet(new HashSet<String>(11));
+	private static final Map<String,ReentrantLock>        lockMap    = new Hashtable<String,ReentrantLock>(7); // Synchronized!
 
 	/**
 	 * Opens a new HierarchicalDataFile or returns the currently
@@ -80,7 +83,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * @param absolutePath
 	 * @return
 	 */
-	static synchronized HierarchicalDataFile open(final String absolutePath, final int openType) throws Exception {
+	static HierarchicalDataFile open(final String absolutePath, final int openType) throws Exception {
 		return open(absolutePath, openType, false);
 	}
 
@@ -90,53 +93,64 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * opened the file and only finally closes the file when the count
 	 * is back to zero.
 	 * 
+	 * Locks only the given path, so files with other paths may be
+	 * opened and closed at the same time.
+	 * 
 	 * Used through HierarchicalDataFactory only.
 	 * 
 	 * @param absolutePath
 	 * @return
 	 */
-	static synchronized HierarchicalDataFile open(final String absolutePath, final int openType, boolean waitForLock) throws Exception {
+	static HierarchicalDataFile open(final String absolutePath, final int openType, boolean waitForLock) throws Exception {
 
+		PathLocks.lock(absolutePath);
+		try {
+			if (openType == FileFormat.READ) {
+				HierarchicalDataFile file = readCache.get(absolutePath);
+				if (file!=null) {
+					file.count++; 
+					return file;
+				}
 		
-		if (openType == FileFormat.READ) {
-			if (readCache==null) readCache = new Hashtable<String,HierarchicalDataFile>(7); // Synchronized!
-			HierarchicalDataFile file = readCache.get(absolutePath);
-			if (file!=null) {
-				file.count++; 
+				file = new HierarchicalDataFile(absolutePath, openType);
+				readCache.put(absolutePath, file);
 				return file;
-			}
-	
-			file = new HierarchicalDataFile(absolutePath, openType);
-			readCache.put(absolutePath, file);
-			return file;
-			
-		} else if (openType == FileFormat.WRITE || openType == FileFormat.CREATE) {
-			
-			if (writeCache==null) writeCache = new HashSet<String>(11);
-			if (writeCache.contains(absolutePath)) {
-				if (waitForLock) {
-					lockMap.get(absolutePath).lock(); // Will block if another thread is using
-				} else {
-					throw new Exception("Already writing to "+absolutePath+"!");
+				
+			} else if (openType == FileFormat.WRITE || openType == FileFormat.CREATE) {
+				
+				if (writeCache.contains(absolutePath)) {
+					final ReentrantLock lock = lockMap.get(absolutePath);
+					if (waitForLock && lock!=null) {
+						// Do not hold the path while waiting, the writer needs it to close.
+						PathLocks.unlock(absolutePath);
+						try {
+							lock.lock(); // Will block if another thread is using
+						} finally {
+							PathLocks.lock(absolutePath);
+						}
+					} else if (!waitForLock) {
+						throw new Exception("Already writing to "+absolutePath+"!");
+					}
 				}
-			}
-			if (writeCache.contains(absolutePath)) throw new Exception("Already writing to "+absolutePath+"!");
-			
-			HierarchicalDataFile file = new HierarchicalDataFile(absolutePath, openType);
-			
-			synchronized(file) {
-				writeCache.add(absolutePath);
-				if (lockMap==null) lockMap = new Hashtable<String,ReentrantLock>(7); // Synchronized!
+				if (writeCache.contains(absolutePath)) throw new Exception("Already writing to "+absolutePath+"!");
 				
-				final ReentrantLock lock = new ReentrantLock();
-				lockMap.put(absolutePath, lock);
-				lock.lock();
+				HierarchicalDataFile file = new HierarchicalDataFile(absolutePath, openType);
+				
+				synchronized(file) {
+					writeCache.add(absolutePath);
+					
+					final ReentrantLock lock = new ReentrantLock();
+					lockMap.put(absolutePath, lock);
+					lock.lock();
+				}
+				
+				return file;
+				
+			} else {
+				throw new Exception("Unrecognised FileFormat "+openType);
 			}
-			
-			return file;
-			
-		} else {
-			throw new Exception("Unrecognised FileFormat "+openType);
+		} finally {
+			PathLocks.unlock(absolutePath);
 		}
 	}
 	
@@ -145,13 +159,13 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * @param path
 	 */
 	protected static void closeReaders(String path) throws Exception{
-		if (readCache.containsKey(path)) {
-			readCache.get(path).close(true);
+		final HierarchicalDataFile file = readCache.get(path);
+		if (file!=null) {
+			file.close(true);
 		}
 	}
 	
 	public boolean isClosed() {
-		if (readCache==null || writeCache==null) return true;
 		if (path==null) return true;
 		return !readCache.containsKey(path) && !writeCache.contains(path);
 	}
@@ -160,11 +174,9 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * close the files and clear them from the cache.
 	 * @throws Exception
 	 */
-	public static synchronized void clear() throws Exception {
-		if (readCache!=null) {
-			final Collection<HierarchicalDataFile> files = readCache.values();
-			for (HierarchicalDataFile file : files) file.close();
-		}
+	public static void clear() throws Exception {
+		final Collection<HierarchicalDataFile> files = new ArrayList<HierarchicalDataFile>(readCache.values());
+		for (HierarchicalDataFile file : files) file.close();
 	}
 	
 	private final int        openType;
@@ -176,6 +188,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	private       FileFormat file;
 	private final String     path;
 	private int              count=0;
+	private volatile HierarchicalIndex index;
 
 	private HierarchicalDataFile(final String path, final int openType) throws Exception {
 		
@@ -252,12 +265,16 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	
 	@Override
 	public boolean isDataset(String fullPath) throws Exception {
+		final HierarchicalIndex i = index;
+		if (i!=null && i.contains(fullPath)) return i.isDataset(fullPath);
 		HObject object = getData(fullPath);
 		return object instanceof Dataset;
 	}
 	
 	@Override
 	public boolean isGroup(String fullPath) throws Exception{
+		final HierarchicalIndex i = index;
+		if (i!=null && i.contains(fullPath)) return i.isGroup(fullPath);
 		HObject object = getData(fullPath);
 		return object instanceof Group;
 	}
@@ -265,7 +282,11 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	@Override
 	public String rename(String path, String newName) throws Exception {
 		HObject object = getData(path);
-		object.setName(newName);
+		try {
+			object.setName(newName);
+		} finally {
+			invalidateIndex();
+		}
 		return object.getFullName();
 	}
 
@@ -305,6 +326,9 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	
 	@Override
 	public Map<String, Object> getAttributeValues(String path) {
+		final HierarchicalIndex i = index;
+		if (i!=null && i.isFull() && i.contains(path)) return i.getAttributes(path);
+
 		HObject object;
 		try {
 			object = getData(path);
@@ -378,41 +402,14 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	@Override
 	public HierarchicalInfo getDatasetInformation(int dataType)  throws Exception {
 		final HierarchicalInfo info = new HierarchicalInfo();
-		getDatasetInformation(_getRoot(), info, dataType);
-		return info;
-	}
-	
-	private void getDatasetInformation(Group g, HierarchicalInfo info, int dataType)  throws Exception {
-		
-		List<HObject> members = g.getMemberList();
-		for (HObject object : members) {
-			if (object instanceof Dataset) {
-				final Dataset set  = (Dataset)object;
-				final Dataset link = (Dataset)HierarchicalDataUtils.getDataLink(set, this);
-				final Dataset data = link!=null ? link : set;
-				
-				if (!HierarchicalDataUtils.isDataType(data, dataType)) continue;
-
-				final long[] longShape= (long[])data.getDims();
-				final int[]  intShape = new int[longShape.length];
-				
-				long size = longShape[0];
-				for (int i = 0; i < intShape.length; i++) {
-					intShape[i] = (int)longShape[i];
-					size*=longShape[i];
-				}
-				info.addName(set.getFullName());
-				info.putShape(set.getFullName(), (int[])intShape);
-				info.putSize(set.getFullName(), (int)size);
-				
-			}
-		
-			if (object instanceof Group) {
-				getDatasetInformation((Group)object, info, dataType);
-			}
-			
-			
+		for (DatasetEntry entry : getIndex().getDatasets(dataType)) {
+			final int[] shape = entry.getShape();
+			if (shape==null) continue;
+			info.addName(entry.getPath());
+			info.putShape(entry.getPath(), shape);
+			info.putSize(entry.getPath(), (int)entry.getSize());
 		}
+		return info;
 	}
 
 	/**
@@ -422,26 +419,9 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * @throws Exception
 	 */
 	public List<String> getDatasetNames(final int dataType)  throws Exception {
-		return getDatasetNames(_getRoot(), dataType, new ArrayList<String>(7));
-	}
-
-	private List<String> getDatasetNames(Group g, final int dataType, final List<String> names)  throws Exception {
-		
-		List<HObject> members = g.getMemberList();
-		for (HObject object : members) {
-			
-			if (object instanceof Dataset) {
-				final Dataset set  = (Dataset)object;
-				final Dataset link = (Dataset)HierarchicalDataUtils.getDataLink(set, this);
-				final Dataset data = link!=null ? link : set;
-
-				if (!HierarchicalDataUtils.isDataType(data, dataType)) continue;
-				names.add(set.getFullName());
-			}
-		
-			if (object instanceof Group) {
-				getDatasetNames((Group)object, dataType, names);
-			}
+		final List<String> names = new ArrayList<String>(7);
+		for (DatasetEntry entry : getIndex().getDatasets(dataType)) {
+			names.add(entry.getPath());
 		}
 		return names;
 	}
@@ -451,31 +431,10 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * @return a list of the full paths of the data sets.
 	 */
 	public Map<String, Integer> getDatasetSizes(int dataType)  throws Exception{
-		return getDatasetSizes(_getRoot(), new HashMap<String, Integer>(31), dataType);
-	}
-	
-	private Map<String, Integer> getDatasetSizes(Group g, Map<String, Integer> sizes, int dataType) throws Exception {
-		
-		List<HObject> members = g.getMemberList();
-		for (HObject object : members) {
-			
-			if (object instanceof Dataset) {
-				final Dataset set  = (Dataset)object;
-				final Dataset link = (Dataset)HierarchicalDataUtils.getDataLink(set, this);
-				final Dataset data = link!=null ? link : set;
-				if (!HierarchicalDataUtils.isDataType(data, dataType)) continue;
-				
-				final long[] shape = (long[])data.getDims();
-				if (shape!=null) {
-					long size = shape[0];
-					for (int i = 1; i < shape.length; i++) size*=shape[i];
-					sizes.put(set.getFullName(), new Integer((int)size));
-				}
-			}
-		
-			if (object instanceof Group) {
-				getDatasetSizes((Group)object, sizes, dataType);
-			}
+		final Map<String, Integer> sizes = new HashMap<String, Integer>(31);
+		for (DatasetEntry entry : getIndex().getDatasets(dataType)) {
+			final long size = entry.getSize();
+			if (size>-1) sizes.put(entry.getPath(), new Integer((int)size));
 		}
 		return sizes;
 	}
@@ -486,33 +445,55 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 */
 	@Override
 	public Map<String, int[]> getDatasetShapes(int dataType)  throws Exception {
-		return getDatasetShapes(_getRoot(), new HashMap<String, int[]>(31), dataType);
-	}
-	
-	private Map<String, int[]> getDatasetShapes(Group g, Map<String, int[]> shapes, int dataType)  throws Exception {
-		
-		List<HObject> members = g.getMemberList();
-		for (HObject object : members) {
-			
-			if (object instanceof Dataset) {
-				final Dataset set  = (Dataset)object;
-				final Dataset link = (Dataset)HierarchicalDataUtils.getDataLink(set, this);
-				final Dataset data = link!=null ? link : set;
-				if (!HierarchicalDataUtils.isDataType(data, dataType)) continue;
-
-				final long[] longShape= (long[])data.getDims();
-				final int[]  intShape = new int[longShape.length];
-				for (int i = 0; i < intShape.length; i++) intShape[i] = (int)longShape[i];
-				shapes.put(set.getFullName(), (int[])intShape);
-			}
-		
-			if (object instanceof Group) {
-				getDatasetShapes((Group)object, shapes, dataType);
-			}
+		final Map<String, int[]> shapes = new HashMap<String, int[]>(31);
+		for (DatasetEntry entry : getIndex().getDatasets(dataType)) {
+			final int[] shape = entry.getShape();
+			if (shape!=null) shapes.put(entry.getPath(), shape);
 		}
 		return shapes;
 	}
 
+	/**
+	 * The structure of the file, read once and kept until the file is
+	 * written to. Files opened for reading use the default {@link HierarchicalIndexStore}
+	 * if there is one, so the index is read from the store or is read in full
+	 * and kept there.
+	 * 
+	 * @return index
+	 * @throws Exception
+	 */
+	@Override
+	public synchronized HierarchicalIndex getIndex() throws Exception {
+		if (index!=null) return index;
+
+		final HierarchicalIndexStore store = openType == FileFormat.READ ? HierarchicalIndexStore.getDefault() : null;
+		if (store==null) {
+			index = HierarchicalIndex.create(this, false);
+			return index;
+		}
+
+		HierarchicalIndex idx = store.get(path);
+		if (idx==null) {
+			final File data         = new File(path);
+			final long length       = data.length();
+			final long lastModified = data.lastModified();
+			idx = HierarchicalIndex.create(this, true);
+			store.put(path, length, lastModified, idx);
+		}
+		index = idx;
+		return index;
+	}
+
+	/**
+	 * Drops the index of this file and of the reader of the same
+	 * path, which are out of date once the file is written to.
+	 */
+	void invalidateIndex() {
+		index = null;
+		final HierarchicalDataFile reader = readCache.get(path);
+		if (reader!=null) reader.index = null;
+	}
+
 	/**
 	 * closes a file and removes it from the cache providing there
 	 * are not other users of the file registered.
@@ -523,6 +504,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * @throws Exception
 	 */
 	public void close() throws Exception {
+		closeAppenders();
 		close(false);
 	}
 	/**
@@ -534,34 +516,74 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	 * 
 	 * @throws Exception
 	 */
-	protected synchronized void close(boolean force) throws Exception {
+	protected void close(boolean force) throws Exception {
 		
 		// Close links
-		if (linkReferences!=null) {
-			for (String aPath : linkReferences.keySet()) {
-				((IHierarchicalDataFile)linkReferences.get(aPath)).close();
-			}
-			linkReferences.clear();
+		final List<IHierarchicalDataFile> links;
+		synchronized (this) {
+			links = linkReferences!=null ? new ArrayList<IHierarchicalDataFile>(linkReferences.values()) : null;
+			if (linkReferences!=null) linkReferences.clear();
+		}
+		if (links!=null) {
+			for (IHierarchicalDataFile link : links) link.close();
 		}
 
-		if (openType == FileFormat.READ) {
-			count--;
-			if (count<=0 || force) {
-				count = 0; // Just to be sure it does not get<0, unlikely
-				file.close();
-				readCache.remove(path);
-			}
-		} else if (openType == FileFormat.WRITE || openType == FileFormat.CREATE) {
-			file.close();
-			synchronized (file) {
-				writeCache.remove(path);
-				final ReentrantLock lock = lockMap.remove(path);
-				if (lock!=null) lock.unlock();
+		// The path is locked before the file, as when opening
+		PathLocks.lock(path);
+		try {
+			synchronized (this) {
+				if (openType == FileFormat.READ) {
+					if (readCache.get(path)!=this) return; // Already closed
+					count--;
+					if (count<=0 || force) {
+						count = 0; // Just to be sure it does not get<0, unlikely
+						file.close();
+						readCache.remove(path);
+					}
+				} else if (openType == FileFormat.WRITE || openType == FileFormat.CREATE) {
+					file.close();
+					synchronized (file) {
+						writeCache.remove(path);
+						final ReentrantLock lock = lockMap.remove(path);
+						if (lock!=null) lock.unlock();
+					}
+				}
 			}
+		} finally {
+			PathLocks.unlock(path);
 		}
 	}
 
 	private Map<String,IHierarchicalDataFile> linkReferences;
+
+	private final List<DatasetAppender> appenders = new ArrayList<DatasetAppender>(3);
+
+	/**
+	 * Closes the appenders, which write the frames they hold. Not called when
+	 * synchronized on this file as the appenders lock themselves before it.
+	 */
+	private void closeAppenders() throws Exception {
+		final List<DatasetAppender> open;
+		synchronized (appenders) {
+			open = new ArrayList<DatasetAppender>(appenders);
+		}
+		Exception failure = null;
+		for (DatasetAppender appender : open) {
+			try {
+				appender.close();
+			} catch (Exception ne) {
+				logger.error("Cannot close appender for "+appender.getPath(), ne);
+				if (failure==null) failure = ne;
+			}
+		}
+		if (failure!=null) throw failure;
+	}
+
+	void removeAppender(DatasetAppender appender) {
+		synchronized (appenders) {
+			appenders.remove(appender);
+		}
+	}
 	
     /**
      * 
@@ -621,10 +643,14 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 		HObject object = (Group)getData(name);
 		if (object!=null && object instanceof Group) return (Group)object;
 		 
-		return file.createGroup(name, group);
+		try {
+			return file.createGroup(name, group);
+		} finally {
+			invalidateIndex();
+		}
 	}
 	
-	private HObject checkExists(String name, Group group, Class<? extends HObject> clazz) throws Exception{
+	HObject checkExists(String name, Group group, Class<? extends HObject> clazz) throws Exception{
 		
 		final List<?> childs = group.getMemberList();
 		for (Object object : childs) {
@@ -676,13 +702,21 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 					           final String    name,
 					           final int       value) throws Exception {
 		HObject entry = getData(entryPath);
-		NexusUtils.setIntAttribute(file, entry, name, value);
+		try {
+			NexusUtils.setIntAttribute(file, entry, name, value);
+		} finally {
+			invalidateIndex();
+		}
 	}
 	
 	@Override
 	public void setNexusAttribute(String objectPath, String attribute) throws Exception {
 		HObject object = getData(objectPath);
-		NexusUtils.setNexusAttribute(file, object, attribute);
+		try {
+			NexusUtils.setNexusAttribute(file, object, attribute);
+		} finally {
+			invalidateIndex();
+		}
 	}
 	
 	/**
@@ -730,6 +764,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 			
 		} finally {
 			parent.close(id);
+			invalidateIndex();
 		}
 	}
 	
@@ -755,6 +790,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 			
 		} finally {
 			parent.close(id);
+			invalidateIndex();
 		}
 	}
 
@@ -828,6 +864,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 
 		} finally {
 			parent.close(id);
+			invalidateIndex();
 		}
 
 	}
@@ -838,8 +875,12 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 		if (object==null)  return null;
 		
 		final Group targetGroup = _group(targetGroupPath);
-		HObject link = file.createLink(targetGroup, linkName, object);
-		return link.getFullName();
+		try {
+			HObject link = file.createLink(targetGroup, linkName, object);
+			return link.getFullName();
+		} finally {
+			invalidateIndex();
+		}
 	}
 	
 	public void delete(String fullPath) throws Exception {
@@ -850,6 +891,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 		    file.delete(object);
 		} finally {
 			object.close(id);
+			invalidateIndex();
 		}
 	}
 	
@@ -929,7 +971,32 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 			
 		} finally {
 			parent.close(id);
+			invalidateIndex();
+		}
+	}
+
+	@Override
+	public IDatasetAppender createAppender(String name, int dType, long[] shape, String parentGroupPath) throws Exception {
+		return createAppender(name, dType, shape, parentGroupPath, IDatasetAppender.DEFAULT_FRAMES,
+				              IDatasetAppender.DEFAULT_BYTES, IDatasetAppender.DEFAULT_FLUSH_PERIOD);
+	}
+
+	@Override
+	public synchronized IDatasetAppender createAppender(String         name,
+			                                           final int      dType,
+			                                           final long[]   shape,
+			                                           final String   parentGroupPath,
+			                                           final int      maxFrames,
+			                                           final long     maxBytes,
+			                                           final long     flushPeriod) throws Exception {
+
+		final Datatype dtype  = H5Utils.getDatatype(dType);
+		final Group    parent = _group(parentGroupPath);
+		final DatasetAppender appender = new DatasetAppender(this, name, parent, dtype, shape, maxFrames, maxBytes, flushPeriod);
+		synchronized (appenders) {
+			appenders.add(appender);
 		}
+		return appender;
 	}
 
 	private String getUnique(String name, final Group parent, final Class<? extends HObject> clazz) throws Exception {
@@ -946,10 +1013,10 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	}
 
 	public static boolean isWriting(final String absolutePath) {
-		return writeCache!=null && writeCache.contains(absolutePath);
+		return writeCache.contains(absolutePath);
 	}
 	public static boolean isReading(final String absolutePath) {
-		return readCache!=null && readCache.containsKey(absolutePath);
+		return readCache.containsKey(absolutePath);
 	}
 
 	@Override
@@ -963,13 +1030,21 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	@Override
 	public void setAttribute(String objectPath, String name, String value) throws Exception {
         HObject object = getData(objectPath);
-		NexusUtils.setAttribute(file, object, name, value);
+		try {
+			NexusUtils.setAttribute(file, object, name, value);
+		} finally {
+			invalidateIndex();
+		}
 	}
 	
 	@Override
 	public void setAttribute(String objectPath, String name, String value, boolean overwrite) throws Exception {
 		HObject object = getData(objectPath);
-		NexusUtils.setAttribute(file, object, name, value, overwrite?ATTRIBUTE_TYPE.OVERWRITE:ATTRIBUTE_TYPE.NO_OVERWRITE);
+		try {
+			NexusUtils.setAttribute(file, object, name, value, overwrite?ATTRIBUTE_TYPE.OVERWRITE:ATTRIBUTE_TYPE.NO_OVERWRITE);
+		} finally {
+			invalidateIndex();
+		}
 	}
 
 	@Override
@@ -1032,6 +1107,7 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 			
 		} finally {
 			parent.close(id);
+			invalidateIndex();
 		}
 		
 	}
@@ -1039,6 +1115,10 @@ class HierarchicalDataFile implements IHierarchicalDataFile, IFileFormatDataFile
 	@Override
 	public List<String> memberList(String groupPath) throws Exception {
 		
+		final HierarchicalIndex i = index;
+		final List<String> indexed = i!=null ? i.getMembers(groupPath) : null;
+		if (indexed!=null) return new ArrayList<String>(indexed);
+
 		Group group = _group(groupPath);
 		List<HObject> members = group.getMemberList();
 		List<String>  ret     = new ArrayList<String>(members.size());
@@ -0,0 +1,606 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.slice.RegionMerger;
+import org.eclipse.dawnsci.analysis.api.slice.SlicePlan;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Service which does all its HDF5 access in one thread of its own, as the
+ * native library cannot safely be used by several threads at once. Any
+ * thread may ask it to read or write and gets a future of the result rather
+ * than waiting for the locks of the files.
+ *
+ * Requests are run in the order they are made. Reads waiting at the same time
+ * share one open reader of each file, and reads of the same data set whose
+ * regions are next to each other are read as one region (for instance frames
+ * of a stack asked for by several viewers), up to {@link SlicePlan#DEFAULT_MAX_READ_SIZE} items.
+ *
+ * The thread never waits for a file: requests for a file which the low level API
+ * (or for writes, another writer) is using are put back and tried again later,
+ * after requests of other files, and fail if the file is not free within a timeout.
+ * Tasks given to {@link #submit(Callable)} must not wait for locks either. Requests
+ * made by a task of the service are run at once in its thread. If the thread is
+ * interrupted, the service shuts down and requests not run fail.
+ *
+ * Use {@link HierarchicalLazyLoader} to read lazy datasets with the service.
+ */
+public class HierarchicalDataService {
+
+	private static final Logger logger = LoggerFactory.getLogger(HierarchicalDataService.class);
+
+	/**
+	 * Default time in ms that requests wait for a file which is in use
+	 */
+	public static final long DEFAULT_BUSY_TIMEOUT = 10000;
+
+	private static final long RETRY_PERIOD = 20; // ms between tries of requests of busy files
+
+	private static HierarchicalDataService defaultService;
+
+	/**
+	 * @return service shared by the application
+	 */
+	public static synchronized HierarchicalDataService getDefault() {
+		if (defaultService==null || defaultService.isShutdown()) defaultService = new HierarchicalDataService();
+		return defaultService;
+	}
+
+	/**
+	 * Future that the worker sets when it has run the request.
+	 */
+	private static class Result<T> extends FutureTask<T> {
+		Result() {
+			super(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					throw new IllegalStateException("Result is set by the service");
+				}
+			});
+		}
+		@Override
+		protected void set(T value) {
+			super.set(value);
+		}
+		@Override
+		protected void setException(Throwable t) {
+			super.setException(t);
+		}
+	}
+
+	/**
+	 * Request which uses one file
+	 */
+	private interface FileRequest {
+		String getFilePath();
+		/**
+		 * @return time in ms after which the request fails if its file is still in use, zero until it is first put back
+		 */
+		long getDeadline();
+		void setDeadline(long deadline);
+		/**
+		 * @return true if the file cannot be opened without waiting
+		 */
+		boolean isBusy();
+		void fail(Throwable t);
+	}
+
+	private static class ReadRequest implements FileRequest {
+		final String filePath;
+		final String dataPath;
+		final int[]  start;
+		final int[]  stop;
+		final int[]  step;
+		final Result<IDataset> result = new Result<IDataset>();
+		long deadline;
+
+		ReadRequest(String filePath, String dataPath, int[] start, int[] stop, int[] step) {
+			this.filePath = filePath;
+			this.dataPath = dataPath;
+			this.start    = start.clone();
+			this.stop     = stop.clone();
+			if (step==null) {
+				this.step = new int[start.length];
+				Arrays.fill(this.step, 1);
+			} else {
+				this.step = step.clone();
+			}
+		}
+
+		boolean isUnitStep() {
+			return RegionMerger.isUnitStep(step);
+		}
+
+		@Override
+		public String getFilePath() {
+			return filePath;
+		}
+
+		@Override
+		public long getDeadline() {
+			return deadline;
+		}
+
+		@Override
+		public void setDeadline(long deadline) {
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean isBusy() {
+			return HierarchicalDataFactory.isLowLevelLocked(filePath);
+		}
+
+		@Override
+		public void fail(Throwable t) {
+			result.setException(t);
+		}
+	}
+
+	/**
+	 * Task which reads from or writes to one file
+	 */
+	private static class FileTask<T> extends FutureTask<T> implements FileRequest {
+		private final String  filePath;
+		private final boolean write;
+		private long          deadline;
+
+		FileTask(String filePath, boolean write, Callable<T> task) {
+			super(task);
+			this.filePath = filePath;
+			this.write    = write;
+		}
+
+		@Override
+		public String getFilePath() {
+			return filePath;
+		}
+
+		@Override
+		public long getDeadline() {
+			return deadline;
+		}
+
+		@Override
+		public void setDeadline(long deadline) {
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean isBusy() {
+			return HierarchicalDataFactory.isLowLevelLocked(filePath) || (write && HierarchicalDataFile.isWriting(filePath));
+		}
+
+		@Override
+		public void fail(Throwable t) {
+			setException(t);
+		}
+	}
+
+	private final BlockingQueue<Object> queue; // of ReadRequest and FutureTask
+	private final List<FileRequest>     deferred = new ArrayList<FileRequest>(); // used by worker only
+	private final long                  busyTimeout;
+	private final Thread                worker;
+	private volatile boolean            shutdown;
+
+	/**
+	 * Make a service with its own thread. Usually the default service should be used.
+	 */
+	public HierarchicalDataService() {
+		this(DEFAULT_BUSY_TIMEOUT);
+	}
+
+	/**
+	 * @param busyTimeout time in ms that requests wait for a file which is in use, from when they are first put back
+	 */
+	HierarchicalDataService(long busyTimeout) {
+		this.busyTimeout = busyTimeout;
+		queue  = new LinkedBlockingQueue<Object>();
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "HDF5 I/O");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Reads a region of a data set.
+	 *
+	 * @param filePath absolute path of file
+	 * @param dataPath full path of data set in file
+	 * @param start
+	 * @param stop
+	 * @param step may be null for steps of one
+	 * @return future of data of region with the shape of the region
+	 */
+	public Future<IDataset> read(String filePath, String dataPath, int[] start, int[] stop, int[] step) {
+		final ReadRequest request = new ReadRequest(filePath, dataPath, start, stop, step);
+		if (isWorkerThread()) {
+			read(Collections.singletonList(request), null); // asked by a task of the service, which waits for it
+		} else {
+			enqueue(request);
+		}
+		return request.result;
+	}
+
+	/**
+	 * Runs a task with the thread of the service, for instance one that writes
+	 * with a {@link IHierarchicalDataFile} writer.
+	 *
+	 * @param task
+	 * @return future of result of task
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return run(new FutureTask<T>(task));
+	}
+
+	/**
+	 * Runs a task which reads a file with the thread of the service. Like reads, the task
+	 * is put back while the low level API is using the file, so it can get its reader with
+	 * {@link HierarchicalDataFactory#getReader(String, boolean)} without waiting.
+	 *
+	 * @param filePath absolute path of file
+	 * @param task
+	 * @return future of result of task
+	 */
+	public <T> Future<T> submitRead(String filePath, Callable<T> task) {
+		return run(new FileTask<T>(filePath, false, task));
+	}
+
+	private <T> Future<T> run(FutureTask<T> future) {
+		if (isWorkerThread()) {
+			future.run(); // asked by a task of the service, which waits for it
+		} else {
+			enqueue(future);
+		}
+		return future;
+	}
+
+	/**
+	 * Sets a slice of data into a data set, see {@link IHierarchicalDataFile#insertSlice(String, IDataset, String, long[][], long[])}
+	 *
+	 * @param filePath absolute path of file
+	 * @param name
+	 * @param data
+	 * @param parentPath
+	 * @param startStopStep
+	 * @param totalShape
+	 * @return future of full path of data set
+	 */
+	public Future<String> insertSlice(final String filePath, final String name, final IDataset data, final String parentPath,
+			                          final long[][] startStopStep, final long[] totalShape) {
+		return run(new FileTask<String>(filePath, true, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				IHierarchicalDataFile file = null;
+				try {
+					file = HierarchicalDataFactory.getWriter(filePath, false);
+					return file.insertSlice(name, data, parentPath, startStopStep, totalShape);
+				} finally {
+					if (file!=null) file.close();
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Adds data to the end of the stack of a data set, see {@link IHierarchicalDataFile#appendDataset(String, IDataset, String)}
+	 *
+	 * @param filePath absolute path of file
+	 * @param name
+	 * @param data
+	 * @param parentPath
+	 * @return future of full path of data set
+	 */
+	public Future<String> appendDataset(final String filePath, final String name, final IDataset data, final String parentPath) {
+		return run(new FileTask<String>(filePath, true, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				IHierarchicalDataFile file = null;
+				try {
+					file = HierarchicalDataFactory.getWriter(filePath, false);
+					return file.appendDataset(name, data, parentPath);
+				} finally {
+					if (file!=null) file.close();
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Stops taking requests. Requests already made are run.
+	 */
+	public void shutdown() {
+		synchronized (queue) {
+			shutdown = true;
+			queue.add(this); // wakes worker
+		}
+	}
+
+	/**
+	 * @return true if service does not take requests
+	 */
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	private boolean isWorkerThread() {
+		return Thread.currentThread()==worker;
+	}
+
+	private void enqueue(Object request) {
+		synchronized (queue) { // so no request is left after the worker fails those pending
+			if (shutdown) throw new RejectedExecutionException("HDF5 service is shut down");
+			queue.add(request);
+		}
+	}
+
+	private void work() {
+		final List<Object> batch = new ArrayList<Object>();
+		boolean stop = false;
+		try {
+			while (!stop || !deferred.isEmpty() || !queue.isEmpty()) {
+				if (deferred.isEmpty()) {
+					batch.add(queue.take());
+				} else {
+					final Object request = queue.poll(RETRY_PERIOD, TimeUnit.MILLISECONDS);
+					batch.addAll(deferred); // before newer requests
+					deferred.clear();
+					if (request!=null) batch.add(request);
+				}
+				queue.drainTo(batch);
+				if (runBatch(batch)) stop = true;
+				batch.clear();
+			}
+		} catch (InterruptedException ne) {
+			failPending(ne);
+		}
+	}
+
+	/**
+	 * Runs requests in order, putting back those of files which are in use.
+	 * @return true if service is to stop
+	 */
+	private boolean runBatch(List<Object> batch) {
+		final Set<String>       busy  = new HashSet<String>(); // files whose later requests wait too, to keep their order
+		final List<ReadRequest> reads = new ArrayList<ReadRequest>();
+		boolean stop = false;
+		for (Object request : batch) {
+			if (request==this) {
+				stop = true;
+				continue;
+			}
+			if (request instanceof FileRequest && defer((FileRequest)request, busy)) continue;
+			if (request instanceof ReadRequest) {
+				reads.add((ReadRequest)request);
+				continue;
+			}
+			read(reads, busy); // Keep order of reads and other tasks
+			reads.clear();
+			((FutureTask<?>)request).run();
+		}
+		read(reads, busy);
+		return stop;
+	}
+
+	/**
+	 * Puts back request if its file is in use, or fails it if it has waited too long.
+	 * @return true if request is not to be run now
+	 */
+	private boolean defer(FileRequest request, Set<String> busy) {
+		final String filePath = request.getFilePath();
+		if (!busy.contains(filePath) && !request.isBusy()) return false;
+		busy.add(filePath);
+		final long now = System.currentTimeMillis();
+		if (request.getDeadline()==0) request.setDeadline(now+busyTimeout);
+		if (now > request.getDeadline()) {
+			request.fail(new Exception("Timed out waiting to use "+filePath));
+		} else {
+			deferred.add(request);
+		}
+		return true;
+	}
+
+	/**
+	 * Fails requests not run when the worker is interrupted.
+	 */
+	private void failPending(InterruptedException ne) {
+		final List<Object> pending = new ArrayList<Object>(deferred);
+		deferred.clear();
+		synchronized (queue) {
+			shutdown = true;
+			queue.drainTo(pending);
+		}
+		for (Object request : pending) {
+			if (request instanceof FileRequest) {
+				((FileRequest)request).fail(ne);
+			} else if (request instanceof FutureTask) {
+				((FutureTask<?>)request).cancel(false);
+			}
+		}
+		logger.warn("HDF5 service was interrupted, "+pending.size()+" requests failed");
+	}
+
+	/**
+	 * Reads requests, opening each file once.
+	 * @param requests
+	 * @param busy files in use, if null requests of files in use fail rather than being put back
+	 */
+	private void read(List<ReadRequest> requests, Set<String> busy) {
+		if (requests.isEmpty()) return;
+
+		final Map<String, Map<String, List<ReadRequest>>> files = new LinkedHashMap<String, Map<String, List<ReadRequest>>>();
+		for (ReadRequest r : requests) {
+			if (r.result.isCancelled()) continue;
+			Map<String, List<ReadRequest>> sets = files.get(r.filePath);
+			if (sets==null) {
+				sets = new LinkedHashMap<String, List<ReadRequest>>();
+				files.put(r.filePath, sets);
+			}
+			List<ReadRequest> list = sets.get(r.dataPath);
+			if (list==null) {
+				list = new ArrayList<ReadRequest>();
+				sets.put(r.dataPath, list);
+			}
+			list.add(r);
+		}
+
+		for (String filePath : files.keySet()) {
+			final Map<String, List<ReadRequest>> sets = files.get(filePath);
+			if (busy!=null && HierarchicalDataFactory.isLowLevelLocked(filePath)) {
+				busy.add(filePath);
+				for (List<ReadRequest> list : sets.values()) {
+					for (ReadRequest r : list) defer(r, busy);
+				}
+				continue;
+			}
+			IHierarchicalDataFile file = null;
+			try {
+				file = HierarchicalDataFactory.getReader(filePath, false);
+				for (String dataPath : sets.keySet()) {
+					read(file, dataPath, sets.get(dataPath));
+				}
+			} catch (Throwable ne) {
+				fail(sets, ne);
+			} finally {
+				if (file!=null) try {
+					file.close();
+				} catch (Exception ne) {
+					logger.error("Cannot close "+filePath, ne);
+				}
+			}
+		}
+	}
+
+	private static void fail(Map<String, List<ReadRequest>> sets, Throwable t) {
+		for (List<ReadRequest> list : sets.values()) {
+			for (ReadRequest r : list) r.result.setException(t);
+		}
+	}
+
+	/**
+	 * Reads requests of one data set, reading regions next to each other as one.
+	 */
+	private static void read(IHierarchicalDataFile file, String dataPath, List<ReadRequest> requests) {
+
+		final ncsa.hdf.object.Dataset set;
+		try {
+			set = (ncsa.hdf.object.Dataset)file.getData(dataPath);
+			if (set==null) throw new Exception("Cannot find "+dataPath+" in "+file.getPath());
+		} catch (Throwable ne) {
+			for (ReadRequest r : requests) r.result.setException(ne);
+			return;
+		}
+
+		final List<ReadRequest> unit = new ArrayList<ReadRequest>(requests.size());
+		for (ReadRequest r : requests) {
+			if (r.isUnitStep()) {
+				unit.add(r);
+			} else {
+				try {
+					r.result.set(read(set, r.start, r.stop, r.step));
+				} catch (Throwable ne) {
+					r.result.setException(ne);
+				}
+			}
+		}
+
+		Collections.sort(unit, new Comparator<ReadRequest>() {
+			@Override
+			public int compare(ReadRequest a, ReadRequest b) {
+				for (int i = 0; i < a.start.length && i < b.start.length; i++) {
+					if (a.start[i]!=b.start[i]) return a.start[i] < b.start[i] ? -1 : 1;
+				}
+				return 0;
+			}
+		});
+
+		final int count = unit.size();
+		final int[][] start = new int[count][];
+		final int[][] stop  = new int[count][];
+		for (int i = 0; i < count; i++) {
+			start[i] = unit.get(i).start;
+			stop[i]  = unit.get(i).stop;
+		}
+
+		int i = 0;
+		while (i < count) {
+			final int[] bstart = new int[start[i].length];
+			final int[] bstop  = new int[start[i].length];
+			final int j = RegionMerger.merge(start, stop, null, i, SlicePlan.DEFAULT_MAX_READ_SIZE, bstart, bstop);
+
+			try {
+				final Dataset block = read(set, bstart, bstop, null);
+				for (int n = i; n < j; n++) {
+					final ReadRequest r = unit.get(n);
+					if (j==i+1) {
+						r.result.set(block);
+						continue;
+					}
+					final int[][] region = RegionMerger.getOffsetRegion(r.start, r.stop, bstart);
+					r.result.set(block.getSlice(region[0], region[1], null));
+				}
+			} catch (Throwable ne) {
+				for (int n = i; n < j; n++) unit.get(n).result.setException(ne);
+			}
+			i = j;
+		}
+	}
+
+	/**
+	 * Reads a hyperslab of a data set
+	 * @param set
+	 * @param start
+	 * @param stop
+	 * @param step may be null
+	 * @return data with the shape of the hyperslab
+	 * @throws Exception
+	 */
+	private static Dataset read(ncsa.hdf.object.Dataset set, int[] start, int[] stop, int[] step) throws Exception {
+
+		set.getMetadata();
+		final long[] startDims = set.getStartDims();
+		final long[] stride    = set.getStride();
+		final long[] selected  = set.getSelectedDims();
+		if (startDims.length!=start.length) throw new IllegalArgumentException("Region does not have rank of "+set.getFullName());
+
+		for (int i = 0; i < start.length; i++) {
+			final int s   = step==null ? 1 : step[i];
+			startDims[i]  = start[i];
+			stride[i]     = s;
+			selected[i]   = Math.max(0, (stop[i] - start[i] + s - 1) / s);
+		}
+		final Object val = set.read();
+		return H5Utils.getSet(val, selected.clone(), set);
+	}
+}
@@ -93,14 +93,30 @@ public class HierarchicalDataUtils {
 
 		if (requiredType<0) return true; // Numbers less than 0 are any dataset
 
-        final int   type  = set.getDatatype().getDatatypeClass();
+		final int type = set.getDatatype().getDatatypeClass();
+		if (type==Datatype.CLASS_FLOAT || type==Datatype.CLASS_INTEGER || type==Datatype.CLASS_CHAR || type==Datatype.CLASS_STRING) {
+			return isDataType(type, getDims(set), requiredType);
+		}
+		return requiredType==type;
+	}
+
+	/**
+	 * Tests the type of a data set from its Datatype class and shape
+	 * when these have already been read.
+	 * 
+	 * @param type one of the Datatype.CLASS_* variables
+	 * @param shape may be null
+	 * @param requiredType
+	 */
+	public static boolean isDataType(int type, long[] shape, int requiredType) {
+
+		if (requiredType<0) return true; // Numbers less than 0 are any dataset
+
         if (type==Datatype.CLASS_FLOAT || type==Datatype.CLASS_INTEGER || type==Datatype.CLASS_CHAR) {
         	if (IHierarchicalDataFile.NUMBER_ARRAY==requiredType) {
-        		long[]shape = getDims(set);
                 if (shape==null) return true;
         		return shape.length>1 || shape[0]>1;
         	} else if (IHierarchicalDataFile.SCALAR==requiredType) {
-        		long[]shape = getDims(set);
                 if (shape==null) return true;
         		return shape.length==1 && shape[0]==1;
         	}
@@ -110,7 +126,6 @@ public class HierarchicalDataUtils {
         	if (IHierarchicalDataFile.TEXT==requiredType) {
         		return true;
         	} else if (IHierarchicalDataFile.SCALAR==requiredType) {
-        		long[]shape = getDims(set);
                 if (shape==null) return true;
         		return shape.length==1 && shape[0]==1;
         	}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ncsa.hdf.object.Attribute;
+import ncsa.hdf.object.Dataset;
+import ncsa.hdf.object.Datatype;
+import ncsa.hdf.object.Group;
+import ncsa.hdf.object.HObject;
+
+import org.eclipse.dawnsci.hdf5.nexus.NexusUtils;
+
+/**
+ * Structure of a hierarchical data file read in one pass through
+ * the tree of groups.
+ *
+ * Holds the full paths of the groups and data sets, the members and NX_class
+ * of each group and the shape, type and link target of each data set so that
+ * queries over the whole file do not walk the tree or read the attributes of
+ * every data set again. The index is not updated when the file is written to,
+ * the file makes a new one instead.
+ *
+ * A full index also holds the attributes of every node and the values of the
+ * data sets with one item, so that it can be kept in a {@link HierarchicalIndexStore}
+ * and answer queries without opening the file again.
+ *
+ * Internal use only.
+ */
+public class HierarchicalIndex implements Serializable {
+
+	private static final long serialVersionUID = 7530473587102961574L;
+
+	/**
+	 * Information about one data set. If the data set is a link to
+	 * another file, the information is that of the linked data set.
+	 */
+	public static class DatasetEntry implements Serializable {
+
+		private static final long serialVersionUID = -2391562717906376451L;
+
+		private final String path;
+		private final long[] shape;
+		private final int    typeClass;
+		private final int    typeSize;
+		private final String target;
+
+		private DatasetEntry(String path, long[] shape, int typeClass, int typeSize, String target) {
+			this.path      = path;
+			this.shape     = shape;
+			this.typeClass = typeClass;
+			this.typeSize  = typeSize;
+			this.target    = target;
+		}
+
+		/**
+		 * @return full path of data set
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return shape of data set, may be null if it cannot be read
+		 */
+		public int[] getShape() {
+			if (shape==null) return null;
+			final int[] intShape = new int[shape.length];
+			for (int i = 0; i < intShape.length; i++) intShape[i] = (int)shape[i];
+			return intShape;
+		}
+
+		/**
+		 * @return number of items in data set or -1 if the shape is not known
+		 */
+		public long getSize() {
+			if (shape==null) return -1;
+			long size = 1;
+			for (long s : shape) size*=s;
+			return size;
+		}
+
+		/**
+		 * @return one of the Datatype.CLASS_* variables
+		 */
+		public int getTypeClass() {
+			return typeClass;
+		}
+
+		/**
+		 * @return number of bytes in each item
+		 */
+		public int getTypeSize() {
+			return typeSize;
+		}
+
+		/**
+		 * @return nxfile://{file}#{path} of the linked data set or null if this is not a link
+		 */
+		public String getTarget() {
+			return target;
+		}
+
+		/**
+		 * @param dataType one of NUMBER_ARRAY or TEXT or one of the Datatype.CLASS_* variables. Use -1 for everything.
+		 * @return true if data set is of given type
+		 */
+		public boolean isDataType(int dataType) {
+			return HierarchicalDataUtils.isDataType(typeClass, shape, dataType);
+		}
+	}
+
+	private final Map<String, DatasetEntry> datasets;
+	private final Map<String, List<String>> groups;
+	private final Map<String, String>       nexusClasses;
+	private final Map<String, Map<String, Object>> attributes; // null unless full
+	private final Map<String, Object>       scalars;    // null unless full
+
+	private HierarchicalIndex(boolean full) {
+		datasets     = new LinkedHashMap<String, DatasetEntry>(89);
+		groups       = new HashMap<String, List<String>>(31);
+		nexusClasses = new HashMap<String, String>(31);
+		attributes   = full ? new HashMap<String, Map<String, Object>>(89) : null;
+		scalars      = full ? new HashMap<String, Object>(31) : null;
+	}
+
+	/**
+	 * Reads the structure of the file under the root group.
+	 *
+	 * @param file
+	 * @param full if true, also read the attributes and the data sets with one item
+	 * @return index
+	 * @throws Exception
+	 */
+	static HierarchicalIndex create(HierarchicalDataFile file, boolean full) throws Exception {
+		final HierarchicalIndex index = new HierarchicalIndex(full);
+		index.add(file._getRoot(), file);
+		return index;
+	}
+
+	private void add(Group g, HierarchicalDataFile file) throws Exception {
+
+		final List<HObject> members = g.getMemberList();
+		final List<String>  names   = new ArrayList<String>(members.size());
+		groups.put(g.getFullName(), Collections.unmodifiableList(names));
+
+		final Map<String, Object> attrs = readAttributes(g);
+		final String nexusClass = getNexusClass(attrs);
+		if (nexusClass!=null) nexusClasses.put(g.getFullName(), nexusClass);
+		if (attributes!=null) attributes.put(g.getFullName(), attrs);
+
+		for (HObject object : members) {
+			names.add(object.getFullName());
+
+			if (object instanceof Dataset) {
+				final Dataset set  = (Dataset)object;
+				final Dataset link = (Dataset)HierarchicalDataUtils.getDataLink(set, file);
+				final Dataset data = link!=null ? link : set;
+
+				final Datatype type   = data.getDatatype();
+				final String   target = link!=null
+						              ? HierarchicalInfo.NAPISCHEME+"://"+link.getFileFormat().getAbsolutePath()+"#"+link.getFullName()
+						              : null;
+				final long[]   shape  = HierarchicalDataUtils.getDims(data);
+				datasets.put(set.getFullName(), new DatasetEntry(set.getFullName(), shape,
+						                                         type.getDatatypeClass(), type.getDatatypeSize(), target));
+				if (attributes!=null) {
+					attributes.put(set.getFullName(), readAttributes(data));
+					if (isSingle(shape)) scalars.put(set.getFullName(), readScalar(data));
+				}
+			}
+
+			if (object instanceof Group) {
+				add((Group)object, file);
+			}
+		}
+	}
+
+	private static Map<String, Object> readAttributes(HObject object) {
+		final Map<String, Object> attrs = new LinkedHashMap<String, Object>(7);
+		try {
+			final List<?> list = object.getMetadata();
+			if (list!=null) for (Object attribute : list) {
+				if (attribute instanceof Attribute) {
+					final Attribute a = (Attribute)attribute;
+					attrs.put(a.getName(), a.getValue());
+				}
+			}
+		} catch (Exception ignored) {
+			// Index the node without its attributes
+		}
+		return attrs;
+	}
+
+	private static String getNexusClass(Map<String, Object> attrs) {
+		for (String name : attrs.keySet()) {
+			if (!NexusUtils.NXCLASS.equalsIgnoreCase(name)) continue;
+			final Object value = attrs.get(name);
+			if (value instanceof String[]) return ((String[])value)[0];
+		}
+		return null;
+	}
+
+	private static boolean isSingle(long[] shape) {
+		if (shape==null) return false;
+		for (long s : shape) if (s!=1) return false;
+		return true;
+	}
+
+	private static Object readScalar(Dataset set) {
+		try {
+			final Object value = HierarchicalDataUtils.extractScalar(set.read());
+			return value instanceof Serializable ? value : null;
+		} catch (Exception ne) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param path
+	 * @return true if there is a group or data set at this path
+	 */
+	public boolean contains(String path) {
+		return groups.containsKey(path) || datasets.containsKey(path);
+	}
+
+	/**
+	 * @param path
+	 * @return true if there is a group at this path
+	 */
+	public boolean isGroup(String path) {
+		return groups.containsKey(path);
+	}
+
+	/**
+	 * @param path
+	 * @return true if there is a data set at this path
+	 */
+	public boolean isDataset(String path) {
+		return datasets.containsKey(path);
+	}
+
+	/**
+	 * @param groupPath
+	 * @return full paths of the members of the group or null if there is no such group
+	 */
+	public List<String> getMembers(String groupPath) {
+		return groups.get(groupPath);
+	}
+
+	/**
+	 * @param groupPath
+	 * @return value of NX_class attribute of group or null if it has none
+	 */
+	public String getNexusClass(String groupPath) {
+		return nexusClasses.get(groupPath);
+	}
+
+	/**
+	 * @return true if the attributes and single values were read
+	 */
+	public boolean isFull() {
+		return attributes!=null;
+	}
+
+	/**
+	 * @param path
+	 * @return map of attribute names to values of group or data set or null if not known
+	 */
+	public Map<String, Object> getAttributes(String path) {
+		if (attributes==null) return null;
+		final Map<String, Object> attrs = attributes.get(path);
+		return attrs!=null ? new HashMap<String, Object>(attrs) : null;
+	}
+
+	/**
+	 * @param path
+	 * @return value of data set with one item or null
+	 */
+	public Object getScalar(String path) {
+		return scalars!=null ? scalars.get(path) : null;
+	}
+
+	/**
+	 * @param path
+	 * @return data set at this path or null
+	 */
+	public DatasetEntry getDataset(String path) {
+		return datasets.get(path);
+	}
+
+	/**
+	 * @param dataType one of NUMBER_ARRAY or TEXT or one of the Datatype.CLASS_* variables. Use -1 for everything.
+	 * @return data sets of given type in the order that the tree is walked
+	 */
+	public List<DatasetEntry> getDatasets(int dataType) {
+		final List<DatasetEntry> ret = new ArrayList<DatasetEntry>(datasets.size());
+		for (DatasetEntry entry : datasets.values()) {
+			if (entry.isDataType(dataType)) ret.add(entry);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps full indices of hierarchical data files in a local directory so that
+ * a file which has not changed does not have to be opened and read again in
+ * a later session.
+ *
+ * There is one index file for each data file. It records the absolute path,
+ * length and modification time of the data file and is ignored when the data
+ * file no longer matches them, so checking an index costs a file status call
+ * rather than reading the header of the data file.
+ *
+ * The store is optional. It is used when the system property
+ * {@value #DIRECTORY_PROPERTY} names a directory or when one is set with
+ * {@link #setDefault(HierarchicalIndexStore)}.
+ */
+public class HierarchicalIndexStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(HierarchicalIndexStore.class);
+
+	/**
+	 * System property of the directory used by the default store
+	 */
+	public static final String DIRECTORY_PROPERTY = "org.eclipse.dawnsci.hdf5.index.directory";
+
+	private static final int    VERSION = 1;
+	private static final String EXT     = ".idx";
+
+	private static volatile HierarchicalIndexStore defaultStore;
+	private static volatile boolean                defaultRead;
+
+	/**
+	 * @return store given by the system property or set, may be null
+	 */
+	public static HierarchicalIndexStore getDefault() {
+		if (!defaultRead) {
+			synchronized (HierarchicalIndexStore.class) {
+				if (!defaultRead) {
+					final String dir = System.getProperty(DIRECTORY_PROPERTY);
+					if (dir!=null && !dir.isEmpty()) defaultStore = new HierarchicalIndexStore(new File(dir));
+					defaultRead = true;
+				}
+			}
+		}
+		return defaultStore;
+	}
+
+	/**
+	 * @param store may be null to stop using a store
+	 */
+	public static void setDefault(HierarchicalIndexStore store) {
+		synchronized (HierarchicalIndexStore.class) {
+			defaultStore = store;
+			defaultRead  = true;
+		}
+	}
+
+	private final File directory;
+
+	/**
+	 * @param directory in which to keep the indices, made if it does not exist
+	 */
+	public HierarchicalIndexStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return directory of the indices
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Reads the index of a file if it is stored and the file has not changed since.
+	 *
+	 * @param absolutePath of data file
+	 * @return index or null
+	 */
+	public HierarchicalIndex get(String absolutePath) {
+
+		final File data  = new File(absolutePath);
+		final File index = getIndexFile(absolutePath);
+		if (!index.exists() || !data.exists()) return null;
+
+		try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(index))))) {
+			if (in.readInt()!=VERSION) return null;
+			if (!absolutePath.equals(in.readUTF())) return null;
+			if (in.readLong()!=data.length() || in.readLong()!=data.lastModified()) return null;
+			return (HierarchicalIndex)in.readObject();
+
+		} catch (Exception ne) {
+			logger.debug("Cannot read index of "+absolutePath, ne);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the index of a file. The length and modification time must be those
+	 * of the file before the index was read, so that changes made to the file
+	 * while reading it make the stored index out of date.
+	 *
+	 * @param absolutePath of data file
+	 * @param length of data file
+	 * @param lastModified of data file
+	 * @param idx must be full
+	 */
+	public void put(String absolutePath, long length, long lastModified, HierarchicalIndex idx) {
+
+		if (!idx.isFull()) throw new IllegalArgumentException("Only full indices can be stored!");
+		if (!directory.exists()) directory.mkdirs();
+
+		final File index = getIndexFile(absolutePath);
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(index.getName(), ".tmp", directory);
+			try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+				out.writeInt(VERSION);
+				out.writeUTF(absolutePath);
+				out.writeLong(length);
+				out.writeLong(lastModified);
+				out.writeObject(idx);
+			}
+			Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException ne) {
+			logger.debug("Cannot store index of "+absolutePath, ne);
+			if (tmp!=null) tmp.delete();
+		}
+	}
+
+	/**
+	 * Deletes the stored index of a file.
+	 * @param absolutePath of data file
+	 */
+	public void remove(String absolutePath) {
+		getIndexFile(absolutePath).delete();
+	}
+
+	private File getIndexFile(String absolutePath) {
+		return new File(directory, digest(absolutePath)+EXT);
+	}
+
+	private static String digest(String path) {
+		try {
+			final byte[]        bytes = MessageDigest.getInstance("SHA-1").digest(path.getBytes(Charset.forName("UTF-8")));
+			final StringBuilder buf   = new StringBuilder(bytes.length*2);
+			for (byte b : bytes) buf.append(String.format("%02x", b));
+			return buf.toString();
+		} catch (Exception ne) { // SHA-1 is always available
+			return Integer.toHexString(path.hashCode());
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IChunked;
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.io.IAsyncLazyLoader;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazy loader of a data set in a HDF5 file which reads with the
+ * {@link HierarchicalDataService}, so that slices asked for by several
+ * threads are read by the thread of the service and those next to each
+ * other are read together.
+ */
+public class HierarchicalLazyLoader implements IAsyncLazyLoader, IChunked {
+
+	private static final long serialVersionUID = 4506427426536339658L;
+
+	private static final Logger logger = LoggerFactory.getLogger(HierarchicalLazyLoader.class);
+
+	private static final int[] NOT_CHUNKED = new int[0];
+
+	private final String filePath;
+	private final String dataPath;
+	private transient volatile int[] chunking; // NOT_CHUNKED if data set is not chunked
+
+	/**
+	 * @param filePath absolute path of file
+	 * @param dataPath full path of data set in file
+	 */
+	public HierarchicalLazyLoader(String filePath, String dataPath) {
+		this.filePath = filePath;
+		this.dataPath = dataPath;
+	}
+
+	/**
+	 * @return absolute path of file
+	 */
+	public String getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * @return full path of data set in file
+	 */
+	public String getDataPath() {
+		return dataPath;
+	}
+
+	private HierarchicalDataService getService() {
+		return HierarchicalDataService.getDefault();
+	}
+
+	@Override
+	public boolean isFileReadable() {
+		return new File(filePath).canRead();
+	}
+
+	@Override
+	public IDataset getDataset(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) throws Exception {
+		return get(getDatasetAsync(mon, shape, start, stop, step));
+	}
+
+	@Override
+	public Future<IDataset> getDatasetAsync(IMonitor mon, int[] shape, int[] start, int[] stop, int[] step) {
+		return getService().read(filePath, dataPath, start, stop, step);
+	}
+
+	@Override
+	public List<Future<IDataset>> getDatasetsAsync(IMonitor mon, int[] shape, int[][] start, int[][] stop, int[][] step) {
+		final HierarchicalDataService service = getService();
+		final List<Future<IDataset>> futures = new ArrayList<Future<IDataset>>(start.length);
+		for (int i = 0; i < start.length; i++) {
+			futures.add(service.read(filePath, dataPath, start[i], stop[i], step==null ? null : step[i]));
+		}
+		return futures;
+	}
+
+	@Override
+	public int[] getChunking() {
+		int[] c = chunking;
+		if (c==null) {
+			try {
+				c = get(getService().submitRead(filePath, new Callable<int[]>() {
+					@Override
+					public int[] call() throws Exception {
+						IHierarchicalDataFile file = null;
+						try {
+							file = HierarchicalDataFactory.getReader(filePath, false);
+							final ncsa.hdf.object.Dataset set = (ncsa.hdf.object.Dataset)file.getData(dataPath);
+							if (set==null) throw new Exception("Cannot find "+dataPath+" in "+filePath);
+							set.getMetadata();
+							final long[] chunks = set.getChunkSize();
+							if (chunks==null) return NOT_CHUNKED;
+							final int[] ret = new int[chunks.length];
+							for (int i = 0; i < chunks.length; i++) ret[i] = (int)chunks[i];
+							return ret;
+						} finally {
+							if (file!=null) file.close();
+						}
+					}
+				}));
+				chunking = c;
+			} catch (Exception ne) {
+				logger.error("Cannot get chunking of "+dataPath+" in "+filePath, ne);
+				return null;
+			}
+		}
+		return c==NOT_CHUNKED ? null : c;
+	}
+
+	@Override
+	public int[] getChunkOffset() {
+		final int[] c = getChunking();
+		return c==null ? null : new int[c.length];
+	}
+
+	private static <T> T get(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException ne) {
+			final Throwable cause = ne.getCause();
+			if (cause instanceof Exception) throw (Exception)cause;
+			throw ne;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+
+/**
+ * Appends frames to the end of the first dimension of a data set, keeping
+ * them in memory and writing several at a time.
+ *
+ * Frames are written when as many are held as fill a chunk of the data set,
+ * when they have been held for longer than the flush period, on {@link #flush()}
+ * and on {@link #close()}. YOU MUST CALL close() in a finally when using this
+ * class, or close the file, which closes its appenders.
+ *
+ * Get one from {@link IHierarchicalDataFile#createAppender(String, int, long[], String)}
+ */
+public interface IDatasetAppender extends AutoCloseable {
+
+	/**
+	 * Default largest number of frames written at a time
+	 */
+	public static final int  DEFAULT_FRAMES = 16;
+
+	/**
+	 * Default largest number of bytes held
+	 */
+	public static final long DEFAULT_BYTES  = 64L*1024*1024;
+
+	/**
+	 * Default time in ms after which held frames are written
+	 */
+	public static final long DEFAULT_FLUSH_PERIOD = 1000;
+
+	/**
+	 * @return full path of the data set
+	 */
+	public String getPath();
+
+	/**
+	 * @return number of frames in the data set including those not written yet
+	 */
+	public long getFrameCount();
+
+	/**
+	 * Adds a frame, writing the frames held if there is no room for more.
+	 *
+	 * @param frame of the frame shape and type given when the appender was made
+	 * @throws Exception
+	 */
+	public void append(IDataset frame) throws Exception;
+
+	/**
+	 * Adds a frame, writing the frames held if there is no room for more.
+	 *
+	 * @param buffer primitive array holding one frame
+	 * @throws Exception
+	 */
+	public void append(Object buffer) throws Exception;
+
+	/**
+	 * Writes the frames held.
+	 * @throws Exception
+	 */
+	public void flush() throws Exception;
+
+	/**
+	 * Writes the frames held and releases the data set.
+	 * @throws Exception
+	 */
+	@Override
+	public void close() throws Exception;
+}
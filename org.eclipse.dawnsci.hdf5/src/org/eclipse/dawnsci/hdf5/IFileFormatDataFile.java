@@ -20,4 +20,13 @@ public interface IFileFormatDataFile extends IHierarchicalDataFile {
 
 	public FileFormat getFileFormat();
 
+	/**
+	 * The structure of the file, read once and kept until the file is
+	 * written to.
+	 * 
+	 * @return index
+	 * @throws Exception
+	 */
+	public HierarchicalIndex getIndex() throws Exception;
+
 }
@@ -362,6 +362,41 @@ public interface IHierarchicalDataFile extends AutoCloseable {
 	 * @throws Exception
 	 */
 	public String appendDataset(String datasetName, int dType, long[] shape, Object buffer, String dataGroupPath)  throws Exception;
+
+	/**
+	 * Makes an appender which adds frames to the end of the stack like appendDataset but
+	 * holds them in memory and writes several at a time, extending the data set by whole
+	 * chunks. Frames held for longer than {@link IDatasetAppender#DEFAULT_FLUSH_PERIOD} are
+	 * written so that live viewers see them.
+	 * 
+	 * If the data set does not exist it is created with dimensions [n, shape...] when the
+	 * first frames are written.
+	 * 
+	 * @param datasetName
+	 * @param dType
+	 * @param shape of each frame
+	 * @param dataGroupPath
+	 * @return appender, which must be closed
+	 * @throws Exception
+	 */
+	public IDatasetAppender createAppender(String datasetName, int dType, long[] shape, String dataGroupPath)  throws Exception;
+
+	/**
+	 * Makes an appender which adds frames to the end of the stack like appendDataset but
+	 * holds them in memory and writes several at a time, extending the data set by whole
+	 * chunks.
+	 * 
+	 * @param datasetName
+	 * @param dType
+	 * @param shape of each frame
+	 * @param dataGroupPath
+	 * @param maxFrames largest number of frames held
+	 * @param maxBytes largest number of bytes held
+	 * @param flushPeriod time in ms after which held frames are written, if not positive they are written only when the appender is full, flushed or closed
+	 * @return appender, which must be closed
+	 * @throws Exception
+	 */
+	public IDatasetAppender createAppender(String datasetName, int dType, long[] shape, String dataGroupPath, int maxFrames, long maxBytes, long flushPeriod)  throws Exception;
 	
 	/**
 	 * Creates a link to an existing object
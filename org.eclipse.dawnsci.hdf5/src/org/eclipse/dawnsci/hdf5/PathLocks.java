@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.dawnsci.hdf5;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One reentrant lock for each file path, so that opening and closing a
+ * file does not wait for other files. A lock is kept only while a thread
+ * holds it or waits for it.
+ *
+ * Use lock and unlock in a try{} finally{} block.
+ */
+class PathLocks {
+
+	private static class Entry {
+		final ReentrantLock lock = new ReentrantLock();
+		int users;
+	}
+
+	private static final Map<String, Entry> locks = new HashMap<String, Entry>(31);
+
+	private PathLocks() {
+	}
+
+	/**
+	 * Blocks until the current thread holds the lock of this path.
+	 * @param path
+	 */
+	static void lock(String path) {
+		Entry entry;
+		synchronized (locks) {
+			entry = locks.get(path);
+			if (entry==null) {
+				entry = new Entry();
+				locks.put(path, entry);
+			}
+			entry.users++;
+		}
+		entry.lock.lock();
+	}
+
+	/**
+	 * Releases a hold of the lock of this path by the current thread.
+	 * @param path
+	 */
+	static void unlock(String path) {
+		synchronized (locks) {
+			final Entry entry = locks.get(path);
+			if (entry==null || !entry.lock.isHeldByCurrentThread()) {
+				throw new IllegalMonitorStateException("The lock of "+path+" is not held!");
+			}
+			entry.lock.unlock();
+			if (--entry.users==0) locks.remove(path);
+		}
+	}
+}
@@ -17,6 +17,9 @@ import ncsa.hdf.object.Dataset;
 import ncsa.hdf.object.HObject;
 
 import org.eclipse.dawnsci.hdf5.HierarchicalDataUtils;
+import org.eclipse.dawnsci.hdf5.HierarchicalIndex;
+import org.eclipse.dawnsci.hdf5.HierarchicalIndexStore;
+import org.eclipse.dawnsci.hdf5.IFileFormatDataFile;
 import org.eclipse.dawnsci.hdf5.IHierarchicalDataFile;
 import org.eclipse.dawnsci.hdf5.model.IHierarchicalDataFileModel;
 
@@ -49,8 +52,68 @@ public class HierarchicalDataFileModel implements IHierarchicalDataFileModel {
 	private boolean isValidFile = true;
 	private IHierarchicalDataFileGetReader getReader;
 
+	/**
+	 * Absolute path of file, used to look for its index in the
+	 * {@link HierarchicalIndexStore}. May be null.
+	 */
+	private String filePath;
+
+	/**
+	 * Full index of the file if there is an index store, else null.
+	 */
+	private HierarchicalIndex index;
+
 	public HierarchicalDataFileModel(IHierarchicalDataFileGetReader getReader) {
+		this(getReader, null);
+	}
+
+	/**
+	 * @param getReader
+	 * @param filePath
+	 *            absolute path of file, if not null and there is a default
+	 *            {@link HierarchicalIndexStore} all the values are read from
+	 *            the index of the file, which is read in full the first time
+	 */
+	public HierarchicalDataFileModel(IHierarchicalDataFileGetReader getReader, String filePath) {
 		this.getReader = getReader;
+		this.filePath = filePath;
+	}
+
+	/**
+	 * Get the full index of the file from the store, reading the file only if
+	 * the store does not have an up to date one.
+	 * 
+	 * @return index or <code>null</code> if the model does not use the store
+	 * @throws Exception
+	 *             if the file cannot be read
+	 */
+	private HierarchicalIndex getIndex() throws Exception {
+		if (index != null || filePath == null)
+			return index;
+		HierarchicalIndexStore store = HierarchicalIndexStore.getDefault();
+		if (store == null)
+			return null;
+
+		index = store.get(filePath);
+		if (index == null) {
+			try (IHierarchicalDataFile reader = getReader.getReader()) {
+				if (reader instanceof IFileFormatDataFile) {
+					HierarchicalIndex idx = ((IFileFormatDataFile) reader).getIndex();
+					if (idx.isFull()) {
+						index = idx;
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	private static String getIndexPath(String path) {
+		if (!path.startsWith("/"))
+			path = "/" + path;
+		if (path.length() > 1 && path.endsWith("/"))
+			path = path.substring(0, path.length() - 1);
+		return path;
 	}
 
 	@Override
@@ -77,6 +140,21 @@ public class HierarchicalDataFileModel implements IHierarchicalDataFileModel {
 	 */
 	private Object getAttribute(String path, String attribute) {
 		synchronized (cache) {
+			try {
+				HierarchicalIndex idx = getIndex();
+				if (idx != null) {
+					Map<String, Object> map = idx.getAttributes(getIndexPath(path));
+					Object value = map != null ? map.get(attribute) : null;
+					Object extractedValue = HierarchicalDataUtils.extractScalar(value);
+					return extractedValue != null ? extractedValue : value;
+				}
+			} catch (Exception e) {
+				// file is bad, return now
+				isValidFile = false;
+				cache.clear();
+				return null;
+			}
+
 			if (cache.containsKey(path)) {
 				Node node = cache.get(path);
 				if (node == null) {
@@ -135,6 +213,18 @@ public class HierarchicalDataFileModel implements IHierarchicalDataFileModel {
 	 */
 	private Object getScalar(String path) {
 		synchronized (cache) {
+			try {
+				HierarchicalIndex idx = getIndex();
+				if (idx != null) {
+					return idx.getScalar(getIndexPath(path));
+				}
+			} catch (Exception e) {
+				// file is bad, return now
+				isValidFile = false;
+				cache.clear();
+				return null;
+			}
+
 			if (cache.containsKey(path)) {
 				Node node = cache.get(path);
 				if (node == null) {
@@ -200,6 +290,20 @@ public class HierarchicalDataFileModel implements IHierarchicalDataFileModel {
 	 * @return whether file has specified path
 	 */
 	private boolean hasNode(String path) {
+		synchronized (cache) {
+			try {
+				HierarchicalIndex idx = getIndex();
+				if (idx != null) {
+					return idx.contains(getIndexPath(path));
+				}
+			} catch (Exception e) {
+				// file is bad, return now
+				isValidFile = false;
+				cache.clear();
+				return false;
+			}
+		}
+
 		// load and test the path, we can't simply
 		// check the result of getScalar == null
 		// because the node may be a valid path
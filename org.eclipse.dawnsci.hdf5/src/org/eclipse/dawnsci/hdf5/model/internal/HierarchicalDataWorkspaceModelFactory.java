@@ -83,7 +83,7 @@ public class HierarchicalDataWorkspaceModelFactory {
 			IHierarchicalDataFileGetReader getReader = new GetFileReaderFactory(
 					fullPath);
 			HierarchicalDataFileModel hierarchicalDataFileModel = new HierarchicalDataFileModel(
-					getReader);
+					getReader, fullPath);
 			return hierarchicalDataFileModel;
 
 		}
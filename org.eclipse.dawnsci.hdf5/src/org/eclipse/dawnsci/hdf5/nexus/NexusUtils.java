@@ -27,6 +27,7 @@ import ncsa.hdf.object.h5.H5Datatype;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.hdf5.H5Utils;
 import org.eclipse.dawnsci.hdf5.HierarchicalDataFactory;
+import org.eclipse.dawnsci.hdf5.HierarchicalIndex;
 import org.eclipse.dawnsci.hdf5.IFileFormatDataFile;
 import org.eclipse.dawnsci.hdf5.IHierarchicalDataFile;
 import org.slf4j.Logger;
@@ -418,6 +419,11 @@ public class NexusUtils {
 	 */
 	public static String getNexusGroupAttributeValue(IHierarchicalDataFile file, String group, String name) throws Exception {
 		
+		if (NXCLASS.equalsIgnoreCase(name) && file instanceof IFileFormatDataFile) {
+			final HierarchicalIndex index = ((IFileFormatDataFile)file).getIndex();
+			if (index.isGroup(group)) return index.getNexusClass(group);
+		}
+
 		final HObject object = (HObject)file.getData(group);
 		for (Object ob: object.getMetadata()) {
 			if (ob instanceof Attribute) {
@@ -435,23 +441,29 @@ public class NexusUtils {
 	/**
 	 * Breath first search of a hierarchical data file group.
 	 * 
+	 * The members of each group are taken from the index of the file
+	 * when it has one, rather than from the file.
+	 * 
 	 * @param finder - IFindInNexus object, used to test a group
 	 * @param rootGroup - the group to be searched
 	 * @param findFirst - whether the search returns when the first object is found (quicker for single objects)
 	 */
 	public static List<String> nexusBreadthFirstSearch(IHierarchicalDataFile file, IFindInNexus finder, String rootGroup, boolean findFirst) throws Exception {
 		
+		final HierarchicalIndex index = file instanceof IFileFormatDataFile
+				                      ? ((IFileFormatDataFile)file).getIndex()
+				                      : null;
 		List<String> out = new ArrayList<String>();
 		
 		Queue<String> queue = new LinkedList<String>();
-		for (String nxObject : file.memberList(rootGroup)) {
+		for (String nxObject : memberList(file, index, rootGroup)) {
 			if (finder.inNexus(nxObject)) {
 				
 				if (findFirst) return Arrays.asList(nxObject);
 				else out.add(nxObject);
 			}
 			
-			if(file.isGroup(nxObject)) {
+			if (isGroup(file, index, nxObject)) {
 				queue.add(nxObject);
 			}
 		}
@@ -460,14 +472,14 @@ public class NexusUtils {
 		
 		while (queue.size() != 0) {
 			String group = queue.poll();
-			for (String nxObject: file.memberList(group)) {
+			for (String nxObject: memberList(file, index, group)) {
 				
 				if (finder.inNexus(nxObject)) {
 					if (findFirst) return Arrays.asList(nxObject);
 					else out.add(nxObject);
 				}
 				
-				if (file.isGroup(nxObject)) {
+				if (isGroup(file, index, nxObject)) {
 					queue.add(nxObject);
 				}
 				
@@ -482,4 +494,14 @@ public class NexusUtils {
 		
 		return out;
 	}
+
+	private static List<String> memberList(IHierarchicalDataFile file, HierarchicalIndex index, String group) throws Exception {
+		final List<String> members = index!=null ? index.getMembers(group) : null;
+		return members!=null ? members : file.memberList(group);
+	}
+
+	private static boolean isGroup(IHierarchicalDataFile file, HierarchicalIndex index, String path) throws Exception {
+		if (index!=null && index.contains(path)) return index.isGroup(path);
+		return file.isGroup(path);
+	}
 }